@@ -29,6 +29,7 @@ import mudmap2.backend.Layer;
 import mudmap2.backend.LayerElement;
 import mudmap2.backend.Path;
 import mudmap2.backend.Place;
+import mudmap2.backend.World;
 
 /**
  *
@@ -125,83 +126,90 @@ public final class CopyPaste {
                 + (copyPlaces.iterator().next().getLayer().getWorld() != layer.getWorld() ? " Pasting to another world might cause problems!" : "");
         int ret = JOptionPane.showConfirmDialog(null, message, title, JOptionPane.YES_NO_OPTION);
         if(ret == JOptionPane.YES_OPTION){
-            // map to translate from old to new place
-            HashMap<Place, Place> place_to_new_place = new HashMap<Place, Place>();
+            // notify the listeners once for all places
+            World world = layer.getWorld();
+            world.beginBatch();
+            try {
+                // map to translate from old to new place
+                HashMap<Place, Place> place_to_new_place = new HashMap<Place, Place>();
 
-            Place[] places;
+                Place[] places;
 
-            if(copyMode){
-                places = copyPlaces.toArray(new Place[copyPlaces.size()]);
-            } else {
-                // getPlace movement direction
-                final int fact_x = (x <= copydx ? 1 : -1);
-                final int fact_y = (y <= copydy ? 1 : -1);
+                if(copyMode){
+                    places = copyPlaces.toArray(new Place[copyPlaces.size()]);
+                } else {
+                    // getPlace movement direction
+                    final int fact_x = (x <= copydx ? 1 : -1);
+                    final int fact_y = (y <= copydy ? 1 : -1);
 
-                // sort places
-                ArrayList<Place> ordered_places = new ArrayList<>(copyPlaces);
-                Collections.sort(ordered_places, new Comparator<Place>(){
-                    @Override
-                    public int compare(Place t, Place t1) {
-                        // order by movement direction:
-                        // places that might collide with other places in the
-                        // list will be moved first
-                        if(fact_x * t.getX() > fact_x * t1.getX()) return 1;
-                        else if(t.getX() == t1.getX()){
-                            if(fact_y * t.getY() > fact_y * t1.getY()) return 1;
-                            else if(t.getY() == t1.getY()) return 0;
+                    // sort places
+                    ArrayList<Place> ordered_places = new ArrayList<>(copyPlaces);
+                    Collections.sort(ordered_places, new Comparator<Place>(){
+                        @Override
+                        public int compare(Place t, Place t1) {
+                            // order by movement direction:
+                            // places that might collide with other places in the
+                            // list will be moved first
+                            if(fact_x * t.getX() > fact_x * t1.getX()) return 1;
+                            else if(t.getX() == t1.getX()){
+                                if(fact_y * t.getY() > fact_y * t1.getY()) return 1;
+                                else if(t.getY() == t1.getY()) return 0;
+                            }
+                            return -1;
                         }
-                        return -1;
-                    }
-                });
+                    });
 
-                places = ordered_places.toArray(new Place[ordered_places.size()]);
-            }
+                    places = ordered_places.toArray(new Place[ordered_places.size()]);
+                }
 
-            // copy places
-            for(Place place: places){
-                try {
-                    if(place.getLayer().getWorld() != layer.getWorld()){
-                        if(place.getPlaceGroup() != null && !layer.getWorld().getPlaceGroups().contains(place.getPlaceGroup())) layer.getWorld().addPlaceGroup(place.getPlaceGroup());
-                    }
-                    if(copyMode){ // copy places -> duplicate on new layer
-                        Place new_place = place.duplicate();
-                        place_to_new_place.put(place, new_place);
-                        layer.getWorld().putPlace(new_place, layer.getId(), place.getX() - copydx + x, place.getY() - copydy + y);
-                    } else {
-                        layer.getWorld().putPlace(place, layer.getId(), place.getX() - copydx + x, place.getY() - copydy + y);
+                // copy places
+                for(Place place: places){
+                    try {
+                        if(place.getLayer().getWorld() != layer.getWorld()){
+                            if(place.getPlaceGroup() != null && !layer.getWorld().getPlaceGroups().contains(place.getPlaceGroup())) layer.getWorld().addPlaceGroup(place.getPlaceGroup());
+                        }
+                        if(copyMode){ // copy places -> duplicate on new layer
+                            Place new_place = place.duplicate();
+                            place_to_new_place.put(place, new_place);
+                            layer.getWorld().putPlace(new_place, layer.getId(), place.getX() - copydx + x, place.getY() - copydy + y);
+                        } else {
+                            layer.getWorld().putPlace(place, layer.getId(), place.getX() - copydx + x, place.getY() - copydy + y);
+                        }
+                    } catch (Exception ex) {
+                        Logger.getLogger(Mudmap2.class.getName()).log(Level.SEVERE, null, ex);
+                        return false;
                     }
-                } catch (Exception ex) {
-                    Logger.getLogger(Mudmap2.class.getName()).log(Level.SEVERE, null, ex);
-                    return false;
                 }
-            }
 
-            // recreate paths and child connections after copy-paste
-            if(copyMode){
-                for(Place place: copyPlaces){
-                    Place new_place = place_to_new_place.get(place);
-                    // connect paths
-                    for(Path path: place.getPaths()){
-                        // only check first place, because the other side will
-                        // check itself
-                        Place path_end_place = path.getPlaces()[0];
-                        // if end place is not this place and is also copied
-                        if(path_end_place != place && copyPlaces.contains(path_end_place)){
-                            Place other_new_place = place_to_new_place.get(path_end_place);
-                            new_place.connectPath(new Path(other_new_place, path.getExitDirections()[0], new_place, path.getExitDirections()[1]));
+                // recreate paths and child connections after copy-paste
+                if(copyMode){
+                    for(Place place: copyPlaces){
+                        Place new_place = place_to_new_place.get(place);
+                        // connect paths
+                        for(Path path: place.getPaths()){
+                            // only check first place, because the other side will
+                            // check itself
+                            Place path_end_place = path.getPlaces()[0];
+                            // if end place is not this place and is also copied
+                            if(path_end_place != place && copyPlaces.contains(path_end_place)){
+                                Place other_new_place = place_to_new_place.get(path_end_place);
+                                new_place.connectPath(new Path(other_new_place, path.getExitDirections()[0], new_place, path.getExitDirections()[1]));
+                            }
                         }
-                    }
-                    // connect children
-                    for(Place child: place.getChildren()){
-                        // if child is copied, too
-                        if(copyPlaces.contains(child)){
-                            Place new_child = place_to_new_place.get(child);
-                            new_place.connectChild(new_child);
+                        // connect children
+                        for(Place child: place.getChildren()){
+                            // if child is copied, too
+                            if(copyPlaces.contains(child)){
+                                Place new_child = place_to_new_place.get(child);
+                                new_place.connectChild(new_child);
+                            }
                         }
                     }
-                }
-            // moving places modifies their coordinates so that they cant be pasted again
-            } else resetCopy();
+                // moving places modifies their coordinates so that they cant be pasted again
+                } else resetCopy();
+            } finally {
+                world.endBatch();
+            }
         }
 
         // cleanup
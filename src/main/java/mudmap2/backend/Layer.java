@@ -23,8 +23,10 @@
 
 package mudmap2.backend;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Set;
 import mudmap2.backend.prquadtree.Quadtree;
 
 /**
@@ -43,6 +45,9 @@ public class Layer {
     // for quadtree optimization
     int maxX, minX, maxY, minY;
 
+    // loads the places on first access, null if loaded
+    volatile LayerLoader loader;
+
     public Layer(int id, World world){
         this.id = id;
         if(id >= world.getNextLayerID()) world.setNextLayerID(id + 1);
@@ -69,13 +74,58 @@ public class Layer {
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        if(world != null) world.fireEvent(new WorldEvent.LayerRenamed(this, oldName, name));
     }
 
     public Boolean hasName(){
         return name != null;
     }
 
+    /**
+     * Sets a loader, the places of the layer will be loaded on first access
+     * @param loader loader or null
+     */
+    public void setLoader(LayerLoader loader){
+        this.loader = loader;
+    }
+
+    /**
+     * Checks whether the places of the layer are loaded
+     * @return true, if loaded
+     */
+    public boolean isLoaded(){
+        return loader == null;
+    }
+
+    /**
+     * Gets the layers that places of this layer are linked to, while the
+     * layer isn't loaded. The places won't be loaded
+     * @return layer ids, an empty set if the layer is loaded or null if the
+     * links are unknown
+     */
+    public Set<Integer> getLinkedLayers(){
+        LayerLoader l = loader;
+        if(l == null) return Collections.emptySet();
+        return l.getLinkedLayers(this);
+    }
+
+    /**
+     * Loads the places of the layer, if they aren't loaded yet
+     */
+    public void load(){
+        if(loader != null){
+            synchronized(this){
+                LayerLoader l = loader;
+                if(l != null){
+                    loader = null;
+                    world.loadLayer(this, l);
+                }
+            }
+        }
+    }
+
     /**
      * Use this only to set an optimized quadtree after construction
      * @param center_x
@@ -90,6 +140,7 @@ public class Layer {
      * @return
      */
     public int getCenterX(){
+        load();
         return (maxX + minX) / 2;
     }
 
@@ -98,6 +149,7 @@ public class Layer {
      * @return
      */
     public int getCenterY(){
+        load();
         return (maxY + minY) / 2;
     }
 
@@ -161,6 +213,7 @@ public class Layer {
      * @throws java.lang.Exception
      */
     public void put(Place element, int x, int y) throws Exception{
+        load();
         minX = Math.min(minX, x);
         maxX = Math.max(maxX, x);
         minY = Math.min(minY, y);
@@ -182,6 +235,7 @@ public class Layer {
      * @throws mudmap2.backend.Layer.PlaceNotInsertedException
      */
     public void put(Place element) throws PlaceNotInsertedException {
+        load();
         try {
             minX = Math.min(minX, element.getX());
             maxX = Math.max(maxX, element.getX());
@@ -201,6 +255,7 @@ public class Layer {
      * @return element at that position or null
      */
     public Place get(int x, int y){
+        load();
         return elements.get(x, y);
     }
 
@@ -248,6 +303,7 @@ public class Layer {
      */
     public void remove(LayerElement element) throws RuntimeException, PlaceNotFoundException {
         if(element.getLayer() != this) throw new RuntimeException("Element not in this layer");
+        load();
         // element on the layer before placing the new one
         LayerElement el_bef = get(element.getX(), element.getY());
         if(el_bef != element){
@@ -264,10 +320,12 @@ public class Layer {
      * @return true, if an element exists
      */
     public boolean exist(int x, int y){
+        load();
         return elements.exist(x, y);
     }
 
     public boolean isEmpty(){
+        load();
         return elements.isEmpty();
     }
 
@@ -276,6 +334,7 @@ public class Layer {
      * @return set of all elements or empty set
      */
     public HashSet<Place> getPlaces(){
+        load();
         return elements.values();
     }
 
@@ -0,0 +1,50 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Interface for world file readers that load the places of a layer when the
+ *  layer is accessed for the first time
+ */
+
+package mudmap2.backend;
+
+import java.util.Set;
+
+/**
+ * Loads the places of a layer on demand
+ * @author neop
+ */
+public interface LayerLoader {
+
+    /**
+     * Puts the places of a layer to the world. The world doesn't call its
+     * listeners while a layer is being loaded
+     * @param layer layer to load
+     * @throws Exception
+     */
+    public void loadLayer(Layer layer) throws Exception;
+
+    /**
+     * Gets the layers that the places of a layer are linked to by paths or
+     * child / parent relations, without loading the layer
+     * @param layer layer that isn't loaded yet
+     * @return layer ids or null, if the links are unknown
+     */
+    public Set<Integer> getLinkedLayers(Layer layer);
+
+}
@@ -26,13 +26,12 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.TreeMap;
 import mudmap2.backend.Layer.PlaceNotFoundException;
-import mudmap2.backend.sssp.BreadthSearch;
 
 /**
  * A place in the world
  * @author neop
  */
-public class Place extends LayerElement implements Comparable<Place>, BreadthSearch {
+public class Place extends LayerElement implements Comparable<Place> {
 
     public static final String PLACEHOLDER_NAME = "?";
 
@@ -50,13 +49,11 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
     TreeMap<String, Boolean> flags;
     LinkedList<String> comments;
 
-    BreadthSearchData breadthSearchData;
-
     public Place(int id, String name, int posX, int posY, Layer l){
         super(posX, posY, l);
         this.name = name;
         this.id = id;
-        if(id >= nextID) nextID = id + 1;
+        reserveId(id);
 
         initialize();
     }
@@ -71,11 +68,29 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
     public Place(String name, int posX, int posY, Layer l){
         super(posX, posY, l);
         this.name = name;
-        id = nextID++;
+        id = getNextId();
 
         initialize();
     }
 
+    /**
+     * Reserves an id, new places will get greater ids. Used for places that
+     * aren't loaded yet. Places might be created by several threads while
+     * loading a world
+     * @param id
+     */
+    public static synchronized void reserveId(int id){
+        if(id >= nextID) nextID = id + 1;
+    }
+
+    /**
+     * Assigns a new id
+     * @return id
+     */
+    private static synchronized int getNextId(){
+        return nextID++;
+    }
+
     /**
      * Initializes the place
      */
@@ -89,8 +104,6 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
         paths = new HashSet<>();
         flags = new TreeMap<>();
         comments = new LinkedList<>();
-
-        breadthSearchData = null;
     }
 
     /**
@@ -114,8 +127,9 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * @param name new name
      */
     public void setName(String name){
+        String oldName = this.name;
         this.name = name;
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.AttributeChanged(this, WorldEvent.AttributeChanged.NAME, oldName, name));
     }
 
     /**
@@ -139,11 +153,12 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * @param placeGroup
      */
     public void setPlaceGroup(PlaceGroup placeGroup) {
+        PlaceGroup oldPlaceGroup = this.placeGroup;
         this.placeGroup = placeGroup;
         if(getLayer() != null && getLayer().getWorld() != null){
             getLayer().getWorld().addPlaceGroup(placeGroup);
         }
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.AttributeChanged(this, WorldEvent.AttributeChanged.PLACE_GROUP, oldPlaceGroup, placeGroup));
     }
 
     /**
@@ -159,8 +174,9 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * @param recLevelMin
      */
     public void setRecLevelMin(int recLevelMin){
+        int oldRecLevelMin = this.recLevelMin;
         this.recLevelMin = recLevelMin;
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.AttributeChanged(this, WorldEvent.AttributeChanged.REC_LEVEL_MIN, oldRecLevelMin, recLevelMin));
     }
 
     /**
@@ -176,8 +192,9 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * @param recLevelMax
      */
     public void setRecLevelMax(int recLevelMax){
+        int oldRecLevelMax = this.recLevelMax;
         this.recLevelMax = recLevelMax;
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.AttributeChanged(this, WorldEvent.AttributeChanged.REC_LEVEL_MAX, oldRecLevelMax, recLevelMax));
     }
 
     /**
@@ -193,8 +210,9 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * @param riskLevel
      */
     public void setRiskLevel(RiskLevel riskLevel){
+        RiskLevel oldRiskLevel = this.riskLevel;
         this.riskLevel = riskLevel;
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.AttributeChanged(this, WorldEvent.AttributeChanged.RISK_LEVEL, oldRiskLevel, riskLevel));
     }
 
     /**
@@ -209,8 +227,9 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * removes all comments
      */
     public void deleteComments(){
+        LinkedList<String> oldComments = new LinkedList<>(comments);
         comments.clear();
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.AttributeChanged(this, WorldEvent.AttributeChanged.COMMENTS, oldComments, comments));
     }
 
     /**
@@ -265,16 +284,17 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * @throws java.lang.Exception if path could not be removed
      */
     public void removePath(String dir1, Place other, String dir2) throws Exception{
-        boolean ok = false;
+        Path removed = null;
         for(Path path: Place.this.getPaths(other)){
             if(path.getExit(this).equals(dir1) && path.getExit(other).equals(dir2)){
                 paths.remove(path);
                 other.paths.remove(path);
-                ok = true;
+                removed = path;
             }
         }
-        if(!ok) throw new RuntimeException("Couldn't remove path connection (" + this + " [" + dir1 + "] - " + other + " [" + dir2 + "]), path not found");
-        callWorldChangeListeners();
+        if(removed == null) throw new RuntimeException("Couldn't remove path connection (" + this + " [" + dir1 + "] - " + other + " [" + dir2 + "]), path not found");
+        topologyChanged();
+        fireEvent(new WorldEvent.PathRemoved(this, removed));
     }
 
     /**
@@ -284,7 +304,8 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
     public void removePath(Path path){
         paths.remove(path);
         path.getOtherPlace(this).paths.remove(path);
-        callWorldChangeListeners();
+        topologyChanged();
+        fireEvent(new WorldEvent.PathRemoved(this, path));
     }
 
     /**
@@ -323,9 +344,11 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
             if(!exit_occupied){
                 paths.add(path);
                 other.paths.add(path);
+                if(getLayer() != null && getLayer().getWorld() != null)
+                    getLayer().getWorld().pathAdded();
+                fireEvent(new WorldEvent.PathAdded(this, path));
             }
         }
-        callWorldChangeListeners();
         return !exit_occupied;
     }
 
@@ -365,8 +388,8 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
      * @param state value
      */
     public void setFlag(String key, boolean state){
-        flags.put(key, state);
-        callWorldChangeListeners();
+        Boolean oldState = flags.put(key, state);
+        fireEvent(new WorldEvent.AttributeChanged(this, WorldEvent.AttributeChanged.FLAG + key, oldState, state));
     }
 
     /**
@@ -384,7 +407,7 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
     public void connectChild(Place p){
         children.add(p);
         p.parents.add(this);
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.ChildAdded(this, p));
     }
 
     /**
@@ -394,7 +417,7 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
     public void removeChild(Place child){
         children.remove(child);
         child.parents.remove(this);
-        callWorldChangeListeners();
+        fireEvent(new WorldEvent.ChildRemoved(this, child));
     }
 
     /**
@@ -441,12 +464,8 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
         HashSet<Path> cp_buffer = (HashSet<Path>) paths.clone();
         for(Path p: cp_buffer) p.remove();
         // remove place connection to children / parents
-        for(Place pl: children) pl.parents.remove(this);
-        children.clear();
-        for(Place pl: parents) pl.children.remove(this);
-        parents.clear();
-
-        callWorldChangeListeners();
+        for(Place pl: (HashSet<Place>) children.clone()) removeChild(pl);
+        for(Place pl: (HashSet<Place>) parents.clone()) pl.removeChild(this);
     }
 
     /**
@@ -508,29 +527,20 @@ public class Place extends LayerElement implements Comparable<Place>, BreadthSea
     }
 
     /**
-     * Resets the breadth search data
-     */
-    @Override
-    public void breadthSearchReset() {
-        getBreadthSearchData().reset();
-    }
-
-    /**
-     * Gets the breadth search data
-     * @return
+     * Tells the world that a path was removed
      */
-    @Override
-    public BreadthSearchData getBreadthSearchData() {
-        if(breadthSearchData == null) breadthSearchData = new BreadthSearchData();
-        return breadthSearchData;
+    private void topologyChanged(){
+        if(getLayer() != null && getLayer().getWorld() != null)
+            getLayer().getWorld().topologyChanged();
     }
 
     /**
      * Call world change listeners on place changes
+     * @param event change event
      */
-    private void callWorldChangeListeners(){
+    private void fireEvent(WorldEvent event){
         if(getLayer() != null && getLayer().getWorld() != null)
-            getLayer().getWorld().callListeners(this);
+            getLayer().getWorld().fireEvent(event);
     }
 
 }
@@ -36,17 +36,21 @@ import java.util.logging.Logger;
 import mudmap2.backend.Layer.PlaceNotFoundException;
 import mudmap2.backend.Layer.PlaceNotInsertedException;
 import mudmap2.backend.WorldFileReader.WorldFile;
-import mudmap2.backend.sssp.BreadthSearchGraph;
+import mudmap2.backend.sssp.LayerGraph;
+import mudmap2.backend.sssp.RouteCache;
+import mudmap2.backend.sssp.WorldGraph;
 
 /**
  *
  * @author neop
  */
-public class World implements BreadthSearchGraph {
+public class World {
 
     // worldname and file of the world
     String worldname;
     WorldFile worldFile;
+    // journal of changes since the world file was written, or null
+    WorldJournal journal;
     // color of path lines and self-defined path colors
     Color pathColorCardinal, pathColorNonCardinal;
     HashMap<String, Color> pathColors;
@@ -65,7 +69,28 @@ public class World implements BreadthSearchGraph {
 
     ShowPlaceID showPlaceID;
 
-    LinkedList<WorldChangeListener> changeListeners;
+    LinkedList<WorldEventListener> changeListeners;
+
+    // modification counter, incremented on every change
+    long modCount;
+    // modification counter of the last saved state and time of the last change
+    long savedModCount;
+    long lastChangeTime;
+    // incremented whenever a path is added, for route caching
+    long pathVersion;
+    // incremented whenever a place or path is added or removed
+    long topologyVersion;
+    // listeners aren't called while > 0, eg. while loading a layer
+    int silent;
+    // nesting depth of batches, events and whether the world has been
+    // modified in the current batch, see beginBatch()
+    int batch;
+    ArrayList<WorldEvent> batchEvents;
+    boolean batchModified;
+
+    RouteCache routeCache;
+    WorldGraph graph;
+    LayerGraph layerGraph;
 
     /**
      * Creates an empty world
@@ -88,6 +113,10 @@ public class World implements BreadthSearchGraph {
      */
     private void initialize(){
         changeListeners = new LinkedList<>();
+        modCount = pathVersion = topologyVersion = 0;
+        routeCache = null;
+        graph = null;
+        layerGraph = null;
 
         placeGroups = new HashSet<>();
         layers = new TreeMap<>();
@@ -128,6 +157,22 @@ public class World implements BreadthSearchGraph {
         this.worldFile = worldFile;
     }
 
+    /**
+     * Gets the change journal
+     * @return journal or null
+     */
+    public WorldJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the change journal
+     * @param journal
+     */
+    public void setJournal(WorldJournal journal) {
+        this.journal = journal;
+    }
+
     // --------- World name ----------------------------------------------------
     /**
      * Gets the world worldname
@@ -146,6 +191,79 @@ public class World implements BreadthSearchGraph {
         callListeners(this);
     }
 
+    // --------- snapshot ------------------------------------------------------
+    /**
+     * Creates a copy of the world that can be written to a file while the
+     * world is being edited. Ids of places and layers are kept, listeners,
+     * the world file and the journal aren't copied. Layers that aren't loaded
+     * yet will be loaded
+     * @return copy of the world
+     */
+    public World snapshot(){
+        World ret = new World(worldname);
+        ret.showPlaceID = showPlaceID;
+        ret.pathColorCardinal = pathColorCardinal;
+        ret.pathColorNonCardinal = pathColorNonCardinal;
+        ret.pathColors.putAll(pathColors);
+        ret.tileCenterColor = tileCenterColor;
+        ret.home = new WorldCoordinate(home.getLayer(), home.getX(), home.getY());
+
+        ret.riskLevels.clear();
+        for(RiskLevel rl: riskLevels.values()){
+            ret.riskLevels.put(rl.getId(), new RiskLevel(rl.getId(), rl.getDescription(), rl.getColor()));
+        }
+        HashMap<PlaceGroup, PlaceGroup> groups = new HashMap<>();
+        for(PlaceGroup pg: placeGroups){
+            PlaceGroup copy = new PlaceGroup(pg.getName(), pg.getColor());
+            groups.put(pg, copy);
+            ret.placeGroups.add(copy);
+        }
+
+        for(Layer layer: layers.values()){
+            Layer copy = new Layer(layer.getId(), ret);
+            if(layer.hasName()) copy.setName(layer.getName());
+        }
+        ret.nextLayerID = nextLayerID;
+
+        for(Place place: getPlaces()){
+            Place copy = new Place(place.getId(), place.getName(), place.getX(), place.getY(), null);
+            copy.placeGroup = groups.get(place.getPlaceGroup());
+            copy.riskLevel = place.getRiskLevel() != null ? ret.riskLevels.get(place.getRiskLevel().getId()) : null;
+            copy.recLevelMin = place.getRecLevelMin();
+            copy.recLevelMax = place.getRecLevelMax();
+            copy.flags.putAll(place.getFlags());
+            copy.comments.addAll(place.getComments());
+            try {
+                ret.putPlace(copy, place.getLayer().getId(), place.getX(), place.getY());
+            } catch (Exception ex) {
+                Logger.getLogger(World.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        for(Place place: places.values()){
+            Place copy = ret.places.get(place.getId());
+            for(Place child: place.getChildren()){
+                Place childCopy = ret.places.get(child.getId());
+                if(childCopy != null){
+                    copy.children.add(childCopy);
+                    childCopy.parents.add(copy);
+                }
+            }
+            for(Path path: place.getPaths()){
+                // each path once, from its first place
+                Place[] pp = path.getPlaces();
+                if(pp[0] != place) continue;
+                Place other = ret.places.get(pp[1].getId());
+                if(other != null){
+                    Path pathCopy = new Path(copy, path.getExit(pp[0]), other, path.getExit(pp[1]));
+                    copy.paths.add(pathCopy);
+                    other.paths.add(pathCopy);
+                }
+            }
+        }
+        return ret;
+    }
+
     // --------- home position -------------------------------------------------
     /**
      * Gets the home position
@@ -170,17 +288,74 @@ public class World implements BreadthSearchGraph {
      * @return place
      */
     public Place getPlace(int id){
+        Place ret = places.get(id);
+        if(ret == null && loadLayers()) ret = places.get(id);
+        return ret;
+    }
+
+    /**
+     * Gets a place of a layer that has been loaded, doesn't load any layers
+     * @param id place id
+     * @return place or null
+     */
+    public Place getLoadedPlace(int id){
         return places.get(id);
     }
 
     /**
-     * Gets all places
+     * Checks whether a place belongs to the world, doesn't load any layers
+     * @param place
+     * @return true, if the place is in the world
+     */
+    public boolean hasPlace(Place place){
+        return place != null && places.get(place.getId()) == place;
+    }
+
+    /**
+     * Gets all places, layers that aren't loaded yet will be loaded
      * @return
      */
     public Collection<Place> getPlaces(){
+        loadLayers();
         return places.values();
     }
 
+    /**
+     * Loads all layers that aren't loaded yet
+     * @return true, if a layer was loaded
+     */
+    public boolean loadLayers(){
+        boolean ret = false;
+        for(Layer layer: new ArrayList<>(layers.values())){
+            if(!layer.isLoaded()){
+                layer.load();
+                ret = true;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Loads the places of a layer without calling the listeners for each
+     * place, the listeners are called once for the layer afterwards
+     * @param layer
+     * @param loader
+     */
+    void loadLayer(Layer layer, LayerLoader loader){
+        ++silent;
+        try {
+            loader.loadLayer(layer);
+        } catch (Exception ex) {
+            Logger.getLogger(World.class.getName()).log(Level.SEVERE, "Couldn't load layer " + layer.getId(), ex);
+        } finally {
+            --silent;
+        }
+        topologyChanged();
+        pathAdded();
+        // loading isn't a modification, don't touch modCount
+        notifyListeners(new WorldEvent.LayerLoaded(layer));
+    }
+
     /**
      * Gets a place
      * @param layer layer id
@@ -224,6 +399,11 @@ public class World implements BreadthSearchGraph {
         Layer l = getLayer(layer);
         if(l == null) layers.put(layer, l = new Layer(layer, this));
 
+        // position before moving a place within the world
+        WorldCoordinate oldPosition = null;
+        if(place.getLayer() != null && place.getLayer().getWorld() == this && places.containsKey(place.getId()))
+            oldPosition = place.getCoordinate();
+
         // removePlace from old layer and world
         if(place.getLayer() != null){
             try{
@@ -244,11 +424,17 @@ public class World implements BreadthSearchGraph {
         l.put(place, x, y);
 
         // add to place list
-        if(!places.containsKey(place.getId())) places.put(place.getId(), place);
+        if(!places.containsKey(place.getId())){
+            places.put(place.getId(), place);
+            topologyChanged();
+            // a new place with paths might create new routes
+            if(!place.getPaths().isEmpty()) pathAdded();
+        }
         if(!placeNames.containsKey(place.getName())) placeNames.put(place.getName(), 1);
         else placeNames.put(place.getName(), placeNames.get(place.getName()) + 1);
 
-        callListeners(place);
+        if(oldPosition != null) fireEvent(new WorldEvent.PlaceMoved(place, oldPosition, place.getCoordinate()));
+        else fireEvent(new WorldEvent.PlaceAdded(place));
     }
 
     /**
@@ -280,25 +466,33 @@ public class World implements BreadthSearchGraph {
     }
 
     /**
-     * Removes a place from the world and removes it's connections to other places
+     * Removes a place from the world and removes it's connections to other
+     * places. The listeners are called once for the whole removal
      * @param place place to be removed
      * @throws RuntimeException
      * @throws mudmap2.backend.Layer.PlaceNotFoundException
      */
     public void removePlace(Place place) throws RuntimeException, PlaceNotFoundException {
+        WorldCoordinate position = place.getCoordinate();
         Layer layer = layers.get(place.getLayer().getId());
         if(layer == null || layer != place.getLayer()){
             // error, wrong layer? (shouldn't occur)
             throw new RuntimeException("Couldn't remove \"" + place + ": layer mismatch");
-        } else {
+        }
+
+        beginBatch();
+        try {
             layer.remove(place);
             place.removeConnections();
             places.remove(place.getId());
+            topologyChanged();
             if(placeNames.containsKey(place.getName()))
                 placeNames.put(place.getName(), Math.max(0, placeNames.get(place.getName()) - 1));
-        }
 
-        callListeners(place);
+            fireEvent(new WorldEvent.PlaceRemoved(place, position));
+        } finally {
+            endBatch();
+        }
     }
 
     /**
@@ -328,7 +522,7 @@ public class World implements BreadthSearchGraph {
         if(!layers.containsKey(layer.getId()))
             layers.put(layer.getId(), layer);
 
-        callListeners(layer);
+        fireEvent(new WorldEvent.LayerAdded(layer));
     }
 
     /**
@@ -338,15 +532,12 @@ public class World implements BreadthSearchGraph {
     public Layer getNewLayer(String name){
         Layer layer = getNewLayer();
         if(!name.isEmpty()) layer.setName(name);
-        callListeners(layer);
         return layer;
     }
     
     public Layer getNewLayer(){
-        Layer layer = new Layer(this);
-        layers.put(layer.getId(), layer);
-        callListeners(layer);
-        return layer;
+        // the layer adds itself to the world
+        return new Layer(this);
     }
     
     public Integer getNextLayerID(){
@@ -601,33 +792,75 @@ public class World implements BreadthSearchGraph {
 
     // --------- path finding --------------------------------------------------
     /**
-     * does a breadth search
-     * @param start start place
-     * @param end end place
-     * @return
+     * Gets the route cache of this world, the cache will be created on first
+     * access
+     * @return route cache
      */
-    @Override
-    public Place breadthSearch(Place start, Place end) {
-        for(Place pl: getPlaces()) pl.breadthSearchReset();
-        start.getBreadthSearchData().marked = true;
+    public RouteCache getRouteCache(){
+        if(routeCache == null){
+            routeCache = new RouteCache(this);
+            addChangeListener(routeCache);
+        }
+        return routeCache;
+    }
 
-        LinkedList<Place> queue = new LinkedList<>();
-        queue.add(start);
+    /**
+     * Gets the layer connectivity graph of this world, it will be created on
+     * first access and kept up to date afterwards
+     * @return layer graph
+     */
+    public LayerGraph getLayerGraph(){
+        if(layerGraph == null){
+            layerGraph = new LayerGraph(this);
+            addEventListener(layerGraph);
+        }
+        return layerGraph;
+    }
 
-        while(!queue.isEmpty()){
-            Place v = queue.pollFirst();
-            if(v == end) return v;
+    /**
+     * Gets the path version, it changes whenever a path is added to the world
+     * @return path version
+     */
+    public long getPathVersion(){
+        return pathVersion;
+    }
 
-            for(Path pa: v.getPaths()){
-                Place vi = pa.getOtherPlace(v);
-                if(!vi.getBreadthSearchData().marked && vi != v){
-                    vi.getBreadthSearchData().marked = true;
-                    vi.getBreadthSearchData().predecessor = v;
-                    queue.addLast(vi);
-                }
-            }
+    /**
+     * Increments the path version, called by places on new path connections
+     */
+    void pathAdded(){
+        ++pathVersion;
+        ++topologyVersion;
+    }
+
+    /**
+     * Gets the topology version, it changes whenever a place or path is added
+     * or removed
+     * @return topology version
+     */
+    public long getTopologyVersion(){
+        return topologyVersion;
+    }
+
+    /**
+     * Increments the topology version, called on removed paths and on new or
+     * removed places
+     */
+    void topologyChanged(){
+        ++topologyVersion;
+    }
+
+    /**
+     * Gets a snapshot of the path graph, it will be rebuilt if the topology
+     * changed since the last call
+     * @return graph snapshot
+     */
+    public synchronized WorldGraph getGraph(){
+        loadLayers();
+        if(graph == null || graph.getVersion() != topologyVersion){
+            graph = new WorldGraph(getPlaces(), topologyVersion);
         }
-        return null;
+        return graph;
     }
 
     // --------- listeners -----------------------------------------------------
@@ -636,7 +869,7 @@ public class World implements BreadthSearchGraph {
      * @param listener listener to add
      */
     public void addChangeListener(WorldChangeListener listener){
-        if(!changeListeners.contains(listener)) changeListeners.add(listener);
+        addEventListener(new ChangeListenerAdapter(listener));
     }
 
     /**
@@ -644,16 +877,165 @@ public class World implements BreadthSearchGraph {
      * @param listener listener to remove
      */
     public void removeChangeListener(WorldChangeListener listener){
+        removeEventListener(new ChangeListenerAdapter(listener));
+    }
+
+    /**
+     * Add listener for typed change events
+     * @param listener listener to add
+     */
+    public void addEventListener(WorldEventListener listener){
+        if(!changeListeners.contains(listener)) changeListeners.add(listener);
+    }
+
+    /**
+     * Remove listener for typed change events
+     * @param listener listener to remove
+     */
+    public void removeEventListener(WorldEventListener listener){
         changeListeners.remove(listener);
     }
 
     /**
-     * Call listeners
+     * Gets the modification counter, it changes on every change of the world
+     * @return modification count
+     */
+    public long getModCount(){
+        return modCount;
+    }
+
+    /**
+     * Marks a state of the world as saved
+     * @param modCount modification count of the saved state
+     */
+    public void setSaved(long modCount){
+        savedModCount = Math.max(savedModCount, modCount);
+    }
+
+    /**
+     * Checks whether the world has been changed since it was saved
+     * @return true, if there are unsaved changes
+     */
+    public boolean isModified(){
+        return modCount != savedModCount;
+    }
+
+    /**
+     * Gets the number of changes since the world was saved
+     * @return number of unsaved changes
+     */
+    public long getPendingChangeCount(){
+        return modCount - savedModCount;
+    }
+
+    /**
+     * Gets the time of the last change
+     * @return time in milliseconds or 0, if the world hasn't been changed
+     */
+    public long getLastChangeTime(){
+        return lastChangeTime;
+    }
+
+    /**
+     * Starts a batch of changes, eg. for pasting or removing many places. The
+     * listeners aren't called until the batch ends, then they are called once
+     * with all events. Batches can be nested, only the outermost batch calls
+     * the listeners. Every call has to be followed by endBatch(), use
+     * try / finally
+     */
+    public void beginBatch(){
+        if(batch++ == 0){
+            batchEvents = new ArrayList<>();
+            batchModified = false;
+        }
+    }
+
+    /**
+     * Ends a batch of changes and calls the listeners, if something has been
+     * changed. A single event is sent as it is, more events are sent as
+     * WorldEvent.Batch. The whole batch counts as one modification
+     */
+    public void endBatch(){
+        if(batch == 0) throw new IllegalStateException("No batch started");
+        if(--batch > 0) return;
+
+        ArrayList<WorldEvent> events = batchEvents;
+        batchEvents = null;
+        if(batchModified){
+            ++modCount;
+            lastChangeTime = System.currentTimeMillis();
+        }
+        if(events.size() == 1) notifyListeners(events.get(0));
+        else if(!events.isEmpty()) notifyListeners(new WorldEvent.Batch(events));
+    }
+
+    /**
+     * Checks whether a batch of changes has been started
+     * @return true, if the listeners are called at the end of the batch
+     */
+    public boolean isBatch(){
+        return batch > 0;
+    }
+
+    /**
+     * Call listeners, the change is sent as WorldEvent.Changed
      * @param source changed object
      */
     public void callListeners(Object source){
-        for(WorldChangeListener listener: changeListeners){
-            listener.worldChanged(source);
+        if(silent > 0) return;
+        fireEvent(new WorldEvent.Changed(source));
+    }
+
+    /**
+     * Sends an event to the listeners and counts it as modification
+     * @param event change event
+     */
+    public void fireEvent(WorldEvent event){
+        if(silent > 0) return;
+        if(batch > 0){
+            batchModified = true;
+        } else {
+            ++modCount;
+            lastChangeTime = System.currentTimeMillis();
+        }
+        notifyListeners(event);
+    }
+
+    private void notifyListeners(WorldEvent event){
+        if(batch > 0){
+            // a world without listeners, eg. while reading a file, doesn't
+            // need to keep the events
+            if(!changeListeners.isEmpty()) batchEvents.add(event);
+            return;
+        }
+        for(WorldEventListener listener: changeListeners){
+            listener.worldEvent(event);
+        }
+    }
+
+    /**
+     * Sends the changed objects of typed events to a WorldChangeListener
+     */
+    private static class ChangeListenerAdapter implements WorldEventListener {
+        final WorldChangeListener listener;
+
+        public ChangeListenerAdapter(WorldChangeListener listener){
+            this.listener = listener;
+        }
+
+        @Override
+        public void worldEvent(WorldEvent event) {
+            listener.worldChanged(event.getSource());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ChangeListenerAdapter && ((ChangeListenerAdapter) obj).listener == listener;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(listener);
         }
     }
 }
@@ -0,0 +1,295 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Rotating backups of world files. The backups of a world are stored in the
+ *  directory "backups" next to the world file, named by the SHA-256 hash of
+ *  their content. An index file lists the hashes, newest first. A backup is
+ *  skipped if the content didn't change, and a generation with the same
+ *  content is reused. Backups are copies: other programs might change the
+ *  world file in place, which would change a hard link, too. The content of
+ *  a generation is checked before it is reused. Backups are made by a
+ *  background thread
+ */
+
+package mudmap2.backend;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import mudmap2.utils.AtomicFile;
+
+/**
+ * Content addressed, rotating backups of world files
+ * @author neop
+ */
+public class WorldBackup {
+
+    public static final String BACKUP_DIR = "backups";
+    public static final String BACKUP_SUFFIX = ".backup";
+    public static final String INDEX_SUFFIX = ".backups";
+
+    static final int DEFAULT_GENERATIONS = 5;
+
+    // makes the backups in the background, one after another
+    static ExecutorService executor;
+
+    final File worldFile;
+    final File dir;
+    final int generations;
+
+    /**
+     * Creates a backup store for a world file
+     * @param filename world file
+     * @param generations number of backups to keep
+     */
+    public WorldBackup(String filename, int generations){
+        if(generations < 1) throw new IllegalArgumentException("At least one generation has to be kept");
+        worldFile = new File(filename).getAbsoluteFile();
+        dir = new File(worldFile.getParentFile(), BACKUP_DIR);
+        this.generations = generations;
+    }
+
+    /**
+     * Creates a backup store that keeps the default number of backups
+     * @param filename world file
+     */
+    public WorldBackup(String filename){
+        this(filename, DEFAULT_GENERATIONS);
+    }
+
+    /**
+     * Gets the backup files, newest first
+     * @return backup files
+     * @throws IOException
+     */
+    public List<File> getBackups() throws IOException {
+        ArrayList<File> ret = new ArrayList<>();
+        for(String hash: readIndex()) ret.add(getBackupFile(hash));
+        return ret;
+    }
+
+    /**
+     * Backs up the world file, unless the newest backup has the same content
+     * @return true, if a new generation was added
+     * @throws IOException
+     */
+    public synchronized boolean backup() throws IOException {
+        if(!worldFile.isFile()) throw new FileNotFoundException(worldFile.getPath());
+
+        List<String> index = readIndex();
+        String hash = hash(worldFile);
+        boolean stored = isStored(hash);
+        if(!index.isEmpty() && index.get(0).equals(hash) && stored){
+            // nothing changed since the last backup
+            return false;
+        }
+
+        if(!dir.exists()) Files.createDirectories(dir.toPath());
+        if(!stored) store(hash);
+
+        // rotate
+        index.remove(hash);
+        index.add(0, hash);
+        while(index.size() > generations){
+            String removed = index.remove(index.size() - 1);
+            Files.deleteIfExists(getBackupFile(removed).toPath());
+        }
+        writeIndex(index);
+        return true;
+    }
+
+    /**
+     * Backs up the world file in the background. Errors are logged
+     * @return result of backup()
+     */
+    public Future<Boolean> backupAsync(){
+        return getExecutor().submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                try {
+                    return backup();
+                } catch (IOException ex) {
+                    Logger.getLogger(WorldBackup.class.getName()).log(Level.WARNING,
+                            "Could not back up world file " + worldFile, ex);
+                    throw ex;
+                }
+            }
+        });
+    }
+
+    /**
+     * Stores the content of the world file as a new backup
+     * @param hash hash of the content
+     * @throws IOException
+     */
+    private void store(String hash) throws IOException {
+        File backup = getBackupFile(hash);
+
+        // copy the file and check the content
+        AtomicFile file = new AtomicFile(backup.getPath());
+        try {
+            Files.copy(worldFile.toPath(), file.getTempFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if(!hash(file.getTempFile()).equals(hash)){
+                throw new IOException("World file " + worldFile + " changed while it was backed up");
+            }
+            file.commit();
+        } catch (IOException | RuntimeException ex){
+            file.abort();
+            throw ex;
+        }
+    }
+
+    /**
+     * Checks whether a backup exists and still has its content, backups
+     * made by older versions might be hard links to a changed world file
+     * @param hash content hash
+     * @return true, if the backup can be used
+     * @throws IOException
+     */
+    private boolean isStored(String hash) throws IOException {
+        File backup = getBackupFile(hash);
+        return backup.isFile() && hash(backup).equals(hash);
+    }
+
+    /**
+     * Gets the file of a backup
+     * @param hash content hash
+     * @return backup file
+     */
+    private File getBackupFile(String hash){
+        return new File(dir, worldFile.getName() + "." + hash + BACKUP_SUFFIX);
+    }
+
+    /**
+     * Gets the index file of the world
+     * @return index file
+     */
+    private File getIndexFile(){
+        return new File(dir, worldFile.getName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Reads the hashes of the backups, newest first
+     * @return hashes, empty if there are no backups
+     * @throws IOException
+     */
+    private List<String> readIndex() throws IOException {
+        ArrayList<String> ret = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(getIndexFile()), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null){
+                line = line.trim();
+                if(!line.isEmpty() && !ret.contains(line)) ret.add(line);
+            }
+        } catch (FileNotFoundException ex) {
+            // no backups yet
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the hashes of the backups
+     * @param index hashes, newest first
+     * @throws IOException
+     */
+    private void writeIndex(List<String> index) throws IOException {
+        AtomicFile file = new AtomicFile(getIndexFile().getPath());
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file.getTempFile()), StandardCharsets.UTF_8))) {
+                for(String hash: index){
+                    writer.write(hash);
+                    writer.newLine();
+                }
+            }
+            file.commit();
+        } catch (IOException | RuntimeException ex){
+            file.abort();
+            throw ex;
+        }
+    }
+
+    /**
+     * Calculates the SHA-256 hash of a file
+     * @param file
+     * @return hash as hex string
+     * @throws IOException
+     */
+    static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform supports SHA-256
+            throw new IOException(ex);
+        }
+
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while((n = in.read(buffer)) > 0) digest.update(buffer, 0, n);
+        }
+
+        StringBuilder ret = new StringBuilder();
+        for(byte b: digest.digest()) ret.append(String.format("%02x", b & 0xff));
+        return ret.toString();
+    }
+
+    /**
+     * Gets the background thread
+     * @return executor
+     */
+    private static synchronized ExecutorService getExecutor(){
+        if(executor == null){
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "World backup");
+                    // backups aren't worth delaying the exit
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,406 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Cache of world file headers. Each file is stored with its size and
+ *  modification time, only files that changed since the last refresh are
+ *  probed again. The probes run in parallel. Files that aren't world files
+ *  are kept too (without name), so that they aren't probed on every start
+ */
+
+package mudmap2.backend;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import mudmap2.backend.WorldFileReader.WorldFileHeader;
+import mudmap2.backend.WorldFileReader.current.WorldFileDefault;
+import mudmap2.utils.JSONStreamReader;
+import mudmap2.utils.JSONStreamWriter;
+import org.json.JSONException;
+
+/**
+ * Persistent cache of world file headers
+ * @author neop
+ */
+public class WorldCatalog {
+
+    static final String CATALOG_FILE_VER = "1.0";
+
+    final String filename;
+    // file -> entry
+    final HashMap<String, Entry> entries;
+
+    /**
+     * Creates an empty catalog
+     * @param filename catalog file
+     */
+    public WorldCatalog(String filename){
+        this.filename = filename;
+        entries = new HashMap<>();
+    }
+
+    /**
+     * Gets the catalog file
+     * @return filename
+     */
+    public String getFilename(){
+        return filename;
+    }
+
+    /**
+     * Gets the entry of a file
+     * @param file
+     * @return entry or null, if the file isn't in the catalog
+     */
+    public synchronized Entry get(String file){
+        return entries.get(file);
+    }
+
+    /**
+     * Gets the entries of all world files
+     * @return entries
+     */
+    public synchronized List<Entry> getWorlds(){
+        ArrayList<Entry> ret = new ArrayList<>();
+        for(Entry entry: entries.values()){
+            if(entry.isWorld()) ret.add(entry);
+        }
+        return ret;
+    }
+
+    /**
+     * Removes a file from the catalog
+     * @param file
+     */
+    public synchronized void remove(String file){
+        entries.remove(file);
+    }
+
+    /**
+     * Sets the time a world was opened
+     * @param file
+     * @param time time in milliseconds
+     */
+    public synchronized void setLastOpened(String file, long time){
+        Entry entry = entries.get(file);
+        if(entry != null) entries.put(file, new Entry(entry, time));
+    }
+
+    /**
+     * Updates the entry of a file, the file is only probed if it changed
+     * @param file
+     * @return entry or null, if the file doesn't exist
+     */
+    public Entry update(String file){
+        Entry entry = probe(file, get(file));
+        synchronized(this){
+            if(entry == null) entries.remove(file);
+            else entries.put(file, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Updates the entries of files in parallel. Files that aren't in the
+     * collection are removed from the catalog
+     * @param files
+     */
+    public void refresh(Collection<String> files){
+        final HashMap<String, Entry> old;
+        synchronized(this){
+            old = new HashMap<>(entries);
+        }
+
+        ArrayList<Callable<Entry>> tasks = new ArrayList<>();
+        for(final String file: new HashSet<>(files)){
+            tasks.add(new Callable<Entry>() {
+                @Override
+                public Entry call() throws Exception {
+                    return probe(file, old.get(file));
+                }
+            });
+        }
+
+        HashMap<String, Entry> refreshed = new HashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            for(Future<Entry> future: executor.invokeAll(tasks)){
+                try {
+                    Entry entry = future.get();
+                    if(entry != null) refreshed.put(entry.getFile(), entry);
+                } catch (ExecutionException ex) {
+                    Logger.getLogger(WorldCatalog.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            executor.shutdown();
+        }
+
+        synchronized(this){
+            // keep the last opened time of worlds opened during the refresh
+            for(Entry entry: entries.values()){
+                Entry newEntry = refreshed.get(entry.getFile());
+                if(newEntry != null && entry.getLastOpened() > newEntry.getLastOpened()){
+                    refreshed.put(entry.getFile(), new Entry(newEntry, entry.getLastOpened()));
+                }
+            }
+            entries.clear();
+            entries.putAll(refreshed);
+        }
+    }
+
+    /**
+     * Gets the entry of a file, the file is only probed if its size or
+     * modification time differ from the cached entry
+     * @param file
+     * @param cached cached entry or null
+     * @return entry or null, if the file doesn't exist
+     */
+    static Entry probe(String file, Entry cached){
+        File f = new File(file);
+        if(!f.isFile()) return null;
+        long size = f.length();
+        long modified = f.lastModified();
+        long lastOpened = cached != null ? cached.getLastOpened() : 0;
+
+        if(cached != null && cached.getSize() == size && cached.getModified() == modified){
+            return cached;
+        }
+
+        WorldFileHeader header = null;
+        try {
+            header = new WorldFileDefault(file).readHeader();
+        } catch (Exception ex) {
+            Logger.getLogger(WorldCatalog.class.getName()).log(Level.WARNING, null, ex);
+        }
+
+        if(header == null) return new Entry(file, size, modified, null, -1, -1, lastOpened);
+        String name = header.getWorldName();
+        // use file name if world name not found
+        if(name == null) name = f.getName();
+        return new Entry(file, size, modified, name, header.getPlaceCount(), header.getLayerCount(), lastOpened);
+    }
+
+    /**
+     * Reads the catalog file, a missing file leaves the catalog empty
+     * @throws IOException
+     */
+    public void load() throws IOException {
+        HashMap<String, Entry> loaded = new HashMap<>();
+        try (JSONStreamReader reader = new JSONStreamReader(new InputStreamReader(
+                new FileInputStream(filename), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while(reader.hasNext()){
+                if(reader.nextName().equals("worlds")){
+                    reader.beginArray();
+                    while(reader.hasNext()){
+                        Entry entry = readEntry(reader);
+                        if(entry.getFile() != null) loaded.put(entry.getFile(), entry);
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (FileNotFoundException ex) {
+            // no catalog yet
+        } catch (JSONException ex) {
+            // the catalog is only a cache, rebuild it
+            Logger.getLogger(WorldCatalog.class.getName()).log(Level.WARNING, "Invalid world catalog " + filename, ex);
+            loaded.clear();
+        }
+
+        synchronized(this){
+            entries.clear();
+            entries.putAll(loaded);
+        }
+    }
+
+    private Entry readEntry(JSONStreamReader reader) throws IOException {
+        String file = null, name = null;
+        long size = -1, modified = -1, lastOpened = 0;
+        int placeCount = -1, layerCount = -1;
+
+        reader.beginObject();
+        while(reader.hasNext()){
+            switch(reader.nextName()){
+                case "file":
+                    file = reader.nextString();
+                    break;
+                case "size":
+                    size = Long.parseLong(reader.nextString());
+                    break;
+                case "mod":
+                    modified = Long.parseLong(reader.nextString());
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "places":
+                    placeCount = reader.nextInt();
+                    break;
+                case "layers":
+                    layerCount = reader.nextInt();
+                    break;
+                case "opened":
+                    lastOpened = Long.parseLong(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return new Entry(file, size, modified, name, placeCount, layerCount, lastOpened);
+    }
+
+    /**
+     * Writes the catalog file
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        ArrayList<Entry> list;
+        synchronized(this){
+            list = new ArrayList<>(entries.values());
+        }
+
+        File parent = new File(filename).getAbsoluteFile().getParentFile();
+        if(parent != null && !parent.exists()) parent.mkdirs();
+
+        try (JSONStreamWriter writer = new JSONStreamWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(filename), StandardCharsets.UTF_8)))) {
+            writer.beginObject();
+            writer.name("ver").value(CATALOG_FILE_VER);
+            writer.name("worlds").beginArray();
+            for(Entry entry: list){
+                writer.beginObject();
+                writer.name("file").value(entry.getFile());
+                writer.name("size").value(entry.getSize());
+                writer.name("mod").value(entry.getModified());
+                if(entry.isWorld()){
+                    writer.name("name").value(entry.getName());
+                    writer.name("places").value(entry.getPlaceCount());
+                    writer.name("layers").value(entry.getLayerCount());
+                }
+                if(entry.getLastOpened() > 0) writer.name("opened").value(entry.getLastOpened());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+
+    /**
+     * Catalog entry of a file
+     */
+    public static class Entry {
+        final String file;
+        final long size;
+        final long modified;
+        final String name;
+        final int placeCount;
+        final int layerCount;
+        final long lastOpened;
+
+        /**
+         * Constructor
+         * @param file filename with path
+         * @param size file size
+         * @param modified file modification time
+         * @param name world name or null, if the file is no world file
+         * @param placeCount number of places or -1, if unknown
+         * @param layerCount number of layers or -1, if unknown
+         * @param lastOpened time the world was last opened or 0
+         */
+        public Entry(String file, long size, long modified, String name,
+                int placeCount, int layerCount, long lastOpened){
+            this.file = file;
+            this.size = size;
+            this.modified = modified;
+            this.name = name;
+            this.placeCount = placeCount;
+            this.layerCount = layerCount;
+            this.lastOpened = lastOpened;
+        }
+
+        Entry(Entry entry, long lastOpened){
+            this(entry.file, entry.size, entry.modified, entry.name,
+                    entry.placeCount, entry.layerCount, lastOpened);
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        /**
+         * Checks whether the file is a world file
+         * @return true, if the file is a world file
+         */
+        public boolean isWorld() {
+            return name != null;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPlaceCount() {
+            return placeCount;
+        }
+
+        public int getLayerCount() {
+            return layerCount;
+        }
+
+        public long getLastOpened() {
+            return lastOpened;
+        }
+    }
+}
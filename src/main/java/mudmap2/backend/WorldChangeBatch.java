@@ -0,0 +1,76 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Changed object of a batch of changes as seen by a WorldChangeListener, see
+ *  World.beginBatch() and WorldEvent.Batch. It contains the changed objects
+ *  in the order of their first change. Listeners that only redraw can ignore
+ *  the content, listeners that keep track of single objects should handle
+ *  each of them
+ */
+
+package mudmap2.backend;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldChangeBatch {
+
+    final Set<Object> sources;
+
+    /**
+     * Creates a batch
+     * @param sources changed objects
+     */
+    WorldChangeBatch(Set<Object> sources){
+        this.sources = Collections.unmodifiableSet(sources);
+    }
+
+    /**
+     * Gets the changed objects
+     * @return changed objects, each of them once
+     */
+    public Set<Object> getSources(){
+        return sources;
+    }
+
+    /**
+     * Gets the number of changed objects
+     * @return number of changed objects
+     */
+    public int size(){
+        return sources.size();
+    }
+
+    /**
+     * Checks whether an object of a class has been changed
+     * @param type class of the object
+     * @return true, if the batch contains such an object
+     */
+    public boolean contains(Class<?> type){
+        for(Object source: sources){
+            if(type.isInstance(source)) return true;
+        }
+        return false;
+    }
+
+}
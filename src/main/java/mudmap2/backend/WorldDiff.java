@@ -0,0 +1,464 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Applies the state of a world that has been read from a file to a loaded
+ *  world, eg. after the world file was changed by another program. Places are
+ *  matched by their id, layers by the places they contain, since the layer ids
+ *  of a file may differ from the loaded ones. Only changed objects are
+ *  modified, the listeners of the world are called once afterwards
+ */
+
+package mudmap2.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Difference between a loaded world and a world read from its file
+ * @author neop
+ */
+public class WorldDiff {
+
+    final World world;
+    final World source;
+
+    // layer id in source -> layer of the world
+    final HashMap<Integer, Layer> layers = new HashMap<>();
+    // area of source -> area of the world
+    final HashMap<PlaceGroup, PlaceGroup> placeGroups = new HashMap<>();
+
+    int changes = 0;
+
+    /**
+     * Creates the difference of two worlds
+     * @param world loaded world, it will be changed by apply()
+     * @param source world read from file, it won't be changed
+     */
+    public WorldDiff(World world, World source){
+        this.world = world;
+        this.source = source;
+    }
+
+    /**
+     * Changes the world so that it equals the source world. The listeners
+     * are called once with the world as source, if something changed
+     * @return number of changed objects
+     */
+    public int apply(){
+        // lazily loaded layers are compared, too
+        world.loadLayers();
+
+        ++world.silent;
+        try {
+            applyRiskLevels();
+            applyPlaceGroups();
+            applyLayers();
+            applySettings();
+            applyPlaces();
+            applyChildren();
+            applyPaths();
+        } finally {
+            --world.silent;
+        }
+
+        if(changes > 0){
+            world.topologyChanged();
+            world.pathAdded();
+            world.callListeners(world);
+        }
+        return changes;
+    }
+
+    /**
+     * Gets the number of changed objects of the last apply() call
+     * @return number of changes
+     */
+    public int getChangeCount(){
+        return changes;
+    }
+
+    /**
+     * Gets the layer ids of the source world, eg. for WorldJournal.reset()
+     * @return layer id of the world -> layer id of the source
+     */
+    public HashMap<Integer, Integer> getLayerTranslation(){
+        HashMap<Integer, Integer> ret = new HashMap<>();
+        for(Map.Entry<Integer, Layer> entry: layers.entrySet()){
+            ret.put(entry.getValue().getId(), entry.getKey());
+        }
+        return ret;
+    }
+
+    private static boolean equal(Object o1, Object o2){
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    private void applyRiskLevels(){
+        for(RiskLevel rl: source.getRiskLevels()){
+            RiskLevel target = world.getRiskLevel(rl.getId());
+            if(target == null){
+                world.setRiskLevel(new RiskLevel(rl.getId(), rl.getDescription(), rl.getColor()));
+                ++changes;
+            } else if(!equal(target.getDescription(), rl.getDescription()) || !equal(target.getColor(), rl.getColor())){
+                target.setDescription(rl.getDescription());
+                target.setColor(rl.getColor());
+                ++changes;
+            }
+        }
+        for(RiskLevel rl: new ArrayList<>(world.getRiskLevels())){
+            if(source.getRiskLevel(rl.getId()) == null){
+                try {
+                    world.removeRiskLevel(rl);
+                    ++changes;
+                } catch (Exception ex) {
+                    Logger.getLogger(WorldDiff.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+        }
+    }
+
+    private void applyPlaceGroups(){
+        // areas are matched by name
+        HashMap<String, PlaceGroup> names = new HashMap<>();
+        for(PlaceGroup pg: world.getPlaceGroups()){
+            if(!names.containsKey(pg.getName())) names.put(pg.getName(), pg);
+        }
+
+        HashSet<PlaceGroup> used = new HashSet<>();
+        for(PlaceGroup pg: source.getPlaceGroups()){
+            PlaceGroup target = names.remove(pg.getName());
+            if(target == null){
+                world.addPlaceGroup(target = new PlaceGroup(pg.getName(), pg.getColor()));
+                ++changes;
+            } else if(!equal(target.getColor(), pg.getColor())){
+                target.setColor(pg.getColor());
+                ++changes;
+            }
+            placeGroups.put(pg, target);
+            used.add(target);
+        }
+        for(PlaceGroup pg: world.getPlaceGroups()){
+            if(!used.contains(pg)){
+                world.removePlaceGroup(pg);
+                ++changes;
+            }
+        }
+    }
+
+    /**
+     * Matches the layers of the source to the layers of the world. A layer
+     * is matched to the layer that contains most of its places, new layers
+     * are created
+     */
+    private void applyLayers(){
+        // source layer id -> world layer -> number of common places
+        HashMap<Integer, HashMap<Layer, int[]>> votes = new HashMap<>();
+        for(Place place: source.getPlaces()){
+            Place target = world.places.get(place.getId());
+            if(target == null) continue;
+            HashMap<Layer, int[]> layerVotes = votes.get(place.getLayer().getId());
+            if(layerVotes == null) votes.put(place.getLayer().getId(), layerVotes = new HashMap<>());
+            int[] count = layerVotes.get(target.getLayer());
+            if(count == null) layerVotes.put(target.getLayer(), count = new int[1]);
+            ++count[0];
+        }
+
+        // most common places first
+        ArrayList<Object[]> candidates = new ArrayList<>();
+        for(Map.Entry<Integer, HashMap<Layer, int[]>> entry: votes.entrySet()){
+            for(Map.Entry<Layer, int[]> vote: entry.getValue().entrySet()){
+                candidates.add(new Object[]{entry.getKey(), vote.getKey(), vote.getValue()[0]});
+            }
+        }
+        Collections.sort(candidates, new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] o1, Object[] o2) {
+                return Integer.compare((Integer) o2[2], (Integer) o1[2]);
+            }
+        });
+        HashSet<Layer> used = new HashSet<>();
+        for(Object[] candidate: candidates){
+            if(!layers.containsKey((Integer) candidate[0]) && !used.contains((Layer) candidate[1])){
+                layers.put((Integer) candidate[0], (Layer) candidate[1]);
+                used.add((Layer) candidate[1]);
+            }
+        }
+
+        for(Layer layer: source.getLayers()){
+            Layer target = layers.get(layer.getId());
+            if(target == null){
+                // layer without known places, keep its id if possible
+                target = world.getLayer(layer.getId());
+                if(target == null || used.contains(target)){
+                    target = new Layer(world);
+                    ++changes;
+                }
+                layers.put(layer.getId(), target);
+                used.add(target);
+            }
+            String name = layer.hasName() ? layer.getName() : null;
+            if(!equal(target.name, name)){
+                target.setName(name);
+                ++changes;
+            }
+        }
+    }
+
+    private void applySettings(){
+        boolean changed = false;
+        if(!equal(world.worldname, source.worldname)){
+            world.worldname = source.worldname;
+            changed = true;
+        }
+        if(world.showPlaceID != source.showPlaceID){
+            world.showPlaceID = source.showPlaceID;
+            changed = true;
+        }
+        if(!equal(world.pathColorCardinal, source.pathColorCardinal)
+                || !equal(world.pathColorNonCardinal, source.pathColorNonCardinal)
+                || !equal(world.tileCenterColor, source.tileCenterColor)
+                || !world.pathColors.equals(source.pathColors)){
+            world.pathColorCardinal = source.pathColorCardinal;
+            world.pathColorNonCardinal = source.pathColorNonCardinal;
+            world.tileCenterColor = source.tileCenterColor;
+            world.pathColors.clear();
+            world.pathColors.putAll(source.pathColors);
+            changed = true;
+        }
+
+        WorldCoordinate home = source.getHome();
+        Layer layer = layers.get(home.getLayer());
+        int homeLayer = layer != null ? layer.getId() : home.getLayer();
+        if(world.home.getLayer() != homeLayer || world.home.getX() != home.getX() || world.home.getY() != home.getY()){
+            world.home = new WorldCoordinate(homeLayer, home.getX(), home.getY());
+            changed = true;
+        }
+        if(changed) ++changes;
+    }
+
+    private void applyPlaces(){
+        // removed places
+        for(Place place: new ArrayList<>(world.places.values())){
+            if(source.places.get(place.getId()) == null){
+                try {
+                    world.removePlace(place);
+                } catch (RuntimeException | Layer.PlaceNotFoundException ex) {
+                    Logger.getLogger(WorldDiff.class.getName()).log(Level.WARNING, null, ex);
+                }
+                ++changes;
+            }
+        }
+
+        // places are taken from their layers first, in case they swap positions
+        ArrayList<Place> moved = new ArrayList<>();
+        ArrayList<Place> added = new ArrayList<>();
+        for(Place place: source.getPlaces()){
+            Place target = world.places.get(place.getId());
+            Layer layer = layers.get(place.getLayer().getId());
+            boolean changed;
+            if(target == null){
+                target = new Place(place.getId(), place.getName(), place.getX(), place.getY(), null);
+                added.add(target);
+                changed = true;
+            } else {
+                changed = false;
+                if(!equal(target.getName(), place.getName())){
+                    target.name = place.getName();
+                    changed = true;
+                }
+                if(target.getLayer() != layer || target.getX() != place.getX() || target.getY() != place.getY()){
+                    try {
+                        target.getLayer().remove(target);
+                    } catch (RuntimeException | Layer.PlaceNotFoundException ex) {
+                        Logger.getLogger(WorldDiff.class.getName()).log(Level.WARNING, null, ex);
+                    }
+                    moved.add(target);
+                    changed = true;
+                }
+            }
+            if(applyAttributes(target, place) || changed) ++changes;
+        }
+
+        for(Place place: moved){
+            Place sourcePlace = source.places.get(place.getId());
+            try {
+                layers.get(sourcePlace.getLayer().getId()).put(place, sourcePlace.getX(), sourcePlace.getY());
+            } catch (Exception ex) {
+                Logger.getLogger(WorldDiff.class.getName()).log(Level.WARNING, "Couldn't move place " + place, ex);
+            }
+        }
+        for(Place place: added){
+            Place sourcePlace = source.places.get(place.getId());
+            try {
+                world.putPlace(place, layers.get(sourcePlace.getLayer().getId()).getId(), place.getX(), place.getY());
+            } catch (Exception ex) {
+                Logger.getLogger(WorldDiff.class.getName()).log(Level.WARNING, "Couldn't add place " + place, ex);
+            }
+        }
+    }
+
+    /**
+     * Copies the attributes of a place
+     * @param target place of the world
+     * @param place place of the source
+     * @return true, if an attribute changed
+     */
+    private boolean applyAttributes(Place target, Place place){
+        boolean changed = false;
+
+        PlaceGroup pg = place.getPlaceGroup() != null ? placeGroups.get(place.getPlaceGroup()) : null;
+        if(target.placeGroup != pg){
+            target.placeGroup = pg;
+            changed = true;
+        }
+        RiskLevel rl = place.getRiskLevel() != null ? world.getRiskLevel(place.getRiskLevel().getId()) : null;
+        if(target.riskLevel != rl){
+            target.riskLevel = rl;
+            changed = true;
+        }
+        if(target.recLevelMin != place.recLevelMin || target.recLevelMax != place.recLevelMax){
+            target.recLevelMin = place.recLevelMin;
+            target.recLevelMax = place.recLevelMax;
+            changed = true;
+        }
+
+        if(!target.flags.equals(place.flags)){
+            TreeSet<String> flags = getFlags(place);
+            if(!flags.equals(getFlags(target))){
+                target.flags.clear();
+                for(String flag: flags) target.flags.put(flag, true);
+                changed = true;
+            }
+        }
+        if(!target.comments.equals(place.comments)){
+            target.comments.clear();
+            target.comments.addAll(place.comments);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static TreeSet<String> getFlags(Place place){
+        TreeSet<String> ret = new TreeSet<>();
+        for(Map.Entry<String, Boolean> flag: place.flags.entrySet()){
+            if(flag.getValue()) ret.add(flag.getKey());
+        }
+        return ret;
+    }
+
+    private void applyChildren(){
+        for(Place place: source.getPlaces()){
+            Place target = world.places.get(place.getId());
+            if(target == null || hasChildren(target, place)) continue;
+
+            HashSet<Integer> children = new HashSet<>();
+            for(Place child: place.getChildren()) children.add(child.getId());
+            boolean changed = false;
+            for(Place child: new ArrayList<>(target.getChildren())){
+                if(!children.remove(child.getId())){
+                    target.removeChild(child);
+                    changed = true;
+                }
+            }
+            for(Integer id: children){
+                Place child = world.places.get(id);
+                if(child != null){
+                    target.connectChild(child);
+                    changed = true;
+                }
+            }
+            if(changed) ++changes;
+        }
+    }
+
+    /**
+     * Checks whether a place has the children of a place of the source
+     * @param target place of the world
+     * @param place place of the source
+     * @return true, if the children are equal
+     */
+    private boolean hasChildren(Place target, Place place){
+        if(target.getChildren().size() != place.getChildren().size()) return false;
+        for(Place child: place.getChildren()){
+            Place targetChild = world.places.get(child.getId());
+            if(targetChild == null || !target.getChildren().contains(targetChild)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a place has a path, the places are compared by id
+     * @param place place that might have the path
+     * @param path path of a place with the same id in the other world
+     * @param pathPlace place of the path with the same id
+     * @return true, if the place has the path
+     */
+    private static boolean hasPath(Place place, Path path, Place pathPlace){
+        String exit = path.getExit(pathPlace);
+        Place other = path.getOtherPlace(pathPlace);
+        String otherExit = path.getExit(other);
+        for(Path candidate: place.getPaths()){
+            if(!candidate.getExit(place).equals(exit)) continue;
+            Place candidateOther = candidate.getOtherPlace(place);
+            if(candidateOther.getId() == other.getId() && candidate.getExit(candidateOther).equals(otherExit)) return true;
+        }
+        return false;
+    }
+
+    private void applyPaths(){
+        // paths that aren't in the source, each path once, from its first place
+        ArrayList<Path> removed = new ArrayList<>();
+        for(Place place: world.places.values()){
+            Place sourcePlace = source.places.get(place.getId());
+            for(Path path: place.getPaths()){
+                if(path.getPlaces()[0] == place && !hasPath(sourcePlace, path, place)) removed.add(path);
+            }
+        }
+        ArrayList<Path> added = new ArrayList<>();
+        for(Place place: source.places.values()){
+            Place target = world.places.get(place.getId());
+            if(target == null) continue;
+            for(Path path: place.getPaths()){
+                if(path.getPlaces()[0] == place && !hasPath(target, path, place)) added.add(path);
+            }
+        }
+
+        for(Path path: removed){
+            path.getPlaces()[0].removePath(path);
+            ++changes;
+        }
+        for(Path path: added){
+            Place[] pp = path.getPlaces();
+            Place pl0 = world.places.get(pp[0].getId());
+            Place pl1 = world.places.get(pp[1].getId());
+            if(pl0 != null && pl1 != null){
+                pl0.connectPath(new Path(pl0, path.getExit(pp[0]), pl1, path.getExit(pp[1])));
+                ++changes;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,369 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Typed change events of a world. Each event tells what has been changed and
+ *  carries the old and new values, so that listeners can update themselves
+ *  incrementally. getSource() returns the changed object that is sent to the
+ *  old WorldChangeListener interface. Changes without an own event type (eg.
+ *  world settings, risk levels and place groups) are sent as Changed
+ */
+
+package mudmap2.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ *
+ * @author neop
+ */
+public abstract class WorldEvent {
+
+    final Object source;
+
+    WorldEvent(Object source){
+        this.source = source;
+    }
+
+    /**
+     * Gets the changed object
+     * @return changed object, eg. a place, layer or the world
+     */
+    public Object getSource(){
+        return source;
+    }
+
+    /**
+     * Any change of an object without an own event type
+     */
+    public static class Changed extends WorldEvent {
+
+        public Changed(Object source){
+            super(source);
+        }
+    }
+
+    // --------- places --------------------------------------------------------
+    /**
+     * Base class of events that change a place
+     */
+    public abstract static class PlaceEvent extends WorldEvent {
+
+        PlaceEvent(Place place){
+            super(place);
+        }
+
+        /**
+         * Gets the changed place
+         * @return place
+         */
+        public Place getPlace(){
+            return (Place) source;
+        }
+
+        /**
+         * Gets the other place that has been changed by the event, eg. the
+         * other end of a path
+         * @return place or null
+         */
+        public Place getOtherPlace(){
+            return null;
+        }
+    }
+
+    /**
+     * A place has been added to the world
+     */
+    public static class PlaceAdded extends PlaceEvent {
+
+        public PlaceAdded(Place place){
+            super(place);
+        }
+    }
+
+    /**
+     * A place has been removed from the world
+     */
+    public static class PlaceRemoved extends PlaceEvent {
+        final WorldCoordinate position;
+
+        public PlaceRemoved(Place place, WorldCoordinate position){
+            super(place);
+            this.position = position;
+        }
+
+        /**
+         * Gets the position of the place before it was removed
+         * @return position
+         */
+        public WorldCoordinate getPosition(){
+            return position;
+        }
+    }
+
+    /**
+     * A place has been moved within the world
+     */
+    public static class PlaceMoved extends PlaceEvent {
+        final WorldCoordinate oldPosition, newPosition;
+
+        public PlaceMoved(Place place, WorldCoordinate oldPosition, WorldCoordinate newPosition){
+            super(place);
+            this.oldPosition = oldPosition;
+            this.newPosition = newPosition;
+        }
+
+        public WorldCoordinate getOldPosition(){
+            return oldPosition;
+        }
+
+        public WorldCoordinate getNewPosition(){
+            return newPosition;
+        }
+    }
+
+    /**
+     * A path has been connected to a place and another place
+     */
+    public static class PathAdded extends PlaceEvent {
+        final Path path;
+
+        public PathAdded(Place place, Path path){
+            super(place);
+            this.path = path;
+        }
+
+        public Path getPath(){
+            return path;
+        }
+
+        @Override
+        public Place getOtherPlace(){
+            return path.getOtherPlace(getPlace());
+        }
+    }
+
+    /**
+     * A path has been removed from a place and another place
+     */
+    public static class PathRemoved extends PlaceEvent {
+        final Path path;
+
+        public PathRemoved(Place place, Path path){
+            super(place);
+            this.path = path;
+        }
+
+        public Path getPath(){
+            return path;
+        }
+
+        @Override
+        public Place getOtherPlace(){
+            return path.getOtherPlace(getPlace());
+        }
+    }
+
+    /**
+     * A child place has been connected to a place
+     */
+    public static class ChildAdded extends PlaceEvent {
+        final Place child;
+
+        public ChildAdded(Place place, Place child){
+            super(place);
+            this.child = child;
+        }
+
+        public Place getChild(){
+            return child;
+        }
+
+        @Override
+        public Place getOtherPlace(){
+            return child;
+        }
+    }
+
+    /**
+     * A child place has been removed from a place
+     */
+    public static class ChildRemoved extends PlaceEvent {
+        final Place child;
+
+        public ChildRemoved(Place place, Place child){
+            super(place);
+            this.child = child;
+        }
+
+        public Place getChild(){
+            return child;
+        }
+
+        @Override
+        public Place getOtherPlace(){
+            return child;
+        }
+    }
+
+    /**
+     * An attribute of a place has been changed, eg. its name
+     */
+    public static class AttributeChanged extends PlaceEvent {
+        public static final String NAME = "name";
+        public static final String PLACE_GROUP = "placeGroup";
+        public static final String REC_LEVEL_MIN = "recLevelMin";
+        public static final String REC_LEVEL_MAX = "recLevelMax";
+        public static final String RISK_LEVEL = "riskLevel";
+        public static final String COMMENTS = "comments";
+        // flags are named FLAG + flag name
+        public static final String FLAG = "flag:";
+
+        final String attribute;
+        final Object oldValue, newValue;
+
+        public AttributeChanged(Place place, String attribute, Object oldValue, Object newValue){
+            super(place);
+            this.attribute = attribute;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        /**
+         * Gets the name of the attribute
+         * @return attribute name, eg. NAME
+         */
+        public String getAttribute(){
+            return attribute;
+        }
+
+        public Object getOldValue(){
+            return oldValue;
+        }
+
+        public Object getNewValue(){
+            return newValue;
+        }
+    }
+
+    // --------- layers --------------------------------------------------------
+    /**
+     * Base class of events that change a layer
+     */
+    public abstract static class LayerEvent extends WorldEvent {
+
+        LayerEvent(Layer layer){
+            super(layer);
+        }
+
+        public Layer getLayer(){
+            return (Layer) source;
+        }
+    }
+
+    /**
+     * A layer has been added to the world
+     */
+    public static class LayerAdded extends LayerEvent {
+
+        public LayerAdded(Layer layer){
+            super(layer);
+        }
+    }
+
+    /**
+     * A layer has been renamed
+     */
+    public static class LayerRenamed extends LayerEvent {
+        final String oldName, newName;
+
+        /**
+         * Creates the event
+         * @param layer renamed layer
+         * @param oldName old name, null if the layer had no name
+         * @param newName new name, null if the name has been removed
+         */
+        public LayerRenamed(Layer layer, String oldName, String newName){
+            super(layer);
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+
+        public String getOldName(){
+            return oldName;
+        }
+
+        public String getNewName(){
+            return newName;
+        }
+    }
+
+    /**
+     * The places of a lazily loaded layer have been loaded, this isn't a
+     * modification of the world
+     */
+    public static class LayerLoaded extends LayerEvent {
+
+        public LayerLoaded(Layer layer){
+            super(layer);
+        }
+    }
+
+    // --------- batches -------------------------------------------------------
+    /**
+     * The events of a batch of changes, see World.beginBatch()
+     */
+    public static class Batch extends WorldEvent {
+        final List<WorldEvent> events;
+        // changed objects, created on first access
+        Object sources;
+
+        public Batch(List<WorldEvent> events){
+            super(null);
+            this.events = Collections.unmodifiableList(new ArrayList<>(events));
+        }
+
+        /**
+         * Gets the events in the order they occurred
+         * @return events
+         */
+        public List<WorldEvent> getEvents(){
+            return events;
+        }
+
+        /**
+         * Gets the changed object or the changed objects, if the events
+         * have got more than one source
+         * @return changed object or WorldChangeBatch
+         */
+        @Override
+        public Object getSource(){
+            if(sources == null){
+                LinkedHashSet<Object> set = new LinkedHashSet<>();
+                for(WorldEvent event: events) set.add(event.getSource());
+                if(set.size() == 1) sources = set.iterator().next();
+                else sources = new WorldChangeBatch(set);
+            }
+            return sources;
+        }
+    }
+
+}
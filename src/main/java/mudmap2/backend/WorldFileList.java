@@ -24,13 +24,16 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
 import mudmap2.Environment;
-import mudmap2.backend.WorldFileReader.current.WorldFileDefault;
+import mudmap2.utils.AtomicFile;
 
 /**
  *
@@ -44,39 +47,138 @@ public class WorldFileList {
     static final int META_FILE_VER_MAJOR = 1;
     static final int META_FILE_VER_MINOR = 1;
 
-    public static String getWorldName(String file){
+    // cached world file headers
+    private static WorldCatalog catalog = null;
+
+    public static synchronized String getWorldName(String file){
         return availableWorlds.get(file);
     }
 
-    public static void setWorldName(String file, String name){
+    public static synchronized void setWorldName(String file, String name){
         availableWorlds.put(file, name);
     }
 
-    public static void removeWorldFileEntry(String file){
+    public static synchronized void removeWorldFileEntry(String file){
         availableWorlds.remove(file);
     }
 
-    public static void clear(){
+    public static synchronized void clear(){
         availableWorlds.clear();
     }
 
-    public static Map<String, String> getWorlds(){
-        return availableWorlds;
+    /**
+     * Gets a copy of the available worlds
+     * @return map of files and world names
+     */
+    public static synchronized Map<String, String> getWorlds(){
+        return new HashMap<>(availableWorlds);
+    }
+
+    /**
+     * Gets the world catalog
+     * @return catalog
+     */
+    public static synchronized WorldCatalog getCatalog(){
+        if(catalog == null) catalog = new WorldCatalog(Environment.getWorldsDir() + "catalog");
+        return catalog;
+    }
+
+    /**
+     * Adds the worlds of the catalog file without probing the world files.
+     * The entries might be outdated until findWorlds() is called
+     */
+    public static void loadCatalog(){
+        WorldCatalog cat = getCatalog();
+        try {
+            cat.load();
+        } catch (IOException ex) {
+            Logger.getLogger(WorldFileList.class.getName()).log(Level.WARNING, null, ex);
+        }
+        for(WorldCatalog.Entry entry: cat.getWorlds()){
+            setWorldName(entry.getFile(), entry.getName());
+        }
+    }
+
+    /**
+     * Writes the catalog file
+     */
+    public static void saveCatalog(){
+        try {
+            getCatalog().save();
+        } catch (IOException ex) {
+            Logger.getLogger(WorldFileList.class.getName()).log(Level.WARNING, null, ex);
+        }
     }
 
     /**
      * Try to find worlds by reading the worlds directory
-     * and by reading the worlds file
+     * and by reading the worlds file. Only files that changed since the
+     * last search are read, in parallel. This might take a while, don't
+     * call it on the event dispatch thread
      */
     public static void findWorlds(){
-        readDirectory();
-        readWorldList();
+        WorldCatalog cat = getCatalog();
+        HashSet<String> known = new HashSet<>();
+        for(WorldCatalog.Entry entry: cat.getWorlds()) known.add(entry.getFile());
+
+        HashSet<String> files = new HashSet<>();
+        files.addAll(getDirectoryFiles());
+        files.addAll(getListedFiles());
+        cat.refresh(files);
+
+        for(String file: known){
+            WorldCatalog.Entry entry = cat.get(file);
+            if(entry == null || !entry.isWorld()) removeWorldFileEntry(file);
+        }
+        for(WorldCatalog.Entry entry: cat.getWorlds()){
+            setWorldName(entry.getFile(), entry.getName());
+        }
+        saveCatalog();
     }
 
     /**
      * Get available worlds from filesystem
      */
     public static void readDirectory(){
+        addWorlds(getDirectoryFiles());
+    }
+
+    /**
+     * Get available worlds from worlds file
+     */
+    public static void readWorldList(){
+        addWorlds(getListedFiles());
+    }
+
+    /**
+     * Remembers the time a world was opened
+     * @param file world file
+     */
+    public static void worldOpened(String file){
+        WorldCatalog cat = getCatalog();
+        cat.update(file);
+        cat.setLastOpened(file, System.currentTimeMillis());
+    }
+
+    /**
+     * Adds the world files of a list to the available worlds
+     * @param files
+     */
+    private static void addWorlds(List<String> files){
+        WorldCatalog cat = getCatalog();
+        for(String file: files){
+            WorldCatalog.Entry entry = cat.update(file);
+            if(entry != null && entry.isWorld()) setWorldName(file, entry.getName());
+        }
+    }
+
+    /**
+     * Gets the files in the worlds directory that might be world files
+     * @return files
+     */
+    private static List<String> getDirectoryFiles(){
+        ArrayList<String> ret = new ArrayList<>();
+
         // get file list
         File dir = new File(Environment.getWorldsDir());
         File[] fileList = dir.listFiles();
@@ -84,62 +186,43 @@ public class WorldFileList {
         if(fileList != null){
             // find world files in file list
             for(File file : fileList){
-                // exclude meta and backup files
+                // exclude meta, catalog, journal and backup files
                 if(!file.getName().equals("worlds")
+                            && !file.getName().equals("catalog")
                             && !file.getName().endsWith("_meta")
+                            && !file.getName().endsWith(WorldJournal.JOURNAL_SUFFIX)
+                            && !file.getName().endsWith(AtomicFile.TEMP_SUFFIX)
                             && !file.getName().endsWith(".backup")
                             && !file.getName().endsWith(".bak")
                             && file.isFile() && file.canRead()){
-
-                    // check if file is world file
-                    WorldFileDefault worldFile = new WorldFileDefault(file.getPath());
-                    try {
-                        if(worldFile.canRead()){ // is world file
-                            String name = worldFile.readWorldName();
-                            availableWorlds.put(file.getPath(), name);
-                        }
-                    } catch (FileNotFoundException ex) {
-                    } catch (Exception ex) {
-                        Logger.getLogger(WorldFileList.class.getName()).log(Level.SEVERE, null, ex);
-                    }
+                    ret.add(file.getPath());
                 }
             }
         }
+        return ret;
     }
 
     /**
-     * Get available worlds from worlds file
+     * Gets the files in the worlds file
+     * @return files
      */
-    public static void readWorldList(){
+    private static List<String> getListedFiles(){
+        ArrayList<String> ret = new ArrayList<>();
         try {
             // read from available worlds file
-            BufferedReader reader = new BufferedReader(new FileReader(Environment.getAvailableWorldsFile()));
-
-            String line;
-            while((line = reader.readLine()) != null){
-                line = line.trim();
-                if(line.startsWith("f ")){ // world file entry
-                    String file = line.substring(2).trim();
-
-                    WorldFileDefault worldFile = new WorldFileDefault(file);
-                    if(worldFile.canRead()){ // is world file
-                        String name;
-                        try {
-                            // get world name
-                            name = worldFile.readWorldName();
-                        } catch (Exception ex) {
-                            Logger.getLogger(WorldManager.class.getName()).log(Level.SEVERE, null, ex);
-                            // use file name if world name not found
-                            name = file.substring(file.lastIndexOf('/') + 1);
-                        }
-                        // add found world to list
-                        availableWorlds.put(file, name);
+            try (BufferedReader reader = new BufferedReader(new FileReader(Environment.getAvailableWorldsFile()))) {
+                String line;
+                while((line = reader.readLine()) != null){
+                    line = line.trim();
+                    if(line.startsWith("f ")){ // world file entry
+                        ret.add(line.substring(2).trim());
                     }
                 }
             }
         } catch (FileNotFoundException ex) {} catch (IOException ex) {
             Logger.getLogger(WorldManager.class.getName()).log(Level.SEVERE, null, ex);
         }
+        return ret;
     }
 
     /**
@@ -155,16 +238,12 @@ public class WorldFileList {
                 outstream.println("# MUD Map (v2) worlds file");
                 outstream.println("ver " + META_FILE_VER_MAJOR + "." + META_FILE_VER_MINOR);
 
-                for(Map.Entry<String, String> w: availableWorlds.entrySet()){
+                for(Map.Entry<String, String> w: getWorlds().entrySet()){
                     // check whether the file name in file equals the name in the list
-                    WorldFileDefault worldFile = new WorldFileDefault(w.getKey());
+                    WorldCatalog.Entry entry = getCatalog().update(w.getKey());
                     String fw = null;
-                    try {
-                        if(worldFile.canRead()){
-                            fw = worldFile.readWorldName();
-                        }
-                    } catch (Exception ex) {
-                        Logger.getLogger(WorldManager.class.getName()).log(Level.SEVERE, null, ex);
+                    if(entry != null && entry.isWorld()){
+                        fw = entry.getName();
                     }
                     if(fw != null){
                         outstream.println("n " + fw);
@@ -184,5 +263,6 @@ public class WorldFileList {
                     + file + ".\nYou might have to open your worlds manually from "
                     + Environment.getWorldsDir(), "WorldManager", JOptionPane.WARNING_MESSAGE);
         }
+        saveCatalog();
     }
 }
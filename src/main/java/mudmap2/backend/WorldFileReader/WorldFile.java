@@ -32,6 +32,20 @@ import mudmap2.backend.World;
 public abstract class WorldFile {
 
     protected String filename;
+    protected ProgressListener progressListener;
+
+    /**
+     * Gets notified while a world is written
+     */
+    public interface ProgressListener {
+        /**
+         * Called after some places have been written, may be called from
+         * any thread
+         * @param done number of places written
+         * @param total number of places of the world
+         */
+        void progress(int done, int total);
+    }
 
     public WorldFile(String filename){
         this.filename = filename;
@@ -51,6 +65,46 @@ public abstract class WorldFile {
     // reads the world name
     public abstract String readWorldName() throws Exception;
 
+    /**
+     * Reads the file header, readers should override this, if the header can
+     * be read without reading the whole file
+     * @return header or null, if the file can't be read
+     * @throws Exception
+     */
+    public WorldFileHeader readHeader() throws Exception {
+        if(!canRead()) return null;
+        return new WorldFileHeader(null, readWorldName());
+    }
+
+    /**
+     * Sets the listener that gets the progress of writeFile(), writers that
+     * report progress call reportProgress()
+     * @param listener listener or null
+     */
+    public void setProgressListener(ProgressListener listener){
+        progressListener = listener;
+    }
+
+    /**
+     * Reports the progress of writing a world
+     * @param done number of places written
+     * @param total number of places of the world
+     */
+    protected void reportProgress(int done, int total){
+        ProgressListener listener = progressListener;
+        if(listener != null) listener.progress(done, total);
+    }
+
+    /**
+     * Gets the id a layer got in the last written file, writers that
+     * renumber layers override this
+     * @param layer layer id in the world
+     * @return layer id in the file or null, if the layer wasn't written
+     */
+    public Integer translateLayerID(Integer layer){
+        return layer;
+    }
+
     // can file be read and interpreted by this reader?
     public abstract Boolean canRead();
     public abstract WorldFileType getWorldFileType();
@@ -0,0 +1,91 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Information from the beginning of a world file that can be read without
+ *  reading the whole world, eg. to list the available worlds
+ */
+
+package mudmap2.backend.WorldFileReader;
+
+/**
+ * World file header
+ * @author neop
+ */
+public class WorldFileHeader {
+
+    final String fileVersion;
+    final String worldName;
+    final int placeCount;
+    final int layerCount;
+
+    /**
+     * Constructor
+     * @param fileVersion file format version or null, if unknown
+     * @param worldName world name or null, if unknown
+     */
+    public WorldFileHeader(String fileVersion, String worldName){
+        this(fileVersion, worldName, -1, -1);
+    }
+
+    /**
+     * Constructor
+     * @param fileVersion file format version or null, if unknown
+     * @param worldName world name or null, if unknown
+     * @param placeCount number of places or -1, if unknown
+     * @param layerCount number of layers or -1, if unknown
+     */
+    public WorldFileHeader(String fileVersion, String worldName, int placeCount, int layerCount){
+        this.fileVersion = fileVersion;
+        this.worldName = worldName;
+        this.placeCount = placeCount;
+        this.layerCount = layerCount;
+    }
+
+    /**
+     * Gets the file format version
+     * @return version or null
+     */
+    public String getFileVersion(){
+        return fileVersion;
+    }
+
+    /**
+     * Gets the world name
+     * @return world name or null
+     */
+    public String getWorldName(){
+        return worldName;
+    }
+
+    /**
+     * Gets the number of places
+     * @return number of places or -1, if unknown
+     */
+    public int getPlaceCount(){
+        return placeCount;
+    }
+
+    /**
+     * Gets the number of layers
+     * @return number of layers or -1, if unknown
+     */
+    public int getLayerCount(){
+        return layerCount;
+    }
+}
@@ -24,5 +24,6 @@ public enum WorldFileType {
     UNKNOWN, //< type of file not determined yet
     INVALID, //< file is no world file
     MUDMAP1, //< MUD Map v1 world file
-    JSON     //< MUD Map v2 JSON world file
+    JSON,    //< MUD Map v2 JSON world file
+    BINARY   //< MUD Map v2 binary world file
 }
@@ -0,0 +1,1102 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Binary world file format. The file begins with a fixed header:
+ *
+ *    magic "MMBW", u16 major version, u16 minor version, u32 section count
+ *    and a section table of (u32 id, u64 offset, u64 length) entries
+ *
+ *  The info section (world name, place and layer count) comes right after
+ *  the table, so it can be read without reading the whole file. Integers in
+ *  the sections are varints (see VarIntBuffer), coordinates of places are
+ *  delta encoded within their layer. Strings are stored once in the string
+ *  table and referenced by index + 1, 0 means null. Colors are stored as
+ *  rgb + 1, 0 means null. Unknown sections are skipped, new sections can be
+ *  added without a new major version
+ *
+ *  Since version 1.1 the places section consists of one block per layer and
+ *  the paths are grouped by the layer of their first place. The layer
+ *  directory maps each layer to its place block and path range, so that the
+ *  places of a layer are only created when the layer is accessed for the
+ *  first time. Links to places on layers that aren't loaded yet are resolved
+ *  when the other layer is loaded
+ */
+
+package mudmap2.backend.WorldFileReader.current;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import mudmap2.backend.Label;
+import mudmap2.backend.Layer;
+import mudmap2.backend.LayerLoader;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.PlaceGroup;
+import mudmap2.backend.RiskLevel;
+import mudmap2.backend.World;
+import mudmap2.backend.WorldCoordinate;
+import mudmap2.backend.WorldFileReader.Exception.WorldFileException;
+import mudmap2.backend.WorldFileReader.Exception.WorldFileInvalidTypeException;
+import mudmap2.backend.WorldFileReader.Exception.WorldFileReadError;
+import mudmap2.backend.WorldFileReader.WorldFile;
+import mudmap2.backend.WorldFileReader.WorldFileHeader;
+import mudmap2.backend.WorldFileReader.WorldFileType;
+import mudmap2.utils.AtomicFile;
+import mudmap2.utils.VarIntBuffer;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Binary world file reader and writer
+ * @author neop
+ */
+public class WorldFileBinary extends WorldFile {
+
+    public static final int MAGIC = 0x4D4D4257; // "MMBW"
+
+    static final int VERSION_MAJOR = 1;
+    static final int VERSION_MINOR = 1;
+
+    // fixed header size without section table
+    static final int HEADER_SIZE = 12;
+    static final int SECTION_ENTRY_SIZE = 20;
+
+    // section ids
+    static final int SECTION_INFO = 1;
+    static final int SECTION_STRINGS = 2;
+    static final int SECTION_WORLD = 3;
+    static final int SECTION_RISK_LEVELS = 4;
+    static final int SECTION_AREAS = 5;
+    static final int SECTION_LAYERS = 6;
+    static final int SECTION_PLACES = 7;
+    static final int SECTION_PATHS = 8;
+    static final int SECTION_LABELS = 9;
+    static final int SECTION_META = 10;
+    static final int SECTION_LAYER_DIRECTORY = 11;
+
+    // place field flags
+    static final int PLACE_AREA = 1;
+    static final int PLACE_RISK = 1 << 1;
+    static final int PLACE_LVL_MIN = 1 << 2;
+    static final int PLACE_LVL_MAX = 1 << 3;
+    static final int PLACE_CHILDREN = 1 << 4;
+    static final int PLACE_FLAGS = 1 << 5;
+    static final int PLACE_COMMENTS = 1 << 6;
+
+    HashMap<Integer, Integer> layerIDs;
+
+    JSONObject metaData;
+    WorldMetaJSON metaWriter;
+
+    // replaces the old file after writing, null to replace it directly
+    AtomicFile.CommitHandler commitHandler;
+
+    /**
+     * Constructor
+     * @param filename world filename with path
+     */
+    public WorldFileBinary(String filename){
+        super(filename);
+    }
+
+    public void setMetaGetter(WorldMetaJSON meta) {
+        this.metaWriter = meta;
+    }
+
+    /**
+     * Sets the handler that replaces the old file when a world has been
+     * written
+     * @param handler handler or null
+     */
+    public void setCommitHandler(AtomicFile.CommitHandler handler) {
+        this.commitHandler = handler;
+    }
+
+    public JSONObject getMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public Integer translateLayerID(Integer layer){
+        if(layerIDs == null) return null;
+        return layerIDs.get(layer);
+    }
+
+    /**
+     * Checks whether a file begins with the binary magic number
+     * @param filename
+     * @return true, if the file is a binary world file
+     */
+    public static boolean hasMagic(String filename){
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            while(buffer.hasRemaining() && channel.read(buffer) >= 0);
+            buffer.flip();
+            return buffer.remaining() == 4 && buffer.getInt() == MAGIC;
+        } catch (IOException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads bytes from a channel
+     * @param channel
+     * @param position file position
+     * @param length number of bytes
+     * @return buffer with the bytes
+     * @throws IOException if the file ends before
+     */
+    private static ByteBuffer read(FileChannel channel, long position, long length) throws IOException {
+        if(length < 0 || length > Integer.MAX_VALUE || position < 0 || position + length > channel.size()){
+            throw new IOException("Invalid section bounds");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads the file header and section table
+     * @param channel
+     * @return section id -> {offset, length}
+     * @throws IOException
+     * @throws WorldFileInvalidTypeException
+     */
+    private HashMap<Integer, long[]> readSectionTable(FileChannel channel) throws IOException, WorldFileInvalidTypeException {
+        ByteBuffer header = read(channel, 0, HEADER_SIZE);
+        if(header.getInt() != MAGIC){
+            throw new WorldFileInvalidTypeException(filename, "no binary world file", null);
+        }
+        int major = header.getShort() & 0xFFFF;
+        header.getShort(); // minor versions only add sections
+        if(major != VERSION_MAJOR){
+            throw new WorldFileInvalidTypeException(filename, "invalid world file version", null);
+        }
+        int count = header.getInt();
+        if(count < 0) throw new IOException("Invalid section count");
+
+        HashMap<Integer, long[]> sections = new HashMap<>();
+        ByteBuffer table = read(channel, HEADER_SIZE, (long) count * SECTION_ENTRY_SIZE);
+        for(int i = 0; i < count; ++i){
+            int id = table.getInt();
+            long offset = table.getLong();
+            long length = table.getLong();
+            sections.put(id, new long[]{offset, length});
+        }
+        return sections;
+    }
+
+    /**
+     * Read world file
+     * @return new world object
+     * @throws Exception
+     */
+    @Override
+    public World readFile() throws Exception {
+        World world = new World();
+        world.setWorldFile(this);
+        // call the listeners once instead of once per place
+        world.beginBatch();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            HashMap<Integer, long[]> sections = readSectionTable(channel);
+            HashMap<Integer, ByteBuffer> buffers = new HashMap<>();
+            for(Map.Entry<Integer, long[]> section: sections.entrySet()){
+                long[] bounds = section.getValue();
+                buffers.put(section.getKey(), read(channel, bounds[0], bounds[1]));
+            }
+
+            String[] strings = readStrings(buffers.get(SECTION_STRINGS));
+
+            // world name, use file name if world name not found
+            String worldName = null;
+            if(buffers.containsKey(SECTION_INFO)) worldName = readInfo(buffers.get(SECTION_INFO)).getWorldName();
+            if(worldName == null || worldName.isEmpty()) worldName = new File(filename).getName();
+            world.setName(worldName);
+
+            if(buffers.containsKey(SECTION_WORLD)) readWorld(buffers.get(SECTION_WORLD), strings, world);
+            if(buffers.containsKey(SECTION_RISK_LEVELS)) readRiskLevels(buffers.get(SECTION_RISK_LEVELS), strings, world);
+            HashMap<Integer, PlaceGroup> areas = new HashMap<>();
+            if(buffers.containsKey(SECTION_AREAS)) readAreas(buffers.get(SECTION_AREAS), strings, world, areas);
+            if(buffers.containsKey(SECTION_LAYERS)) readLayers(buffers.get(SECTION_LAYERS), strings, world);
+            if(buffers.containsKey(SECTION_LAYER_DIRECTORY) && buffers.containsKey(SECTION_PLACES)){
+                // places are created when their layer is accessed
+                LazyLoader loader = new LazyLoader(world, strings, areas,
+                        buffers.get(SECTION_PLACES), buffers.get(SECTION_PATHS));
+                loader.readDirectory(buffers.get(SECTION_LAYER_DIRECTORY));
+            } else {
+                if(buffers.containsKey(SECTION_PLACES)) readPlaces(buffers.get(SECTION_PLACES), strings, world, areas);
+                if(buffers.containsKey(SECTION_PATHS)) readPaths(buffers.get(SECTION_PATHS), strings, world);
+            }
+            if(buffers.containsKey(SECTION_LABELS)) readLabels(buffers.get(SECTION_LABELS), strings, world);
+
+            // remember meta data for WorldTab
+            ByteBuffer meta = buffers.get(SECTION_META);
+            if(meta != null && meta.hasRemaining()){
+                metaData = new JSONObject(new String(meta.array(), meta.arrayOffset() + meta.position(),
+                        meta.remaining(), StandardCharsets.UTF_8));
+            }
+        } catch(BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException | JSONException ex) {
+            throw new WorldFileReadError(filename, "corrupt world file: " + ex, ex);
+        }
+        world.endBatch();
+
+        return world;
+    }
+
+    private String[] readStrings(ByteBuffer buffer){
+        if(buffer == null) return new String[0];
+        String[] strings = new String[VarIntBuffer.getVarInt32(buffer)];
+        for(int i = 0; i < strings.length; ++i) strings[i] = VarIntBuffer.getString(buffer);
+        return strings;
+    }
+
+    private static String getString(ByteBuffer buffer, String[] strings){
+        int ref = VarIntBuffer.getVarInt32(buffer);
+        return ref == 0 ? null : strings[ref - 1];
+    }
+
+    private static Color getColor(ByteBuffer buffer){
+        long col = VarIntBuffer.getVarInt(buffer);
+        return col == 0 ? null : new Color((int) (col - 1));
+    }
+
+    private WorldFileHeader readInfo(ByteBuffer buffer){
+        String worldName = null;
+        if(buffer.get() != 0) worldName = VarIntBuffer.getString(buffer);
+        int placeCount = VarIntBuffer.getVarInt32(buffer);
+        int layerCount = VarIntBuffer.getVarInt32(buffer);
+        return new WorldFileHeader(VERSION_MAJOR + "." + VERSION_MINOR, worldName, placeCount, layerCount);
+    }
+
+    private void readWorld(ByteBuffer buffer, String[] strings, World world){
+        String showPlaceID = getString(buffer, strings);
+        if(showPlaceID != null) world.setShowPlaceID(World.ShowPlaceID.valueOf(showPlaceID));
+
+        Color col = getColor(buffer);
+        if(col != null) world.setTileCenterColor(col);
+        col = getColor(buffer);
+        if(col != null) world.setPathColor(col);
+        col = getColor(buffer);
+        if(col != null) world.setPathColorNstd(col);
+
+        int pathColors = VarIntBuffer.getVarInt32(buffer);
+        for(int i = 0; i < pathColors; ++i){
+            String path = getString(buffer, strings);
+            col = getColor(buffer);
+            if(path != null && col != null) world.setPathColor(path, col);
+        }
+
+        // home position, layer + 1 or 0 if unknown
+        int homeLayer = VarIntBuffer.getVarInt32(buffer);
+        double homeX = buffer.getDouble();
+        double homeY = buffer.getDouble();
+        if(homeLayer > 0) world.setHome(new WorldCoordinate(homeLayer - 1, homeX, homeY));
+    }
+
+    private void readRiskLevels(ByteBuffer buffer, String[] strings, World world){
+        // remove existing risk levels
+        world.getRiskLevels().clear();
+
+        int count = VarIntBuffer.getVarInt32(buffer);
+        for(int i = 0; i < count; ++i){
+            int id = VarIntBuffer.getVarInt32(buffer);
+            String desc = getString(buffer, strings);
+            Color col = getColor(buffer);
+            if(desc != null) world.setRiskLevel(new RiskLevel(id, desc, col));
+        }
+    }
+
+    private void readAreas(ByteBuffer buffer, String[] strings, World world, HashMap<Integer, PlaceGroup> areas){
+        int count = VarIntBuffer.getVarInt32(buffer);
+        for(int i = 0; i < count; ++i){
+            int id = VarIntBuffer.getVarInt32(buffer);
+            String name = getString(buffer, strings);
+            Color col = getColor(buffer);
+            if(name != null){
+                PlaceGroup a = new PlaceGroup(name, col);
+                areas.put(id, a);
+                world.addPlaceGroup(a);
+            }
+        }
+    }
+
+    private void readLayers(ByteBuffer buffer, String[] strings, World world){
+        int count = VarIntBuffer.getVarInt32(buffer);
+        for(int i = 0; i < count; ++i){
+            int id = VarIntBuffer.getVarInt32(buffer);
+            int centerX = VarIntBuffer.getSignedVarInt32(buffer);
+            int centerY = VarIntBuffer.getSignedVarInt32(buffer);
+            String name = getString(buffer, strings);
+
+            Layer l = new Layer(id, world);
+            l.setQuadtree(centerX, centerY);
+            if(name != null) l.setName(name);
+            world.addLayer(l);
+        }
+    }
+
+    private void readPlaces(ByteBuffer buffer, String[] strings, World world, HashMap<Integer, PlaceGroup> areas) throws Exception {
+        HashMap<Place, int[]> childrenMapping = new HashMap<>();
+
+        int layers = VarIntBuffer.getVarInt32(buffer);
+        for(int l = 0; l < layers; ++l){
+            readPlaceBlock(buffer, strings, world, areas, childrenMapping);
+        }
+
+        // connect children
+        for(Map.Entry<Place, int[]> entry: childrenMapping.entrySet()){
+            for(int id: entry.getValue()){
+                Place child = world.getPlace(id);
+                if(child != null) entry.getKey().connectChild(child);
+            }
+        }
+    }
+
+    /**
+     * Reads the places of a layer
+     * @param buffer places section, positioned at the beginning of the block
+     * @param strings string table
+     * @param world
+     * @param areas area id -> area
+     * @param childrenMapping place -> child ids, children aren't connected
+     * @return places of the block
+     * @throws Exception
+     */
+    private static ArrayList<Place> readPlaceBlock(ByteBuffer buffer, String[] strings, World world,
+            HashMap<Integer, PlaceGroup> areas, HashMap<Place, int[]> childrenMapping) throws Exception {
+        int layer = VarIntBuffer.getVarInt32(buffer);
+        int count = VarIntBuffer.getVarInt32(buffer);
+        ArrayList<Place> ret = new ArrayList<>(count);
+        int x = 0, y = 0;
+        for(int i = 0; i < count; ++i){
+            int id = VarIntBuffer.getVarInt32(buffer);
+            x += VarIntBuffer.getSignedVarInt32(buffer);
+            y += VarIntBuffer.getSignedVarInt32(buffer);
+            String name = getString(buffer, strings);
+            int fields = VarIntBuffer.getVarInt32(buffer);
+
+            Place p = new Place(id, name, x, y, null);
+            if((fields & PLACE_AREA) != 0) p.setPlaceGroup(areas.get(VarIntBuffer.getVarInt32(buffer)));
+            if((fields & PLACE_RISK) != 0) p.setRiskLevel(world.getRiskLevel(VarIntBuffer.getVarInt32(buffer)));
+            if((fields & PLACE_LVL_MIN) != 0) p.setRecLevelMin(VarIntBuffer.getVarInt32(buffer));
+            if((fields & PLACE_LVL_MAX) != 0) p.setRecLevelMax(VarIntBuffer.getVarInt32(buffer));
+            if((fields & PLACE_CHILDREN) != 0){
+                int[] children = new int[VarIntBuffer.getVarInt32(buffer)];
+                for(int c = 0; c < children.length; ++c) children[c] = VarIntBuffer.getVarInt32(buffer);
+                childrenMapping.put(p, children);
+            }
+            if((fields & PLACE_FLAGS) != 0){
+                int flags = VarIntBuffer.getVarInt32(buffer);
+                for(int f = 0; f < flags; ++f) p.setFlag(getString(buffer, strings), true);
+            }
+            if((fields & PLACE_COMMENTS) != 0){
+                int comments = VarIntBuffer.getVarInt32(buffer);
+                for(int c = 0; c < comments; ++c) p.addComment(getString(buffer, strings));
+            }
+
+            world.putPlace(p, layer, x, y);
+            ret.add(p);
+        }
+        return ret;
+    }
+
+    /**
+     * Reads the ids and children of the places of a layer, like
+     * readPlaceBlock() but without creating the places
+     * @param buffer places section, positioned at the beginning of the block
+     * @param placeLayers place id -> layer id
+     * @param children place id -> child ids
+     */
+    private static void scanPlaceBlock(ByteBuffer buffer, HashMap<Integer, Integer> placeLayers, HashMap<Integer, int[]> children){
+        int layer = VarIntBuffer.getVarInt32(buffer);
+        int count = VarIntBuffer.getVarInt32(buffer);
+        for(int i = 0; i < count; ++i){
+            int id = VarIntBuffer.getVarInt32(buffer);
+            placeLayers.put(id, layer);
+            // position and name
+            VarIntBuffer.getSignedVarInt32(buffer);
+            VarIntBuffer.getSignedVarInt32(buffer);
+            VarIntBuffer.getVarInt32(buffer);
+            int fields = VarIntBuffer.getVarInt32(buffer);
+
+            if((fields & PLACE_AREA) != 0) VarIntBuffer.getVarInt32(buffer);
+            if((fields & PLACE_RISK) != 0) VarIntBuffer.getVarInt32(buffer);
+            if((fields & PLACE_LVL_MIN) != 0) VarIntBuffer.getVarInt32(buffer);
+            if((fields & PLACE_LVL_MAX) != 0) VarIntBuffer.getVarInt32(buffer);
+            if((fields & PLACE_CHILDREN) != 0){
+                int[] ids = new int[VarIntBuffer.getVarInt32(buffer)];
+                for(int c = 0; c < ids.length; ++c) ids[c] = VarIntBuffer.getVarInt32(buffer);
+                children.put(id, ids);
+            }
+            // flags and comments are string references
+            if((fields & PLACE_FLAGS) != 0){
+                int flags = VarIntBuffer.getVarInt32(buffer);
+                for(int f = 0; f < flags; ++f) VarIntBuffer.getVarInt32(buffer);
+            }
+            if((fields & PLACE_COMMENTS) != 0){
+                int comments = VarIntBuffer.getVarInt32(buffer);
+                for(int c = 0; c < comments; ++c) VarIntBuffer.getVarInt32(buffer);
+            }
+        }
+    }
+
+    private void readPaths(ByteBuffer buffer, String[] strings, World world){
+        int count = VarIntBuffer.getVarInt32(buffer);
+        for(int i = 0; i < count; ++i){
+            Place pl0 = world.getPlace(VarIntBuffer.getVarInt32(buffer));
+            String exit0 = getString(buffer, strings);
+            Place pl1 = world.getPlace(VarIntBuffer.getVarInt32(buffer));
+            String exit1 = getString(buffer, strings);
+            if(pl0 != null && pl1 != null){
+                pl0.connectPath(new Path(pl0, exit0, pl1, exit1));
+            }
+        }
+    }
+
+    /**
+     * Creates the places of a layer when the layer is accessed. The sections
+     * are kept in memory, links to places of layers that aren't loaded yet
+     * are remembered by the id of the missing place
+     */
+    private static class LazyLoader {
+        final World world;
+        final String[] strings;
+        final HashMap<Integer, PlaceGroup> areas;
+        final ByteBuffer places;
+        final ByteBuffer paths;
+
+        // places of loaded layers
+        final HashMap<Integer, Place> loaded = new HashMap<>();
+        // missing child id -> parents
+        final HashMap<Integer, ArrayList<Place>> pendingChildren = new HashMap<>();
+        // missing place id -> paths {place, exit of place, exit of missing place}
+        final HashMap<Integer, ArrayList<Object[]>> pendingPaths = new HashMap<>();
+        // layer id -> {place block, path block, path count}
+        final HashMap<Integer, Object[]> blocks = new HashMap<>();
+        // layer id -> linked layer ids, scanned on first request
+        HashMap<Integer, Set<Integer>> linkedLayers;
+
+        public LazyLoader(World world, String[] strings, HashMap<Integer, PlaceGroup> areas,
+                ByteBuffer places, ByteBuffer paths){
+            this.world = world;
+            this.strings = strings;
+            this.areas = areas;
+            this.places = places;
+            this.paths = paths;
+        }
+
+        /**
+         * Reads the layer directory and sets the loaders of the layers
+         * @param buffer directory section
+         */
+        void readDirectory(ByteBuffer buffer){
+            // places that aren't loaded yet must not get new ids
+            Place.reserveId(VarIntBuffer.getVarInt32(buffer));
+
+            int count = VarIntBuffer.getVarInt32(buffer);
+            for(int i = 0; i < count; ++i){
+                int id = VarIntBuffer.getVarInt32(buffer);
+                final ByteBuffer placeBlock = slice(places, VarIntBuffer.getVarInt32(buffer), VarIntBuffer.getVarInt32(buffer));
+                int pathOffset = VarIntBuffer.getVarInt32(buffer);
+                final int pathCount = VarIntBuffer.getVarInt32(buffer);
+                final ByteBuffer pathBlock = pathCount > 0 ? slice(paths, pathOffset, paths.limit() - pathOffset) : null;
+
+                blocks.put(id, new Object[]{placeBlock, pathBlock, pathCount});
+
+                Layer layer = world.getLayer(id);
+                if(layer == null) layer = new Layer(id, world);
+                layer.setLoader(new LayerLoader() {
+                    @Override
+                    public void loadLayer(Layer layer) throws Exception {
+                        load(placeBlock, pathBlock, pathCount);
+                    }
+
+                    @Override
+                    public Set<Integer> getLinkedLayers(Layer layer) {
+                        Set<Integer> ret = getLinks().get(layer.getId());
+                        return ret == null ? Collections.<Integer>emptySet() : Collections.unmodifiableSet(ret);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Gets the links between the layers, the place blocks are scanned for
+         * ids and children without creating the places
+         * @return layer id -> linked layer ids
+         */
+        synchronized HashMap<Integer, Set<Integer>> getLinks(){
+            if(linkedLayers == null){
+                linkedLayers = new HashMap<>();
+                HashMap<Integer, Integer> placeLayers = new HashMap<>();
+                HashMap<Integer, int[]> children = new HashMap<>();
+                for(Object[] block: blocks.values()){
+                    scanPlaceBlock(((ByteBuffer) block[0]).duplicate(), placeLayers, children);
+                }
+                for(Map.Entry<Integer, int[]> entry: children.entrySet()){
+                    for(int child: entry.getValue()) addLink(placeLayers.get(entry.getKey()), placeLayers.get(child));
+                }
+                for(Object[] block: blocks.values()){
+                    if(block[1] == null) continue;
+                    ByteBuffer buffer = ((ByteBuffer) block[1]).duplicate();
+                    for(int i = 0; i < (Integer) block[2]; ++i){
+                        int id0 = VarIntBuffer.getVarInt32(buffer);
+                        VarIntBuffer.getVarInt32(buffer);
+                        int id1 = VarIntBuffer.getVarInt32(buffer);
+                        VarIntBuffer.getVarInt32(buffer);
+                        addLink(placeLayers.get(id0), placeLayers.get(id1));
+                    }
+                }
+            }
+            return linkedLayers;
+        }
+
+        private void addLink(Integer layer1, Integer layer2){
+            if(layer1 == null || layer2 == null || layer1.equals(layer2)) return;
+            for(int i = 0; i < 2; ++i){
+                Set<Integer> set = linkedLayers.get(layer1);
+                if(set == null) linkedLayers.put(layer1, set = new HashSet<>());
+                set.add(layer2);
+                Integer tmp = layer1;
+                layer1 = layer2;
+                layer2 = tmp;
+            }
+        }
+
+        private static ByteBuffer slice(ByteBuffer buffer, int offset, int length){
+            if(buffer == null || offset < 0 || length < 0 || offset + length > buffer.limit()){
+                throw new IllegalArgumentException("Invalid layer directory entry");
+            }
+            ByteBuffer ret = buffer.duplicate();
+            ret.position(offset);
+            ret.limit(offset + length);
+            return ret.slice();
+        }
+
+        /**
+         * Creates the places and paths of a layer
+         */
+        synchronized void load(ByteBuffer placeBlock, ByteBuffer pathBlock, int pathCount) throws Exception {
+            HashMap<Place, int[]> childrenMapping = new HashMap<>();
+            ArrayList<Place> newPlaces = readPlaceBlock(placeBlock.duplicate(), strings, world, areas, childrenMapping);
+
+            // links from places that have been loaded before
+            for(Place place: newPlaces){
+                loaded.put(place.getId(), place);
+                ArrayList<Place> parents = pendingChildren.remove(place.getId());
+                if(parents != null){
+                    for(Place parent: parents) parent.connectChild(place);
+                }
+                ArrayList<Object[]> pending = pendingPaths.remove(place.getId());
+                if(pending != null){
+                    for(Object[] path: pending){
+                        Place other = (Place) path[0];
+                        other.connectPath(new Path(other, (String) path[1], place, (String) path[2]));
+                    }
+                }
+            }
+
+            // children of the new places
+            for(Map.Entry<Place, int[]> entry: childrenMapping.entrySet()){
+                for(int id: entry.getValue()){
+                    Place child = loaded.get(id);
+                    if(child != null) entry.getKey().connectChild(child);
+                    else addPending(pendingChildren, id, entry.getKey());
+                }
+            }
+
+            // paths of the new places
+            if(pathBlock != null){
+                ByteBuffer buffer = pathBlock.duplicate();
+                for(int i = 0; i < pathCount; ++i){
+                    Place pl0 = loaded.get(VarIntBuffer.getVarInt32(buffer));
+                    String exit0 = getString(buffer, strings);
+                    int id1 = VarIntBuffer.getVarInt32(buffer);
+                    String exit1 = getString(buffer, strings);
+                    Place pl1 = loaded.get(id1);
+                    if(pl0 == null) continue;
+                    if(pl1 != null) pl0.connectPath(new Path(pl0, exit0, pl1, exit1));
+                    else addPending(pendingPaths, id1, new Object[]{pl0, exit0, exit1});
+                }
+            }
+        }
+
+        private static <T> void addPending(HashMap<Integer, ArrayList<T>> map, int id, T value){
+            ArrayList<T> list = map.get(id);
+            if(list == null) map.put(id, list = new ArrayList<>());
+            list.add(value);
+        }
+    }
+
+    private void readLabels(ByteBuffer buffer, String[] strings, World world){
+        int count = VarIntBuffer.getVarInt32(buffer);
+        for(int i = 0; i < count; ++i){
+            double x = buffer.getDouble();
+            double y = buffer.getDouble();
+            int layer = VarIntBuffer.getVarInt32(buffer);
+            double fontSize = buffer.getDouble();
+            String text = getString(buffer, strings);
+
+            Layer l = layer > 0 ? world.getLayer(layer - 1) : null;
+            if(l != null && text != null) world.addLabel(new Label(text, x, y, l, fontSize));
+        }
+    }
+
+    /**
+     * Write world to file
+     * @param world
+     * @throws IOException
+     */
+    @Override
+    public void writeFile(World world) throws IOException {
+        Writer writer = new Writer(world);
+        LinkedHashMap<Integer, ByteBuffer> sections = writer.write();
+
+        // header and section table
+        int count = sections.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + count * SECTION_ENTRY_SIZE);
+        header.putInt(MAGIC);
+        header.putShort((short) VERSION_MAJOR);
+        header.putShort((short) VERSION_MINOR);
+        header.putInt(count);
+        long offset = header.capacity();
+        for(Map.Entry<Integer, ByteBuffer> section: sections.entrySet()){
+            long length = section.getValue().remaining();
+            header.putInt(section.getKey());
+            header.putLong(offset);
+            header.putLong(length);
+            offset += length;
+        }
+        header.flip();
+
+        ByteBuffer[] buffers = new ByteBuffer[count + 1];
+        buffers[0] = header;
+        int i = 1;
+        for(ByteBuffer buffer: sections.values()) buffers[i++] = buffer;
+
+        // the old file is only replaced, if the world could be written
+        AtomicFile file = new AtomicFile(filename);
+        try {
+            try (FileChannel channel = FileChannel.open(file.getTempFile().toPath(), StandardOpenOption.WRITE)) {
+                long remaining = offset;
+                while(remaining > 0) remaining -= channel.write(buffers);
+            }
+            file.setCommitHandler(commitHandler);
+            file.commit();
+        } catch (IOException | RuntimeException ex){
+            file.abort();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates the sections of a world
+     */
+    private class Writer {
+        final World world;
+        // string -> index in string table
+        final LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+
+        public Writer(World world){
+            this.world = world;
+        }
+
+        /**
+         * Interns a string and writes its reference
+         */
+        void putString(VarIntBuffer buffer, String string){
+            if(string == null){
+                buffer.putVarInt(0);
+            } else {
+                Integer index = strings.get(string);
+                if(index == null) strings.put(string, index = strings.size());
+                buffer.putVarInt(index + 1);
+            }
+        }
+
+        void putColor(VarIntBuffer buffer, Color color){
+            buffer.putVarInt(color == null ? 0 : (color.getRGB() & 0xFFFFFF) + 1);
+        }
+
+        /**
+         * Creates the sections
+         * @return section id -> content, in file order
+         */
+        LinkedHashMap<Integer, ByteBuffer> write(){
+            LinkedHashMap<Integer, ByteBuffer> sections = new LinkedHashMap<>();
+
+            // helper to assign new layer ids, like the JSON format
+            Integer nextLayerID = 0;
+            layerIDs = new HashMap<>();
+            ArrayList<Layer> layers = new ArrayList<>();
+            for(Layer layer: world.getLayers()){
+                if(!layer.getPlaces().isEmpty()){
+                    layerIDs.put(layer.getId(), nextLayerID++);
+                    layers.add(layer);
+                }
+            }
+
+            // info section, readable without the string table
+            VarIntBuffer info = new VarIntBuffer(64);
+            info.putByte(world.getName() != null ? 1 : 0);
+            if(world.getName() != null) info.putString(world.getName());
+            info.putVarInt(world.getPlaces().size());
+            info.putVarInt(layers.size());
+            String mudmapVer = getClass().getPackage().getImplementationVersion();
+            info.putString(mudmapVer != null ? mudmapVer : "dev");
+
+            VarIntBuffer worldSection = writeWorld();
+            VarIntBuffer riskLevels = writeRiskLevels();
+            HashMap<PlaceGroup, Integer> areaIDs = new HashMap<>();
+            VarIntBuffer areas = writeAreas(areaIDs);
+            VarIntBuffer layerSection = writeLayers(layers);
+            // layer directory entries: {place block offset, length, path offset, count}
+            int[][] directory = new int[layers.size()][4];
+            VarIntBuffer places = writePlaces(layers, areaIDs, directory);
+            VarIntBuffer paths = writePaths(layers, directory);
+            VarIntBuffer labels = writeLabels();
+
+            // the string table is complete after all other sections
+            VarIntBuffer stringTable = new VarIntBuffer(strings.size() * 16);
+            stringTable.putVarInt(strings.size());
+            for(String string: strings.keySet()) stringTable.putString(string);
+
+            sections.put(SECTION_INFO, info.getBuffer());
+            sections.put(SECTION_STRINGS, stringTable.getBuffer());
+            sections.put(SECTION_WORLD, worldSection.getBuffer());
+            sections.put(SECTION_RISK_LEVELS, riskLevels.getBuffer());
+            sections.put(SECTION_AREAS, areas.getBuffer());
+            sections.put(SECTION_LAYERS, layerSection.getBuffer());
+            sections.put(SECTION_PLACES, places.getBuffer());
+            sections.put(SECTION_PATHS, paths.getBuffer());
+            sections.put(SECTION_LABELS, labels.getBuffer());
+            sections.put(SECTION_LAYER_DIRECTORY, writeDirectory(layers, directory).getBuffer());
+
+            // meta data from WorldTab
+            if(metaWriter != null){
+                JSONObject meta = metaWriter.getMeta(layerIDs);
+                if(meta != null) sections.put(SECTION_META, ByteBuffer.wrap(meta.toString().getBytes(StandardCharsets.UTF_8)));
+            }
+            return sections;
+        }
+
+        VarIntBuffer writeWorld(){
+            VarIntBuffer buffer = new VarIntBuffer(256);
+            putString(buffer, world.getShowPlaceId().toString());
+            putColor(buffer, world.getTileCenterColor());
+            putColor(buffer, world.getPathColor());
+            putColor(buffer, world.getPathColorNstd());
+
+            ArrayList<Map.Entry<String, Color>> pathColors = new ArrayList<>();
+            for(Map.Entry<String, Color> pathCol: world.getPathColors().entrySet()){
+                if(pathCol.getValue() != null) pathColors.add(pathCol);
+            }
+            buffer.putVarInt(pathColors.size());
+            for(Map.Entry<String, Color> pathCol: pathColors){
+                putString(buffer, pathCol.getKey());
+                putColor(buffer, pathCol.getValue());
+            }
+
+            // layer id is unknown, if the home layer is empty
+            WorldCoordinate home = world.getHome();
+            Integer homeLayer = translateLayerID(home.getLayer());
+            buffer.putVarInt(homeLayer != null ? homeLayer + 1 : 0);
+            buffer.putDouble(home.getX());
+            buffer.putDouble(home.getY());
+            return buffer;
+        }
+
+        VarIntBuffer writeRiskLevels(){
+            VarIntBuffer buffer = new VarIntBuffer(128);
+            buffer.putVarInt(world.getRiskLevels().size());
+            for(RiskLevel rlc: world.getRiskLevels()){
+                buffer.putVarInt(rlc.getId());
+                putString(buffer, rlc.getDescription());
+                putColor(buffer, rlc.getColor());
+            }
+            return buffer;
+        }
+
+        VarIntBuffer writeAreas(HashMap<PlaceGroup, Integer> areaIDs){
+            // create IDs for used areas
+            HashSet<PlaceGroup> usedAreas = new HashSet<>();
+            for(Place place: world.getPlaces()){
+                if(place.getPlaceGroup() != null) usedAreas.add(place.getPlaceGroup());
+            }
+            ArrayList<PlaceGroup> areas = new ArrayList<>();
+            for(PlaceGroup area: world.getPlaceGroups()){
+                if(usedAreas.contains(area)){
+                    areas.add(area);
+                    areaIDs.put(area, areas.size());
+                }
+            }
+
+            VarIntBuffer buffer = new VarIntBuffer(128);
+            buffer.putVarInt(areas.size());
+            for(PlaceGroup area: areas){
+                buffer.putVarInt(areaIDs.get(area));
+                putString(buffer, area.getName());
+                putColor(buffer, area.getColor());
+            }
+            return buffer;
+        }
+
+        VarIntBuffer writeLayers(ArrayList<Layer> layers){
+            VarIntBuffer buffer = new VarIntBuffer(64);
+            buffer.putVarInt(layers.size());
+            for(Layer layer: layers){
+                buffer.putVarInt(layerIDs.get(layer.getId()));
+                buffer.putSignedVarInt(layer.getCenterX());
+                buffer.putSignedVarInt(layer.getCenterY());
+                putString(buffer, layer.hasName() ? layer.getName() : null);
+            }
+            return buffer;
+        }
+
+        VarIntBuffer writePlaces(ArrayList<Layer> layers, HashMap<PlaceGroup, Integer> areaIDs, int[][] directory){
+            // group places by layer and sort them by position for small deltas
+            HashMap<Layer, ArrayList<Place>> layerPlaces = new HashMap<>();
+            for(Layer layer: layers) layerPlaces.put(layer, new ArrayList<Place>());
+            for(Place place: world.getPlaces()){
+                ArrayList<Place> list = layerPlaces.get(place.getLayer());
+                if(list != null) list.add(place);
+            }
+
+            int total = world.getPlaces().size(), done = 0;
+            VarIntBuffer buffer = new VarIntBuffer(total * 16);
+            buffer.putVarInt(layers.size());
+            for(int l = 0; l < layers.size(); ++l){
+                Layer layer = layers.get(l);
+                ArrayList<Place> places = layerPlaces.get(layer);
+                Collections.sort(places, new Comparator<Place>() {
+                    @Override
+                    public int compare(Place t, Place t1) {
+                        if(t.getY() != t1.getY()) return t.getY() < t1.getY() ? -1 : 1;
+                        if(t.getX() != t1.getX()) return t.getX() < t1.getX() ? -1 : 1;
+                        return 0;
+                    }
+                });
+
+                directory[l][0] = buffer.size();
+                buffer.putVarInt(layerIDs.get(layer.getId()));
+                buffer.putVarInt(places.size());
+                int x = 0, y = 0;
+                for(Place place: places){
+                    writePlace(buffer, place, x, y, areaIDs);
+                    x = place.getX();
+                    y = place.getY();
+                }
+                directory[l][1] = buffer.size() - directory[l][0];
+                reportProgress(done += places.size(), total);
+            }
+            return buffer;
+        }
+
+        void writePlace(VarIntBuffer buffer, Place place, int prevX, int prevY, HashMap<PlaceGroup, Integer> areaIDs){
+            ArrayList<String> flags = new ArrayList<>();
+            for(Map.Entry<String, Boolean> flag: place.getFlags().entrySet()){
+                if(flag.getValue()) flags.add(flag.getKey());
+            }
+
+            int fields = 0;
+            if(place.getPlaceGroup() != null) fields |= PLACE_AREA;
+            if(place.getRiskLevel() != null) fields |= PLACE_RISK;
+            if(place.getRecLevelMin() > -1) fields |= PLACE_LVL_MIN;
+            if(place.getRecLevelMax() > -1) fields |= PLACE_LVL_MAX;
+            if(!place.getChildren().isEmpty()) fields |= PLACE_CHILDREN;
+            if(!flags.isEmpty()) fields |= PLACE_FLAGS;
+            if(!place.getComments().isEmpty()) fields |= PLACE_COMMENTS;
+
+            buffer.putVarInt(place.getId());
+            buffer.putSignedVarInt((long) place.getX() - prevX);
+            buffer.putSignedVarInt((long) place.getY() - prevY);
+            putString(buffer, place.getName());
+            buffer.putVarInt(fields);
+
+            if((fields & PLACE_AREA) != 0) buffer.putVarInt(areaIDs.get(place.getPlaceGroup()));
+            if((fields & PLACE_RISK) != 0) buffer.putVarInt(place.getRiskLevel().getId());
+            if((fields & PLACE_LVL_MIN) != 0) buffer.putVarInt(place.getRecLevelMin());
+            if((fields & PLACE_LVL_MAX) != 0) buffer.putVarInt(place.getRecLevelMax());
+            if((fields & PLACE_CHILDREN) != 0){
+                buffer.putVarInt(place.getChildren().size());
+                for(Place child: place.getChildren()) buffer.putVarInt(child.getId());
+            }
+            if((fields & PLACE_FLAGS) != 0){
+                buffer.putVarInt(flags.size());
+                for(String flag: flags) putString(buffer, flag);
+            }
+            if((fields & PLACE_COMMENTS) != 0){
+                buffer.putVarInt(place.getComments().size());
+                for(String comment: place.getComments()) putString(buffer, comment);
+            }
+        }
+
+        VarIntBuffer writePaths(ArrayList<Layer> layers, int[][] directory){
+            // group paths by the layer of their first place
+            HashMap<Layer, ArrayList<Path>> layerPaths = new HashMap<>();
+            for(Layer layer: layers) layerPaths.put(layer, new ArrayList<Path>());
+            int count = 0;
+            HashSet<Path> added = new HashSet<>(); // paths that have already been added
+            for(Place place: world.getPlaces()){
+                for(Path path: place.getPaths()){
+                    ArrayList<Path> list = layerPaths.get(path.getPlaces()[0].getLayer());
+                    if(list != null && added.add(path)){
+                        list.add(path);
+                        ++count;
+                    }
+                }
+            }
+
+            VarIntBuffer buffer = new VarIntBuffer(count * 8);
+            buffer.putVarInt(count);
+            for(int l = 0; l < layers.size(); ++l){
+                ArrayList<Path> paths = layerPaths.get(layers.get(l));
+                directory[l][2] = buffer.size();
+                directory[l][3] = paths.size();
+                for(Path path: paths){
+                    for(Place pl: path.getPlaces()){
+                        buffer.putVarInt(pl.getId());
+                        putString(buffer, path.getExit(pl));
+                    }
+                }
+            }
+            return buffer;
+        }
+
+        VarIntBuffer writeDirectory(ArrayList<Layer> layers, int[][] directory){
+            int maxPlaceID = 0;
+            for(Place place: world.getPlaces()) maxPlaceID = Math.max(maxPlaceID, place.getId());
+
+            VarIntBuffer buffer = new VarIntBuffer(16 + layers.size() * 16);
+            buffer.putVarInt(maxPlaceID);
+            buffer.putVarInt(layers.size());
+            for(int l = 0; l < layers.size(); ++l){
+                buffer.putVarInt(layerIDs.get(layers.get(l).getId()));
+                for(int value: directory[l]) buffer.putVarInt(value);
+            }
+            return buffer;
+        }
+
+        VarIntBuffer writeLabels(){
+            Label[] labels = world.getLabels();
+            VarIntBuffer buffer = new VarIntBuffer(64);
+            buffer.putVarInt(labels != null ? labels.length : 0);
+            if(labels != null){
+                for(Label label: labels){
+                    Integer layer = translateLayerID(label.getLayer().getId());
+                    buffer.putDouble(label.getX());
+                    buffer.putDouble(label.getY());
+                    buffer.putVarInt(layer != null ? layer + 1 : 0);
+                    buffer.putDouble(label.getFontSize());
+                    putString(buffer, label.getText());
+                }
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Create a copy of the referenced file.
+     * The new filename will be originalfilename + .bak
+     * existing files will be overwritten
+     * @throws FileNotFoundException
+     */
+    @Override
+    public void backup() throws FileNotFoundException {
+        try {
+            File fileold = new File(filename);
+            File filenew = new File(filename + ".bak");
+
+            if(fileold.canRead()){
+                if(filenew.exists()) filenew.delete();
+                Files.copy(fileold.toPath(), filenew.toPath());
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(WorldFileBinary.class.getName()).log(Level.WARNING, "Could not create world backup file " + filename + ".bak", ex);
+        }
+    }
+
+    /**
+     * Read world name from file
+     * @return world name or empty string, if the file can't be read
+     * @throws Exception
+     */
+    @Override
+    public String readWorldName() throws Exception {
+        WorldFileHeader h = readHeader();
+        if(h == null) return "";
+        return h.getWorldName();
+    }
+
+    /**
+     * Reads the header and the info section, the rest of the file isn't read
+     * @return header or null, if the file is no binary world file
+     */
+    @Override
+    public WorldFileHeader readHeader() {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long[] info = readSectionTable(channel).get(SECTION_INFO);
+            if(info == null) return new WorldFileHeader(VERSION_MAJOR + "." + VERSION_MINOR, null);
+            return readInfo(read(channel, info[0], info[1]));
+        } catch (IOException | WorldFileException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether the file can be read by this reader class
+     * @return
+     */
+    @Override
+    public Boolean canRead() {
+        return hasMagic(filename) && readHeader() != null;
+    }
+
+    /**
+     * Return this WorldFileType of reader
+     * @return
+     */
+    @Override
+    public WorldFileType getWorldFileType() {
+        return WorldFileType.BINARY;
+    }
+}
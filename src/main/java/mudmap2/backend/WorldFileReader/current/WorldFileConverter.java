@@ -0,0 +1,99 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Converts world files between the JSON and the binary format. The meta
+ *  data of WorldTab is copied as it is: both formats number the non-empty
+ *  layers the same way, so the layer ids in the meta data stay valid
+ */
+
+package mudmap2.backend.WorldFileReader.current;
+
+import java.util.HashMap;
+import mudmap2.backend.World;
+import org.json.JSONObject;
+
+/**
+ * JSON / binary world file converter
+ * @author neop
+ */
+public class WorldFileConverter {
+
+    /**
+     * Converts a JSON world file to a binary world file
+     * @param jsonFile source file
+     * @param binaryFile destination file
+     * @throws Exception if the source can't be read or the destination
+     * can't be written
+     */
+    public static void toBinary(String jsonFile, String binaryFile) throws Exception {
+        WorldFileJSON reader = new WorldFileJSON(jsonFile);
+        World world = reader.readFile();
+
+        WorldFileBinary writer = new WorldFileBinary(binaryFile);
+        writer.setMetaGetter(new MetaCopy(reader.getMetaData()));
+        writer.writeFile(world);
+    }
+
+    /**
+     * Converts a binary world file to a JSON world file
+     * @param binaryFile source file
+     * @param jsonFile destination file
+     * @throws Exception if the source can't be read or the destination
+     * can't be written
+     */
+    public static void toJSON(String binaryFile, String jsonFile) throws Exception {
+        WorldFileBinary reader = new WorldFileBinary(binaryFile);
+        World world = reader.readFile();
+
+        WorldFileJSON writer = new WorldFileJSON(jsonFile);
+        writer.setMetaGetter(new MetaCopy(reader.getMetaData()));
+        writer.writeFile(world);
+    }
+
+    /**
+     * Converts a world file, the direction depends on the source format
+     * usage: WorldFileConverter source destination
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length != 2){
+            System.out.println("usage: WorldFileConverter source destination");
+            System.exit(1);
+        }
+        if(WorldFileBinary.hasMagic(args[0])) toJSON(args[0], args[1]);
+        else toBinary(args[0], args[1]);
+    }
+
+    /**
+     * Meta data getter that returns the meta data of the source file
+     */
+    private static class MetaCopy implements WorldMetaJSON {
+        final JSONObject meta;
+
+        public MetaCopy(JSONObject meta){
+            this.meta = meta;
+        }
+
+        @Override
+        public JSONObject getMeta(HashMap<Integer, Integer> layerTranslation) {
+            return meta;
+        }
+    }
+}
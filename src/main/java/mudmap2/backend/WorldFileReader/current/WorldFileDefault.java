@@ -19,9 +19,13 @@ package mudmap2.backend.WorldFileReader.current;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import mudmap2.backend.World;
 import mudmap2.backend.WorldFileReader.WorldFile;
+import mudmap2.backend.WorldFileReader.WorldFileHeader;
 import mudmap2.backend.WorldFileReader.WorldFileType;
+import mudmap2.utils.Compression;
 import static mudmap2.backend.WorldFileReader.WorldFileType.INVALID;
 import static mudmap2.backend.WorldFileReader.WorldFileType.UNKNOWN;
 
@@ -39,12 +43,22 @@ public class WorldFileDefault extends WorldFile {
     public WorldFileDefault(String filename) {
         super(filename);
 
+        // the JSON reader caches the header read by canRead()
+        WorldFileJSON wfj = new WorldFileJSON(filename);
+
         if(filename != null){
             File file = new File(filename);
             if(file.exists()){
-                WorldFileJSON wfj = new WorldFileJSON(filename);
-                if(wfj.canRead()){
+                if(WorldFileBinary.hasMagic(filename)){
+                    worldFileType = WorldFileType.BINARY;
+                } else if(wfj.canRead()){
                     worldFileType = WorldFileType.JSON;
+                    // compressed files are written compressed again
+                    try {
+                        wfj.setCompression(Compression.detect(filename));
+                    } catch (IOException ex) {
+                        Logger.getLogger(WorldFileDefault.class.getName()).log(Level.WARNING, null, ex);
+                    }
                 } else {
                     worldFileType = WorldFileType.INVALID;
                 }
@@ -56,11 +70,14 @@ public class WorldFileDefault extends WorldFile {
         }
 
         switch(worldFileType){
+            case BINARY:
+                worldFile = new WorldFileBinary(filename);
+                break;
             default:
             case INVALID:
             case UNKNOWN: // set default world file type here:
             case JSON:
-                worldFile = new WorldFileJSON(filename);
+                worldFile = wfj;
                 break;
         }
     }
@@ -73,6 +90,12 @@ public class WorldFileDefault extends WorldFile {
         return worldFile;
     }
 
+    @Override
+    public void setProgressListener(ProgressListener listener){
+        super.setProgressListener(listener);
+        if(worldFile != null) worldFile.setProgressListener(listener);
+    }
+
     @Override
     public WorldFileType getWorldFileType() {
         return worldFileType;
@@ -113,6 +136,19 @@ public class WorldFileDefault extends WorldFile {
         return "";
     }
 
+    /**
+     * Read the world file header
+     * @return header or null, if the file can't be read
+     * @throws Exception
+     */
+    @Override
+    public WorldFileHeader readHeader() throws Exception {
+        if(worldFile != null && canRead()){
+            return worldFile.readHeader();
+        }
+        return null;
+    }
+
     /**
      * write world
      * @param world
@@ -129,6 +165,55 @@ public class WorldFileDefault extends WorldFile {
         worldFileType = worldFile.getWorldFileType();
     }
 
+    /**
+     * Enables or disables putting the places of a layer to the world when
+     * the layer is accessed. Binary files are always read this way
+     * @param lazy
+     */
+    public void setLazyLayers(boolean lazy){
+        if(worldFile instanceof WorldFileJSON) ((WorldFileJSON) worldFile).setLazyLayers(lazy);
+    }
+
+    /**
+     * Checks whether the world file can be compressed. Only JSON files can
+     * be compressed, binary files are read with random access
+     * @return true, if the file format supports compression
+     */
+    public boolean supportsCompression() {
+        return worldFile instanceof WorldFileJSON;
+    }
+
+    /**
+     * Gets the compression of the world file
+     * @return compression format
+     */
+    public Compression getCompression() {
+        if(worldFile instanceof WorldFileJSON) return ((WorldFileJSON) worldFile).getCompression();
+        return Compression.NONE;
+    }
+
+    /**
+     * Sets the compression of written world files. Gzip and deflate
+     * compressed files are detected by their magic bytes when read
+     * @param compression compression format
+     * @param level compression level, 0 - 9 or Deflater.DEFAULT_COMPRESSION
+     * @throws UnsupportedOperationException if the file format doesn't
+     * support compression
+     */
+    public void setCompression(Compression compression, int level) {
+        if(worldFile instanceof WorldFileJSON){
+            ((WorldFileJSON) worldFile).setCompressionLevel(level);
+            ((WorldFileJSON) worldFile).setCompression(compression);
+        } else if(compression != Compression.NONE){
+            throw new UnsupportedOperationException("File type " + worldFile.getWorldFileType() + " can't be compressed");
+        }
+    }
+
+    @Override
+    public Integer translateLayerID(Integer layer) {
+        return worldFile.translateLayerID(layer);
+    }
+
     /**
      * Backup world file
      * @throws java.io.FileNotFoundException
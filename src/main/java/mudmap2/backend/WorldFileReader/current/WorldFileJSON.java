@@ -17,52 +17,119 @@
 package mudmap2.backend.WorldFileReader.current;
 
 import java.awt.Color;
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 import javax.swing.JOptionPane;
 import mudmap2.backend.PlaceGroup;
 import mudmap2.backend.Label;
 import mudmap2.backend.Layer;
+import mudmap2.backend.LayerLoader;
 import mudmap2.backend.Path;
 import mudmap2.backend.Place;
 import mudmap2.backend.RiskLevel;
 import mudmap2.backend.World;
 import mudmap2.backend.WorldCoordinate;
 import mudmap2.backend.WorldFileReader.WorldFile;
+import mudmap2.backend.WorldFileReader.WorldFileHeader;
 import mudmap2.backend.WorldFileReader.Exception.WorldFileInvalidTypeException;
 import mudmap2.backend.WorldFileReader.Exception.WorldFileReadError;
 import mudmap2.backend.WorldFileReader.WorldFileType;
+import mudmap2.utils.AtomicFile;
+import mudmap2.utils.Compression;
+import mudmap2.utils.JSONStreamReader;
+import mudmap2.utils.JSONStreamWriter;
+import mudmap2.utils.MappedFileReader;
+import mudmap2.utils.StringPool;
 import org.json.*;
 
 /**
+ * Reads and writes JSON world files. Strings that occur several times are
+ * written to a string table (file version 3), files without repeated strings
+ * are written as version 2, so that older versions can still read them.
+ * Older versions reject version 3 files by their version major before
+ * reading anything else.
  *
+ * Equal strings are deduplicated only when a file is read or written: the
+ * strings of a loaded world share one instance per file load, strings that
+ * are set or edited later aren't pooled.
  * @author neop
  */
 public class WorldFileJSON extends WorldFile {
 
-    static Integer versionMajor = 2;
+    // version 3 refers to strings of the string table by index, readers of
+    // version 2 can't read these files
+    static Integer versionMajor = 3;
     static Integer versionMinor = 0;
+    // version of files without string table, readable by older versions
+    static final Integer VERSION_MAJOR_NO_STRINGS = 2;
+    static final Integer VERSION_MINOR_NO_STRINGS = 0;
 
-    JSONObject fileRoot = null;
+    // number of characters read to find the header
+    static final int HEADER_PROBE_SIZE = 4096;
+    // number of characters of places that are decoded in one task
+    static final int PLACE_CHUNK_SIZE = 65536;
+
+    // number of places that are encoded in one task
+    static final int PLACE_WRITE_CHUNK_SIZE = 2048;
+
+    // decodes and encodes places, shared by all instances
+    static ForkJoinPool pool;
+    static volatile boolean parallelLoading = true;
+    static volatile boolean parallelSaving = true;
+    static volatile boolean memoryMapping = !System.getProperty("os.name", "").startsWith("Windows");
 
     HashMap<Integer, Integer> layerIDs;
 
     JSONObject metaData;
     WorldMetaJSON metaWriter;
 
+    // replaces the old file after writing, null to replace it directly
+    AtomicFile.CommitHandler commitHandler;
+
     final Color defaultColor = new Color(0x808080);
+
+    // compression of written files
+    Compression compression = Compression.NONE;
+    int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    // places are put to the world when their layer is accessed
+    boolean lazyLayers = false;
+
+    // cached header and the file state it was read from
+    WorldFileHeader header;
+    long headerModified;
+    long headerLength;
     
     /**
      * Constructor
@@ -76,31 +143,98 @@ public class WorldFileJSON extends WorldFile {
         this.metaWriter = meta;
     }
 
+    /**
+     * Sets the handler that replaces the old file when a world has been
+     * written
+     * @param handler handler or null
+     */
+    public void setCommitHandler(AtomicFile.CommitHandler handler) {
+        this.commitHandler = handler;
+    }
+
     public JSONObject getMetaData() {
         return metaData;
     }
 
     /**
-     * Read file to JSONObject
-     * @return JSONObject
-     * @throws IOException
+     * Gets the compression of written files. After reading a file it's the
+     * compression of that file
+     * @return compression format
      */
-    private JSONObject getJSONRoot() throws IOException{
-        if(fileRoot == null && (new File(filename)).isFile()){
-            byte[] bytes = Files.readAllBytes(Paths.get(filename));
-            String lines = new String(bytes);
-            fileRoot = new JSONObject(lines);
-        }
-        return fileRoot;
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Sets the compression of written files
+     * @param compression compression format
+     */
+    public void setCompression(Compression compression) {
+        if(compression == null) throw new NullPointerException();
+        this.compression = compression;
+    }
+
+    /**
+     * Enables or disables putting the places to the world when their layer
+     * is accessed for the first time. The file is still decoded completely
+     * @param lazy
+     */
+    public void setLazyLayers(boolean lazy) {
+        lazyLayers = lazy;
+    }
+
+    public boolean isLazyLayers() {
+        return lazyLayers;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the compression level of written files
+     * @param level 0 - 9 or Deflater.DEFAULT_COMPRESSION
+     * @throws IllegalArgumentException if the level is invalid
+     */
+    public void setCompressionLevel(int level) {
+        Compression.checkLevel(level);
+        compressionLevel = level;
     }
 
+    @Override
     public Integer translateLayerID(Integer layer){
         if(layerIDs == null) return null;
         return layerIDs.get(layer);
     }
 
     /**
-     * Read world file
+     * Opens a JSON reader for the world file. Uncompressed files are memory
+     * mapped, compressed files are decompressed while reading
+     * @return reader
+     * @throws IOException
+     */
+    private JSONStreamReader openReader() throws IOException {
+        if(memoryMapping && Compression.detect(filename) == Compression.NONE){
+            return new JSONStreamReader(new MappedFileReader(filename, StandardCharsets.UTF_8));
+        }
+        return new JSONStreamReader(new InputStreamReader(Compression.openInputStream(filename), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Enables or disables memory mapping of world files. It's disabled on
+     * Windows, where mapped files can't be replaced until the mapping is
+     * garbage collected
+     * @param enabled
+     */
+    public static void setMemoryMapping(boolean enabled){
+        memoryMapping = enabled;
+    }
+
+    /**
+     * Read world file. The file is read token by token, objects are created
+     * while reading. References to sections that weren't read yet (eg. places
+     * of a path, if the paths come first) are kept until the end of the file.
+     * Places are decoded in parallel, see readPlaces()
      * @return new world object or null if file is invalid
      * @throws Exception
      * @throws WorldFileInvalidTypeException
@@ -108,314 +242,517 @@ public class WorldFileJSON extends WorldFile {
      */
     @Override
     public World readFile() throws Exception {
-        World world = null;
-
-        try{
-            JSONObject root = getJSONRoot();
-
-            // check file version
-            if(root.has("fileVer")){
-                String[] fileVer = root.getString("fileVer").split("\\.");
-                if(versionMajor != Integer.parseInt(fileVer[0])){
-                    // version major not equal: different file format
-                    throw new WorldFileInvalidTypeException(filename,
-                            "invalid world file version", null);
-                }
-                if(versionMinor < Integer.parseInt(fileVer[1])){
-                    // file was created by a newer MUD Map: might have unsupported features
-                    int ret = JOptionPane.showConfirmDialog(null,
-                            "World file version is greater than the reader version. "
-                            + "Please update MUD Map. Continuing might cause data loss.",
-                            "Loading world", JOptionPane.OK_CANCEL_OPTION);
-                    if(ret == JOptionPane.CANCEL_OPTION)
-                        throw new WorldFileInvalidTypeException(filename, "Could not read world file", null);
+        ReadState state = null;
+
+        // keep the compression when the world is written
+        compression = Compression.detect(filename);
+
+        try (JSONStreamReader reader = openReader()) {
+            state = new ReadState(new World());
+            World world = state.world;
+            world.setWorldFile(this);
+            // call the listeners once instead of once per place
+            world.beginBatch();
+
+            reader.beginObject();
+            while(reader.hasNext()){
+                String key = reader.nextName();
+                switch(key){
+                    case "fileVer":
+                        checkVersion(reader.nextString());
+                        state.versionChecked = true;
+                        break;
+                    case "worldName":
+                        state.worldName = reader.nextString();
+                        break;
+                    case "showPlaceID":
+                        world.setShowPlaceID(World.ShowPlaceID.valueOf(reader.nextString()));
+                        break;
+                    case "tileCenterCol":
+                        world.setTileCenterColor(hexToCol(reader.nextString()));
+                        break;
+                    case "pathCol":
+                        world.setPathColor(hexToCol(reader.nextString()));
+                        break;
+                    case "pathColNonCardinal":
+                        world.setPathColorNstd(hexToCol(reader.nextString()));
+                        break;
+                    case "pathColDefs":
+                        readPathColDefs(reader, world);
+                        break;
+                    case "home":
+                        readHome(reader, world);
+                        break;
+                    case "riskLevels":
+                        readRiskLevels(reader, state);
+                        break;
+                    case "areas":
+                        readAreas(reader, state);
+                        break;
+                    case "layers":
+                        readLayers(reader, state);
+                        break;
+                    case "places":
+                        readPlaces(reader, state);
+                        break;
+                    case "paths":
+                        readPaths(reader, state);
+                        break;
+                    case "strings":
+                        readStrings(reader, state);
+                        break;
+                    case "labels":
+                        readLabels(reader, state);
+                        break;
+                    case "meta":
+                        // remember meta data for WorldTab
+                        Object meta = reader.nextValue();
+                        if(meta instanceof JSONObject) metaData = (JSONObject) meta;
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
                 }
-            } else {
+            }
+            reader.endObject();
+
+            if(!state.versionChecked){
                 throw new WorldFileInvalidTypeException(filename,
                         "could not read world file version", null);
             }
 
-            // getPlace world name
-            String worldName = "";
-            if(root.has("worldName")) worldName = root.getString("worldName");
-            if(worldName.isEmpty()) {
-                Integer begin = worldName.lastIndexOf('/');
-                if(begin == -1) begin = worldName.lastIndexOf('\\');
-                begin += 1;
-                worldName = worldName.substring(begin);
-            }
+            state.finish();
+            world.endBatch();
+        } catch(JSONException | IllegalArgumentException ex) {
+            System.out.println(ex.getLocalizedMessage());
+            throw new WorldFileReadError(filename, ex.getLocalizedMessage(), ex);
+        }
 
-            // create world root
-            world = new World(worldName);
-            world.setWorldFile(this);
+        return state.world;
+    }
 
-            // showPlaceID
-            if(root.has("showPlaceID")){
-                world.setShowPlaceID(World.ShowPlaceID.valueOf(root.getString("showPlaceID")));
-            }
+    /**
+     * Checks the file version
+     * @param version version string
+     * @throws WorldFileInvalidTypeException
+     */
+    private void checkVersion(String version) throws WorldFileInvalidTypeException {
+        String[] fileVer = version.split("\\.");
+        int major = Integer.parseInt(fileVer[0]);
+        int minor = fileVer.length > 1 ? Integer.parseInt(fileVer[1]) : 0;
+        if(major > versionMajor){
+            // written by a newer MUD Map in a format that can't be read
+            throw new WorldFileInvalidTypeException(filename,
+                    "world file version " + version + " is newer than supported ("
+                    + versionMajor + "." + versionMinor + "), please update MUD Map", null);
+        }
+        if(major < VERSION_MAJOR_NO_STRINGS){
+            // unknown version major: different file format
+            throw new WorldFileInvalidTypeException(filename,
+                    "invalid world file version " + version, null);
+        }
+        if(major == versionMajor && versionMinor < minor){
+            // file was created by a newer MUD Map: might have unsupported features
+            int ret = JOptionPane.showConfirmDialog(null,
+                    "World file version is greater than the reader version. "
+                    + "Please update MUD Map. Continuing might cause data loss.",
+                    "Loading world", JOptionPane.OK_CANCEL_OPTION);
+            if(ret == JOptionPane.CANCEL_OPTION)
+                throw new WorldFileInvalidTypeException(filename, "Could not read world file", null);
+        }
+    }
 
-            // tileCenterCol
-            if(root.has("tileCenterCol")){
-                world.setTileCenterColor(hexToCol(root.getString("tileCenterCol")));
+    private void readPathColDefs(JSONStreamReader reader, World world) throws IOException {
+        reader.beginArray();
+        while(reader.hasNext()){
+            String path = null, col = null;
+            reader.beginObject();
+            while(reader.hasNext()){
+                switch(reader.nextName()){
+                    case "path": path = reader.nextString(); break;
+                    case "col": col = reader.nextString(); break;
+                    default: reader.skipValue(); break;
+                }
             }
+            reader.endObject();
+            if(path != null && col != null) world.setPathColor(path, hexToCol(col));
+        }
+        reader.endArray();
+    }
 
-            // pathCol
-            if(root.has("pathCol")){
-                world.setPathColor(hexToCol(root.getString("pathCol")));
+    private void readHome(JSONStreamReader reader, World world) throws IOException {
+        Integer l = null;
+        Double x = null, y = null;
+        reader.beginObject();
+        while(reader.hasNext()){
+            switch(reader.nextName()){
+                case "l": l = reader.nextInt(); break;
+                case "x": x = reader.nextDouble(); break;
+                case "y": y = reader.nextDouble(); break;
+                default: reader.skipValue(); break;
             }
+        }
+        reader.endObject();
+        if(l != null && x != null && y != null) world.setHome(new WorldCoordinate(l, x, y));
+    }
 
-            // pathColNonCardinal
-            if(root.has("pathColNonCardinal")){
-                world.setPathColorNstd(hexToCol(root.getString("pathColNonCardinal")));
+    private void readRiskLevels(JSONStreamReader reader, ReadState state) throws IOException {
+        // remove existing risk levels
+        state.world.getRiskLevels().clear();
+
+        reader.beginArray();
+        while(reader.hasNext()){
+            Integer id = null;
+            String desc = null, col = null;
+            reader.beginObject();
+            while(reader.hasNext()){
+                switch(reader.nextName()){
+                    case "id": id = reader.nextInt(); break;
+                    case "desc": desc = reader.nextString(); break;
+                    case "col": col = reader.nextString(); break;
+                    default: reader.skipValue(); break;
+                }
+            }
+            reader.endObject();
+            if(id != null && desc != null && col != null){
+                state.world.setRiskLevel(new RiskLevel(id, desc, hexToCol(col)));
             }
+        }
+        reader.endArray();
+        state.riskLevelsRead = true;
+    }
 
-            // pathColDefs
-            if(root.has("pathColDefs")){
-                JSONArray pathColDefs = root.getJSONArray("pathColDefs");
-                Integer length = pathColDefs.length();
-                for(Integer i = 0; i < length; ++i){
-                    JSONObject pathColDef = pathColDefs.getJSONObject(i);
-                    if(pathColDef.has("path")
-                            && pathColDef.has("col")){
-                        world.setPathColor(pathColDef.getString("path"),
-                                hexToCol(pathColDef.getString("col")));
-                    }
+    private void readAreas(JSONStreamReader reader, ReadState state) throws IOException {
+        reader.beginArray();
+        while(reader.hasNext()){
+            Integer id = null;
+            String name = null, col = null;
+            reader.beginObject();
+            while(reader.hasNext()){
+                switch(reader.nextName()){
+                    case "id": id = reader.nextInt(); break;
+                    case "name": name = reader.nextString(); break;
+                    case "col": col = reader.nextString(); break;
+                    default: reader.skipValue(); break;
                 }
             }
+            reader.endObject();
+            if(id != null && name != null && col != null){
+                PlaceGroup a = new PlaceGroup(name, hexToCol(col));
+                state.areas.put(id, a);
+                state.world.addPlaceGroup(a);
+            }
+        }
+        reader.endArray();
+        state.areasRead = true;
+    }
 
-            // home
-            if(root.has("home")){
-                JSONObject home = root.getJSONObject("home");
-                if(home.has("l") && home.has("x") && home.has("y")){
-                    Integer l = home.getInt("l");
-                    Double x = home.getDouble("x");
-                    Double y = home.getDouble("y");
-                    world.setHome(new WorldCoordinate(l, x, y));
+    private void readLayers(JSONStreamReader reader, ReadState state) throws Exception {
+        reader.beginArray();
+        while(reader.hasNext()){
+            Integer id = null, centerX = null, centerY = null;
+            String name = null;
+            reader.beginObject();
+            while(reader.hasNext()){
+                switch(reader.nextName()){
+                    case "id": id = reader.nextInt(); break;
+                    case "centerX": centerX = reader.nextInt(); break;
+                    case "centerY": centerY = reader.nextInt(); break;
+                    case "name": name = reader.nextString(); break;
+                    default: reader.skipValue(); break;
                 }
             }
+            reader.endObject();
+            if(id != null){
+                // create layer
+                Layer l = new Layer(id, state.world);
+                // set quadtree center
+                if(centerX != null && centerY != null) l.setQuadtree(centerX, centerY);
+                // set layer name
+                if(name != null) l.setName(name);
+                state.world.addLayer(l);
+            }
+        }
+        reader.endArray();
+        state.layersRead = true;
 
-            // riskLevels
-            if(root.has("riskLevels")){
-                // remove existing risk levels
-                world.getRiskLevels().clear();
-
-                JSONArray riskLevels = root.getJSONArray("riskLevels");
-                Integer length = riskLevels.length();
-                for(Integer i = 0; i < length; ++i){
-                    JSONObject riskLevel = riskLevels.getJSONObject(i);
-                    if(riskLevel.has("id")
-                            && riskLevel.has("desc")
-                            && riskLevel.has("col")){
-                        Integer id = riskLevel.getInt("id");
-                        String desc = riskLevel.getString("desc");
-                        Color col = hexToCol(riskLevel.getString("col"));
-                        world.setRiskLevel(new RiskLevel(id, desc, col));
-                    }
-                }
+        // places that were read before the layers
+        if(lazyLayers) return;
+        for(Place place: state.pendingPlaces){
+            state.world.putPlace(place, state.pendingPlaceLayers.get(place), place.getX(), place.getY());
+        }
+        state.pendingPlaces.clear();
+        state.pendingPlaceLayers.clear();
+    }
+
+    /**
+     * Reads the string table, it has to be read before the places and paths
+     * @param reader
+     * @param state
+     * @throws IOException
+     */
+    private void readStrings(JSONStreamReader reader, ReadState state) throws IOException {
+        ArrayList<String> table = new ArrayList<>();
+        reader.beginArray();
+        while(reader.hasNext()) table.add(state.strings.pool.intern(reader.nextString()));
+        reader.endArray();
+        state.strings.table = table.toArray(new String[table.size()]);
+    }
+
+    /**
+     * Reads the places in two phases. The places array is split into chunks
+     * of raw JSON text, which are decoded to places in parallel. Then the
+     * places are inserted into the world in file order, so that the world
+     * equals a sequentially loaded world
+     * @param reader
+     * @param state
+     * @throws Exception
+     */
+    private void readPlaces(JSONStreamReader reader, ReadState state) throws Exception {
+        ArrayList<Future<ArrayList<PlaceRecord>>> chunks = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+
+        // phase 1: split the array, the chunks are decoded meanwhile
+        reader.beginArray();
+        while(reader.hasNext()){
+            chunk.append(chunk.length() == 0 ? '[' : ',');
+            reader.nextRawValue(chunk);
+            if(chunk.length() >= PLACE_CHUNK_SIZE){
+                chunks.add(decodePlaces(chunk.append(']').toString(), state.strings, chunks.isEmpty() && !reader.hasNext()));
+                chunk.setLength(0);
             }
+        }
+        reader.endArray();
+        if(chunk.length() > 0){
+            chunks.add(decodePlaces(chunk.append(']').toString(), state.strings, chunks.isEmpty()));
+        }
 
-            // areaArray
-            HashMap<Integer, PlaceGroup> areas = new HashMap<>();
-
-            if(root.has("areas")){
-                JSONArray areaArray = root.getJSONArray("areas");
-                Integer length = areaArray.length();
-                for(Integer i = 0; i < length; ++i){
-                    JSONObject area = areaArray.getJSONObject(i);
-                    if(area.has("id")
-                            && area.has("name")
-                            && area.has("col")){
-                        Integer id = area.getInt("id");
-                        String name = area.getString("name");
-                        Color col = hexToCol(area.getString("col"));
-
-                        PlaceGroup a = new PlaceGroup(name, col);
-                        areas.put(id, a);
-                        world.addPlaceGroup(a);
-                    }
+        // phase 2: insert the places in file order
+        for(Future<ArrayList<PlaceRecord>> future: chunks){
+            ArrayList<PlaceRecord> records;
+            try {
+                records = future.get();
+            } catch (ExecutionException ex) {
+                if(ex.getCause() instanceof Exception) throw (Exception) ex.getCause();
+                throw ex;
+            }
+
+            for(PlaceRecord record: records){
+                Place p = record.place;
+                // area
+                if(record.area != null){
+                    if(state.areasRead) p.setPlaceGroup(state.areas.get(record.area));
+                    else state.pendingAreas.put(p, record.area);
+                }
+                // risk level
+                if(record.risk != null){
+                    if(state.riskLevelsRead) p.setRiskLevel(state.world.getRiskLevel(record.risk));
+                    else state.pendingRiskLevels.put(p, record.risk);
+                }
+                // children
+                if(record.children != null) state.childrenMapping.put(p, record.children);
+
+                if(state.layersRead && !lazyLayers){
+                    state.world.putPlace(p, record.layer, p.getX(), p.getY());
+                } else {
+                    state.pendingPlaces.add(p);
+                    state.pendingPlaceLayers.put(p, record.layer);
                 }
             }
+        }
+        state.placesRead = true;
+    }
 
-            // layers
-            if(root.has("layers")){
-                JSONArray layers = root.getJSONArray("layers");
-                Integer length = layers.length();
-                for(Integer i = 0; i < length; ++i){
-                    JSONObject layer = layers.getJSONObject(i);
-                    if(layer.has("id")){
-                        Integer id = layer.getInt("id");
-                        // create layer
-                        Layer l = new Layer(id, world);
-
-                        if(layer.has("centerX") && layer.has("centerY")){
-                            // set quadtree center
-                            Integer centerX = layer.getInt("centerX");
-                            Integer centerY = layer.getInt("centerY");
-                            l.setQuadtree(centerX, centerY);
-                        }
-                        if(layer.has("name")){
-                            // set layer name
-                            l.setName(layer.getString("name"));
-                        }
-                        world.addLayer(l);
+    /**
+     * Decodes a chunk of places in the fork/join pool
+     * @param chunk JSON array of places
+     * @param strings string table and pool
+     * @param inline decode on the current thread, eg. if it's the only chunk
+     * @return decoded places
+     */
+    private static Future<ArrayList<PlaceRecord>> decodePlaces(final String chunk, final Strings strings, boolean inline){
+        Callable<ArrayList<PlaceRecord>> task = new Callable<ArrayList<PlaceRecord>>() {
+            @Override
+            public ArrayList<PlaceRecord> call() throws Exception {
+                ArrayList<PlaceRecord> ret = new ArrayList<>();
+                try (JSONStreamReader reader = new JSONStreamReader(new StringReader(chunk))) {
+                    reader.beginArray();
+                    while(reader.hasNext()){
+                        PlaceRecord record = readPlace(reader, strings);
+                        if(record != null) ret.add(record);
                     }
+                    reader.endArray();
                 }
+                return ret;
             }
+        };
 
-            // places
-            HashMap<Place, HashSet<Integer>> childrenMapping = new HashMap<>();
-            //HashMap<Place, HashSet<Integer>> parentMapping = new HashMap<>();
-
-            if(root.has("places")){
-                JSONArray places = root.getJSONArray("places");
-                Integer length = places.length();
-                for(Integer i = 0; i < length; ++i){
-                    JSONObject place = places.getJSONObject(i);
-                    if(place.has("id")
-                            && place.has("n")
-                            && place.has("l")
-                            && place.has("x")
-                            && place.has("y")){
-                        Integer id = place.getInt("id");
-                        String name = place.getString("n");
-                        Integer layer = place.getInt("l");
-                        Integer x = place.getInt("x");
-                        Integer y = place.getInt("y");
-                        // create place
-                        Place p = new Place(id, name, x, y, world.getLayer(layer));
-
-                        // area
-                        if(place.has("a")){
-                            Integer area = place.getInt("a");
-                            p.setPlaceGroup(areas.get(area));
-                        }
-                        // risk level
-                        if(place.has("r")){
-                            Integer risk = place.getInt("r");
-                            p.setRiskLevel(world.getRiskLevel(risk));
-                        }
-                        // rec level
-                        if(place.has("lvlMin")){
-                            Integer lvlMin = place.getInt("lvlMin");
-                            p.setRecLevelMin(lvlMin);
-                        }
-                        if(place.has("lvlMax")){
-                            Integer lvlMax = place.getInt("lvlMax");
-                            p.setRecLevelMin(lvlMax);
-                        }
+        if(inline || !parallelLoading){
+            FutureTask<ArrayList<PlaceRecord>> future = new FutureTask<>(task);
+            future.run();
+            return future;
+        }
+        return getPool().submit(task);
+    }
+
+    /**
+     * Decodes a place, without inserting it into the world. Areas, risk
+     * levels and children are resolved later
+     * @param reader
+     * @param strings string table and pool
+     * @return place or null, if the place is incomplete
+     * @throws IOException
+     */
+    private static PlaceRecord readPlace(JSONStreamReader reader, Strings strings) throws IOException {
+        Integer id = null, layer = null, x = null, y = null;
+        Integer area = null, risk = null, lvlMin = null, lvlMax = null;
+        String name = null;
+        HashSet<Integer> children = null;
+        ArrayList<String> flags = null, comments = null;
+
+        reader.beginObject();
+        while(reader.hasNext()){
+            switch(reader.nextName()){
+                case "id": id = reader.nextInt(); break;
+                case "n": name = strings.read(reader); break;
+                case "l": layer = reader.nextInt(); break;
+                case "x": x = reader.nextInt(); break;
+                case "y": y = reader.nextInt(); break;
+                case "a": area = reader.nextInt(); break;
+                case "r": risk = reader.nextInt(); break;
+                case "lvlMin": lvlMin = reader.nextInt(); break;
+                case "lvlMax": lvlMax = reader.nextInt(); break;
+                case "c":
+                    children = new HashSet<>();
+                    reader.beginArray();
+                    while(reader.hasNext()) children.add(reader.nextInt());
+                    reader.endArray();
+                    break;
+                case "f":
+                    flags = new ArrayList<>();
+                    reader.beginArray();
+                    while(reader.hasNext()) flags.add(strings.read(reader));
+                    reader.endArray();
+                    break;
+                case "co":
+                    comments = new ArrayList<>();
+                    reader.beginArray();
+                    while(reader.hasNext()) comments.add(strings.read(reader));
+                    reader.endArray();
+                    break;
+                // parents are implicitly defined by children relations
+                default: reader.skipValue(); break;
+            }
+        }
+        reader.endObject();
 
-                        // children
-                        if(place.has("c")){
-                            JSONArray children = place.getJSONArray("c");
-                            HashSet<Integer> set = new HashSet<>();
-                            childrenMapping.put(p, set);
+        if(id == null || name == null || layer == null || x == null || y == null) return null;
 
-                            Integer lc = children.length();
-                            for(Integer c = 0; c < lc; ++c){
-                                set.add(children.getInt(c));
-                            }
-                        }
+        // create place, it isn't in a world yet, so no listeners are called
+        Place p = new Place(id, name, x, y, null);
+        // rec level
+        if(lvlMin != null) p.setRecLevelMin(lvlMin);
+        if(lvlMax != null) p.setRecLevelMax(lvlMax);
+        // flags
+        if(flags != null) for(String flag: flags) p.setFlag(flag, true);
+        // comments
+        if(comments != null) for(String comment: comments) p.addComment(comment);
 
-                        // parents
-                        /* don't need to read parents: implicitly defined by children relations
-                        if(place.has("p")){
-                            JSONArray parents = place.getJSONArray("p");
-                            HashSet<Integer> set = new HashSet<>();
-                            parentMapping.putPlace(p, set);
-
-                            Integer lp = parents.length();
-                            for(Integer pa = 0; pa < lp; ++pa){
-                                set.add(parents.getInt(pa));
-                            }
-                        }*/
-
-                        // flags
-                        if(place.has("f")){
-                            JSONArray flags = place.getJSONArray("f");
-                            Integer lf = flags.length();
-                            for(Integer f = 0; f < lf; ++f){
-                                String flagname = flags.getString(f);
-                                p.setFlag(flagname, true);
-                            }
-                        }
+        return new PlaceRecord(p, layer, area, risk, children);
+    }
 
-                        // comments
-                        if(place.has("co")){
-                            JSONArray comments = place.getJSONArray("co");
-                            Integer lc = comments.length();
-                            for(Integer c = 0; c < lc; ++c){
-                                p.addComment(comments.getString(c));
-                            }
-                        }
+    /**
+     * Gets the pool that decodes places
+     * @return pool
+     */
+    private static synchronized ForkJoinPool getPool(){
+        if(pool == null) pool = new ForkJoinPool();
+        return pool;
+    }
 
-                        world.putPlace(p);
+    /**
+     * Enables or disables decoding places in parallel
+     * @param parallel false to read places on the reading thread only
+     */
+    public static void setParallelLoading(boolean parallel){
+        parallelLoading = parallel;
+    }
+
+    /**
+     * Decoded place and the references that are resolved while inserting it
+     */
+    private static class PlaceRecord {
+        final Place place;
+        final Integer layer, area, risk;
+        final HashSet<Integer> children;
+
+        PlaceRecord(Place place, Integer layer, Integer area, Integer risk, HashSet<Integer> children){
+            this.place = place;
+            this.layer = layer;
+            this.area = area;
+            this.risk = risk;
+            this.children = children;
+        }
+    }
+
+    private void readPaths(JSONStreamReader reader, ReadState state) throws IOException {
+        reader.beginArray();
+        while(reader.hasNext()){
+            ArrayList<Integer> placeIds = new ArrayList<>(2);
+            ArrayList<String> exits = new ArrayList<>(2);
+
+            reader.beginArray();
+            while(reader.hasNext()){
+                Integer p = null;
+                String e = null;
+                reader.beginObject();
+                while(reader.hasNext()){
+                    switch(reader.nextName()){
+                        case "p": p = reader.nextInt(); break;
+                        case "e": e = state.strings.read(reader); break;
+                        default: reader.skipValue(); break;
                     }
                 }
-            }
-
-            // connect children
-            for(Entry<Place, HashSet<Integer>> entry: childrenMapping.entrySet()){
-                Place place = entry.getKey();
-                for(Integer id: entry.getValue()){
-                    place.connectChild(world.getPlace(id));
+                reader.endObject();
+                if(p != null && e != null){
+                    placeIds.add(p);
+                    exits.add(e);
                 }
             }
+            reader.endArray();
 
-            // paths
-            if(root.has("paths")){
-                JSONArray paths = root.getJSONArray("paths");
-                Integer length = paths.length();
-                for(Integer i = 0; i < length; ++i){
-                    JSONArray path = paths.getJSONArray(i);
-                    if(path.length() == 2){
-                        JSONObject p0 = path.getJSONObject(0);
-                        JSONObject p1 = path.getJSONObject(1);
-                        if(p0.has("p") && p0.has("e")
-                                && p1.has("p") && p1.has("e")){
-                            Place pl0 = world.getPlace(p0.getInt("p"));
-                            Place pl1 = world.getPlace(p1.getInt("p"));
-                            if(pl0 != null && pl1 != null){
-                                Path p = new Path(pl0, p0.getString("e"),
-                                        pl1, p1.getString("e"));
-                                pl0.connectPath(p);
-                            }
-                        }
-                    }
-                }
+            if(placeIds.size() == 2){
+                PendingPath path = new PendingPath(placeIds.get(0), exits.get(0), placeIds.get(1), exits.get(1));
+                if(state.placesRead && state.pendingPlaces.isEmpty()) path.connect(state.world);
+                else state.pendingPaths.add(path);
             }
+        }
+        reader.endArray();
+    }
 
-            // labels
-            if(root.has("labels")){
-                JSONArray labels = root.getJSONArray("labels");
-                Integer length = labels.length();
-                for(Integer i = 0; i < length; ++i){
-                    JSONObject label = labels.getJSONObject(i);
-                    if(label.has("x")
-                            && label.has("y")
-                            && label.has("l")
-                            && label.has("fontSize")
-                            && label.has("t")){
-                        Double x = label.getDouble("x");
-                        Double y = label.getDouble("y");
-                        Layer l = world.getLayer(label.getInt("l"));
-                        Double fontSize = label.getDouble("fontSize");
-                        String text = label.getString("t");
-                        if(l != null){
-                            world.addLabel(new Label(text, x, y, l, fontSize));
-                        }
-                    }
+    private void readLabels(JSONStreamReader reader, ReadState state) throws IOException {
+        reader.beginArray();
+        while(reader.hasNext()){
+            Double x = null, y = null, fontSize = null;
+            Integer l = null;
+            String text = null;
+            reader.beginObject();
+            while(reader.hasNext()){
+                switch(reader.nextName()){
+                    case "x": x = reader.nextDouble(); break;
+                    case "y": y = reader.nextDouble(); break;
+                    case "l": l = reader.nextInt(); break;
+                    case "fontSize": fontSize = reader.nextDouble(); break;
+                    case "t": text = reader.nextString(); break;
+                    default: reader.skipValue(); break;
                 }
             }
-
-            // remember meta data for WorldTab
-            if(root.has("meta")) metaData = root.getJSONObject("meta");
-
-        } catch(JSONException ex) {
-            System.out.println(ex.getLocalizedMessage());
-            throw new WorldFileReadError(filename, ex.getLocalizedMessage(), ex);
+            reader.endObject();
+            if(x != null && y != null && l != null && fontSize != null && text != null){
+                state.pendingLabels.add(new Object[]{text, x, y, l, fontSize});
+            }
         }
-
-        return world;
+        reader.endArray();
     }
 
     /**
@@ -449,228 +786,438 @@ public class WorldFileJSON extends WorldFile {
     }
 
     /**
-     * Write world to file
+     * Write world to file. The world is written directly to a buffered UTF-8
+     * stream, the file version and world name are written first. If
+     * compression is enabled, the stream is compressed while writing
      * @param world
      * @throws java.io.IOException
      */
     @Override
     public void writeFile(World world) throws IOException {
-        JSONObject root = new JSONObject();
+        // the old file is only replaced, if the world could be written
+        AtomicFile file = new AtomicFile(filename);
+        try {
+            try (JSONStreamWriter writer = new JSONStreamWriter(new BufferedWriter(
+                    new OutputStreamWriter(compression.wrap(new FileOutputStream(file.getTempFile()), compressionLevel),
+                            StandardCharsets.UTF_8)))) {
+                writeWorld(writer, world);
+            }
+            file.setCommitHandler(commitHandler);
+            file.commit();
+        } catch (IOException | RuntimeException ex){
+            file.abort();
+            throw ex;
+        } finally {
+            synchronized(this){
+                header = null;
+            }
+        }
+    }
 
-        // metaWriter data
-        // mudmap version
-        String mudmapVer = getClass().getPackage().getImplementationVersion();
-        if(mudmapVer != null)
-            root.put("mudmapVer", getClass().getPackage().getImplementationVersion());
-        else
-            root.put("mudmapVer", "dev");
+    /**
+     * Writes a world
+     * @param writer
+     * @param world
+     * @throws IOException
+     */
+    private void writeWorld(JSONStreamWriter writer, World world) throws IOException {
+        // strings that occur several times
+        ArrayList<String> stringTable = new ArrayList<>();
+        HashMap<String, Integer> strings = buildStringTable(world.getPlaces(), stringTable);
 
-        // file version
-        root.put("fileVer", versionMajor + "." + versionMinor);
+        writer.beginObject();
 
+        // file version, older versions can read files without string table
+        if(stringTable.isEmpty()) writer.name("fileVer").value(VERSION_MAJOR_NO_STRINGS + "." + VERSION_MINOR_NO_STRINGS);
+        else writer.name("fileVer").value(versionMajor + "." + versionMinor);
         // world name
-        root.put("worldName", world.getName());
+        if(world.getName() != null) writer.name("worldName").value(world.getName());
+        // sizes for the world catalog, only non-empty layers are written
+        int layerCount = 0;
+        for(Layer layer: world.getLayers()){
+            if(!layer.getPlaces().isEmpty()) ++layerCount;
+        }
+        writer.name("placeCount").value(world.getPlaces().size());
+        writer.name("layerCount").value(layerCount);
 
-        root.put("showPlaceID", world.getShowPlaceId());
+        // metaWriter data
+        // mudmap version
+        String mudmapVer = getClass().getPackage().getImplementationVersion();
+        writer.name("mudmapVer").value(mudmapVer != null ? mudmapVer : "dev");
+
+        writer.name("showPlaceID").value(world.getShowPlaceId().toString());
 
         // tile center color
         if(world.getTileCenterColor() != null)
-            root.put("tileCenterCol", colToHex(world.getTileCenterColor()));
+            writer.name("tileCenterCol").value(colToHex(world.getTileCenterColor()));
         // cardinal and non cardinal path color
         if(world.getPathColor() != null)
-            root.put("pathCol", colToHex(world.getPathColor()));
+            writer.name("pathCol").value(colToHex(world.getPathColor()));
         if(world.getPathColorNstd() != null)
-        root.put("pathColNonCardinal", colToHex(world.getPathColorNstd()));
+            writer.name("pathColNonCardinal").value(colToHex(world.getPathColorNstd()));
         // other path colors
-        JSONArray pathColorsArray = new JSONArray();
-        root.put("pathColDefs", pathColorsArray);
+        writer.name("pathColDefs").beginArray();
         for(Map.Entry<String, Color> pathCol: world.getPathColors().entrySet()){
             if(pathCol.getValue() != null){
-                JSONObject pathColObj = new JSONObject();
-                pathColObj.put("path", pathCol.getKey());
-                pathColObj.put("col", colToHex(pathCol.getValue()));
-                pathColorsArray.put(pathColObj);
+                writer.beginObject();
+                writer.name("path").value(pathCol.getKey());
+                writer.name("col").value(colToHex(pathCol.getValue()));
+                writer.endObject();
             }
         }
+        writer.endArray();
 
         // risk level colors
-        JSONArray riskLevelColors = new JSONArray();
-        root.put("riskLevels", riskLevelColors);
+        writer.name("riskLevels").beginArray();
         for(RiskLevel rlc: world.getRiskLevels()){
-            JSONObject rlo = new JSONObject();
-            rlo.put("id", rlc.getId());
-            rlo.put("desc", rlc.getDescription());
-            rlo.put("col", colToHex(rlc.getColor()));
-            riskLevelColors.put(rlo);
+            writer.beginObject();
+            writer.name("id").value(rlc.getId());
+            writer.name("desc").value(rlc.getDescription());
+            writer.name("col").value(colToHex(rlc.getColor()));
+            writer.endObject();
         }
+        writer.endArray();
 
         // areaArray
-        // create IDs for areaArray
+        // create IDs for used areas
+        HashSet<PlaceGroup> usedAreas = new HashSet<>();
+        for(Place place: world.getPlaces()){
+            if(place.getPlaceGroup() != null) usedAreas.add(place.getPlaceGroup());
+        }
         HashMap<PlaceGroup, Integer> areaIDs = new HashMap<>();
         Integer cnt = 0; // incremental id
-        for(PlaceGroup a: world.getPlaceGroups()){
-            Boolean inUse = false;
-            // removePlace unused
-            for(Place place: world.getPlaces()){
-                if(place.getPlaceGroup() == a){
-                    inUse = true;
-                    break;
-                }
-            }
-            if(inUse) areaIDs.put(a, ++cnt);
-        }
-
-        // add areaArray
-        JSONArray areas = new JSONArray();
-        root.put("areas", areas);
+        writer.name("areas").beginArray();
         for(PlaceGroup area: world.getPlaceGroups()){
-            JSONObject areaObj = new JSONObject();
-            areaObj.put("id", areaIDs.get(area));
-            areaObj.put("name", area.getName());
-            areaObj.put("col", colToHex(area.getColor()));
-            areas.put(areaObj);
+            if(usedAreas.contains(area)){
+                areaIDs.put(area, ++cnt);
+                writer.beginObject();
+                writer.name("id").value(cnt);
+                writer.name("name").value(area.getName());
+                writer.name("col").value(colToHex(area.getColor()));
+                writer.endObject();
+            }
         }
+        writer.endArray();
 
         // helper to assign new layer ids
         Integer nextLayerID = 0;
         layerIDs = new HashMap<>();
 
         // layers (for quadtree optimization
-        JSONArray layers = new JSONArray();
-        root.put("layers", layers);
+        writer.name("layers").beginArray();
         for(Layer layer: world.getLayers()){
             if(!layer.getPlaces().isEmpty()){
-                JSONObject layerObj = new JSONObject();
-
                 // add layer to id map
                 Integer layerID = nextLayerID++;
                 layerIDs.put(layer.getId(), layerID);
 
-                layerObj.put("id", layerID);
-                layerObj.put("centerX", layer.getCenterX());
-                layerObj.put("centerY", layer.getCenterY());
-                if(layer.hasName()) layerObj.put("name", layer.getName());
-
-                layers.put(layerObj);
+                writer.beginObject();
+                writer.name("id").value(layerID);
+                writer.name("centerX").value(layer.getCenterX());
+                writer.name("centerY").value(layer.getCenterY());
+                if(layer.hasName()) writer.name("name").value(layer.getName());
+                writer.endObject();
             }
         }
+        writer.endArray();
 
-        // places
-        JSONArray places = new JSONArray();
-        root.put("places", places);
-        for(Place place: world.getPlaces()){
-            JSONObject placeObj = new JSONObject();
-
-            placeObj.put("id", place.getId());
-            placeObj.put("n", place.getName());
-            placeObj.put("l", translateLayerID(place.getLayer().getId()));
-            placeObj.put("x", place.getX());
-            placeObj.put("y", place.getY());
-
-            if(place.getPlaceGroup() != null) placeObj.put("a", areaIDs.get(place.getPlaceGroup()));
-            if(place.getRiskLevel() != null) placeObj.put("r", place.getRiskLevel().getId());
-            if(place.getRecLevelMin() > -1) placeObj.put("lvlMin", place.getRecLevelMin());
-            if(place.getRecLevelMax() > -1) placeObj.put("lvlMax", place.getRecLevelMax());
-
-            // child places
-            if(!place.getChildren().isEmpty()){
-                JSONArray children = new JSONArray();
-                placeObj.put("c", children);
-                for(Place child: place.getChildren()){
-                    children.put(child.getId());
-                }
-            }
+        // string table, has to be written before the places and paths
+        if(!stringTable.isEmpty()){
+            writer.name("strings").beginArray();
+            for(String string: stringTable) writer.value(string);
+            writer.endArray();
+        }
 
-            // parent places
-            if(!place.getParents().isEmpty()){
-                JSONArray parents = new JSONArray();
-                placeObj.put("p", parents);
-                for(Place parent: place.getParents()){
-                    parents.put(parent.getId());
-                }
-            }
+        // places and paths
+        writePlacesAndPaths(writer, world.getPlaces(), areaIDs, strings);
 
-            // flags
-            if(!place.getFlags().isEmpty()){
-                JSONArray flags = new JSONArray();
-                placeObj.put("f", flags);
-                for(Map.Entry<String, Boolean> flag: place.getFlags().entrySet()){
-                    if(flag.getValue()) flags.put(flag.getKey());
-                }
+        // home position
+        WorldCoordinate home = world.getHome();
+        writer.name("home").beginObject();
+        // layer id is unknown, if the home layer is empty
+        Integer homeLayer = translateLayerID(home.getLayer());
+        if(homeLayer != null) writer.name("l").value(homeLayer);
+        writer.name("x").value(home.getX());
+        writer.name("y").value(home.getY());
+        writer.endObject();
+
+        // text laels
+        Label[] labelsArray = world.getLabels();
+        if(labelsArray != null && labelsArray.length > 0){
+            writer.name("labels").beginArray();
+            for(Label label: labelsArray){
+                writer.beginObject();
+                writer.name("x").value(label.getX());
+                writer.name("y").value(label.getY());
+                writer.name("l").value(translateLayerID(label.getLayer().getId()));
+                writer.name("fontSize").value(label.getFontSize());
+                writer.name("t").value(label.getText());
+                writer.endObject();
             }
+            writer.endArray();
+        }
 
-            // comments
-            if(!place.getComments().isEmpty()){
-                JSONArray comments = new JSONArray();
-                placeObj.put("co", comments);
-                int idx = 0;
-                for(String comment: place.getComments()){
-                    comments.put(idx++, comment);
+        // add metaWriter data from WorldTab
+        if(metaWriter != null){
+            JSONObject meta = metaWriter.getMeta(layerIDs);
+            if(meta != null) writer.name("meta").value(meta);
+        }
+
+        writer.endObject();
+    }
+
+    /**
+     * Writes the places and paths. The places are split into ranges that are
+     * encoded in parallel, each range with the paths it writes first. The
+     * buffers are concatenated in place order, so that the output is the
+     * same as if the places were written one after another
+     * @param writer
+     * @param places places ordered by id
+     * @param areaIDs area ids of the file
+     * @param strings indices of the string table
+     * @throws IOException
+     */
+    private void writePlacesAndPaths(JSONStreamWriter writer, Collection<Place> places,
+            final HashMap<PlaceGroup, Integer> areaIDs, final HashMap<String, Integer> strings) throws IOException {
+        final ArrayList<Place> placeList = new ArrayList<>(places);
+        boolean parallel = parallelSaving && placeList.size() > PLACE_WRITE_CHUNK_SIZE;
+        // number of encoded places, for the progress
+        final AtomicInteger encoded = new AtomicInteger();
+
+        ArrayList<Future<String[]>> chunks = new ArrayList<>();
+        for(int i = 0; i < placeList.size(); i += PLACE_WRITE_CHUNK_SIZE){
+            final List<Place> range = placeList.subList(i, Math.min(placeList.size(), i + PLACE_WRITE_CHUNK_SIZE));
+            Callable<String[]> task = new Callable<String[]>() {
+                @Override
+                public String[] call() throws Exception {
+                    String[] ret = encodePlacesAndPaths(range, areaIDs, strings);
+                    reportProgress(encoded.addAndGet(range.size()), placeList.size());
+                    return ret;
                 }
+            };
+
+            if(parallel){
+                chunks.add(getPool().submit(task));
+            } else {
+                FutureTask<String[]> future = new FutureTask<>(task);
+                future.run();
+                chunks.add(future);
             }
+        }
 
-            places.put(placeObj);
+        try {
+            writer.name("places").beginArray();
+            for(Future<String[]> chunk: chunks) writer.rawValues(chunk.get()[0]);
+            writer.endArray();
+
+            writer.name("paths").beginArray();
+            for(Future<String[]> chunk: chunks) writer.rawValues(chunk.get()[1]);
+            writer.endArray();
+        } catch (InterruptedException ex) {
+            for(Future<String[]> chunk: chunks) chunk.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            if(ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            if(ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IOException(ex.getCause());
         }
+    }
 
-        // paths
-        JSONArray pathsArray = new JSONArray();
-        root.put("paths", pathsArray);
-        HashSet<Path> paths = new HashSet<>(); // paths that have already been added
-        for(Place place: world.getPlaces()){
+    /**
+     * Encodes a range of places and the paths that are written at these
+     * places. A path is written at the first of its places in id order
+     * @param places places ordered by id
+     * @param areaIDs area ids of the file
+     * @param strings indices of the string table
+     * @return comma separated places and paths
+     * @throws IOException
+     */
+    private String[] encodePlacesAndPaths(List<Place> places, HashMap<PlaceGroup, Integer> areaIDs,
+            HashMap<String, Integer> strings) throws IOException {
+        StringWriter placeBuffer = new StringWriter();
+        JSONStreamWriter placeWriter = new JSONStreamWriter(placeBuffer);
+        placeWriter.beginArray();
+        for(Place place: places) writePlace(placeWriter, place, areaIDs, strings);
+
+        StringWriter pathBuffer = new StringWriter();
+        JSONStreamWriter pathWriter = new JSONStreamWriter(pathBuffer);
+        pathWriter.beginArray();
+        for(Place place: places){
             for(Path path: place.getPaths()){
-                if(!paths.contains(path)){
-                    JSONArray pathObj = new JSONArray();
+                if(isFirstPlace(path, place)) writePath(pathWriter, path, strings);
+            }
+        }
 
-                    JSONObject p1 = new JSONObject();
-                    p1.put("p", path.getPlaces()[0].getId());
-                    p1.put("e", path.getExit(path.getPlaces()[0]));
-                    pathObj.put(p1);
+        // remove the opening brackets
+        return new String[]{placeBuffer.getBuffer().substring(1), pathBuffer.getBuffer().substring(1)};
+    }
 
-                    JSONObject p2 = new JSONObject();
-                    p2.put("p", path.getPlaces()[1].getId());
-                    p2.put("e", path.getExit(path.getPlaces()[1]));
-                    pathObj.put(p2);
+    /**
+     * Checks whether a path is written at a place, that is if none of its
+     * places with a lower id has the path
+     * @param path
+     * @param place
+     * @return true, if the path is written at the place
+     */
+    private static boolean isFirstPlace(Path path, Place place){
+        for(Place pl: path.getPlaces()){
+            if(pl.getId() < place.getId() && pl.getPaths().contains(path)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a path
+     * @param writer
+     * @param path
+     * @param strings indices of the string table
+     * @throws IOException
+     */
+    private void writePath(JSONStreamWriter writer, Path path, HashMap<String, Integer> strings) throws IOException {
+        writer.beginArray();
+        for(Place pl: path.getPlaces()){
+            writer.beginObject();
+            writer.name("p").value(pl.getId());
+            writer.name("e");
+            writeString(writer, path.getExit(pl), strings);
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Writes a string or its index in the string table
+     * @param writer
+     * @param string
+     * @param strings indices of the string table
+     * @throws IOException
+     */
+    private static void writeString(JSONStreamWriter writer, String string, HashMap<String, Integer> strings) throws IOException {
+        Integer index = string != null ? strings.get(string) : null;
+        if(index != null) writer.value(index);
+        else writer.value(string);
+    }
 
-                    pathsArray.put(pathObj);
-                    paths.add(path);
+    /**
+     * Collects the place names, exits, flags and comments that occur several
+     * times. Frequent strings get low indices. A string is only added if the
+     * table makes the file smaller
+     * @param places
+     * @param table list that gets the strings of the table
+     * @return string indices
+     */
+    private static HashMap<String, Integer> buildStringTable(Collection<Place> places, ArrayList<String> table){
+        final HashMap<String, int[]> counts = new HashMap<>();
+        for(Place place: places){
+            countString(counts, place.getName());
+            for(Map.Entry<String, Boolean> flag: place.getFlags().entrySet()){
+                if(flag.getValue()) countString(counts, flag.getKey());
+            }
+            for(String comment: place.getComments()) countString(counts, comment);
+            for(Path path: place.getPaths()){
+                if(isFirstPlace(path, place)){
+                    for(Place pl: path.getPlaces()) countString(counts, path.getExit(pl));
                 }
             }
         }
 
-        // home position
-        WorldCoordinate home = world.getHome();
-        JSONObject obj = new JSONObject();
-        obj.put("l", translateLayerID(home.getLayer()));
-        obj.put("x", home.getX());
-        obj.put("y", home.getY());
-        root.put("home", obj);
+        ArrayList<String> candidates = new ArrayList<>();
+        for(Map.Entry<String, int[]> entry: counts.entrySet()){
+            if(entry.getValue()[0] > 1) candidates.add(entry.getKey());
+        }
+        Collections.sort(candidates, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                int ret = Integer.compare(counts.get(o2)[0], counts.get(o1)[0]);
+                return ret != 0 ? ret : o1.compareTo(o2);
+            }
+        });
+
+        HashMap<String, Integer> ret = new HashMap<>();
+        for(String string: candidates){
+            int count = counts.get(string)[0];
+            int length = string.length() + 2;
+            int indexLength = Integer.toString(table.size()).length();
+            // inline: count * length, table: length + separator + count * index
+            if((long) count * length > length + 1 + (long) count * indexLength){
+                ret.put(string, table.size());
+                table.add(string);
+            }
+        }
+        return ret;
+    }
 
-        // text laels
-        Label[] labelsArray = world.getLabels();
-        if(labelsArray != null && labelsArray.length > 0){
-            JSONArray labels = new JSONArray();
-            root.put("labels", labels);
-            for(Label label: world.getLabels()){
-                JSONObject labelObj = new JSONObject();
-                labelObj.put("x", label.getX());
-                labelObj.put("y", label.getY());
-                labelObj.put("l", label.getLayer());
-                labelObj.put("fontSize", label.getFontSize());
-                labelObj.put("t", label.getText());
+    private static void countString(HashMap<String, int[]> counts, String string){
+        if(string == null) return;
+        int[] count = counts.get(string);
+        if(count == null) counts.put(string, new int[]{1});
+        else ++count[0];
+    }
+
+    /**
+     * Enables or disables encoding places in parallel while saving
+     * @param parallel false to encode places on the writing thread only
+     */
+    public static void setParallelSaving(boolean parallel){
+        parallelSaving = parallel;
+    }
+
+    /**
+     * Writes a place
+     * @param writer
+     * @param place
+     * @param areaIDs area ids of the file
+     * @param strings indices of the string table
+     * @throws IOException
+     */
+    private void writePlace(JSONStreamWriter writer, Place place, HashMap<PlaceGroup, Integer> areaIDs,
+            HashMap<String, Integer> strings) throws IOException {
+        writer.beginObject();
+
+        writer.name("id").value(place.getId());
+        writer.name("n");
+        writeString(writer, place.getName(), strings);
+        writer.name("l").value(translateLayerID(place.getLayer().getId()));
+        writer.name("x").value(place.getX());
+        writer.name("y").value(place.getY());
+
+        if(place.getPlaceGroup() != null) writer.name("a").value(areaIDs.get(place.getPlaceGroup()));
+        if(place.getRiskLevel() != null) writer.name("r").value(place.getRiskLevel().getId());
+        if(place.getRecLevelMin() > -1) writer.name("lvlMin").value(place.getRecLevelMin());
+        if(place.getRecLevelMax() > -1) writer.name("lvlMax").value(place.getRecLevelMax());
+
+        // child places
+        if(!place.getChildren().isEmpty()){
+            writer.name("c").beginArray();
+            for(Place child: place.getChildren()) writer.value(child.getId());
+            writer.endArray();
+        }
+
+        // parent places
+        if(!place.getParents().isEmpty()){
+            writer.name("p").beginArray();
+            for(Place parent: place.getParents()) writer.value(parent.getId());
+            writer.endArray();
+        }
+
+        // flags
+        if(!place.getFlags().isEmpty()){
+            writer.name("f").beginArray();
+            for(Map.Entry<String, Boolean> flag: place.getFlags().entrySet()){
+                if(flag.getValue()) writeString(writer, flag.getKey(), strings);
             }
+            writer.endArray();
         }
 
-        // add metaWriter data from WorldTab
-        if(metaWriter != null) root.put("meta", metaWriter.getMeta(layerIDs));
-
-        try ( FileWriter writer = new FileWriter(filename)) {
-            // indentation for better readability (for debugging), increases file size
-            //root.write(writer, 4, 0);
-            root.write(writer);
-            fileRoot = root;
-        } catch (Exception ex){
-            System.out.println(ex.getLocalizedMessage());
+        // comments
+        if(!place.getComments().isEmpty()){
+            writer.name("co").beginArray();
+            for(String comment: place.getComments()) writeString(writer, comment, strings);
+            writer.endArray();
         }
+
+        writer.endObject();
     }
 
     /**
@@ -690,8 +1237,7 @@ public class WorldFileJSON extends WorldFile {
                 Files.copy(fileold.toPath(), filenew.toPath());
             }
         } catch (IOException ex) {
-            Logger.getLogger(WorldFileJSON.class.getName()).log(Level.SEVERE, null, ex);
-            JOptionPane.showMessageDialog(null, "Could not create world backup file", "World backup", JOptionPane.INFORMATION_MESSAGE);
+            Logger.getLogger(WorldFileJSON.class.getName()).log(Level.WARNING, "Could not create world backup file " + filename + ".bak", ex);
         }
     }
 
@@ -702,51 +1248,107 @@ public class WorldFileJSON extends WorldFile {
      */
     @Override
     public String readWorldName() throws Exception {
-        try{
-            JSONObject object = getJSONRoot();
-            if(object != null && object.has("worldName")){
-                return object.getString("worldName");
-            } else return null;
+        WorldFileHeader h = readHeader();
+        if(h == null) return "";
+        return h.getWorldName();
+    }
+
+    /**
+     * Reads the file version, world name and sizes. Only the first
+     * HEADER_PROBE_SIZE characters are read, unless the world name isn't
+     * in there (files written by older versions). The header is cached
+     * until the file changes
+     * @return header or null, if the file is no JSON world file
+     * @throws IOException
+     */
+    @Override
+    public synchronized WorldFileHeader readHeader() throws IOException {
+        File file = new File(filename);
+        long modified = file.lastModified();
+        long length = file.length();
+        if(header == null || headerModified != modified || headerLength != length){
+            header = probeHeader();
+            headerModified = modified;
+            headerLength = length;
+        }
+        return header;
+    }
+
+    /**
+     * Reads the header from the beginning of the file
+     * @return header or null, if the file is no JSON world file
+     * @throws IOException
+     */
+    private WorldFileHeader probeHeader() throws IOException {
+        char[] buffer = new char[HEADER_PROBE_SIZE];
+        int length = 0;
+        try (Reader reader = new InputStreamReader(Compression.openInputStream(filename), StandardCharsets.UTF_8)) {
+            int n;
+            while(length < buffer.length && (n = reader.read(buffer, length, buffer.length - length)) > 0){
+                length += n;
+            }
+        }
+
+        try {
+            return readHeader(new JSONStreamReader(new CharArrayReader(buffer, 0, length)));
+        } catch(JSONException ex) {
+            // the file ends within the probe, it is no valid JSON file
+            if(length < HEADER_PROBE_SIZE) return null;
+        }
+
+        // the header doesn't fit into the probe, scan the whole file
+        try (JSONStreamReader reader = openReader()) {
+            return readHeader(reader);
         } catch(JSONException ex) {
-            return "";
+            return null;
         }
     }
 
+    /**
+     * Reads the header keys at the beginning of the root object. Older files
+     * might have them anywhere, so the keys are searched until the file
+     * version and world name are found
+     * @param reader
+     * @return header or null, if the root object has neither of them
+     * @throws IOException
+     */
+    private WorldFileHeader readHeader(JSONStreamReader reader) throws IOException {
+        String fileVer = null, worldName = null;
+        int placeCount = -1, layerCount = -1;
+        reader.beginObject();
+        while(reader.hasNext()){
+            String key = reader.nextName();
+            if(key.equals("fileVer")){
+                fileVer = reader.nextString();
+            } else if(key.equals("worldName")){
+                worldName = reader.nextString();
+            } else if(key.equals("placeCount")){
+                placeCount = reader.nextInt();
+            } else if(key.equals("layerCount")){
+                layerCount = reader.nextInt();
+            } else if(fileVer != null && worldName != null){
+                // end of header
+                break;
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        if(fileVer == null && worldName == null) return null;
+        return new WorldFileHeader(fileVer, worldName, placeCount, layerCount);
+    }
+
     /**
      * Check whether the file can be read by this reader class
      * @return
      */
     @Override
     public Boolean canRead() {
-        // exact check
         try {
-            FileReader fileReader = new FileReader(filename);
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            Boolean first = true;
-            String line;
-            while((line = bufferedReader.readLine()) != null){
-                if(first){
-                    line = line.trim();
-                    if(!line.isEmpty()){
-                        if(!line.startsWith("{")) return false;
-                        first = false;
-                    }
-                }
-                if(line.contains("\"worldName\"")) return true;
-            }
-        } catch (Exception ex) {
+            return readHeader() != null;
+        } catch (IOException ex) {
             return false;
         }
-
-        // quick check
-        /*try{
-        JSONObject object = getJSONRoot();
-        if(object == null) return false;
-        return object.has("worldName");
-        } catch(JSONException | IOException ex) {
-        System.out.println(filename + " " + ex.getLocalizedMessage());
-        }*/
-        return false;
     }
 
     /**
@@ -758,4 +1360,256 @@ public class WorldFileJSON extends WorldFile {
         return WorldFileType.JSON;
     }
 
+    /**
+     * Objects and references of a world that is being read
+     */
+    private class ReadState {
+        final World world;
+        String worldName = null;
+        boolean versionChecked = false;
+
+        boolean riskLevelsRead = false;
+        boolean areasRead = false;
+        boolean layersRead = false;
+        boolean placesRead = false;
+
+        final HashMap<Integer, PlaceGroup> areas = new HashMap<>();
+
+        // references to sections that weren't read yet
+        final ArrayList<Place> pendingPlaces = new ArrayList<>();
+        final HashMap<Place, Integer> pendingPlaceLayers = new HashMap<>();
+        final HashMap<Place, Integer> pendingAreas = new HashMap<>();
+        final HashMap<Place, Integer> pendingRiskLevels = new HashMap<>();
+        final HashMap<Place, HashSet<Integer>> childrenMapping = new HashMap<>();
+        final ArrayList<PendingPath> pendingPaths = new ArrayList<>();
+        final ArrayList<Object[]> pendingLabels = new ArrayList<>();
+
+        final Strings strings = new Strings();
+
+        public ReadState(World world){
+            this.world = world;
+        }
+
+        /**
+         * Resolves the remaining references
+         * @throws Exception
+         */
+        void finish() throws Exception {
+            // world name
+            if(worldName == null || worldName.isEmpty()) {
+                worldName = filename;
+                Integer begin = worldName.lastIndexOf('/');
+                if(begin == -1) begin = worldName.lastIndexOf('\\');
+                begin += 1;
+                worldName = worldName.substring(begin);
+            }
+            world.setName(worldName);
+
+            for(Entry<Place, Integer> entry: pendingAreas.entrySet()){
+                entry.getKey().setPlaceGroup(areas.get(entry.getValue()));
+            }
+            for(Entry<Place, Integer> entry: pendingRiskLevels.entrySet()){
+                entry.getKey().setRiskLevel(world.getRiskLevel(entry.getValue()));
+            }
+
+            if(lazyLayers){
+                // places, children and paths are added when a layer is loaded
+                new LazyLoader(world, pendingPlaces, pendingPlaceLayers, childrenMapping, pendingPaths);
+            } else {
+                // places without layer definitions
+                for(Place place: pendingPlaces){
+                    world.putPlace(place, pendingPlaceLayers.get(place), place.getX(), place.getY());
+                }
+
+                // connect children
+                for(Entry<Place, HashSet<Integer>> entry: childrenMapping.entrySet()){
+                    Place place = entry.getKey();
+                    for(Integer id: entry.getValue()){
+                        Place child = world.getPlace(id);
+                        if(child != null) place.connectChild(child);
+                    }
+                }
+
+                for(PendingPath path: pendingPaths) path.connect(world);
+            }
+
+            for(Object[] label: pendingLabels){
+                Layer l = world.getLayer((Integer) label[3]);
+                if(l != null){
+                    world.addLabel(new Label((String) label[0], (Double) label[1], (Double) label[2], l, (Double) label[4]));
+                }
+            }
+        }
+    }
+
+    /**
+     * String table of the file and pool of the read strings. Strings are
+     * either written inline or as index of the table
+     */
+    private static class Strings {
+        final StringPool pool = new StringPool();
+        // set before the places are decoded
+        String[] table = new String[0];
+
+        /**
+         * Reads a string or a reference to the string table
+         * @param reader
+         * @return shared instance of the string
+         * @throws IOException
+         */
+        String read(JSONStreamReader reader) throws IOException {
+            if(reader.peek() == JSONStreamReader.Token.NUMBER){
+                int index = reader.nextInt();
+                if(index < 0 || index >= table.length) throw new JSONException("Invalid string index " + index);
+                return table[index];
+            }
+            return pool.intern(reader.nextString());
+        }
+    }
+
+    /**
+     * Puts the decoded places to the world when their layer is accessed.
+     * Children and paths are connected as soon as both places are loaded,
+     * until then they are remembered by the id of a place that isn't loaded
+     */
+    private static class LazyLoader {
+        final World world;
+
+        // places of loaded layers
+        final HashMap<Integer, Place> loaded = new HashMap<>();
+        // missing place id -> {parent, child id}
+        final HashMap<Integer, ArrayList<Object[]>> pendingChildren = new HashMap<>();
+        // missing place id -> paths
+        final HashMap<Integer, ArrayList<PendingPath>> pendingPaths = new HashMap<>();
+        // layer id -> linked layer ids
+        final HashMap<Integer, Set<Integer>> linkedLayers = new HashMap<>();
+
+        public LazyLoader(World world, ArrayList<Place> places, HashMap<Place, Integer> placeLayers,
+                HashMap<Place, HashSet<Integer>> children, ArrayList<PendingPath> paths){
+            this.world = world;
+
+            // links between layers, known before the layers are loaded
+            HashMap<Integer, Integer> idLayers = new HashMap<>();
+            for(Entry<Place, Integer> entry: placeLayers.entrySet()) idLayers.put(entry.getKey().getId(), entry.getValue());
+            for(Entry<Place, HashSet<Integer>> entry: children.entrySet()){
+                for(Integer id: entry.getValue()) addLink(placeLayers.get(entry.getKey()), idLayers.get(id));
+            }
+            for(PendingPath path: paths) addLink(idLayers.get(path.place0), idLayers.get(path.place1));
+
+            // places per layer, in file order
+            HashMap<Integer, ArrayList<Place>> layerPlaces = new HashMap<>();
+            for(Place place: places){
+                Integer layer = placeLayers.get(place);
+                ArrayList<Place> list = layerPlaces.get(layer);
+                if(list == null) layerPlaces.put(layer, list = new ArrayList<>());
+                list.add(place);
+            }
+
+            for(Entry<Place, HashSet<Integer>> entry: children.entrySet()){
+                for(Integer id: entry.getValue()){
+                    addPending(pendingChildren, entry.getKey().getId(), new Object[]{entry.getKey(), id});
+                }
+            }
+            for(PendingPath path: paths) addPending(pendingPaths, path.place0, path);
+
+            for(final Entry<Integer, ArrayList<Place>> entry: layerPlaces.entrySet()){
+                Layer layer = world.getLayer(entry.getKey());
+                if(layer == null) layer = new Layer(entry.getKey(), world);
+                layer.setLoader(new LayerLoader() {
+                    @Override
+                    public void loadLayer(Layer layer) throws Exception {
+                        load(layer, entry.getValue());
+                    }
+
+                    @Override
+                    public Set<Integer> getLinkedLayers(Layer layer) {
+                        Set<Integer> ret = linkedLayers.get(layer.getId());
+                        return ret == null ? Collections.<Integer>emptySet() : Collections.unmodifiableSet(ret);
+                    }
+                });
+            }
+        }
+
+        private void addLink(Integer layer1, Integer layer2){
+            if(layer1 == null || layer2 == null || layer1.equals(layer2)) return;
+            addLinkedLayer(layer1, layer2);
+            addLinkedLayer(layer2, layer1);
+        }
+
+        private void addLinkedLayer(Integer layer, Integer linked){
+            Set<Integer> set = linkedLayers.get(layer);
+            if(set == null) linkedLayers.put(layer, set = new HashSet<>());
+            set.add(linked);
+        }
+
+        /**
+         * Puts the places of a layer to the world and connects them to the
+         * places that are loaded
+         * @param layer
+         * @param places places of the layer
+         * @throws Exception
+         */
+        synchronized void load(Layer layer, ArrayList<Place> places) throws Exception {
+            for(Place place: places){
+                world.putPlace(place, layer.getId(), place.getX(), place.getY());
+                loaded.put(place.getId(), place);
+            }
+
+            for(Place place: places){
+                ArrayList<Object[]> children = pendingChildren.remove(place.getId());
+                if(children != null){
+                    for(Object[] relation: children){
+                        Place parent = (Place) relation[0];
+                        if(parent != place){
+                            // the parent has been loaded before
+                            parent.connectChild(place);
+                        } else {
+                            Place child = loaded.get((Integer) relation[1]);
+                            if(child != null) place.connectChild(child);
+                            else addPending(pendingChildren, (Integer) relation[1], relation);
+                        }
+                    }
+                }
+
+                ArrayList<PendingPath> paths = pendingPaths.remove(place.getId());
+                if(paths != null){
+                    for(PendingPath path: paths){
+                        int otherId = path.place0 == place.getId() ? path.place1 : path.place0;
+                        if(loaded.containsKey(otherId)) path.connect(world);
+                        else addPending(pendingPaths, otherId, path);
+                    }
+                }
+            }
+        }
+
+        private static <T> void addPending(HashMap<Integer, ArrayList<T>> map, int id, T value){
+            ArrayList<T> list = map.get(id);
+            if(list == null) map.put(id, list = new ArrayList<>());
+            list.add(value);
+        }
+    }
+
+    /**
+     * Path definition, connected when both places are known
+     */
+    private static class PendingPath {
+        final int place0, place1;
+        final String exit0, exit1;
+
+        public PendingPath(int place0, String exit0, int place1, String exit1){
+            this.place0 = place0;
+            this.exit0 = exit0;
+            this.place1 = place1;
+            this.exit1 = exit1;
+        }
+
+        void connect(World world){
+            Place pl0 = world.getPlace(place0);
+            Place pl1 = world.getPlace(place1);
+            if(pl0 != null && pl1 != null){
+                pl0.connectPath(new Path(pl0, exit0, pl1, exit1));
+            }
+        }
+    }
+
 }
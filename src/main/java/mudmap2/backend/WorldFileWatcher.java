@@ -0,0 +1,252 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Watches world files for changes by other programs, eg. scripts that
+ *  generate a world. The directories of the files are watched by a
+ *  WatchService. A change is reported when the file hasn't been changed for
+ *  a short time and its size or modification time differs from the known
+ *  state, so that files written by MUD Map itself (see setKnown()) and
+ *  partially written files aren't reported
+ */
+
+package mudmap2.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reports changes of world files
+ * @author neop
+ */
+public class WorldFileWatcher implements Runnable {
+
+    /**
+     * Receives the changed files, called on the watcher thread
+     */
+    public interface Listener {
+        public void worldFileChanged(String filename);
+    }
+
+    // time without changes before a change is reported, in milliseconds
+    static final long QUIET_TIME = 500;
+
+    final Listener listener;
+    WatchService service;
+    Thread thread;
+
+    // watched file -> filename as given to watch()
+    final HashMap<Path, String> files = new HashMap<>();
+    // watched file -> known state {modification time, size}
+    final HashMap<Path, long[]> known = new HashMap<>();
+    // directory -> key
+    final HashMap<Path, WatchKey> keys = new HashMap<>();
+    // changed file -> time of the last event
+    final HashMap<Path, Long> pending = new HashMap<>();
+
+    /**
+     * Creates a watcher, call start() to begin watching
+     * @param listener
+     */
+    public WorldFileWatcher(Listener listener){
+        this.listener = listener;
+    }
+
+    /**
+     * Starts the watcher thread
+     * @throws IOException if the file system can't be watched
+     */
+    public synchronized void start() throws IOException {
+        service = FileSystems.getDefault().newWatchService();
+        for(Path file: files.keySet()) register(file.getParent());
+
+        thread = new Thread(this, "World file watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching
+     */
+    public synchronized void stop(){
+        if(service != null){
+            try {
+                service.close();
+            } catch (IOException ex) {
+                Logger.getLogger(WorldFileWatcher.class.getName()).log(Level.WARNING, null, ex);
+            }
+            service = null;
+        }
+        keys.clear();
+        pending.clear();
+    }
+
+    private static Path getPath(String filename){
+        return Paths.get(filename).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Gets the state of a file
+     * @param filename
+     * @return {modification time, size}
+     */
+    public static long[] getState(String filename){
+        File file = new File(filename);
+        return new long[]{file.lastModified(), file.length()};
+    }
+
+    /**
+     * Watches a file, the current state of the file is known. Nothing
+     * happens if the file is watched already
+     * @param filename
+     */
+    public synchronized void watch(String filename){
+        Path file = getPath(filename);
+        if(files.containsKey(file)) return;
+        files.put(file, filename);
+        known.put(file, getState(filename));
+        register(file.getParent());
+    }
+
+    /**
+     * Stops watching a file
+     * @param filename
+     */
+    public synchronized void unwatch(String filename){
+        Path file = getPath(filename);
+        files.remove(file);
+        known.remove(file);
+        pending.remove(file);
+
+        Path dir = file.getParent();
+        for(Path other: files.keySet()){
+            if(other.getParent().equals(dir)) return;
+        }
+        WatchKey key = keys.remove(dir);
+        if(key != null) key.cancel();
+    }
+
+    /**
+     * Sets the known state of a file, eg. after MUD Map has written or read
+     * it. A change is only reported if the file differs from this state
+     * @param filename
+     * @param state state from getState()
+     */
+    public synchronized void setKnown(String filename, long[] state){
+        Path file = getPath(filename);
+        if(files.containsKey(file)) known.put(file, state);
+    }
+
+    /**
+     * Checks whether a file differs from its known state
+     * @param filename
+     * @return true, if the file has been changed
+     */
+    public synchronized boolean hasChanged(String filename){
+        long[] state = known.get(getPath(filename));
+        if(state == null) return false;
+        long[] current = getState(filename);
+        return current[0] != state[0] || current[1] != state[1];
+    }
+
+    private void register(Path dir){
+        if(service == null || dir == null || keys.containsKey(dir)) return;
+        try {
+            keys.put(dir, dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY));
+        } catch (IOException ex) {
+            Logger.getLogger(WorldFileWatcher.class.getName()).log(Level.WARNING, "Couldn't watch " + dir, ex);
+        }
+    }
+
+    @Override
+    public void run() {
+        while(true){
+            WatchService watchService;
+            long timeout;
+            synchronized(this){
+                watchService = service;
+                timeout = pending.isEmpty() ? 0 : QUIET_TIME;
+            }
+            if(watchService == null) return;
+
+            try {
+                WatchKey key = timeout > 0 ? watchService.poll(timeout, TimeUnit.MILLISECONDS) : watchService.take();
+                if(key != null){
+                    Path dir = (Path) key.watchable();
+                    for(WatchEvent<?> event: key.pollEvents()){
+                        if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                            // events got lost, check all files
+                            synchronized(this){
+                                for(Path file: files.keySet()) pending.put(file, System.currentTimeMillis());
+                            }
+                        } else {
+                            Path file = dir.resolve((Path) event.context());
+                            synchronized(this){
+                                if(files.containsKey(file)) pending.put(file, System.currentTimeMillis());
+                            }
+                        }
+                    }
+                    key.reset();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+
+            for(String filename: getQuietFiles()){
+                if(hasChanged(filename)) listener.worldFileChanged(filename);
+            }
+        }
+    }
+
+    /**
+     * Removes the files that haven't been changed for QUIET_TIME from the
+     * pending files
+     * @return filenames
+     */
+    private synchronized ArrayList<String> getQuietFiles(){
+        ArrayList<String> ret = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+        while(it.hasNext()){
+            Map.Entry<Path, Long> entry = it.next();
+            if(now - entry.getValue() >= QUIET_TIME){
+                String filename = files.get(entry.getKey());
+                if(filename != null) ret.add(filename);
+                it.remove();
+            }
+        }
+        return ret;
+    }
+
+}
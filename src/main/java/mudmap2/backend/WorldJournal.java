@@ -0,0 +1,1077 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Append-only journal of the changes since the world file was written. It is
+ *  stored next to the world file, one JSON object per line. Each record holds
+ *  the complete state of the changed place, layer, area list, risk level or
+ *  world settings, so replaying records more than once yields the same world.
+ *  The first line identifies the world file (size and modification time) the
+ *  journal belongs to, a journal of another version of the file is ignored.
+ *  Records are written as soon as the change happens, sync() marks them as
+ *  saved. Layer ids are stored as they are in the world file. Records name the
+ *  layers of the places they refer to, so replaying a journal only loads these
+ *  layers of a world that is opened layer by layer. When the world
+ *  file is written in the background, the journal of the new file is written
+ *  before the new file replaces the old one and renamed afterwards, the
+ *  journal that belongs to the world file on the disk is used after a crash
+ */
+
+package mudmap2.backend;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import mudmap2.backend.WorldFileReader.WorldFile;
+import mudmap2.backend.WorldFileReader.current.WorldMetaJSON;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Write-ahead journal of world changes
+ * @author neop
+ */
+public class WorldJournal implements WorldEventListener {
+
+    // 1.1: records name the layers of the places they refer to
+    static final String JOURNAL_FILE_VER = "1.1";
+    static final String JOURNAL_SUFFIX = ".journal";
+    // journal of a world file that is about to replace the current one
+    static final String NEXT_SUFFIX = ".next" + JOURNAL_SUFFIX;
+
+    // the journal is folded into the world file, if it gets larger than this
+    // and larger than half of the world file
+    static final long COMPACT_SIZE = 1024 * 1024;
+
+    final World world;
+    final String filename;
+    final String worldFilename;
+
+    FileChannel channel;
+    // size of the journal at the last sync and size of the header
+    long syncedSize;
+    long headerSize;
+    // modification count of the world at the last recorded change
+    long modCount;
+    // set if the journal couldn't be written, the world file has to be
+    // written completely on the next save
+    boolean broken;
+
+    // world layer id -> layer id in the journal, null if they are the same
+    HashMap<Integer, Integer> layerIDs;
+    int nextLayerID;
+    // areas of the last area record, places refer to them by index
+    ArrayList<PlaceGroup> areas;
+    ArrayList<String> areaKeys;
+
+    // place id -> world layer id of places that have been moved to another
+    // layer or removed, ie. where they are in the world file. NOT_IN_FILE
+    // for places that have been added
+    HashMap<Integer, Integer> origins;
+    static final int NOT_IN_FILE = -1;
+
+    // objects changed while the world file is written in the background,
+    // null if no compaction is running
+    LinkedHashSet<Object> pending;
+    // the same as origins for the world file that is written
+    HashMap<Integer, Integer> pendingOrigins;
+    // state of the current journal while the journal of the new world file
+    // is prepared, null otherwise
+    State previous;
+
+    // state of the last world record and meta data record
+    String worldRecord;
+    String metaRecord;
+    WorldMetaJSON metaGetter;
+    // meta data read by replay()
+    JSONObject metaData;
+    // set by replay() if the records name the layers of the places
+    boolean layerHints;
+
+    /**
+     * Creates a journal, call replay() and open() afterwards
+     * @param world world
+     * @param worldFilename world file
+     */
+    public WorldJournal(World world, String worldFilename){
+        this.world = world;
+        this.worldFilename = worldFilename;
+        this.filename = getJournalFile(worldFilename);
+        areas = new ArrayList<>();
+        areaKeys = new ArrayList<>();
+        origins = new HashMap<>();
+    }
+
+    /**
+     * Gets the journal file of a world file
+     * @param worldFilename
+     * @return journal filename
+     */
+    public static String getJournalFile(String worldFilename){
+        return worldFilename + JOURNAL_SUFFIX;
+    }
+
+    /**
+     * Gets the journal that is written before a new world file replaces the
+     * current one
+     * @param worldFilename
+     * @return journal filename
+     */
+    public static String getNextJournalFile(String worldFilename){
+        return worldFilename + NEXT_SUFFIX;
+    }
+
+    /**
+     * Gets the journal file
+     * @return filename
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Gets the world file the journal belongs to
+     * @return filename
+     */
+    public String getWorldFilename() {
+        return worldFilename;
+    }
+
+    /**
+     * Gets the meta data read by replay()
+     * @return meta data or null
+     */
+    public JSONObject getMetaData() {
+        return metaData;
+    }
+
+    /**
+     * Sets the meta data getter, meta data is recorded on sync()
+     * @param meta
+     */
+    public void setMetaGetter(WorldMetaJSON meta) {
+        this.metaGetter = meta;
+    }
+
+    /**
+     * Gets the size of the journal
+     * @return size in bytes
+     */
+    public synchronized long size(){
+        try {
+            if(channel != null) return channel.size();
+        } catch (IOException ex) {
+            Logger.getLogger(WorldJournal.class.getName()).log(Level.WARNING, null, ex);
+        }
+        return new File(filename).length();
+    }
+
+    /**
+     * Checks whether the journal has records, ie. changes that aren't in the
+     * world file
+     * @return true, if changes have been recorded
+     */
+    public synchronized boolean hasRecords(){
+        return channel != null && size() > headerSize;
+    }
+
+    /**
+     * Checks whether the world file should be written completely instead of
+     * syncing the journal
+     * @return true, if the journal is too large or can't be written
+     */
+    public boolean needsCompaction(){
+        if(broken || channel == null) return true;
+        long size = size();
+        return size > COMPACT_SIZE && size > new File(worldFilename).length() / 2;
+    }
+
+    /**
+     * Gets the identification of a world file version
+     * @param file world file
+     * @return header record
+     */
+    private static JSONObject getHeader(File file){
+        JSONObject header = new JSONObject();
+        header.put("journal", JOURNAL_FILE_VER);
+        header.put("size", file.length());
+        header.put("mod", file.lastModified());
+        return header;
+    }
+
+    /**
+     * Checks whether a journal header identifies the world file
+     * @param line first line of the journal
+     * @return true, if the journal belongs to the world file
+     */
+    private boolean belongsToWorldFile(String line){
+        if(line == null) return false;
+        JSONObject header;
+        try {
+            header = new JSONObject(line);
+        } catch(JSONException ex){
+            return false;
+        }
+        JSONObject expected = getHeader(new File(worldFilename));
+        return header.optLong("size", -1) == expected.getLong("size")
+                && header.optLong("mod", -1) == expected.getLong("mod");
+    }
+
+    /**
+     * Uses the journal of the next world file, if the program crashed after
+     * that file replaced the old one, and removes it otherwise
+     * @throws IOException
+     */
+    private void recoverNextJournal() throws IOException {
+        File next = new File(getNextJournalFile(worldFilename));
+        if(!next.exists()) return;
+
+        String line;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(next), StandardCharsets.UTF_8))) {
+            line = reader.readLine();
+        }
+        if(belongsToWorldFile(line)) move(next, new File(filename));
+        else Files.deleteIfExists(next.toPath());
+    }
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // --------- reading -------------------------------------------------------
+    /**
+     * Applies the journal to the world, if it belongs to the current version
+     * of the world file. Records after an incomplete record are ignored
+     * @return number of replayed records
+     * @throws IOException
+     */
+    public synchronized int replay() throws IOException {
+        recoverNextJournal();
+
+        int count = 0;
+        long valid = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(filename), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if(line == null) return 0;
+            if(!belongsToWorldFile(line)){
+                Logger.getLogger(WorldJournal.class.getName()).log(Level.INFO,
+                        "Journal {0} doesn''t belong to the world file, ignored", filename);
+                return 0;
+            }
+            layerHints = !"1.0".equals(new JSONObject(line).optString("journal"));
+            valid += line.getBytes(StandardCharsets.UTF_8).length + 1;
+
+            // the replayed records count as one change
+            world.beginBatch();
+            try {
+                while((line = reader.readLine()) != null){
+                    JSONObject record;
+                    try {
+                        record = new JSONObject(line);
+                    } catch(JSONException ex){
+                        // incomplete record, written while crashing
+                        break;
+                    }
+                    try {
+                        apply(record);
+                    } catch(Exception ex){
+                        Logger.getLogger(WorldJournal.class.getName()).log(Level.WARNING, "Couldn't replay journal record " + line, ex);
+                    }
+                    valid += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    ++count;
+                }
+            } finally {
+                world.endBatch();
+            }
+        } catch (FileNotFoundException ex) {
+            return 0;
+        } catch (JSONException ex) {
+            Logger.getLogger(WorldJournal.class.getName()).log(Level.WARNING, "Invalid journal " + filename, ex);
+            return 0;
+        }
+
+        // continue after the last complete record
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE);
+        channel.truncate(valid);
+        channel.position(valid);
+        syncedSize = valid;
+        return count;
+    }
+
+    private void apply(JSONObject record) throws Exception {
+        switch(record.getString("t")){
+            case "w":
+                applyWorld(record);
+                break;
+            case "l":
+                Layer layer = world.getLayer(record.getInt("id"));
+                if(layer == null) layer = new Layer(record.getInt("id"), world);
+                layer.setName(record.optString("n", null));
+                break;
+            case "g":
+                applyAreas(record.getJSONArray("a"));
+                break;
+            case "rl":
+                RiskLevel rl = world.getRiskLevel(record.getInt("id"));
+                if(rl == null){
+                    world.setRiskLevel(new RiskLevel(record.getInt("id"), record.getString("d"), getColor(record, "c")));
+                } else {
+                    rl.setDescription(record.getString("d"));
+                    rl.setColor(getColor(record, "c"));
+                }
+                break;
+            case "rlr":
+                RiskLevel rlr = world.getRiskLevel(record.getInt("id"));
+                if(rlr != null) world.removeRiskLevel(rlr);
+                break;
+            case "p":
+                applyPlace(record);
+                break;
+            case "pr":
+                if(record.has("l")) loadLayer(record.getInt("l"));
+                Place place = findPlace(record.getInt("id"));
+                if(place != null) world.removePlace(place);
+                break;
+            case "m":
+                metaData = record.getJSONObject("m");
+                break;
+        }
+    }
+
+    /**
+     * Loads a layer of a world that is opened layer by layer
+     * @param id layer id
+     */
+    private void loadLayer(int id){
+        Layer layer = world.getLayer(id);
+        if(layer != null) layer.load();
+    }
+
+    /**
+     * Gets a place, the layers named by the record have to be loaded before
+     * @param id place id
+     * @return place or null
+     */
+    private Place findPlace(int id){
+        Place ret = world.getLoadedPlace(id);
+        // records of old journals might refer to any layer
+        if(ret == null && !layerHints) ret = world.getPlace(id);
+        return ret;
+    }
+
+    private static Color getColor(JSONObject record, String key){
+        return record.has(key) ? new Color(record.getInt(key)) : null;
+    }
+
+    private void applyWorld(JSONObject record){
+        if(record.has("n")) world.setName(record.getString("n"));
+        world.setShowPlaceID(World.ShowPlaceID.valueOf(record.getString("sp")));
+        if(record.has("tc")) world.setTileCenterColor(getColor(record, "tc"));
+        if(record.has("pc")) world.setPathColor(getColor(record, "pc"));
+        if(record.has("pn")) world.setPathColorNstd(getColor(record, "pn"));
+        JSONObject pathColors = record.optJSONObject("pcs");
+        if(pathColors != null){
+            for(String dir: pathColors.keySet()) world.setPathColor(dir, getColor(pathColors, dir));
+        }
+        JSONObject home = record.getJSONObject("h");
+        world.setHome(new WorldCoordinate(home.getInt("l"), home.getDouble("x"), home.getDouble("y")));
+    }
+
+    private void applyAreas(JSONArray array){
+        ArrayList<PlaceGroup> unused = world.getPlaceGroups();
+        areas.clear();
+        areaKeys.clear();
+        for(int i = 0; i < array.length(); ++i){
+            JSONArray entry = array.getJSONArray(i);
+            String name = entry.getString(0);
+            Color color = entry.isNull(1) ? null : new Color(entry.getInt(1));
+
+            PlaceGroup area = null;
+            for(PlaceGroup pg: unused){
+                if(pg.getName().equals(name) && (color == null ? pg.getColor() == null : color.equals(pg.getColor()))){
+                    area = pg;
+                    break;
+                }
+            }
+            if(area == null) world.addPlaceGroup(area = new PlaceGroup(name, color));
+            else unused.remove(area);
+            areas.add(area);
+            areaKeys.add(getAreaKey(area));
+        }
+        for(PlaceGroup pg: unused) world.removePlaceGroup(pg);
+    }
+
+    private void applyPlace(JSONObject record) throws Exception {
+        int id = record.getInt("id");
+        int layer = record.getInt("l");
+        int x = record.getInt("x");
+        int y = record.getInt("y");
+
+        // the layers of the place, its children and the other ends of its paths
+        loadLayer(layer);
+        if(record.has("o")) loadLayer(record.getInt("o"));
+        JSONArray array = record.optJSONArray("chl");
+        if(array != null) for(int i = 0; i < array.length(); ++i) loadLayer(array.getInt(i));
+        array = record.optJSONArray("pa");
+        if(array != null){
+            for(int i = 0; i < array.length(); ++i){
+                JSONArray entry = array.getJSONArray(i);
+                if(entry.length() > 3) loadLayer(entry.getInt(3));
+            }
+        }
+
+        Place place = findPlace(id);
+        if(place == null){
+            place = new Place(id, record.getString("n"), x, y, null);
+            world.putPlace(place, layer, x, y);
+        } else if(place.getLayer().getId() != layer || place.getX() != x || place.getY() != y){
+            world.putPlace(place, layer, x, y);
+        }
+
+        if(!record.getString("n").equals(place.getName())) place.setName(record.getString("n"));
+        int area = record.optInt("a", -1);
+        place.setPlaceGroup(area >= 0 && area < areas.size() ? areas.get(area) : null);
+        place.setRiskLevel(record.has("r") ? world.getRiskLevel(record.getInt("r")) : null);
+        place.setRecLevelMin(record.optInt("lmin", -1));
+        place.setRecLevelMax(record.optInt("lmax", -1));
+
+        HashSet<String> flags = new HashSet<>();
+        array = record.optJSONArray("f");
+        if(array != null) for(int i = 0; i < array.length(); ++i) flags.add(array.getString(i));
+        for(String flag: new ArrayList<>(place.getFlags().keySet())){
+            if(place.getFlag(flag) && !flags.contains(flag)) place.setFlag(flag, false);
+        }
+        for(String flag: flags) place.setFlag(flag, true);
+
+        place.getComments().clear();
+        array = record.optJSONArray("c");
+        if(array != null) for(int i = 0; i < array.length(); ++i) place.getComments().add(array.getString(i));
+
+        // children
+        HashSet<Integer> children = new HashSet<>();
+        array = record.optJSONArray("ch");
+        if(array != null) for(int i = 0; i < array.length(); ++i) children.add(array.getInt(i));
+        for(Place child: new ArrayList<>(place.getChildren())){
+            if(!children.remove(child.getId())) place.removeChild(child);
+        }
+        for(Integer childID: children){
+            Place child = findPlace(childID);
+            if(child != null) place.connectChild(child);
+        }
+
+        // paths as [exit, other place id, exit of the other place, its layer]
+        HashMap<String, JSONArray> paths = new HashMap<>();
+        array = record.optJSONArray("pa");
+        if(array != null){
+            for(int i = 0; i < array.length(); ++i){
+                JSONArray entry = array.getJSONArray(i);
+                paths.put(entry.getString(0) + ">" + entry.getInt(1) + ":" + entry.getString(2), entry);
+            }
+        }
+        for(Path path: new ArrayList<>(place.getPaths())){
+            if(paths.remove(getPathKey(place, path)) == null) place.removePath(path);
+        }
+        for(JSONArray entry: paths.values()){
+            Place other = findPlace(entry.getInt(1));
+            if(other != null) place.connectPath(new Path(place, entry.getString(0), other, entry.getString(2)));
+        }
+    }
+
+    // --------- writing -------------------------------------------------------
+    /**
+     * Opens the journal for appending, a journal that doesn't belong to the
+     * world file is replaced. Registers the journal as world change listener
+     * @throws IOException
+     */
+    public synchronized void open() throws IOException {
+        if(channel == null){
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            write(getHeader(new File(worldFilename)));
+            syncedSize = headerSize = channel.size();
+        }
+        modCount = world.getModCount();
+        worldRecord = getWorldRecord().toString();
+        world.addEventListener(this);
+    }
+
+    /**
+     * Marks the recorded changes as saved and flushes them to the disk
+     * @throws IOException
+     */
+    public void sync() throws IOException {
+        recordState();
+        force();
+    }
+
+    /**
+     * Records the changes that don't call the listeners (home position, meta
+     * data). Has to be called on the thread that changes the world
+     * @throws IOException if the journal can't be written
+     */
+    public synchronized void recordState() throws IOException {
+        if(channel == null || broken) throw new IOException("Journal " + filename + " isn't writable");
+        JSONObject record = getWorldRecord();
+        if(!record.toString().equals(worldRecord)) write(record);
+        if(metaGetter != null){
+            JSONObject meta = metaGetter.getMeta(getLayerTranslation());
+            if(meta != null && !meta.toString().equals(metaRecord)){
+                metaRecord = meta.toString();
+                write(new JSONObject().put("t", "m").put("m", meta));
+            }
+        }
+        if(broken) throw new IOException("Journal " + filename + " couldn't be written");
+    }
+
+    /**
+     * Flushes the records written so far to the disk and marks them as saved.
+     * Changes can be recorded meanwhile, eg. if this runs in the background
+     * @throws IOException
+     */
+    public void force() throws IOException {
+        FileChannel ch;
+        long size;
+        synchronized(this){
+            if(channel == null || broken) throw new IOException("Journal " + filename + " isn't writable");
+            ch = channel;
+            size = ch.size();
+        }
+        ch.force(false);
+        synchronized(this){
+            if(ch == channel) syncedSize = Math.max(syncedSize, size);
+        }
+    }
+
+    /**
+     * Starts a new journal after the world file has been written completely
+     * @param worldFile the world file that has just been written
+     * @throws IOException
+     */
+    public synchronized void reset(WorldFile worldFile) throws IOException {
+        reset(getFileLayerIDs(worldFile));
+    }
+
+    /**
+     * Gets the layer ids in a world file that has just been written
+     * @param worldFile
+     * @return world layer id -> layer id in the world file
+     */
+    private HashMap<Integer, Integer> getFileLayerIDs(WorldFile worldFile){
+        HashMap<Integer, Integer> ids = new HashMap<>();
+        for(Layer layer: world.getLayers()){
+            Integer id = worldFile.translateLayerID(layer.getId());
+            if(id != null) ids.put(layer.getId(), id);
+        }
+        return ids;
+    }
+
+    /**
+     * Starts a new journal for the current world file, eg. after the world
+     * has been updated to a file written by another program
+     * @param layerIDs world layer id -> layer id in the world file
+     * @throws IOException
+     */
+    public synchronized void reset(Map<Integer, Integer> layerIDs) throws IOException {
+        if(channel != null) channel.close();
+        channel = null;
+        start(filename, new File(worldFilename), layerIDs);
+    }
+
+    /**
+     * Writes the header of a new journal and switches to it, the current
+     * journal has to be closed or saved before
+     * @param file journal file
+     * @param worldFile the world file the journal belongs to
+     * @param layerIDs world layer id -> layer id in the world file
+     * @throws IOException
+     */
+    private void start(String file, File worldFile, Map<Integer, Integer> layerIDs) throws IOException {
+        this.layerIDs = new HashMap<>(layerIDs);
+        nextLayerID = 0;
+        for(Integer id: layerIDs.values()) nextLayerID = Math.max(nextLayerID, id + 1);
+        areas.clear();
+        areaKeys.clear();
+        origins = new HashMap<>();
+        metaRecord = null;
+        broken = false;
+
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        write(getHeader(worldFile));
+        channel.force(false);
+        syncedSize = headerSize = channel.size();
+        modCount = world.getModCount();
+        worldRecord = getWorldRecord().toString();
+        world.addEventListener(this);
+    }
+
+    /**
+     * Writes the world file and starts a new journal
+     * @param worldFile
+     * @throws IOException
+     */
+    public void compact(WorldFile worldFile) throws IOException {
+        worldFile.writeFile(world);
+        reset(worldFile);
+    }
+
+    /**
+     * Begins to write the world file in the background, call this when the
+     * snapshot of the world is taken. Changes are still recorded in the
+     * current journal and remembered for the new one
+     */
+    public synchronized void beginCompaction(){
+        pending = new LinkedHashSet<>();
+        pendingOrigins = new HashMap<>();
+        // a new journal isn't registered yet
+        if(channel == null){
+            modCount = world.getModCount();
+            world.addEventListener(this);
+        }
+    }
+
+    /**
+     * Starts a new journal after the world file has been written in the
+     * background and records the changes made in the meantime again. Does
+     * nothing if the journal has already been switched by commitCompaction()
+     * @param worldFile the world file that has been written
+     * @throws IOException
+     */
+    public synchronized void finishCompaction(WorldFile worldFile) throws IOException {
+        if(pending == null) return;
+        LinkedHashSet<Object> changed = pending;
+        HashMap<Integer, Integer> changedOrigins = pendingOrigins;
+        pending = null;
+        pendingOrigins = null;
+        reset(worldFile);
+        origins = changedOrigins;
+        recordAll(changed);
+    }
+
+    /**
+     * Writes the journal of a world file that has been written in the
+     * background but doesn't replace the current file yet. It holds the
+     * changes made in the meantime. Call commitCompaction() after the file
+     * has been replaced or abortCompaction() if that failed. No changes may
+     * happen in between
+     * @param worldFile the world file that has been written
+     * @param newFile the written file that is about to replace the world file
+     * @throws IOException
+     */
+    public synchronized void prepareCompaction(WorldFile worldFile, File newFile) throws IOException {
+        previous = new State();
+        LinkedHashSet<Object> changed = pending;
+        HashMap<Integer, Integer> changedOrigins = pendingOrigins;
+        pending = null;
+        pendingOrigins = null;
+        channel = null;
+        try {
+            start(getNextJournalFile(worldFilename), newFile, getFileLayerIDs(worldFile));
+            if(changedOrigins != null) origins = changedOrigins;
+            if(changed != null) recordAll(changed);
+            if(broken) throw new IOException("Journal " + getNextJournalFile(worldFilename) + " couldn't be written");
+            channel.force(false);
+            syncedSize = channel.size();
+        } catch (IOException ex) {
+            abortCompaction();
+            throw ex;
+        }
+    }
+
+    /**
+     * Uses the journal written by prepareCompaction() after the new world
+     * file has replaced the old one
+     */
+    public synchronized void commitCompaction(){
+        if(previous == null) return;
+        try {
+            move(new File(getNextJournalFile(worldFilename)), new File(filename));
+        } catch (IOException ex) {
+            // it is still used on the next replay, start a new one on the next save
+            Logger.getLogger(WorldJournal.class.getName()).log(Level.SEVERE, null, ex);
+            broken = true;
+        }
+        if(previous.channel != null){
+            try {
+                previous.channel.close();
+            } catch (IOException ex) {
+                Logger.getLogger(WorldJournal.class.getName()).log(Level.WARNING, null, ex);
+            }
+        }
+        previous = null;
+    }
+
+    /**
+     * Cancels a compaction, the current journal stays valid
+     */
+    public synchronized void abortCompaction(){
+        if(previous != null){
+            if(channel != null){
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(WorldJournal.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
+            new File(getNextJournalFile(worldFilename)).delete();
+            previous.restore();
+            previous = null;
+        }
+        pending = null;
+        pendingOrigins = null;
+    }
+
+    /**
+     * Records changed objects again in a new journal
+     * @param changed
+     */
+    private void recordAll(LinkedHashSet<Object> changed){
+        // places refer to layers, areas, risk levels and other places
+        for(Object source: changed){
+            if(!(source instanceof Place)) record(source);
+        }
+        for(Object source: changed){
+            if(source instanceof Place) record(source);
+        }
+        for(Object source: changed){
+            if(source instanceof Place && !((Place) source).getChildren().isEmpty()) record(source);
+        }
+    }
+
+    /**
+     * Journal state that is restored if a compaction fails
+     */
+    private class State {
+        final FileChannel channel;
+        final long syncedSize, headerSize;
+        final boolean broken;
+        final HashMap<Integer, Integer> layerIDs;
+        final int nextLayerID;
+        final ArrayList<PlaceGroup> areas;
+        final ArrayList<String> areaKeys;
+        final String worldRecord, metaRecord;
+        final HashMap<Integer, Integer> origins;
+
+        State(){
+            channel = WorldJournal.this.channel;
+            syncedSize = WorldJournal.this.syncedSize;
+            headerSize = WorldJournal.this.headerSize;
+            broken = WorldJournal.this.broken;
+            layerIDs = WorldJournal.this.layerIDs;
+            nextLayerID = WorldJournal.this.nextLayerID;
+            areas = new ArrayList<>(WorldJournal.this.areas);
+            areaKeys = new ArrayList<>(WorldJournal.this.areaKeys);
+            worldRecord = WorldJournal.this.worldRecord;
+            metaRecord = WorldJournal.this.metaRecord;
+            origins = WorldJournal.this.origins;
+        }
+
+        void restore(){
+            WorldJournal.this.channel = channel;
+            WorldJournal.this.syncedSize = syncedSize;
+            WorldJournal.this.headerSize = headerSize;
+            WorldJournal.this.broken = broken;
+            WorldJournal.this.layerIDs = layerIDs;
+            WorldJournal.this.nextLayerID = nextLayerID;
+            WorldJournal.this.areas = areas;
+            WorldJournal.this.areaKeys = areaKeys;
+            WorldJournal.this.worldRecord = worldRecord;
+            WorldJournal.this.metaRecord = metaRecord;
+            WorldJournal.this.origins = origins;
+        }
+    }
+
+    /**
+     * Removes the changes since the last sync and closes the journal, used
+     * if the world is closed without saving
+     */
+    public synchronized void discard(){
+        world.removeEventListener(this);
+        if(channel != null){
+            try {
+                channel.truncate(syncedSize);
+                channel.close();
+            } catch (IOException ex) {
+                Logger.getLogger(WorldJournal.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Closes the journal, unsynced changes are kept for recovery
+     */
+    public synchronized void close(){
+        world.removeEventListener(this);
+        if(channel != null){
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                Logger.getLogger(WorldJournal.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            channel = null;
+        }
+    }
+
+    private void write(JSONObject record){
+        if(channel == null || broken) return;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap((record.toString() + "\n").getBytes(StandardCharsets.UTF_8));
+            while(buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException ex) {
+            Logger.getLogger(WorldJournal.class.getName()).log(Level.SEVERE, "Couldn't write journal " + filename, ex);
+            broken = true;
+        }
+    }
+
+    /**
+     * Gets the layer id in the journal
+     * @param layer world layer id
+     * @return journal layer id
+     */
+    private int getLayerID(int layer){
+        if(layerIDs == null) return layer;
+        Integer ret = layerIDs.get(layer);
+        if(ret == null) layerIDs.put(layer, ret = nextLayerID++);
+        return ret;
+    }
+
+    /**
+     * Gets the layer ids of all layers in the journal
+     * @return world layer id -> journal layer id
+     */
+    private HashMap<Integer, Integer> getLayerTranslation(){
+        HashMap<Integer, Integer> ret = new HashMap<>();
+        for(Layer layer: world.getLayers()) ret.put(layer.getId(), getLayerID(layer.getId()));
+        return ret;
+    }
+
+    @Override
+    public synchronized void worldEvent(WorldEvent event) {
+        if(event instanceof WorldEvent.Batch){
+            for(WorldEvent e: ((WorldEvent.Batch) event).getEvents()) trackOrigin(e);
+        } else {
+            trackOrigin(event);
+        }
+        worldChanged(event.getSource());
+    }
+
+    /**
+     * Remembers where a place is in the world file before it is moved or
+     * removed for the first time
+     * @param event
+     */
+    private void trackOrigin(WorldEvent event){
+        int layer;
+        if(event instanceof WorldEvent.PlaceAdded){
+            layer = NOT_IN_FILE;
+        } else if(event instanceof WorldEvent.PlaceMoved){
+            layer = ((WorldEvent.PlaceMoved) event).getOldPosition().getLayer();
+        } else if(event instanceof WorldEvent.PlaceRemoved){
+            layer = ((WorldEvent.PlaceRemoved) event).getPosition().getLayer();
+        } else {
+            return;
+        }
+        int id = ((WorldEvent.PlaceEvent) event).getPlace().getId();
+        if(!origins.containsKey(id)) origins.put(id, layer);
+        if(pendingOrigins != null && !pendingOrigins.containsKey(id)) pendingOrigins.put(id, layer);
+    }
+
+    /**
+     * Records a changed object
+     * @param source changed object or WorldChangeBatch
+     */
+    synchronized void worldChanged(Object source) {
+        // loading a layer calls the listeners without changing the world
+        if(world.getModCount() == modCount) return;
+        modCount = world.getModCount();
+        if(source instanceof WorldChangeBatch){
+            for(Object object: ((WorldChangeBatch) source).getSources()){
+                if(pending != null) pending.add(object);
+                record(object);
+            }
+        } else {
+            if(pending != null) pending.add(source);
+            record(source);
+        }
+    }
+
+    /**
+     * Writes the current state of a changed object
+     * @param source
+     */
+    private void record(Object source){
+        if(source instanceof Place){
+            Place place = (Place) source;
+            if(world.hasPlace(place)){
+                write(getPlaceRecord(place));
+            } else {
+                JSONObject record = new JSONObject().put("t", "pr").put("id", place.getId());
+                Integer origin = origins.get(place.getId());
+                if(origin == null && place.getLayer() != null) origin = place.getLayer().getId();
+                if(origin != null && origin != NOT_IN_FILE) record.put("l", getLayerID(origin));
+                write(record);
+            }
+        } else if(source instanceof Layer){
+            Layer layer = (Layer) source;
+            JSONObject record = new JSONObject().put("t", "l").put("id", getLayerID(layer.getId()));
+            if(layer.hasName()) record.put("n", layer.getName());
+            write(record);
+        } else if(source instanceof PlaceGroup){
+            writeAreas();
+        } else if(source instanceof RiskLevel){
+            RiskLevel rl = (RiskLevel) source;
+            if(world.getRiskLevel(rl.getId()) == rl){
+                JSONObject record = new JSONObject().put("t", "rl").put("id", rl.getId()).put("d", rl.getDescription());
+                if(rl.getColor() != null) record.put("c", rl.getColor().getRGB() & 0xFFFFFF);
+                write(record);
+            } else {
+                write(new JSONObject().put("t", "rlr").put("id", rl.getId()));
+            }
+        } else if(source instanceof World){
+            JSONObject record = getWorldRecord();
+            worldRecord = record.toString();
+            write(record);
+        }
+    }
+
+    private JSONObject getWorldRecord(){
+        JSONObject record = new JSONObject().put("t", "w");
+        if(world.getName() != null) record.put("n", world.getName());
+        record.put("sp", world.getShowPlaceId().toString());
+        if(world.getTileCenterColor() != null) record.put("tc", world.getTileCenterColor().getRGB() & 0xFFFFFF);
+        if(world.getPathColor() != null) record.put("pc", world.getPathColor().getRGB() & 0xFFFFFF);
+        if(world.getPathColorNstd() != null) record.put("pn", world.getPathColorNstd().getRGB() & 0xFFFFFF);
+        JSONObject pathColors = new JSONObject();
+        for(Map.Entry<String, Color> entry: world.getPathColors().entrySet()){
+            if(entry.getValue() != null) pathColors.put(entry.getKey(), entry.getValue().getRGB() & 0xFFFFFF);
+        }
+        record.put("pcs", pathColors);
+        WorldCoordinate home = world.getHome();
+        record.put("h", new JSONObject().put("l", getLayerID(home.getLayer())).put("x", home.getX()).put("y", home.getY()));
+        return record;
+    }
+
+    private static String getAreaKey(PlaceGroup area){
+        return area.getName() + "\n" + (area.getColor() != null ? area.getColor().getRGB() : "");
+    }
+
+    private void writeAreas(){
+        areas = world.getPlaceGroups();
+        areaKeys.clear();
+        JSONArray array = new JSONArray();
+        for(PlaceGroup area: areas){
+            areaKeys.add(getAreaKey(area));
+            JSONArray entry = new JSONArray().put(area.getName());
+            if(area.getColor() != null) entry.put(area.getColor().getRGB() & 0xFFFFFF);
+            else entry.put(JSONObject.NULL);
+            array.put(entry);
+        }
+        write(new JSONObject().put("t", "g").put("a", array));
+    }
+
+    /**
+     * Gets the index of an area in the last area record, writes a new area
+     * record if the area isn't in it or has been changed
+     */
+    private int getAreaIndex(PlaceGroup area){
+        int index = areas.indexOf(area);
+        if(index < 0 || !areaKeys.get(index).equals(getAreaKey(area))){
+            writeAreas();
+            index = areas.indexOf(area);
+        }
+        return index;
+    }
+
+    private static String getPathKey(Place place, Path path){
+        Place other = path.getOtherPlace(place);
+        return path.getExit(place) + ">" + other.getId() + ":" + path.getExit(other);
+    }
+
+    private JSONObject getPlaceRecord(Place place){
+        JSONObject record = new JSONObject().put("t", "p");
+        record.put("id", place.getId());
+        record.put("n", place.getName());
+        record.put("l", getLayerID(place.getLayer().getId()));
+        Integer origin = origins.get(place.getId());
+        if(origin != null && origin != NOT_IN_FILE && origin != place.getLayer().getId()){
+            record.put("o", getLayerID(origin));
+        }
+        record.put("x", place.getX());
+        record.put("y", place.getY());
+        if(place.getPlaceGroup() != null) record.put("a", getAreaIndex(place.getPlaceGroup()));
+        if(place.getRiskLevel() != null) record.put("r", place.getRiskLevel().getId());
+        if(place.getRecLevelMin() > -1) record.put("lmin", place.getRecLevelMin());
+        if(place.getRecLevelMax() > -1) record.put("lmax", place.getRecLevelMax());
+
+        JSONArray flags = new JSONArray();
+        for(Map.Entry<String, Boolean> flag: place.getFlags().entrySet()){
+            if(flag.getValue()) flags.put(flag.getKey());
+        }
+        if(flags.length() > 0) record.put("f", flags);
+        if(!place.getComments().isEmpty()) record.put("c", new JSONArray(place.getComments()));
+
+        if(!place.getChildren().isEmpty()){
+            JSONArray children = new JSONArray();
+            JSONArray childLayers = new JSONArray();
+            for(Place child: place.getChildren()){
+                children.put(child.getId());
+                childLayers.put(getLayerID(child.getLayer().getId()));
+            }
+            record.put("ch", children);
+            record.put("chl", childLayers);
+        }
+
+        if(!place.getPaths().isEmpty()){
+            JSONArray paths = new JSONArray();
+            for(Path path: place.getPaths()){
+                Place other = path.getOtherPlace(place);
+                paths.put(new JSONArray().put(path.getExit(place)).put(other.getId()).put(path.getExit(other))
+                        .put(getLayerID(other.getLayer().getId())));
+            }
+            record.put("pa", paths);
+        }
+        return record;
+    }
+}
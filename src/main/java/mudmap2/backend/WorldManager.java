@@ -25,12 +25,14 @@
 package mudmap2.backend;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import mudmap2.Environment;
-import mudmap2.backend.WorldFileReader.WorldFile;
 import mudmap2.backend.WorldFileReader.current.WorldFileDefault;
 
 /**
@@ -42,6 +44,12 @@ public class WorldManager {
     // loadedWorlds: <world, file>
     private static final HashMap<String, World> loadedWorlds = new HashMap<>();
 
+    // layers are loaded when they are accessed, see WorldFileDefault.setLazyLayers()
+    private static boolean progressiveOpen = true;
+
+    // reports changes of loaded world files by other programs, null if disabled
+    private static WorldFileWatcher fileWatcher;
+
     /**
      * Get loaded world or load world from file
      * @param file world file
@@ -53,11 +61,17 @@ public class WorldManager {
         if(loadedWorlds.containsKey(file)){ // world in list
             world = loadedWorlds.get(file);
         } else { // world not loaded
-            WorldFile worldFile = new WorldFileDefault(file);
+            WorldFileDefault worldFile = new WorldFileDefault(file);
             if(worldFile.canRead()){
+                worldFile.setLazyLayers(progressiveOpen);
                 world = worldFile.readFile();
-                worldFile.backup();
+                // the backup is made in the background
+                new WorldBackup(file).backupAsync();
+                openJournal(file, world);
+                // the replayed changes are in the journal
+                world.setSaved(world.getModCount());
                 putWorld(file, world);
+                WorldFileList.worldOpened(file);
             } else {
                 throw new Exception("Could not read world file");
             }
@@ -65,6 +79,63 @@ public class WorldManager {
         return world;
     }
 
+    /**
+     * Replays the changes that haven't been written to the world file yet
+     * and records further changes
+     * @param file world file
+     * @param world world read from file
+     */
+    private static void openJournal(String file, World world){
+        WorldJournal journal = new WorldJournal(world, file);
+        try {
+            journal.replay();
+            journal.open();
+            world.setJournal(journal);
+        } catch (IOException ex) {
+            Logger.getLogger(WorldManager.class.getName()).log(Level.SEVERE, "Couldn't open journal of " + file, ex);
+            journal.close();
+        }
+    }
+
+    /**
+     * Enables or disables the progressive opening of worlds. The places of a
+     * layer are put to the world when the layer is accessed, eg. by
+     * WorldTab, which loads the shown layers first and the remaining layers
+     * in the background
+     * @param progressive
+     */
+    public static void setProgressiveOpen(boolean progressive){
+        progressiveOpen = progressive;
+    }
+
+    public static boolean isProgressiveOpen(){
+        return progressiveOpen;
+    }
+
+    /**
+     * Sets the watcher for changes of the world files by other programs, the
+     * files of loaded worlds are watched
+     * @param watcher watcher or null
+     */
+    public static void setFileWatcher(WorldFileWatcher watcher){
+        fileWatcher = watcher;
+        if(watcher != null){
+            for(String file: loadedWorlds.keySet()) watchFile(file);
+        }
+    }
+
+    /**
+     * Gets the watcher for changes of the world files by other programs
+     * @return watcher or null
+     */
+    public static WorldFileWatcher getFileWatcher(){
+        return fileWatcher;
+    }
+
+    private static void watchFile(String file){
+        if(fileWatcher != null && file != null && new File(file).exists()) fileWatcher.watch(file);
+    }
+
     /**
      * Get map of all loaded worlds
      * @return
@@ -81,6 +152,7 @@ public class WorldManager {
     public static void putWorld(String file, World world){
         loadedWorlds.put(file, world);
         WorldFileList.setWorldName(file, world.getName());
+        watchFile(file);
     }
 
     /**
@@ -111,6 +183,8 @@ public class WorldManager {
         if(worldFile.canRead()){
             File file = new File(filename);
             if(!file.delete()) error = true;
+            new File(WorldJournal.getJournalFile(filename)).delete();
+            new File(WorldJournal.getNextJournalFile(filename)).delete();
             WorldFileList.removeWorldFileEntry(filename);
         }
         return error;
@@ -142,7 +216,13 @@ public class WorldManager {
      * @param file
      */
     public static void closeFile(String file){
-        loadedWorlds.remove(file);
+        World world = loadedWorlds.remove(file);
+        if(fileWatcher != null && file != null) fileWatcher.unwatch(file);
+        // remove unsaved changes from the journal
+        if(world != null && world.getJournal() != null && !loadedWorlds.containsValue(world)){
+            world.getJournal().discard();
+            world.setJournal(null);
+        }
     }
 
 }
\ No newline at end of file
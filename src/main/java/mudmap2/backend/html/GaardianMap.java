@@ -55,6 +55,7 @@ import java.util.logging.Logger;
 import mudmap2.backend.Layer;
 import mudmap2.backend.Path;
 import mudmap2.backend.Place;
+import mudmap2.backend.sssp.LayerGraph;
 
 /**
  *
@@ -159,27 +160,15 @@ public class GaardianMap {
         int yMin = layer.getYMin();
         int yMax = layer.getYMax();
 
+        LayerGraph layerGraph = layer.getWorld().getLayerGraph();
+        layerGraph.loadLinkedLayers(layer);
+
         // export rooms
         for(Place place: layer.getPlaces()){
             placeIds.put(place.getId(), ++maxPlaceId);
 
-            Boolean isEntrance = false;
-            for(Place parent: place.getParents()){
-                // place is an entrance if one of the parent places is on another layer
-                if(parent.getLayer() != place.getLayer()){
-                    isEntrance = true;
-                    break;
-                }
-            }
-            if(!isEntrance){
-                for(Place child: place.getChildren()){
-                    // place is an entrance if one of the parent places is on another layer
-                    if(child.getLayer() != place.getLayer()){
-                        isEntrance = true;
-                        break;
-                    }
-                }
-            }
+            // place is an entrance if it is linked to a place on another layer
+            Boolean isEntrance = layerGraph.isEntrance(place);
 
             // TODO: export colors
             int aggroType = 0;
@@ -1,49 +0,0 @@
-/*  MUD Map (v2) - A tool to create and organize maps for text-based games
- *  Copyright (C) 2014  Neop (email: mneop@web.de)
- *
- *  This program is free software; you can redistribute it and/or modify
- *  it under the terms of the GNU General Public License as published by
- *  the Free Software Foundation; either version 3 of the License, or
- *  (at your option) any later version.
- *
- *  This program is distributed in the hope that it will be useful, but
- *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
- *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
- *  for more details.
- *
- *  You should have received a copy of the GNU General Public License along
- *  with this program; if not, see <http://www.gnu.org/licenses/>.
- */
-
-/*  File description
- *
- *  An interface for breadth search implementations
- */
-
-package mudmap2.backend.sssp;
-
-import mudmap2.backend.Place;
-
-/**
- * Breadth search interface for the graph class
- * @author Neop
- */
-public interface BreadthSearch {
-    void breadthSearchReset();
-    BreadthSearchData getBreadthSearchData();
-    
-    public class BreadthSearchData{
-        public Place predecessor;
-        public boolean marked;
-        
-        public BreadthSearchData(){
-            predecessor = null;
-            marked = false;
-        }
-        
-        public void reset(){
-            predecessor = null;
-            marked = false;
-        }
-    }
-}
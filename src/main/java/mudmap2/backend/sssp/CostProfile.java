@@ -0,0 +1,82 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  A cost profile defines how expensive it is to walk along a path. The
+ *  default profile counts every path with a cost of 1 (breadth search)
+ */
+
+package mudmap2.backend.sssp;
+
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+
+/**
+ * Describes the cost of walking along paths for path finding
+ * @author neop
+ */
+public abstract class CostProfile {
+
+    /**
+     * Every path costs 1, routes are searched by breadth search
+     */
+    public static final CostProfile UNIFORM = new CostProfile() {
+        @Override
+        public double getCost(Place from, Path path, Place to) {
+            return 1.0;
+        }
+
+        @Override
+        public boolean isUniform() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "uniform";
+        }
+    };
+
+    /**
+     * Gets the cost of walking from one place to another one
+     * @param from place the path is entered from
+     * @param path the path
+     * @param to place the path leads to
+     * @return cost >= 0 or Double.POSITIVE_INFINITY if the path can't be used
+     */
+    public abstract double getCost(Place from, Path path, Place to);
+
+    /**
+     * Returns true, if every path has the same cost. Breadth search will be
+     * used instead of Dijkstra's algorithm in this case
+     * @return true, if all paths have the same cost
+     */
+    public boolean isUniform(){
+        return false;
+    }
+
+    /**
+     * Returns true, if the cost depends on place data like the risk level or
+     * flags. Cached routes of these profiles get invalid on every world change
+     * @return true, if cost depends on place data
+     */
+    public boolean dependsOnPlaceData(){
+        return !isUniform();
+    }
+
+}
@@ -0,0 +1,524 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Connectivity of the layers of a world. Entrances are places with a path,
+ *  child or parent on another layer. The entrances of loaded layers are
+ *  updated on place events and when a layer is loaded, layers that aren't
+ *  loaded yet are linked by the information of their loader. Routes are
+ *  searched with Dijkstra's algorithm on the entrances: the distances within
+ *  a layer are searched on a graph snapshot of that layer when the layer is
+ *  reached and are cached, the links to other layers are single steps. Only
+ *  the layers the search reaches are loaded and searched
+ */
+
+package mudmap2.backend.sssp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import mudmap2.backend.WorldEvent;
+import mudmap2.backend.WorldEventListener;
+
+/**
+ * Layer level connectivity graph and hierarchical route search
+ * @author neop
+ */
+public class LayerGraph implements WorldEventListener {
+
+    final World world;
+
+    // entrance -> linked places on other layers
+    final HashMap<Place, HashSet<Place>> links;
+    // layer -> entrances on the layer
+    final HashMap<Layer, HashSet<Place>> entrances;
+    // layer -> adjacent layers, derived from links, null if outdated
+    HashMap<Layer, HashSet<Layer>> adjacency;
+    // layer -> graph and distances within the layer
+    final HashMap<Layer, LayerData> layerData;
+    // topology version of the world after the last handled change
+    long topologyVersion;
+    // changes whenever the links are updated
+    long linkVersion;
+
+    /**
+     * Creates the layer graph of a world, layers that aren't loaded won't be
+     * loaded
+     * @param world
+     */
+    public LayerGraph(World world){
+        this.world = world;
+        links = new HashMap<>();
+        entrances = new HashMap<>();
+        layerData = new HashMap<>();
+        rebuild();
+    }
+
+    /**
+     * Rescans all places of the loaded layers
+     */
+    public synchronized void rebuild(){
+        links.clear();
+        entrances.clear();
+        for(Layer layer: new ArrayList<>(world.getLayers())){
+            if(!layer.isLoaded()) continue;
+            for(Place place: layer.getPlaces()){
+                HashSet<Place> linked = scan(place);
+                if(!linked.isEmpty()) putLinks(place, linked);
+            }
+        }
+        adjacency = null;
+        ++linkVersion;
+        topologyVersion = world.getTopologyVersion();
+    }
+
+    /**
+     * Checks whether a place is linked to a place on another layer
+     * @param place
+     * @return true, if the place is an entrance
+     */
+    public synchronized boolean isEntrance(Place place){
+        return links.containsKey(place);
+    }
+
+    /**
+     * Gets the entrances of a layer
+     * @param layer
+     * @return entrances
+     */
+    public synchronized Set<Place> getEntrances(Layer layer){
+        HashSet<Place> ret = entrances.get(layer);
+        if(ret == null) return Collections.emptySet();
+        return Collections.unmodifiableSet(new HashSet<>(ret));
+    }
+
+    /**
+     * Gets the layers that are linked to a layer
+     * @param layer
+     * @return adjacent layers
+     */
+    public synchronized Set<Layer> getAdjacentLayers(Layer layer){
+        HashSet<Layer> ret = getAdjacency().get(layer);
+        if(ret == null) return Collections.emptySet();
+        return Collections.unmodifiableSet(new HashSet<>(ret));
+    }
+
+    /**
+     * Searches the route with the least layer changes between two layers
+     * @param from
+     * @param to
+     * @return layers from start to end or null, if not connected
+     */
+    public synchronized List<Layer> findLayerRoute(Layer from, Layer to){
+        HashMap<Layer, HashSet<Layer>> adj = getAdjacency();
+        HashMap<Layer, Layer> predecessor = new HashMap<>();
+        ArrayDeque<Layer> queue = new ArrayDeque<>();
+        predecessor.put(from, null);
+        queue.add(from);
+
+        while(!queue.isEmpty()){
+            Layer layer = queue.pollFirst();
+            if(layer == to){
+                ArrayList<Layer> ret = new ArrayList<>();
+                for(Layer l = to; l != null; l = predecessor.get(l)) ret.add(l);
+                Collections.reverse(ret);
+                return ret;
+            }
+            HashSet<Layer> next = adj.get(layer);
+            if(next == null) continue;
+            for(Layer l: next){
+                if(!predecessor.containsKey(l)){
+                    predecessor.put(l, layer);
+                    queue.addLast(l);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Searches the shortest route between two places that may be on
+     * different layers. The route follows paths and child / parent
+     * connections to other layers, such a connection costs 1. The layers
+     * are loaded and searched as the search reaches them
+     * @param start
+     * @param end
+     * @param profile cost profile for paths
+     * @return route or null, if no route was found
+     */
+    public Route findRoute(Place start, Place end, CostProfile profile){
+        if(profile == null) profile = CostProfile.UNIFORM;
+        if(start == end) return new Route(Collections.singletonList(start), 0.0);
+
+        HashMap<Place, Double> distance = new HashMap<>();
+        HashMap<Place, Place> predecessor = new HashMap<>();
+        HashSet<Place> settled = new HashSet<>();
+        HashSet<Layer> expanded = new HashSet<>();
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+
+        distance.put(start, 0.0);
+        queue.add(new QueueEntry(start, 0.0));
+        while(!queue.isEmpty()){
+            QueueEntry entry = queue.poll();
+            Place place = entry.place;
+            if(!settled.add(place)) continue;
+            if(place == end) return getRoute(start, end, predecessor, entry.distance, profile);
+
+            // the links of the entrances are complete, when the linked
+            // layers are loaded
+            if(expanded.add(place.getLayer())) loadLinkedLayers(place.getLayer());
+
+            // within the layer
+            for(Map.Entry<Place, Double> target: getLayerDistances(place, profile, end).entrySet()){
+                relax(target.getKey(), entry.distance + target.getValue(), place, distance, predecessor, settled, queue);
+            }
+            // to other layers
+            for(Place other: getLinks(place)){
+                double cost = getLinkCost(place, other, profile);
+                if(!Double.isInfinite(cost)) relax(other, entry.distance + cost, place, distance, predecessor, settled, queue);
+            }
+        }
+        return null;
+    }
+
+    private static void relax(Place place, double dist, Place from, HashMap<Place, Double> distance,
+            HashMap<Place, Place> predecessor, HashSet<Place> settled, PriorityQueue<QueueEntry> queue){
+        if(settled.contains(place)) return;
+        Double old = distance.get(place);
+        if(old == null || dist < old){
+            distance.put(place, dist);
+            predecessor.put(place, from);
+            queue.add(new QueueEntry(place, dist));
+        }
+    }
+
+    /**
+     * Builds the route from the entrances the search passed, the segments
+     * within the layers are searched again
+     */
+    private Route getRoute(Place start, Place end, HashMap<Place, Place> predecessor, double cost, CostProfile profile){
+        ArrayList<Place> steps = new ArrayList<>();
+        for(Place place = end; place != null; place = predecessor.get(place)) steps.add(place);
+        Collections.reverse(steps);
+
+        ArrayList<Place> places = new ArrayList<>();
+        places.add(start);
+        for(int i = 1; i < steps.size(); ++i){
+            Place from = steps.get(i - 1), to = steps.get(i);
+            if(from.getLayer() != to.getLayer()){
+                places.add(to);
+            } else {
+                PathSearch search = new PathSearch(getLayerData(from.getLayer()).graph, from, profile, null);
+                if(!search.searchTo(to)) return null;
+                List<Place> segment = search.getRoute(to).getPlaces();
+                places.addAll(segment.subList(1, segment.size()));
+            }
+        }
+        return new Route(places, cost);
+    }
+
+    /**
+     * Loads the layers that might be linked to a layer, the entrances of the
+     * layer are complete afterwards
+     * @param layer
+     */
+    public void loadLinkedLayers(Layer layer){
+        for(Layer other: new ArrayList<>(world.getLayers())){
+            if(other.isLoaded()) continue;
+            Set<Integer> linked = other.getLinkedLayers();
+            if(linked == null || linked.contains(layer.getId())) other.load();
+        }
+    }
+
+    /**
+     * Gets the distances within the layer of a place to the entrances of the
+     * layer and to the end place, if it's on the same layer
+     */
+    private HashMap<Place, Double> getLayerDistances(Place source, CostProfile profile, Place end){
+        LayerData data = getLayerData(source.getLayer());
+        // profiles that depend on place data might change without a
+        // topology change
+        boolean cache = !profile.dependsOnPlaceData();
+        HashMap<Place, Double> ret = cache ? data.getDistances(profile, source) : null;
+        if(ret == null){
+            ret = data.search(source, profile, data.entrances);
+            if(cache) data.putDistances(profile, source, ret);
+        }
+        if(end.getLayer() == source.getLayer() && !ret.containsKey(end)){
+            ret = new HashMap<>(ret);
+            ret.putAll(data.search(source, profile, Collections.singleton(end)));
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the graph snapshot and entrances of a layer, rebuilt if the
+     * topology or the links changed
+     */
+    private synchronized LayerData getLayerData(Layer layer){
+        long version = world.getTopologyVersion();
+        LayerData data = layerData.get(layer);
+        if(data == null || data.graph.getVersion() != version){
+            data = new LayerData(new WorldGraph(layer.getPlaces(), version), getEntrances(layer), linkVersion);
+            layerData.put(layer, data);
+        } else if(data.linkVersion != linkVersion){
+            data = new LayerData(data.graph, getEntrances(layer), linkVersion);
+            layerData.put(layer, data);
+        }
+        return data;
+    }
+
+    private synchronized Set<Place> getLinks(Place place){
+        HashSet<Place> ret = links.get(place);
+        if(ret == null) return Collections.emptySet();
+        return new HashSet<>(ret);
+    }
+
+    /**
+     * Gets the cost of a layer change, a child / parent connection costs 1
+     */
+    private static double getLinkCost(Place from, Place to, CostProfile profile){
+        double ret = Double.POSITIVE_INFINITY;
+        for(Path path: from.getPaths()){
+            if(path.getOtherPlace(from) == to){
+                double cost = profile.getCost(from, path, to);
+                if(cost >= 0 && !Double.isNaN(cost)) ret = Math.min(ret, cost);
+            }
+        }
+        if(from.getChildren().contains(to) || from.getParents().contains(to)) ret = Math.min(ret, 1.0);
+        return ret;
+    }
+
+    /**
+     * Gets the places on other layers that are linked to a place
+     */
+    private HashSet<Place> scan(Place place){
+        HashSet<Place> ret = new HashSet<>();
+        // removed places have no links
+        if(place.getLayer() == null || !world.hasPlace(place)) return ret;
+
+        Layer layer = place.getLayer();
+        for(Path path: place.getPaths()){
+            Place other = path.getOtherPlace(place);
+            if(other.getLayer() != layer) ret.add(other);
+        }
+        for(Place other: place.getChildren()){
+            if(other.getLayer() != layer) ret.add(other);
+        }
+        for(Place other: place.getParents()){
+            if(other.getLayer() != layer) ret.add(other);
+        }
+        return ret;
+    }
+
+    private void putLinks(Place place, HashSet<Place> linked){
+        links.put(place, linked);
+        HashSet<Place> layerEntrances = entrances.get(place.getLayer());
+        if(layerEntrances == null) entrances.put(place.getLayer(), layerEntrances = new HashSet<>());
+        layerEntrances.add(place);
+    }
+
+    private void removeLinks(Place place){
+        links.remove(place);
+        // the layer of a place might have changed, remove from all layers
+        for(Map.Entry<Layer, HashSet<Place>> entry: entrances.entrySet()){
+            entry.getValue().remove(place);
+        }
+    }
+
+    /**
+     * Rescans a place
+     * @return previously linked places
+     */
+    private HashSet<Place> update(Place place){
+        HashSet<Place> old = links.get(place);
+        removeLinks(place);
+        HashSet<Place> linked = scan(place);
+        if(!linked.isEmpty()) putLinks(place, linked);
+        return old;
+    }
+
+    /**
+     * Updates the entrances after a place changed
+     * @param place
+     */
+    public synchronized void placeChanged(Place place){
+        HashSet<Place> affected = new HashSet<>();
+        HashSet<Place> old = update(place);
+        if(old != null) affected.addAll(old);
+        HashSet<Place> linked = links.get(place);
+        if(linked != null) affected.addAll(linked);
+        // the other side of added or removed links
+        for(Place other: affected) update(other);
+        adjacency = null;
+        ++linkVersion;
+    }
+
+    private HashMap<Layer, HashSet<Layer>> getAdjacency(){
+        if(adjacency == null){
+            adjacency = new HashMap<>();
+            for(Map.Entry<Place, HashSet<Place>> entry: links.entrySet()){
+                for(Place other: entry.getValue()) addAdjacency(entry.getKey().getLayer(), other.getLayer());
+            }
+            // layers that aren't loaded yet
+            for(Layer layer: new ArrayList<>(world.getLayers())){
+                if(layer.isLoaded()) continue;
+                Set<Integer> linked = layer.getLinkedLayers();
+                if(linked == null) continue;
+                for(Integer id: linked){
+                    Layer other = world.getLayer(id);
+                    if(other != null){
+                        addAdjacency(layer, other);
+                        addAdjacency(other, layer);
+                    }
+                }
+            }
+        }
+        return adjacency;
+    }
+
+    private void addAdjacency(Layer layer, Layer other){
+        HashSet<Layer> adj = adjacency.get(layer);
+        if(adj == null) adjacency.put(layer, adj = new HashSet<>());
+        adj.add(other);
+    }
+
+    @Override
+    public void worldEvent(WorldEvent event) {
+        handleEvent(event);
+        synchronized(this){
+            topologyVersion = world.getTopologyVersion();
+        }
+    }
+
+    private void handleEvent(WorldEvent event){
+        if(event instanceof WorldEvent.Batch){
+            for(WorldEvent e: ((WorldEvent.Batch) event).getEvents()){
+                // the other events of the batch tell what has been changed
+                if(!(e instanceof WorldEvent.Changed && e.getSource() instanceof World)) handleEvent(e);
+            }
+        } else if(event instanceof WorldEvent.AttributeChanged){
+            // names, flags etc. aren't part of the graph
+        } else if(event instanceof WorldEvent.PlaceEvent){
+            // the other place is updated with the changed links
+            placeChanged(((WorldEvent.PlaceEvent) event).getPlace());
+        } else if(event instanceof WorldEvent.LayerLoaded){
+            // places of a lazily loaded layer
+            for(Place place: ((WorldEvent.LayerLoaded) event).getLayer().getPlaces()) placeChanged(place);
+        } else if(event instanceof WorldEvent.LayerEvent){
+            // added or renamed layers have no links yet
+        } else {
+            handleChange(event.getSource());
+        }
+    }
+
+    private void handleChange(Object source){
+        if(source instanceof Place){
+            placeChanged((Place) source);
+        } else if(source instanceof Path){
+            for(Place place: ((Path) source).getPlaces()) placeChanged(place);
+        } else if(source instanceof World){
+            // settings don't change the graph, but the world might have been
+            // changed without telling which places, eg. by WorldDiff
+            boolean changed;
+            synchronized(this){
+                changed = topologyVersion != world.getTopologyVersion();
+            }
+            if(changed) rebuild();
+        }
+    }
+
+    /**
+     * Graph snapshot of the paths within a layer and the distances from
+     * places of the layer to its entrances
+     */
+    private static class LayerData {
+        final WorldGraph graph;
+        final Set<Place> entrances;
+        final long linkVersion;
+        // profile -> source place -> distances to the entrances
+        final HashMap<CostProfile, HashMap<Place, HashMap<Place, Double>>> distances;
+
+        public LayerData(WorldGraph graph, Set<Place> entrances, long linkVersion){
+            this.graph = graph;
+            this.entrances = entrances;
+            this.linkVersion = linkVersion;
+            distances = new HashMap<>();
+        }
+
+        synchronized HashMap<Place, Double> getDistances(CostProfile profile, Place source){
+            HashMap<Place, HashMap<Place, Double>> map = distances.get(profile);
+            return map == null ? null : map.get(source);
+        }
+
+        synchronized void putDistances(CostProfile profile, Place source, HashMap<Place, Double> dist){
+            HashMap<Place, HashMap<Place, Double>> map = distances.get(profile);
+            if(map == null) distances.put(profile, map = new HashMap<>());
+            map.put(source, dist);
+        }
+
+        /**
+         * Searches the layer until all reachable targets are settled
+         * @return distances to the reachable targets
+         */
+        HashMap<Place, Double> search(Place source, CostProfile profile, Set<Place> targets){
+            HashMap<Place, Double> ret = new HashMap<>();
+            int remaining = 0;
+            for(Place target: targets) if(target != source && graph.indexOf(target) >= 0) ++remaining;
+
+            PathSearch search = new PathSearch(graph, source, profile, null);
+            int v;
+            while(remaining > 0 && (v = search.nextIndex()) >= 0){
+                Place place = graph.places[v];
+                if(place != source && targets.contains(place)){
+                    ret.put(place, search.distance[v]);
+                    --remaining;
+                }
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Place in the queue of the route search
+     */
+    private static class QueueEntry implements Comparable<QueueEntry> {
+        final Place place;
+        final double distance;
+
+        public QueueEntry(Place place, double distance){
+            this.place = place;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(QueueEntry o) {
+            return Double.compare(distance, o.distance);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Single source path search. The search state (distances, predecessors) is
+ *  stored in the search object, not in the places, so that multiple searches
+ *  can run at the same time. The search runs on the compressed graph snapshot
+ *  of the world. Uniform cost profiles are searched breadth first, others with
+ *  Dijkstra's algorithm
+ */
+
+package mudmap2.backend.sssp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import mudmap2.backend.Place;
+
+/**
+ * Incremental single source shortest path search. Each call of next() settles
+ * the next nearest place
+ * @author neop
+ */
+public class PathSearch {
+
+    static final byte UNREACHED = 0;
+    static final byte QUEUED = 1;
+    static final byte SETTLED = 2;
+
+    final WorldGraph graph;
+    final Place start;
+    final CostProfile profile;
+    // edge costs, null for uniform profiles
+    final double[] costs;
+
+    // search state, indexed by graph place index
+    final double[] distance;
+    final int[] predecessor;
+    final byte[] state;
+
+    // queue for breadth search
+    final int[] queue;
+    int queueHead, queueTail;
+    // queue for Dijkstra
+    final Heap heap;
+
+    /**
+     * Creates a new search
+     * @param start start place
+     * @param profile cost profile
+     */
+    public PathSearch(Place start, CostProfile profile){
+        this(WorldGraph.of(start), start, profile, null);
+    }
+
+    /**
+     * Creates a new search on a graph snapshot
+     * @param graph graph that contains the start place
+     * @param start start place
+     * @param profile cost profile
+     * @param costs precomputed edge costs of the profile or null
+     */
+    PathSearch(WorldGraph graph, Place start, CostProfile profile, double[] costs){
+        if(start == null) throw new NullPointerException();
+        this.graph = graph;
+        this.start = start;
+        this.profile = profile == null ? CostProfile.UNIFORM : profile;
+        if(this.profile.isUniform()) this.costs = null;
+        else this.costs = costs != null ? costs : graph.getCosts(this.profile);
+
+        int n = graph.size();
+        distance = new double[n];
+        predecessor = new int[n];
+        state = new byte[n];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+
+        if(this.profile.isUniform()){
+            queue = new int[n];
+            heap = null;
+        } else {
+            queue = null;
+            heap = new Heap();
+        }
+        queueHead = queueTail = 0;
+
+        int s = graph.indexOf(start);
+        if(s < 0) throw new IllegalArgumentException("Start place is not in graph");
+        distance[s] = 0.0;
+        predecessor[s] = -1;
+        state[s] = QUEUED;
+        enqueue(s, 0.0);
+    }
+
+    /**
+     * Gets the start place
+     * @return start place
+     */
+    public Place getStart(){
+        return start;
+    }
+
+    /**
+     * Gets the cost profile
+     * @return cost profile
+     */
+    public CostProfile getProfile(){
+        return profile;
+    }
+
+    /**
+     * Settles the next nearest place
+     * @return next place or null if all reachable places were visited
+     */
+    public Place next(){
+        int v = nextIndex();
+        return v < 0 ? null : graph.places[v];
+    }
+
+    /**
+     * Settles the next nearest place
+     * @return graph index of the next place or -1
+     */
+    int nextIndex(){
+        int v = dequeue();
+        if(v < 0) return -1;
+        state[v] = SETTLED;
+
+        final int[] offsets = graph.offsets;
+        final int[] neighbors = graph.neighbors;
+        final boolean uniform = profile.isUniform();
+        for(int e = offsets[v]; e < offsets[v + 1]; ++e){
+            int w = neighbors[e];
+            if(state[w] == SETTLED) continue;
+
+            double cost = uniform ? 1.0 : costs[e];
+            if(cost < 0 || Double.isInfinite(cost) || Double.isNaN(cost)) continue;
+            double dist = distance[v] + cost;
+
+            if(state[w] == UNREACHED || (!uniform && dist < distance[w])){
+                // Dijkstra: decrease key by inserting again, the old entry
+                // will be skipped
+                distance[w] = dist;
+                predecessor[w] = v;
+                state[w] = QUEUED;
+                enqueue(w, dist);
+            }
+        }
+        return v;
+    }
+
+    /**
+     * Runs the search until a place is settled
+     * @param end place to reach
+     * @return true, if the place is reachable
+     */
+    public boolean searchTo(Place end){
+        int t = graph.indexOf(end);
+        if(t < 0) return false;
+        if(state[t] == SETTLED) return true;
+        int v;
+        while((v = nextIndex()) >= 0){
+            if(v == t) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the shortest distance to a place is known
+     * @param place
+     * @return true, if the place was settled
+     */
+    public boolean isSettled(Place place){
+        int i = graph.indexOf(place);
+        return i >= 0 && state[i] == SETTLED;
+    }
+
+    /**
+     * Gets the distance from the start place to a settled place
+     * @param place
+     * @return distance or Double.POSITIVE_INFINITY if not settled
+     */
+    public double getDistance(Place place){
+        int i = graph.indexOf(place);
+        if(i < 0 || state[i] != SETTLED) return Double.POSITIVE_INFINITY;
+        return distance[i];
+    }
+
+    /**
+     * Gets the predecessor of a settled place on its shortest route
+     * @param place
+     * @return predecessor or null
+     */
+    public Place getPredecessor(Place place){
+        int i = graph.indexOf(place);
+        if(i < 0 || state[i] != SETTLED || predecessor[i] < 0) return null;
+        return graph.places[predecessor[i]];
+    }
+
+    /**
+     * Gets the route from the start to a settled place
+     * @param end
+     * @return route or null, if the place wasn't settled
+     */
+    public Route getRoute(Place end){
+        int t = graph.indexOf(end);
+        if(t < 0 || state[t] != SETTLED) return null;
+        return getRoute(t);
+    }
+
+    /**
+     * Gets the route from the start to a settled place
+     * @param t graph index of the end place
+     * @return route
+     */
+    Route getRoute(int t){
+        ArrayList<Place> places = new ArrayList<>();
+        for(int v = t; v >= 0; v = predecessor[v]) places.add(graph.places[v]);
+        Collections.reverse(places);
+        return new Route(places, distance[t]);
+    }
+
+    /**
+     * Searches the shortest route between two places
+     * @param start
+     * @param end
+     * @param profile
+     * @return route or null, if end isn't reachable
+     */
+    public static Route findRoute(Place start, Place end, CostProfile profile){
+        PathSearch search = new PathSearch(start, profile);
+        if(search.searchTo(end)) return search.getRoute(end);
+        return null;
+    }
+
+    /**
+     * Searches the k nearest places that match a filter in a single pass.
+     * The start place is never returned, even if it matches
+     * @param start
+     * @param filter target filter
+     * @param k maximum number of results
+     * @param profile
+     * @return routes to the matching places, nearest first
+     */
+    public static List<Route> findNearest(Place start, PlaceFilter filter, int k, CostProfile profile){
+        ArrayList<Route> ret = new ArrayList<>();
+        if(k <= 0) return ret;
+
+        PathSearch search = new PathSearch(start, profile);
+        int v;
+        while((v = search.nextIndex()) >= 0){
+            Place place = search.graph.places[v];
+            if(place != start && filter.matches(place)){
+                ret.add(search.getRoute(v));
+                if(ret.size() >= k) break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Searches the nearest place that matches a filter, other than the start
+     * place
+     * @param start
+     * @param filter target filter
+     * @param profile
+     * @return route to the nearest matching place or null
+     */
+    public static Route findNearest(Place start, PlaceFilter filter, CostProfile profile){
+        List<Route> routes = findNearest(start, filter, 1, profile);
+        return routes.isEmpty() ? null : routes.get(0);
+    }
+
+    private void enqueue(int v, double dist){
+        if(queue != null) queue[queueTail++] = v;
+        else heap.add(v, dist);
+    }
+
+    private int dequeue(){
+        if(queue != null) return queueHead < queueTail ? queue[queueHead++] : -1;
+        while(heap.size > 0){
+            double dist = heap.peekKey();
+            int v = heap.poll();
+            // skip outdated entries
+            if(state[v] != SETTLED && dist == distance[v]) return v;
+        }
+        return -1;
+    }
+
+    /**
+     * Binary min heap of place indices
+     */
+    private static class Heap {
+        double[] keys = new double[16];
+        int[] values = new int[16];
+        int size = 0;
+
+        void add(int value, double key){
+            if(size == keys.length){
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while(i > 0){
+                int parent = (i - 1) >>> 1;
+                if(keys[parent] <= key) break;
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        double peekKey(){
+            return keys[0];
+        }
+
+        int poll(){
+            int ret = values[0];
+            --size;
+            double key = keys[size];
+            int value = values[size];
+            int i = 0;
+            while(true){
+                int child = 2 * i + 1;
+                if(child >= size) break;
+                if(child + 1 < size && keys[child + 1] < keys[child]) ++child;
+                if(keys[child] >= key) break;
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  A filter for places, used to describe the targets of nearest place searches
+ */
+
+package mudmap2.backend.sssp;
+
+import mudmap2.backend.Place;
+import mudmap2.backend.PlaceGroup;
+import mudmap2.backend.RiskLevel;
+
+/**
+ * Place filter with factories for common filters
+ * @author neop
+ */
+public abstract class PlaceFilter {
+
+    /**
+     * Checks whether a place matches the filter
+     * @param place
+     * @return true, if the place matches
+     */
+    public abstract boolean matches(Place place);
+
+    /**
+     * Matches places of a place group
+     * @param placeGroup
+     * @return filter
+     */
+    public static PlaceFilter byPlaceGroup(final PlaceGroup placeGroup){
+        return new PlaceFilter() {
+            @Override
+            public boolean matches(Place place) {
+                return place.getPlaceGroup() == placeGroup;
+            }
+        };
+    }
+
+    /**
+     * Matches places of a risk level
+     * @param riskLevel
+     * @return filter
+     */
+    public static PlaceFilter byRiskLevel(final RiskLevel riskLevel){
+        return new PlaceFilter() {
+            @Override
+            public boolean matches(Place place) {
+                return place.getRiskLevel() == riskLevel;
+            }
+        };
+    }
+
+    /**
+     * Matches places with a flag set
+     * @param flag flag name
+     * @return filter
+     */
+    public static PlaceFilter byFlag(final String flag){
+        return new PlaceFilter() {
+            @Override
+            public boolean matches(Place place) {
+                return place.getFlag(flag);
+            }
+        };
+    }
+
+    /**
+     * Matches places whose name contains a keyword (case insensitive)
+     * @param keyword
+     * @return filter
+     */
+    public static PlaceFilter byName(String keyword){
+        final String kw = keyword.toLowerCase();
+        return new PlaceFilter() {
+            @Override
+            public boolean matches(Place place) {
+                return place.getName().toLowerCase().contains(kw);
+            }
+        };
+    }
+
+    /**
+     * Matches places that match all filters
+     * @param filters
+     * @return filter
+     */
+    public static PlaceFilter and(final PlaceFilter... filters){
+        return new PlaceFilter() {
+            @Override
+            public boolean matches(Place place) {
+                for(PlaceFilter filter: filters){
+                    if(!filter.matches(place)) return false;
+                }
+                return true;
+            }
+        };
+    }
+}
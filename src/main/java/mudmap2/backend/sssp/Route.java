@@ -0,0 +1,105 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  A route is a sequence of places from a start to an end place, as found by
+ *  the path search
+ */
+
+package mudmap2.backend.sssp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import mudmap2.backend.Place;
+
+/**
+ * A sequence of connected places
+ * @author neop
+ */
+public class Route {
+
+    final List<Place> places;
+    final double cost;
+
+    /**
+     * Constructs a route
+     * @param places places from start to end
+     * @param cost total cost of the route
+     */
+    public Route(List<Place> places, double cost){
+        this.places = Collections.unmodifiableList(new ArrayList<>(places));
+        this.cost = cost;
+    }
+
+    /**
+     * Gets the places from start to end
+     * @return unmodifiable list of places
+     */
+    public List<Place> getPlaces(){
+        return places;
+    }
+
+    /**
+     * Gets the start place
+     * @return start place or null if route is empty
+     */
+    public Place getStart(){
+        if(places.isEmpty()) return null;
+        return places.get(0);
+    }
+
+    /**
+     * Gets the end place
+     * @return end place or null if route is empty
+     */
+    public Place getEnd(){
+        if(places.isEmpty()) return null;
+        return places.get(places.size() - 1);
+    }
+
+    /**
+     * Gets the number of steps (paths) of the route
+     * @return number of steps
+     */
+    public int getLength(){
+        return Math.max(0, places.size() - 1);
+    }
+
+    /**
+     * Gets the total cost of the route
+     * @return cost
+     */
+    public double getCost(){
+        return cost;
+    }
+
+    /**
+     * Checks whether a place is part of the route
+     * @param place
+     * @return true, if the route contains the place
+     */
+    public boolean contains(Place place){
+        return places.contains(place);
+    }
+
+    @Override
+    public String toString(){
+        return "Route " + getStart() + " -> " + getEnd() + " (length: " + getLength() + ")";
+    }
+}
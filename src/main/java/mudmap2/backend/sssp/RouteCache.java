@@ -0,0 +1,270 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  A bounded LRU cache for routes. Cached routes are stamped with a version
+ *  counter of the world and dropped, if a place or path on the route changes
+ */
+
+package mudmap2.backend.sssp;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import mudmap2.backend.WorldChangeBatch;
+import mudmap2.backend.WorldChangeListener;
+
+/**
+ * LRU cache for routes, keyed by start place, end place and cost profile
+ * @author neop
+ */
+public class RouteCache implements WorldChangeListener {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    final World world;
+    final int capacity;
+
+    final LinkedHashMap<Key, Entry> entries;
+    // places -> keys of the routes that contain the place
+    final Map<Place, HashSet<Key>> placeIndex;
+
+    long hits, misses;
+
+    /**
+     * Creates a route cache with default capacity
+     * @param world
+     */
+    public RouteCache(World world){
+        this(world, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a route cache
+     * @param world
+     * @param capacity maximum number of cached routes
+     */
+    public RouteCache(World world, int capacity){
+        this.world = world;
+        this.capacity = Math.max(1, capacity);
+        placeIndex = new HashMap<>();
+        hits = misses = 0;
+
+        // access ordered map: the least recently used entry comes first
+        entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true){
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if(size() > RouteCache.this.capacity){
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets a route from the cache or searches it, if it isn't cached
+     * @param start start place
+     * @param end end place
+     * @param profile cost profile
+     * @return route or null, if there is no route
+     */
+    public synchronized Route getRoute(Place start, Place end, CostProfile profile){
+        if(profile == null) profile = CostProfile.UNIFORM;
+        Key key = new Key(start, end, profile);
+
+        Entry entry = entries.get(key);
+        if(entry != null){
+            if(entry.stamp == getStamp(profile)){
+                hits++;
+                return entry.route;
+            }
+            // outdated
+            remove(key);
+        }
+
+        misses++;
+        Route route = PathSearch.findRoute(start, end, profile);
+        if(route != null){
+            entry = new Entry(route, getStamp(profile));
+            entries.put(key, entry);
+            index(key, entry);
+        }
+        return route;
+    }
+
+    /**
+     * Gets the number of cached routes
+     * @return number of routes
+     */
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    /**
+     * Gets the maximum number of cached routes
+     * @return capacity
+     */
+    public int getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * Gets the number of cache hits
+     * @return hits
+     */
+    public synchronized long getHits(){
+        return hits;
+    }
+
+    /**
+     * Gets the number of cache misses
+     * @return misses
+     */
+    public synchronized long getMisses(){
+        return misses;
+    }
+
+    /**
+     * Removes all routes and resets the hit / miss counters
+     */
+    public synchronized void clear(){
+        entries.clear();
+        placeIndex.clear();
+        hits = misses = 0;
+    }
+
+    /**
+     * Removes all routes that contain the place
+     * @param place
+     */
+    public synchronized void invalidate(Place place){
+        HashSet<Key> keys = placeIndex.get(place);
+        if(keys != null){
+            for(Key key: keys.toArray(new Key[keys.size()])) remove(key);
+        }
+    }
+
+    /**
+     * Gets the version stamp for routes of a cost profile.
+     * Adding a path anywhere might create a shorter route, other changes only
+     * affect routes that contain the changed places (see worldChanged())
+     * @param profile
+     * @return version stamp
+     */
+    private long getStamp(CostProfile profile){
+        if(profile.dependsOnPlaceData()) return world.getModCount();
+        return world.getPathVersion();
+    }
+
+    private void remove(Key key){
+        Entry entry = entries.remove(key);
+        if(entry != null) unindex(key, entry);
+    }
+
+    private void index(Key key, Entry entry){
+        for(Place place: entry.route.getPlaces()){
+            HashSet<Key> keys = placeIndex.get(place);
+            if(keys == null) placeIndex.put(place, keys = new HashSet<>());
+            keys.add(key);
+        }
+    }
+
+    private void unindex(Key key, Entry entry){
+        for(Place place: entry.route.getPlaces()){
+            HashSet<Key> keys = placeIndex.get(place);
+            if(keys != null){
+                keys.remove(key);
+                if(keys.isEmpty()) placeIndex.remove(place);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void worldChanged(Object source) {
+        if(source instanceof WorldChangeBatch){
+            for(Object object: ((WorldChangeBatch) source).getSources()) worldChanged(object);
+        } else if(source instanceof Place){
+            invalidate((Place) source);
+        } else if(source instanceof Path){
+            for(Place place: ((Path) source).getPlaces()) invalidate(place);
+        } else if(source instanceof World){
+            // removes outdated routes, others stay valid
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while(it.hasNext()){
+                Map.Entry<Key, Entry> entry = it.next();
+                if(entry.getValue().stamp != getStamp(entry.getKey().profile)){
+                    unindex(entry.getKey(), entry.getValue());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cache key
+     */
+    private static class Key {
+        final Place start, end;
+        final CostProfile profile;
+
+        public Key(Place start, Place end, CostProfile profile){
+            this.start = start;
+            this.end = end;
+            this.profile = profile;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + System.identityHashCode(start);
+            hash = 31 * hash + System.identityHashCode(end);
+            hash = 31 * hash + profile.hashCode();
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(this == obj) return true;
+            if(!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return start == other.start && end == other.end && profile.equals(other.profile);
+        }
+    }
+
+    /**
+     * Cached route with version stamp
+     */
+    private static class Entry {
+        final Route route;
+        final long stamp;
+
+        public Entry(Route route, long stamp){
+            this.route = route;
+            this.stamp = stamp;
+        }
+    }
+}
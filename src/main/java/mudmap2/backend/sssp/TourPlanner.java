@@ -0,0 +1,316 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Plans a short tour through a set of places. The pairwise distances are
+ *  computed in parallel (one single source search per place), the visiting
+ *  order is approximated by a nearest neighbour tour improved with 2-opt
+ */
+
+package mudmap2.backend.sssp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import mudmap2.backend.Place;
+
+/**
+ * Approximate travelling salesman tour through places. The tour starts at the
+ * start place and doesn't return to it
+ * @author neop
+ */
+public class TourPlanner {
+
+    // number of searches per fork/join task
+    static final int SEARCHES_PER_TASK = 4;
+
+    // computes the distances, shared by all planners
+    static ForkJoinPool pool;
+
+    final CostProfile profile;
+    // start place is at index 0
+    final List<Place> places;
+
+    final WorldGraph graph;
+    final double[] costs;
+    // graph index -> index in places or -1
+    final int[] placeIndex;
+    int placesInGraph;
+
+    double[][] distances;
+    List<Place> order;
+    final ArrayList<Place> unreachable;
+
+    volatile boolean cancelled;
+
+    /**
+     * Creates a tour planner
+     * @param start start place
+     * @param places places to visit, the start place may be included
+     * @param profile cost profile
+     */
+    public TourPlanner(Place start, Collection<Place> places, CostProfile profile){
+        if(start == null) throw new NullPointerException();
+        this.profile = profile == null ? CostProfile.UNIFORM : profile;
+
+        LinkedHashSet<Place> set = new LinkedHashSet<>();
+        set.add(start);
+        set.addAll(places);
+        this.places = new ArrayList<>(set);
+
+        graph = WorldGraph.of(start);
+        costs = this.profile.isUniform() ? null : graph.getCosts(this.profile);
+        placeIndex = new int[graph.size()];
+        Arrays.fill(placeIndex, -1);
+        for(int i = 0; i < this.places.size(); ++i){
+            int v = graph.indexOf(this.places.get(i));
+            if(v >= 0){
+                placeIndex[v] = i;
+                ++placesInGraph;
+            }
+        }
+
+        unreachable = new ArrayList<>();
+        cancelled = false;
+    }
+
+    /**
+     * Cancels a running planning, plan() will return null
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * Checks whether the planning was cancelled
+     * @return true, if cancelled
+     */
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Plans the tour
+     * @return tour route or null, if cancelled
+     */
+    public Route plan(){
+        computeDistances();
+        if(cancelled) return null;
+
+        int[] tour = nearestNeighborTour();
+        twoOpt(tour);
+        if(cancelled) return null;
+
+        order = new ArrayList<>(tour.length);
+        for(int i: tour) order.add(places.get(i));
+        return buildRoute();
+    }
+
+    /**
+     * Gets the places to visit, in visiting order
+     * @return places or null, if plan() wasn't called
+     */
+    public List<Place> getOrder(){
+        return order;
+    }
+
+    /**
+     * Gets the places that can't be reached from the start place
+     * @return unreachable places
+     */
+    public List<Place> getUnreachable(){
+        return Collections.unmodifiableList(unreachable);
+    }
+
+    /**
+     * Gets the distance matrix, the indices are those of getPlaces()
+     * @return distance matrix or null, if not computed yet
+     */
+    public double[][] getDistances(){
+        return distances;
+    }
+
+    /**
+     * Gets all places of the planner, the start place first
+     * @return places
+     */
+    public List<Place> getPlaces(){
+        return Collections.unmodifiableList(places);
+    }
+
+    /**
+     * Computes the pairwise distances in parallel
+     */
+    void computeDistances(){
+        int n = places.size();
+        distances = new double[n][n];
+        getPool().invoke(new DistanceTask(0, n));
+    }
+
+    /**
+     * Gets the pool that computes the distances
+     * @return pool
+     */
+    private static synchronized ForkJoinPool getPool(){
+        if(pool == null) pool = new ForkJoinPool();
+        return pool;
+    }
+
+    /**
+     * Searches the distances from one place to all others
+     * @param i index of the source place
+     */
+    void computeDistances(int i){
+        double[] row = distances[i];
+        for(int j = 0; j < row.length; ++j) row[j] = Double.POSITIVE_INFINITY;
+        row[i] = 0.0;
+
+        // places that aren't in the graph can't be reached
+        if(graph.indexOf(places.get(i)) < 0) return;
+
+        PathSearch search = new PathSearch(graph, places.get(i), profile, costs);
+        int remaining = placesInGraph - 1;
+        int v;
+        // stop as soon as all targets are settled
+        while(remaining > 0 && !cancelled && (v = search.nextIndex()) >= 0){
+            int j = placeIndex[v];
+            if(j >= 0 && j != i){
+                row[j] = search.distance[v];
+                --remaining;
+            }
+        }
+    }
+
+    /**
+     * Builds a nearest neighbour tour, beginning at the start place.
+     * Unreachable places are left out
+     * @return indices of the places in visiting order
+     */
+    int[] nearestNeighborTour(){
+        int n = places.size();
+        boolean[] visited = new boolean[n];
+        ArrayList<Integer> tour = new ArrayList<>();
+
+        // places that can't be reached from the start place
+        for(int j = 1; j < n; ++j){
+            if(Double.isInfinite(distances[0][j])){
+                visited[j] = true;
+                unreachable.add(places.get(j));
+            }
+        }
+
+        int current = 0;
+        visited[0] = true;
+        tour.add(0);
+        while(true){
+            int next = -1;
+            for(int j = 0; j < n; ++j){
+                if(!visited[j] && (next < 0 || distances[current][j] < distances[current][next])) next = j;
+            }
+            if(next < 0) break;
+            visited[next] = true;
+            tour.add(next);
+            current = next;
+        }
+
+        int[] ret = new int[tour.size()];
+        for(int i = 0; i < ret.length; ++i) ret[i] = tour.get(i);
+        return ret;
+    }
+
+    /**
+     * Improves an open tour with 2-opt moves until no move shortens it.
+     * The first place stays at the beginning. Segment reversal assumes
+     * symmetric distances
+     * @param tour
+     */
+    void twoOpt(int[] tour){
+        int n = tour.length;
+        boolean improved = true;
+        while(improved && !cancelled){
+            improved = false;
+            for(int i = 1; i < n - 1; ++i){
+                for(int j = i + 1; j < n; ++j){
+                    double before = distances[tour[i - 1]][tour[i]];
+                    double after = distances[tour[i - 1]][tour[j]];
+                    if(j + 1 < n){
+                        before += distances[tour[j]][tour[j + 1]];
+                        after += distances[tour[i]][tour[j + 1]];
+                    }
+                    if(after < before - 1e-9){
+                        for(int a = i, b = j; a < b; ++a, --b){
+                            int tmp = tour[a];
+                            tour[a] = tour[b];
+                            tour[b] = tmp;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Concatenates the routes between consecutive places of the tour
+     * @return route or null, if cancelled
+     */
+    Route buildRoute(){
+        ArrayList<Place> routePlaces = new ArrayList<>();
+        double cost = 0.0;
+        routePlaces.add(order.get(0));
+        for(int i = 1; i < order.size(); ++i){
+            if(cancelled) return null;
+            PathSearch search = new PathSearch(graph, order.get(i - 1), profile, costs);
+            if(!search.searchTo(order.get(i))) continue;
+            Route leg = search.getRoute(order.get(i));
+            List<Place> legPlaces = leg.getPlaces();
+            routePlaces.addAll(legPlaces.subList(1, legPlaces.size()));
+            cost += leg.getCost();
+        }
+        return new Route(routePlaces, cost);
+    }
+
+    /**
+     * Computes the distance rows of a range of source places
+     */
+    private class DistanceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int from, to;
+
+        public DistanceTask(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= SEARCHES_PER_TASK){
+                for(int i = from; i < to && !cancelled; ++i) computeDistances(i);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DistanceTask(from, mid), new DistanceTask(mid, to));
+            }
+        }
+    }
+}
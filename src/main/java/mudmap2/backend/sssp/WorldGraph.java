@@ -0,0 +1,301 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Immutable snapshot of the path graph in compressed sparse row format.
+ *  Places get a dense index, the neighbors of place i are stored in
+ *  neighbors[offsets[i]] to neighbors[offsets[i + 1] - 1]. The edge costs
+ *  of a cost profile are computed once into an array indexed like the
+ *  edges, so graph algorithms iterate over primitive arrays instead of
+ *  following the HashSets and Path objects of the places
+ */
+
+package mudmap2.backend.sssp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+
+/**
+ * Compressed sparse row snapshot of the path graph
+ * @author neop
+ */
+public class WorldGraph {
+
+    final long version;
+
+    // dense index -> place and back
+    final Place[] places;
+    final HashMap<Place, Integer> index;
+
+    // CSR adjacency, an undirected path is stored as two edges
+    final int[] offsets;
+    final int[] neighbors;
+
+    // edge costs of profiles that don't depend on place data
+    final WeakHashMap<CostProfile, double[]> costCache;
+
+    /**
+     * Builds a graph snapshot
+     * @param places places of the graph, paths to other places are left out
+     * @param version version of the graph source
+     */
+    public WorldGraph(Collection<Place> places, long version){
+        this.version = version;
+        int n = places.size();
+        this.places = places.toArray(new Place[n]);
+        index = new HashMap<>(n * 2);
+        for(int i = 0; i < n; ++i) index.put(this.places[i], i);
+
+        // count edges
+        offsets = new int[n + 1];
+        for(int i = 0; i < n; ++i){
+            int degree = 0;
+            for(Path path: this.places[i].getPaths()){
+                Place other = path.getOtherPlace(this.places[i]);
+                if(other != this.places[i] && index.containsKey(other)) ++degree;
+            }
+            offsets[i + 1] = offsets[i] + degree;
+        }
+
+        // fill edges
+        neighbors = new int[offsets[n]];
+        for(int i = 0; i < n; ++i){
+            int pos = offsets[i];
+            for(Path path: this.places[i].getPaths()){
+                Place other = path.getOtherPlace(this.places[i]);
+                Integer j = index.get(other);
+                if(other != this.places[i] && j != null) neighbors[pos++] = j;
+            }
+        }
+        costCache = new WeakHashMap<>();
+    }
+
+    /**
+     * Builds a graph of all places that are reachable from a place, eg. for
+     * places that don't belong to a world
+     * @param start
+     * @return graph
+     */
+    public static WorldGraph ofComponent(Place start){
+        ArrayList<Place> component = new ArrayList<>();
+        HashMap<Place, Boolean> visited = new HashMap<>();
+        ArrayDeque<Place> queue = new ArrayDeque<>();
+        visited.put(start, true);
+        queue.add(start);
+        while(!queue.isEmpty()){
+            Place place = queue.pollFirst();
+            component.add(place);
+            for(Path path: place.getPaths()){
+                Place other = path.getOtherPlace(place);
+                if(!visited.containsKey(other)){
+                    visited.put(other, true);
+                    queue.addLast(other);
+                }
+            }
+        }
+        return new WorldGraph(component, -1);
+    }
+
+    /**
+     * Gets a graph that contains the place: the graph of the place's world
+     * or a graph of its component, if it doesn't belong to a world
+     * @param place
+     * @return graph
+     */
+    public static WorldGraph of(Place place){
+        if(place.getLayer() != null && place.getLayer().getWorld() != null){
+            WorldGraph graph = place.getLayer().getWorld().getGraph();
+            if(graph.indexOf(place) >= 0) return graph;
+        }
+        return ofComponent(place);
+    }
+
+    /**
+     * Gets the version of the source at the time of creation
+     * @return version
+     */
+    public long getVersion(){
+        return version;
+    }
+
+    /**
+     * Gets the number of places
+     * @return number of places
+     */
+    public int size(){
+        return places.length;
+    }
+
+    /**
+     * Gets the number of directed edges (twice the number of paths)
+     * @return number of edges
+     */
+    public int getEdgeCount(){
+        return neighbors.length;
+    }
+
+    /**
+     * Gets the index of a place
+     * @param place
+     * @return index or -1 if the place is not in the graph
+     */
+    public int indexOf(Place place){
+        Integer i = index.get(place);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Gets a place by index
+     * @param i
+     * @return place
+     */
+    public Place getPlace(int i){
+        return places[i];
+    }
+
+    /**
+     * Gets the number of neighbors of a place
+     * @param i place index
+     * @return degree
+     */
+    public int getDegree(int i){
+        return offsets[i + 1] - offsets[i];
+    }
+
+    /**
+     * Gets the edge costs of a cost profile. The costs of profiles that don't
+     * depend on place data are computed only once per snapshot, the returned
+     * array must not be modified
+     * @param profile
+     * @return costs, indexed like the edges
+     */
+    public double[] getCosts(CostProfile profile){
+        if(profile == null || profile.isUniform()){
+            double[] costs = new double[neighbors.length];
+            Arrays.fill(costs, 1.0);
+            return costs;
+        }
+        if(profile.dependsOnPlaceData()) return computeCosts(profile);
+
+        synchronized(costCache){
+            double[] costs = costCache.get(profile);
+            if(costs == null) costCache.put(profile, costs = computeCosts(profile));
+            return costs;
+        }
+    }
+
+    /**
+     * Computes the edge costs of a cost profile, the paths are looked up the
+     * same way as the edges have been created
+     */
+    private double[] computeCosts(CostProfile profile){
+        double[] costs = new double[neighbors.length];
+        // paths that have been removed since the snapshot can't be used
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        boolean[] done = new boolean[neighbors.length];
+        for(int i = 0; i < places.length; ++i){
+            for(Path path: places[i].getPaths()){
+                Place other = path.getOtherPlace(places[i]);
+                Integer j = index.get(other);
+                if(other == places[i] || j == null) continue;
+                for(int e = offsets[i]; e < offsets[i + 1]; ++e){
+                    if(!done[e] && neighbors[e] == j){
+                        costs[e] = profile.getCost(places[i], path, other);
+                        done[e] = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Computes the number of steps from a place to all others
+     * @param source source place index
+     * @return steps or -1 for unreachable places
+     */
+    public int[] breadthSearch(int source){
+        int[] steps = new int[places.length];
+        Arrays.fill(steps, -1);
+        int[] queue = new int[places.length];
+        int head = 0, tail = 0;
+
+        steps[source] = 0;
+        queue[tail++] = source;
+        while(head < tail){
+            int v = queue[head++];
+            for(int e = offsets[v]; e < offsets[v + 1]; ++e){
+                int w = neighbors[e];
+                if(steps[w] < 0){
+                    steps[w] = steps[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Labels the connected components of the graph
+     * @return component number of each place, starting at 0
+     */
+    public int[] getComponents(){
+        int[] component = new int[places.length];
+        Arrays.fill(component, -1);
+        int[] queue = new int[places.length];
+
+        int count = 0;
+        for(int s = 0; s < places.length; ++s){
+            if(component[s] >= 0) continue;
+            int head = 0, tail = 0;
+            component[s] = count;
+            queue[tail++] = s;
+            while(head < tail){
+                int v = queue[head++];
+                for(int e = offsets[v]; e < offsets[v + 1]; ++e){
+                    int w = neighbors[e];
+                    if(component[w] < 0){
+                        component[w] = count;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            ++count;
+        }
+        return component;
+    }
+
+    /**
+     * Checks whether a place is reachable from another one
+     * @param from
+     * @param to
+     * @return true, if there is a route
+     */
+    public boolean isReachable(Place from, Place to){
+        int i = indexOf(from), j = indexOf(to);
+        if(i < 0 || j < 0) return false;
+        return breadthSearch(i)[j] >= 0;
+    }
+}
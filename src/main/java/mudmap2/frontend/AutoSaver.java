@@ -0,0 +1,182 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Saves modified worlds periodically. A world is only saved if it has been
+ *  changed, if no change happened for a short time (so that bursts of edits
+ *  are saved at once) and if the user isn't dragging or typing. The I/O is
+ *  done by WorldTab.save() in the background
+ */
+
+package mudmap2.frontend;
+
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import javax.swing.Timer;
+import mudmap2.backend.World;
+
+/**
+ * Autosave scheduler for opened worlds
+ * @author neop
+ */
+public class AutoSaver implements ActionListener, AWTEventListener {
+
+    // check interval in milliseconds
+    static final int TICK = 1000;
+
+    final Collection<WorldTab> tabs;
+    final Timer timer;
+
+    // minimum time between two saves of a world
+    long interval = 60000;
+    // time without changes before a world is saved
+    long quietDelay = 3000;
+    // time without user input before a world is saved
+    long activityDelay = 2000;
+    boolean enabled = true;
+
+    long lastInputTime;
+    // pressed mouse buttons
+    int mouseButtons;
+
+    /**
+     * Creates an autosave scheduler
+     * @param tabs opened world tabs, read on every tick
+     */
+    public AutoSaver(Collection<WorldTab> tabs){
+        this.tabs = tabs;
+        timer = new Timer(TICK, this);
+    }
+
+    /**
+     * Starts saving the worlds
+     */
+    public void start(){
+        Toolkit.getDefaultToolkit().addAWTEventListener(this,
+                AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
+        timer.start();
+    }
+
+    /**
+     * Stops saving the worlds
+     */
+    public void stop(){
+        timer.stop();
+        Toolkit.getDefaultToolkit().removeAWTEventListener(this);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Sets the minimum time between two saves of a world
+     * @param interval time in milliseconds
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public long getQuietDelay() {
+        return quietDelay;
+    }
+
+    /**
+     * Sets the time without changes before a world is saved
+     * @param quietDelay time in milliseconds
+     */
+    public void setQuietDelay(long quietDelay) {
+        this.quietDelay = quietDelay;
+    }
+
+    public long getActivityDelay() {
+        return activityDelay;
+    }
+
+    /**
+     * Sets the time without user input before a world is saved
+     * @param activityDelay time in milliseconds
+     */
+    public void setActivityDelay(long activityDelay) {
+        this.activityDelay = activityDelay;
+    }
+
+    /**
+     * Checks whether the user is dragging or has recently used mouse or
+     * keyboard
+     * @param now current time in milliseconds
+     * @return true, if the user is active
+     */
+    boolean isUserActive(long now){
+        return mouseButtons != 0 || now - lastInputTime < activityDelay;
+    }
+
+    /**
+     * Checks whether a world should be saved now
+     * @param tab
+     * @param now current time in milliseconds
+     * @return true, if the world should be saved
+     */
+    boolean isDue(WorldTab tab, long now){
+        World world = tab.getWorld();
+        return tab.isAutoSaveEnabled()
+                && world.isModified()
+                && !tab.isSaving()
+                && now - world.getLastChangeTime() >= quietDelay
+                && now - tab.getLastSaveTime() >= interval;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        long now = System.currentTimeMillis();
+        if(!enabled || isUserActive(now)) return;
+        // tabs might be closed while saving
+        for(WorldTab tab: new ArrayList<>(tabs)){
+            if(isDue(tab, now)) tab.autoSave();
+        }
+    }
+
+    @Override
+    public void eventDispatched(AWTEvent event) {
+        if(event instanceof MouseEvent){
+            int id = event.getID();
+            // hovering doesn't change the world
+            if(id == MouseEvent.MOUSE_MOVED || id == MouseEvent.MOUSE_ENTERED
+                    || id == MouseEvent.MOUSE_EXITED) return;
+            int modifiers = ((MouseEvent) event).getModifiersEx();
+            mouseButtons = modifiers & (InputEvent.BUTTON1_DOWN_MASK
+                    | InputEvent.BUTTON2_DOWN_MASK | InputEvent.BUTTON3_DOWN_MASK);
+        }
+        lastInputTime = System.currentTimeMillis();
+    }
+}
@@ -131,6 +131,22 @@ public final class ScrollLabel extends JPanel implements Runnable{
         if(is_default_text) nextMessage();
     }
 
+    /**
+     * Replaces a message that is shown or waiting on the stack, eg. to show
+     * the progress of a task without stacking up messages. The message is
+     * added, if the previous one has already been removed
+     * @param previous message to replace
+     * @param message new message
+     */
+    synchronized public void updateMessage(String previous, String message){
+        int index = messages.indexOf(previous);
+        if(!is_default_text && current_text != null && current_text.equals(previous)){
+            setDisplayedText(message);
+        } else if(index >= 0){
+            messages.set(index, message);
+        } else showMessage(message);
+    }
+
     /**
      * Removes the currently shown message from the stack and shows the next one
      */
@@ -33,6 +33,7 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JFrame;
@@ -44,6 +45,7 @@ import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
 import mudmap2.backend.Layer;
@@ -51,9 +53,17 @@ import mudmap2.backend.Layer.PlaceNotFoundException;
 import mudmap2.backend.LayerElement;
 import mudmap2.backend.Path;
 import mudmap2.backend.Place;
+import mudmap2.backend.PlaceGroup;
+import mudmap2.backend.RiskLevel;
 import mudmap2.backend.World;
-import mudmap2.backend.WorldChangeListener;
 import mudmap2.backend.WorldCoordinate;
+import mudmap2.backend.WorldEvent;
+import mudmap2.backend.WorldEventListener;
+import mudmap2.backend.sssp.CostProfile;
+import mudmap2.backend.sssp.PathSearch;
+import mudmap2.backend.sssp.PlaceFilter;
+import mudmap2.backend.sssp.Route;
+import mudmap2.backend.sssp.TourPlanner;
 import mudmap2.frontend.dialog.PlaceGroupDialog;
 import mudmap2.frontend.dialog.PathConnectDialog;
 import mudmap2.frontend.dialog.PathConnectNeighborsDialog;
@@ -66,7 +76,7 @@ import mudmap2.frontend.dialog.PlaceSelectionDialog;
  *
  * @author neop
  */
-public class WorldPanel extends JPanel implements WorldChangeListener {
+public class WorldPanel extends JPanel implements WorldEventListener {
     private static final long serialVersionUID = 1L;
 
     // tile size in pixel
@@ -171,7 +181,7 @@ public class WorldPanel extends JPanel implements WorldChangeListener {
         });
         addMouseMotionListener((MouseMotionListener) new TabMouseMotionListener());
 
-        if(!passive) world.addChangeListener(this);
+        if(!passive) world.addEventListener(this);
     }
 
     public MapPainter getMappainter() {
@@ -713,8 +723,45 @@ public class WorldPanel extends JPanel implements WorldChangeListener {
     }
 
     @Override
-    public void worldChanged(Object source) {
-        repaint();
+    public void worldEvent(WorldEvent event) {
+        if(isShown(event)) repaint();
+    }
+
+    /**
+     * Checks whether an event changes the shown map, changes of places on
+     * other maps aren't visible
+     * @param event
+     * @return true, if the map has to be repainted
+     */
+    private boolean isShown(WorldEvent event){
+        if(event instanceof WorldEvent.Batch){
+            for(WorldEvent e: ((WorldEvent.Batch) event).getEvents()){
+                if(isShown(e)) return true;
+            }
+            return false;
+        }
+        return !(event instanceof WorldEvent.PlaceEvent) || isShown((WorldEvent.PlaceEvent) event);
+    }
+
+    /**
+     * Checks whether a place event changes the shown map. The names of
+     * parents and children on other maps are shown, too
+     * @param event place event
+     * @return true, if the map has to be repainted
+     */
+    private boolean isShown(WorldEvent.PlaceEvent event){
+        int layer = getPosition().getLayer();
+        if(event instanceof WorldEvent.PlaceRemoved && ((WorldEvent.PlaceRemoved) event).getPosition().getLayer() == layer) return true;
+        if(event instanceof WorldEvent.PlaceMoved && ((WorldEvent.PlaceMoved) event).getOldPosition().getLayer() == layer) return true;
+        return isShown(event.getPlace(), layer) || isShown(event.getOtherPlace(), layer);
+    }
+
+    private static boolean isShown(Place place, int layer){
+        if(place == null || place.getLayer() == null) return false;
+        if(place.getLayer().getId() == layer) return true;
+        for(Place other: place.getChildren()) if(other.getLayer().getId() == layer) return true;
+        for(Place other: place.getParents()) if(other.getLayer().getId() == layer) return true;
+        return false;
     }
 
     /**
@@ -1329,6 +1376,13 @@ public class WorldPanel extends JPanel implements WorldChangeListener {
                         miPlaceGroup.setToolTipText("Sets a common place group for all selected places");
                     }
                     add(miPlaceGroup);
+
+                    if(placeGroup.size() > 1){
+                        JMenuItem miPlanTour = new JMenuItem("*Plan tour");
+                        miPlanTour.addActionListener(new PlanTourActionListener(place, placeGroup));
+                        miPlanTour.setToolTipText("Find a short tour from this place through all selected places");
+                        add(miPlanTour);
+                    }
                 }
 
                 // ------------- Paths ------------------
@@ -1424,6 +1478,22 @@ public class WorldPanel extends JPanel implements WorldChangeListener {
                         miShortestPath.addActionListener(this);
                         mPaths.add(new JSeparator());
                         mPaths.add(miShortestPath);
+
+                        JMenu mNearest = new JMenu("Find nearest");
+                        mNearest.setToolTipText("Find the nearest place of a place group or risk level");
+                        for(PlaceGroup pg: getWorld().getPlaceGroups()){
+                            JMenuItem miNearest = new JMenuItem(pg.getName());
+                            miNearest.addActionListener(new FindNearestActionListener(place, PlaceFilter.byPlaceGroup(pg), pg.getName()));
+                            mNearest.add(miNearest);
+                        }
+                        if(mNearest.getMenuComponentCount() > 0 && !getWorld().getRiskLevels().isEmpty())
+                            mNearest.add(new JSeparator());
+                        for(RiskLevel rl: getWorld().getRiskLevels()){
+                            JMenuItem miNearest = new JMenuItem(rl.getDescription());
+                            miNearest.addActionListener(new FindNearestActionListener(place, PlaceFilter.byRiskLevel(rl), rl.getDescription()));
+                            mNearest.add(miNearest);
+                        }
+                        if(mNearest.getMenuComponentCount() > 0) mPaths.add(mNearest);
                     }
                 }
 
@@ -1592,20 +1662,19 @@ public class WorldPanel extends JPanel implements WorldChangeListener {
                         Place end = psdlg.getSelection();
                         if(end != null){
                             placeGroupReset();
-                            Place place_it = getWorld().breadthSearch(place, end);
-                            if(place_it == null){
+                            Route route;
+                            // routes to other layers are planned on the
+                            // entrances, only the layers on the way are searched
+                            if(end.getLayer() != place.getLayer()) route = getWorld().getLayerGraph().findRoute(place, end, CostProfile.UNIFORM);
+                            else route = getWorld().getRouteCache().getRoute(place, end, CostProfile.UNIFORM);
+                            if(route == null){
                                 callMessageListeners("No Path found");
                                 JOptionPane.showMessageDialog(this, "Could not find path to " + end.getName());
                             } else {
-                                int path_length = 0;
-                                while(place_it != null){
-                                    placeGroup.add(place_it);
-                                    place_it = place_it.getBreadthSearchData().predecessor;
-                                    ++path_length;
-                                }
+                                placeGroup.addAll(route.getPlaces());
                                 //repaint();
-                                worldChanged(place); // workaround: why doesn't repaint work?
-                                callMessageListeners("Path found, length: " + (path_length - 1));
+                                WorldPanel.this.repaint(); // repaint() would repaint the context menu
+                                callMessageListeners("Path found, length: " + route.getLength());
                             }
 
                         }
@@ -1697,6 +1766,81 @@ public class WorldPanel extends JPanel implements WorldChangeListener {
             }
         }
 
+        /**
+         * Selects the route to the nearest place that matches a filter
+         */
+        private class FindNearestActionListener implements ActionListener {
+
+            Place start;
+            PlaceFilter filter;
+            String description;
+
+            public FindNearestActionListener(Place start, PlaceFilter filter, String description) {
+                this.start = start;
+                this.filter = filter;
+                this.description = description;
+            }
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                Route route = PathSearch.findNearest(start, filter, CostProfile.UNIFORM);
+                placeGroupReset();
+                if(route == null){
+                    callMessageListeners("No place found: " + description);
+                } else {
+                    placeGroup.addAll(route.getPlaces());
+                    WorldPanel.this.repaint();
+                    callMessageListeners("Nearest place: " + route.getEnd().getName() + ", length: " + route.getLength());
+                }
+            }
+        }
+
+        /**
+         * Plans a tour through the selected places in the background and
+         * selects the places of the tour when done
+         */
+        private class PlanTourActionListener implements ActionListener {
+
+            Place start;
+            HashSet<Place> places;
+
+            public PlanTourActionListener(Place start, HashSet<Place> places) {
+                this.start = start;
+                this.places = new HashSet<>(places);
+            }
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                final TourPlanner planner = new TourPlanner(start, places, CostProfile.UNIFORM);
+                callMessageListeners("Planning tour through " + places.size() + " places...");
+
+                new SwingWorker<Route, Void>() {
+                    @Override
+                    protected Route doInBackground() throws Exception {
+                        return planner.plan();
+                    }
+
+                    @Override
+                    protected void done() {
+                        try {
+                            Route route = get();
+                            if(route != null){
+                                placeGroupReset();
+                                placeGroup.addAll(route.getPlaces());
+                                WorldPanel.this.repaint();
+                                String message = "Tour planned, length: " + route.getLength();
+                                if(!planner.getUnreachable().isEmpty()) message += ", " + planner.getUnreachable().size() + " places unreachable";
+                                callMessageListeners(message);
+                            }
+                        } catch (InterruptedException | ExecutionException ex) {
+                            Logger.getLogger(WorldPanel.class.getName()).log(Level.SEVERE, null, ex);
+                            callMessageListeners("Could not plan tour");
+                        }
+                    }
+                }.execute();
+            }
+        }
+
         /**
          * removes a path, if called
          */
@@ -0,0 +1,104 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Loads the layers of a progressively opened world in the background. The
+ *  thread only schedules the layers, each layer is put to the world on the
+ *  event dispatch thread, so that the world and the GUI are accessed from one
+ *  thread and user input can be handled between two layers
+ */
+
+package mudmap2.frontend;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.SwingUtilities;
+import mudmap2.backend.Layer;
+import mudmap2.backend.World;
+
+/**
+ * Loads the layers of a world that aren't loaded yet
+ * @author neop
+ */
+public class LayerStreamer implements Runnable {
+
+    final ArrayList<Layer> layers;
+    Thread thread;
+    volatile boolean stopped = false;
+
+    /**
+     * Creates a layer loader, call it on the event dispatch thread
+     * @param world world
+     * @param first layers that are loaded first, eg. the shown layer
+     */
+    public LayerStreamer(World world, Collection<Layer> first){
+        layers = new ArrayList<>(first);
+        for(Layer layer: world.getLayers()){
+            if(!layers.contains(layer)) layers.add(layer);
+        }
+    }
+
+    /**
+     * Starts loading the layers in the background
+     */
+    public void start(){
+        thread = new Thread(this, "Layer loader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops loading layers, a layer that is being loaded is finished
+     */
+    public void stop(){
+        stopped = true;
+    }
+
+    /**
+     * Checks whether layers are being loaded
+     * @return true, if the loader is still running
+     */
+    public boolean isRunning(){
+        return thread != null && thread.isAlive();
+    }
+
+    @Override
+    public void run() {
+        for(final Layer layer: layers){
+            if(stopped) break;
+            if(layer.isLoaded()) continue;
+            try {
+                SwingUtilities.invokeAndWait(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(!stopped) layer.load();
+                    }
+                });
+            } catch (InterruptedException ex) {
+                break;
+            } catch (InvocationTargetException ex) {
+                Logger.getLogger(LayerStreamer.class.getName()).log(Level.SEVERE, "Couldn't load layer " + layer.getId(), ex);
+            }
+        }
+    }
+
+}
@@ -36,6 +36,9 @@ import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.logging.Level;
@@ -54,10 +57,13 @@ import javax.swing.JSeparator;
 import javax.swing.JTabbedPane;
 import javax.swing.KeyStroke;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import mudmap2.backend.World;
 import mudmap2.backend.WorldFileList;
+import mudmap2.backend.WorldFileWatcher;
 import mudmap2.backend.WorldFileReader.WorldFile;
 import mudmap2.backend.WorldManager;
 import mudmap2.backend.html.GaardianMap;
@@ -81,11 +87,16 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
 
     // Contains all opened maps <name, worldtab>
     HashMap<World, WorldTab> worldTabs;
+    // saves modified worlds periodically
+    AutoSaver autoSaver;
 
     // GUI elements
+    JMenu menuFileOpenRecent;
     JCheckBoxMenuItem menuEditCurvedPaths;
     JCheckBoxMenuItem menuEditShowCursor;
     JCheckBoxMenuItem menuEditShowGrid;
+    JCheckBoxMenuItem menuEditAutoSave;
+    JCheckBoxMenuItem menuEditCompress;
 
     JTabbedPane tabbedPane = null;
     JPanel infoPanel = null;
@@ -119,6 +130,29 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
         });
 
         initGui();
+
+        autoSaver = new AutoSaver(worldTabs.values());
+        autoSaver.start();
+
+        // reload world files changed by other programs
+        WorldFileWatcher watcher = new WorldFileWatcher(new WorldFileWatcher.Listener() {
+            @Override
+            public void worldFileChanged(final String filename) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        World world = WorldManager.getWorlds().get(filename);
+                        if(world != null && worldTabs.containsKey(world)) worldTabs.get(world).reloadWorldFile();
+                    }
+                });
+            }
+        });
+        try {
+            watcher.start();
+            WorldManager.setFileWatcher(watcher);
+        } catch (IOException ex) {
+            Logger.getLogger(Mainwindow.class.getName()).log(Level.WARNING, "Couldn't watch world files", ex);
+        }
     }
 
     private void initGui() {
@@ -143,26 +177,25 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
         menuFile.add(menuFileOpen);
 
         // available worlds
-        JMenu menuFileOpenRecent = new JMenu("Open known world");
+        menuFileOpenRecent = new JMenu("Open known world");
         menuFile.add(menuFileOpenRecent);
-        
-        WorldFileList.findWorlds();
-        for(final Entry<String, String> entry: WorldFileList.getWorlds().entrySet()){
-            JMenuItem openWorldEntry = new JMenuItem(entry.getValue() + " (" + entry.getKey() + ")");
-            menuFileOpenRecent.add(openWorldEntry);
-            openWorldEntry.addActionListener(new ActionListener() {
-                @Override
-                public void actionPerformed(ActionEvent ae) {
-                    try {
-                        createTab(WorldManager.getWorld(entry.getKey()), entry.getKey());
-                    } catch (Exception ex) {
-                        JOptionPane.showMessageDialog(getParent(), "Could not open world: " + ex.getMessage());
-                        Logger.getLogger(Mainwindow.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                }
-            });
-        }
-        
+
+        // show the cached worlds first, update them in the background
+        WorldFileList.loadCatalog();
+        updateKnownWorlds();
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                WorldFileList.findWorlds();
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                updateKnownWorlds();
+            }
+        }.execute();
+
         menuFile.addSeparator();
         JMenuItem menuFileSave = new JMenuItem("Save");
         menuFileSave.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, ActionEvent.CTRL_MASK));
@@ -233,6 +266,14 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
         menuEdit.add(menuEditShowGrid);
         menuEditShowGrid.addChangeListener(this);
 
+        menuEditAutoSave = new JCheckBoxMenuItem("Autosave");
+        menuEdit.add(menuEditAutoSave);
+        menuEditAutoSave.addChangeListener(this);
+
+        menuEditCompress = new JCheckBoxMenuItem("Compress world file");
+        menuEdit.add(menuEditCompress);
+        menuEditCompress.addChangeListener(this);
+
         JMenuItem menuHelpAbout = new JMenuItem("About");
         menuHelp.add(menuHelpAbout);
         menuHelpAbout.addActionListener((ActionListener) new AboutDialog(this));
@@ -243,6 +284,40 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
         infoPanel.add(new JLabel("Load or create a world in the File menu.", SwingConstants.CENTER));
     }
 
+    /**
+     * Fills the known worlds menu, sorted by world name
+     */
+    private void updateKnownWorlds(){
+        menuFileOpenRecent.removeAll();
+
+        ArrayList<Entry<String, String>> worlds = new ArrayList<>(WorldFileList.getWorlds().entrySet());
+        Collections.sort(worlds, new Comparator<Entry<String, String>>() {
+            @Override
+            public int compare(Entry<String, String> t, Entry<String, String> t1) {
+                String n = t.getValue() != null ? t.getValue() : "";
+                String n1 = t1.getValue() != null ? t1.getValue() : "";
+                int ret = n.compareToIgnoreCase(n1);
+                return ret != 0 ? ret : t.getKey().compareTo(t1.getKey());
+            }
+        });
+
+        for(final Entry<String, String> entry: worlds){
+            JMenuItem openWorldEntry = new JMenuItem(entry.getValue() + " (" + entry.getKey() + ")");
+            menuFileOpenRecent.add(openWorldEntry);
+            openWorldEntry.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent ae) {
+                    try {
+                        createTab(WorldManager.getWorld(entry.getKey()), entry.getKey());
+                    } catch (Exception ex) {
+                        JOptionPane.showMessageDialog(getParent(), "Could not open world: " + ex.getMessage());
+                        Logger.getLogger(Mainwindow.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
+            });
+        }
+    }
+
     public void createNewWorld(){
         String name = JOptionPane.showInputDialog(this, "Enter new world name", "New world", JOptionPane.PLAIN_MESSAGE);
         if(name != null && !name.isEmpty()){
@@ -285,6 +360,9 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
         if(curTab != null){
             // update menu entry
             menuEditShowCursor.setState(curTab.getWorldPanel().isCursorEnabled());
+            menuEditAutoSave.setState(curTab.isAutoSaveEnabled());
+            menuEditCompress.setState(curTab.isCompressed());
+            menuEditCompress.setEnabled(curTab.isCompressionSupported());
         }
     }
 
@@ -293,8 +371,12 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
      */
     public void closeTabs(){
         for(WorldTab tab: worldTabs.values()){
-            int ret = JOptionPane.showConfirmDialog(this, "Save world \"" + tab.getWorld().getName() + "\"?", "Save world", JOptionPane.YES_NO_OPTION);
-            if(ret == JOptionPane.YES_OPTION) tab.save();
+            if(tab.getWorld().isModified()){
+                int ret = JOptionPane.showConfirmDialog(this, "Save world \"" + tab.getWorld().getName() + "\"?", "Save world", JOptionPane.YES_NO_OPTION);
+                if(ret == JOptionPane.YES_OPTION) tab.save();
+            }
+            tab.stopLoadingLayers();
+            tab.waitForSave();
             WorldManager.closeFile(tab.getFilename());
             removeTab(tab);
         }
@@ -328,6 +410,11 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
      * Saves all config
      */
     public void quit(){
+        autoSaver.stop();
+        if(WorldManager.getFileWatcher() != null){
+            WorldManager.getFileWatcher().stop();
+            WorldManager.setFileWatcher(null);
+        }
         closeTabs();
         WorldFileList.writeWorldList();
         System.exit(0);
@@ -428,11 +515,18 @@ public final class Mainwindow extends JFrame implements KeyEventDispatcher,Actio
                 mapPainter.setGridEnabled(((JCheckBoxMenuItem) e.getSource()).isSelected());
                 wt.repaint();
             }
+        } else if(e.getSource() == menuEditAutoSave){
+            if(wt != null) wt.setAutoSaveEnabled(((JCheckBoxMenuItem) e.getSource()).isSelected());
+        } else if(e.getSource() == menuEditCompress){
+            if(wt != null) wt.setCompressed(((JCheckBoxMenuItem) e.getSource()).isSelected());
         } else if(tabbedPane != null && e.getSource() == tabbedPane){ // tab changed
             if(wt != null){
                 wt.getWorldPanel().callStatusUpdateListeners();
                 menuEditCurvedPaths.setState(((MapPainterDefault) wt.getWorldPanel().getMappainter()).getPathsCurved());
                 menuEditShowGrid.setState(((MapPainterDefault) wt.getWorldPanel().getMappainter()).isGridEnabled());
+                menuEditAutoSave.setState(wt.isAutoSaveEnabled());
+                menuEditCompress.setState(wt.isCompressed());
+                menuEditCompress.setEnabled(wt.isCompressionSupported());
             }
         } else {
             String message = getClass().getName() + ": ChangeEvent not recognized";
@@ -32,9 +32,18 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.io.InterruptedIOException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
@@ -42,6 +51,8 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import mudmap2.Environment;
@@ -49,8 +60,11 @@ import mudmap2.backend.Layer;
 import mudmap2.backend.Place;
 import mudmap2.backend.World;
 import mudmap2.backend.WorldCoordinate;
+import mudmap2.backend.WorldDiff;
+import mudmap2.backend.WorldFileWatcher;
+import mudmap2.backend.WorldJournal;
 import mudmap2.backend.WorldFileReader.WorldFile;
-import mudmap2.backend.WorldFileReader.WorldFileType;
+import mudmap2.backend.WorldFileReader.current.WorldFileBinary;
 import mudmap2.backend.WorldFileReader.current.WorldFileDefault;
 import mudmap2.backend.WorldFileReader.current.WorldFileJSON;
 import mudmap2.backend.WorldFileReader.current.WorldMetaJSON;
@@ -63,6 +77,8 @@ import mudmap2.frontend.GUIElement.WorldPanel.WorldPanel;
 import mudmap2.frontend.sidePanel.LayerPanelListener;
 import mudmap2.frontend.sidePanel.PlacePanelListener;
 import mudmap2.frontend.sidePanel.SidePanel;
+import mudmap2.utils.AtomicFile;
+import mudmap2.utils.Compression;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import mudmap2.frontend.GUIElement.WorldPanel.WorldPanelListener;
@@ -86,6 +102,26 @@ public class WorldTab extends JPanel implements LayerPanelListener,PlacePanelLis
     JPanel panelSouth;
     ScrollLabel labelInfobar;
 
+    // saves the world in the background
+    SaveWorker saveWorker;
+    // tasks of the save worker that have to run on the EDT, waitForSave()
+    // runs them while it blocks the EDT
+    final LinkedBlockingQueue<Runnable> edtTasks = new LinkedBlockingQueue<>();
+    // save again when the running save is done
+    boolean saveAgain;
+    // write the world file on the next save, even if the journal is small
+    boolean compactOnSave;
+    // reads the world file after it was changed by another program
+    SwingWorker<World, Void> reloadWorker;
+    long lastSaveTime;
+    boolean autoSaveEnabled = true;
+    // compression of the world file
+    boolean compressed;
+    int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    // loads the layers that aren't shown in the background
+    LayerStreamer layerStreamer;
+
     // world_meta file version supported by this WorldTab
     static final int META_FILE_VER_MAJOR = 2;
     static final int META_FILE_VER_MINOR = 0;
@@ -133,6 +169,35 @@ public class WorldTab extends JPanel implements LayerPanelListener,PlacePanelLis
     private void create(World world, boolean passive){
         createGui(world, passive);
         readMeta();
+        if(!passive) loadLayers();
+    }
+
+    /**
+     * Loads the shown layer, the home layer and the layers of the history,
+     * the remaining layers are loaded in the background
+     */
+    private void loadLayers(){
+        ArrayList<Layer> first = new ArrayList<>();
+        addLayer(first, getWorldPanel().getPosition().getLayer());
+        addLayer(first, getWorld().getHome().getLayer());
+        for(WorldCoordinate coord: getWorldPanel().getHistory()) addLayer(first, coord.getLayer());
+
+        for(Layer layer: first) layer.load();
+
+        layerStreamer = new LayerStreamer(getWorld(), first);
+        layerStreamer.start();
+    }
+
+    private void addLayer(ArrayList<Layer> layers, int id){
+        Layer layer = getWorld().getLayer(id);
+        if(layer != null && !layers.contains(layer)) layers.add(layer);
+    }
+
+    /**
+     * Stops loading layers in the background, eg. when the tab is closed
+     */
+    public void stopLoadingLayers(){
+        if(layerStreamer != null) layerStreamer.stop();
     }
 
     /**
@@ -255,11 +320,34 @@ public class WorldTab extends JPanel implements LayerPanelListener,PlacePanelLis
      * Saves the changes in the world
      */
     public void save(){
+        save(true);
+    }
+
+    /**
+     * Saves the world, if it has been changed and can be saved without
+     * asking for a file name. Errors are only shown in the infobar
+     */
+    public void autoSave(){
+        if(!worldPanel.isPassive() && getWorld().isModified() && !isSaving()
+                && (getWorld().getWorldFile() != null
+                    || (filename != null && !filename.isEmpty() && !(new File(filename)).exists()))){
+            save(false);
+        }
+    }
+
+    /**
+     * Saves the world. Changes are recorded in the journal, the world file is
+     * only written if the journal got too large. The I/O runs in the
+     * background
+     * @param interactive ask for a file name and show errors in dialogs
+     */
+    private void save(final boolean interactive){
         if(!worldPanel.isPassive()){
             WorldFile worldFile = getWorld().getWorldFile();
 
             if(worldFile == null){
                 if(filename == null || filename.isEmpty() || (new File(filename)).exists()){
+                    if(!interactive) return;
                     // get new filename
                     int ret;
                     do {
@@ -281,31 +369,472 @@ public class WorldTab extends JPanel implements LayerPanelListener,PlacePanelLis
                 getWorld().setWorldFile(worldFile);
             }
 
-            // set meta data writer
-            if(worldFile.getWorldFileType() == WorldFileType.JSON){
-                WorldFileJSON wfj = null;
-                if(worldFile instanceof WorldFileJSON){
-                    wfj = (WorldFileJSON) worldFile;
-                } else if(worldFile instanceof WorldFileDefault){
-                    wfj = (WorldFileJSON) ((WorldFileDefault) worldFile).getWorldFile();
+            // save again when the running save is done
+            if(isSaving()){
+                saveAgain = true;
+                showMessage("Saving world...");
+                return;
+            }
+
+            WorldJournal journal = getWorld().getJournal();
+            if(journal != null && !journal.getWorldFilename().equals(worldFile.getFilename())){
+                // saved under a new name
+                journal.discard();
+                journal = null;
+            }
+
+            // record the changes in the journal, that's enough if it's small
+            boolean journalWritable = false;
+            if(journal != null){
+                try {
+                    journal.setMetaGetter(this);
+                    journal.recordState();
+                    journalWritable = true;
+                } catch (IOException ex) {
+                    Logger.getLogger(WorldTab.class.getName()).log(Level.WARNING, null, ex);
+                }
+            } else {
+                journal = new WorldJournal(getWorld(), worldFile.getFilename());
+                getWorld().setJournal(journal);
+            }
+            boolean compact = !journalWritable || journal.needsCompaction()
+                    || isCompressionChanged(worldFile) || compactOnSave;
+            compactOnSave = false;
+
+            if(compact) applyCompression(worldFile);
+            startSave(worldFile, journal, journalWritable, compact, interactive);
+        }
+    }
+
+    /**
+     * Applies the changes of the world file made by another program. The
+     * file is read in the background, then only the changed places, paths
+     * and layers are updated. If the world has changes that aren't in the
+     * file, the user decides whether to keep them, they are written to the
+     * file then
+     */
+    public void reloadWorldFile(){
+        final WorldFile worldFile = getWorld().getWorldFile();
+        final WorldFileWatcher watcher = WorldManager.getFileWatcher();
+        if(worldPanel.isPassive() || worldFile == null || watcher == null) return;
+        // checked again when the save or reload is done
+        if(isSaving() || (reloadWorker != null && !reloadWorker.isDone())) return;
+        final String file = worldFile.getFilename();
+        if(!watcher.hasChanged(file)) return;
+
+        // a change after this state will be reported again
+        final long[] state = WorldFileWatcher.getState(file);
+        showMessage("Reading changed world file...");
+        reloadWorker = new SwingWorker<World, Void>() {
+            @Override
+            protected World doInBackground() throws Exception {
+                return new WorldFileDefault(file).readFile();
+            }
+
+            @Override
+            protected void done() {
+                // the save checks the file again when it's done
+                if(isSaving()) return;
+
+                World world = getWorld();
+                watcher.setKnown(file, state);
+                try {
+                    World fileWorld = get();
+
+                    WorldJournal journal = world.getJournal();
+                    if(world.isModified() || (journal != null && journal.hasRecords())){
+                        int ret = JOptionPane.showConfirmDialog(getParent(),
+                                "The world file of \"" + world.getName() + "\" has been changed by another program.\n"
+                                + "Load the changes? Otherwise the file will be overwritten with your changes.",
+                                "World file changed", JOptionPane.YES_NO_OPTION);
+                        if(ret != JOptionPane.YES_OPTION){
+                            compactOnSave = true;
+                            save(false);
+                            return;
+                        }
+                    }
+
+                    WorldDiff diff = new WorldDiff(world, fileWorld);
+                    int changes = diff.apply();
+                    if(journal != null && journal.getWorldFilename().equals(file)) journal.reset(diff.getLayerTranslation());
+                    world.setSaved(world.getModCount());
+                    showMessage("World file changed by another program, " + changes + " changes loaded");
+                } catch (InterruptedException | ExecutionException | IOException ex) {
+                    Logger.getLogger(WorldTab.class.getName()).log(Level.SEVERE, null, ex);
+                    showMessage("Could not read changed world file");
+                }
+                // changed again while reading
+                reloadWorldFile();
+            }
+        };
+        reloadWorker.execute();
+    }
+
+    /**
+     * Checks whether the world is being saved
+     * @return true, if a save is running
+     */
+    public boolean isSaving(){
+        // the save is finished on the EDT after the worker is done
+        return saveWorker != null && !saveWorker.finished;
+    }
+
+    /**
+     * Waits until the world has been saved, eg. before quitting. A save that
+     * was requested while another one was running is done, too. Has to be
+     * called on the EDT
+     */
+    public void waitForSave(){
+        while(saveWorker != null){
+            SaveWorker worker = saveWorker;
+            try {
+                while(!worker.isDone()){
+                    Runnable task = edtTasks.poll(50, TimeUnit.MILLISECONDS);
+                    if(task != null) task.run();
+                }
+                worker.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                // reported by finish()
+            }
+            // done() would run after the world has been closed
+            worker.finish(false);
+            // a queued save starts a new worker
+            if(saveWorker == worker) break;
+        }
+    }
+
+    /**
+     * Gets the time of the last successful save in this session
+     * @return time in milliseconds or 0, if not saved yet
+     */
+    public long getLastSaveTime(){
+        return lastSaveTime;
+    }
+
+    /**
+     * Gets the number of changes since the world was saved
+     * @return number of unsaved changes
+     */
+    public long getPendingChangeCount(){
+        return getWorld().getPendingChangeCount();
+    }
+
+    /**
+     * Checks whether the world is saved automatically
+     * @return true, if autosave is enabled
+     */
+    public boolean isAutoSaveEnabled(){
+        return autoSaveEnabled;
+    }
+
+    /**
+     * Enables or disables autosave for this world
+     * @param enabled
+     */
+    public void setAutoSaveEnabled(boolean enabled){
+        autoSaveEnabled = enabled;
+    }
+
+    /**
+     * Checks whether the world file is written compressed
+     * @return true, if compression is enabled
+     */
+    public boolean isCompressed(){
+        return compressed;
+    }
+
+    /**
+     * Enables or disables the compression of the world file, it's applied
+     * when the world file is written next time
+     * @param compressed
+     */
+    public void setCompressed(boolean compressed){
+        this.compressed = compressed;
+    }
+
+    public int getCompressionLevel(){
+        return compressionLevel;
+    }
+
+    /**
+     * Sets the compression level of the world file
+     * @param level 0 - 9 or Deflater.DEFAULT_COMPRESSION
+     * @throws IllegalArgumentException if the level is invalid
+     */
+    public void setCompressionLevel(int level){
+        Compression.checkLevel(level);
+        compressionLevel = level;
+    }
+
+    /**
+     * Checks whether the world file can be compressed
+     * @return true, if the file format supports compression
+     */
+    public boolean isCompressionSupported(){
+        WorldFile worldFile = getWorld().getWorldFile();
+        return worldFile == null
+                || (worldFile instanceof WorldFileDefault && ((WorldFileDefault) worldFile).supportsCompression());
+    }
+
+    /**
+     * Checks whether the world file has to be written to apply the
+     * compression setting
+     * @param worldFile
+     * @return true, if the compression has been enabled or disabled
+     */
+    private boolean isCompressionChanged(WorldFile worldFile){
+        return worldFile instanceof WorldFileDefault && ((WorldFileDefault) worldFile).supportsCompression()
+                && compressed != (((WorldFileDefault) worldFile).getCompression() != Compression.NONE);
+    }
+
+    /**
+     * Sets the compression of the world file before it's written
+     * @param worldFile
+     */
+    private void applyCompression(WorldFile worldFile){
+        if(worldFile instanceof WorldFileDefault && ((WorldFileDefault) worldFile).supportsCompression()){
+            WorldFileDefault wfd = (WorldFileDefault) worldFile;
+            Compression compression = Compression.NONE;
+            if(compressed){
+                // keep the format of compressed files
+                compression = wfd.getCompression();
+                if(compression == Compression.NONE) compression = Compression.GZIP;
+            }
+            wfd.setCompression(compression, compressionLevel);
+        }
+    }
+
+    /**
+     * Syncs the journal and writes a snapshot of the world to the world file
+     * in the background. The world can be edited meanwhile
+     * @param worldFile
+     * @param journal
+     * @param sync sync the journal
+     * @param compact write the world file and start a new journal
+     * @param interactive show errors in dialogs
+     */
+    private void startSave(final WorldFile worldFile, final WorldJournal journal,
+            final boolean sync, final boolean compact, final boolean interactive){
+        final long modCount = getWorld().getModCount();
+        final World snapshot;
+        final JSONObject meta;
+        if(compact){
+            snapshot = getWorld().snapshot();
+            // meta data has to be read on the EDT
+            HashMap<Integer, Integer> layers = new HashMap<>();
+            for(Layer layer: getWorld().getLayers()) layers.put(layer.getId(), layer.getId());
+            meta = getMeta(layers);
+            journal.beginCompaction();
+        } else {
+            snapshot = null;
+            meta = null;
+        }
+
+        saveWorker = new SaveWorker(worldFile, journal, sync, compact, interactive, modCount, snapshot, meta);
+        saveWorker.execute();
+    }
+
+    /**
+     * Syncs the journal and writes the world file in the background, the
+     * number of places written is shown in the infobar
+     */
+    private class SaveWorker extends SwingWorker<Void, int[]> implements WorldFile.ProgressListener {
+        final WorldFile worldFile;
+        final WorldJournal journal;
+        final boolean sync, compact, interactive;
+        final long modCount;
+        final World snapshot;
+        final JSONObject meta;
+        // set when finish() has been called
+        boolean finished;
+        // shown in the infobar, replaced by the progress
+        String message = "Saving world...";
+
+        public SaveWorker(WorldFile worldFile, WorldJournal journal, boolean sync,
+                boolean compact, boolean interactive, long modCount, World snapshot, JSONObject meta){
+            this.worldFile = worldFile;
+            this.journal = journal;
+            this.sync = sync;
+            this.compact = compact;
+            this.interactive = interactive;
+            this.modCount = modCount;
+            this.snapshot = snapshot;
+            this.meta = meta;
+            showMessage(message);
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            if(sync){
+                try {
+                    journal.force();
+                } catch (IOException ex) {
+                    // the world file is written anyway
+                    if(!compact) throw ex;
                 }
-                if(wfj != null) wfj.setMetaGetter(this);
             }
+            if(compact){
+                WorldFile formatFile = getFormatFile(worldFile);
+                MetaSnapshot metaGetter = new MetaSnapshot(meta);
+                AtomicFile.CommitHandler commitHandler = new AtomicFile.CommitHandler() {
+                    @Override
+                    public void commit(AtomicFile file) throws IOException {
+                        replaceWorldFile(file);
+                    }
+                };
+                if(formatFile instanceof WorldFileJSON){
+                    ((WorldFileJSON) formatFile).setMetaGetter(metaGetter);
+                    ((WorldFileJSON) formatFile).setCommitHandler(commitHandler);
+                } else if(formatFile instanceof WorldFileBinary){
+                    ((WorldFileBinary) formatFile).setMetaGetter(metaGetter);
+                    ((WorldFileBinary) formatFile).setCommitHandler(commitHandler);
+                }
+                worldFile.setProgressListener(this);
+                try {
+                    worldFile.writeFile(snapshot);
+                } finally {
+                    worldFile.setProgressListener(null);
+                    if(formatFile instanceof WorldFileJSON){
+                        ((WorldFileJSON) formatFile).setCommitHandler(null);
+                    } else if(formatFile instanceof WorldFileBinary){
+                        ((WorldFileBinary) formatFile).setCommitHandler(null);
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Writes the journal of the new world file with the changes made
+         * while writing and replaces the world file. Runs on the EDT, so the
+         * world doesn't change in between
+         * @param file written world file
+         * @throws IOException
+         */
+        private void replaceWorldFile(final AtomicFile file) throws IOException {
+            final FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    journal.prepareCompaction(worldFile, file.getTempFile());
+                    try {
+                        file.replace();
+                    } catch (IOException ex) {
+                        journal.abortCompaction();
+                        throw ex;
+                    }
+                    journal.commitCompaction();
+                    return null;
+                }
+            });
+            edtTasks.add(task);
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    Runnable next;
+                    while((next = edtTasks.poll()) != null) next.run();
+                }
+            });
 
-            // write world file
             try {
-                worldFile.writeFile(getWorld());
+                task.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException ex) {
+                if(ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+                throw new IOException(ex.getCause());
+            }
+        }
+
+        @Override
+        public void progress(int done, int total) {
+            publish(new int[]{done, total});
+        }
+
+        @Override
+        protected void process(List<int[]> chunks) {
+            if(finished) return;
+            int[] last = chunks.get(chunks.size() - 1);
+            String next = "Saving world... " + last[0] + " of " + last[1] + " places written";
+            labelInfobar.updateMessage(message, next);
+            message = next;
+        }
+
+        @Override
+        protected void done() {
+            finish(true);
+        }
+
+        /**
+         * Finishes the save on the EDT and starts a save that was requested
+         * meanwhile. Runs only once, either from done() or waitForSave()
+         * @param reload check for changes of the world file by other programs
+         */
+        void finish(boolean reload){
+            if(finished) return;
+            finished = true;
+
+            try {
+                get();
+                if(compact){
+                    journal.finishCompaction(worldFile);
+                    // don't report our own file as changed
+                    WorldFileWatcher watcher = WorldManager.getFileWatcher();
+                    if(watcher != null) watcher.setKnown(worldFile.getFilename(), WorldFileWatcher.getState(worldFile.getFilename()));
+                }
+                getWorld().setSaved(modCount);
+                lastSaveTime = System.currentTimeMillis();
                 WorldManager.putWorld(worldFile.getFilename(), getWorld());
-            } catch (IOException ex) {
+                labelInfobar.updateMessage(message, "World saved");
+            } catch (InterruptedException | ExecutionException | IOException ex) {
+                if(compact) journal.abortCompaction();
                 Logger.getLogger(WorldTab.class.getName()).log(Level.SEVERE, null, ex);
-                JOptionPane.showMessageDialog(getParent(),
-                        "Could not save world file " + worldFile.getFilename(),
-                        "Saving world file",
-                        JOptionPane.ERROR_MESSAGE);
+                labelInfobar.updateMessage(message, "Could not save world");
+                if(interactive){
+                    JOptionPane.showMessageDialog(getParent(),
+                            "Could not save world file " + worldFile.getFilename(),
+                            "Saving world file",
+                            JOptionPane.ERROR_MESSAGE);
+                }
             }
+
+            if(saveAgain){
+                saveAgain = false;
+                save(interactive);
+            } else if(reload){
+                // changes of the world file by other programs while saving
+                reloadWorldFile();
+            }
+        }
+    }
+
+    /**
+     * Meta data taken on the EDT, the layers of the history are translated
+     * when the world file is written
+     */
+    private static class MetaSnapshot implements WorldMetaJSON {
+        final JSONObject meta;
+
+        public MetaSnapshot(JSONObject meta){
+            this.meta = meta;
         }
 
-        showMessage("World saved");
+        @Override
+        public JSONObject getMeta(HashMap<Integer, Integer> layerTranslation) {
+            JSONObject ret = new JSONObject(meta.toString());
+            JSONArray history = new JSONArray();
+            JSONArray old = meta.getJSONArray("history");
+            for(int i = 0; i < old.length(); ++i){
+                JSONObject el = old.getJSONObject(i);
+                Integer layer = layerTranslation.get(el.getInt("l"));
+                if(layer != null) history.put(new JSONObject(el.toString()).put("l", layer));
+            }
+            ret.put("history", history);
+            return ret;
+        }
     }
 
     /**
@@ -396,6 +925,9 @@ public class WorldTab extends JPanel implements LayerPanelListener,PlacePanelLis
         root.put("showCursor", getWorldPanel().isCursorEnabled());
         root.put("showGrid", mapPainter.isGridEnabled());
         root.put("tileSize", getWorldPanel().getTileSize());
+        root.put("autoSave", isAutoSaveEnabled());
+        root.put("compressed", isCompressed());
+        root.put("compressionLevel", getCompressionLevel());
 
         JSONArray history = new JSONArray();
         root.put("history", history);
@@ -418,18 +950,33 @@ public class WorldTab extends JPanel implements LayerPanelListener,PlacePanelLis
     public void readMeta(){
         WorldFile worldFile = getWorld().getWorldFile();
 
-        // set meta data writer
-        if(worldFile != null && worldFile.getWorldFileType() == WorldFileType.JSON){
-            WorldFileJSON wfj = null;
-            if(worldFile instanceof WorldFileJSON){
-                wfj = (WorldFileJSON) worldFile;
-            } else if(worldFile instanceof WorldFileDefault){
-                wfj = (WorldFileJSON) ((WorldFileDefault) worldFile).getWorldFile();
-            }
-            if(wfj != null) setMeta(wfj.getMetaData());
+        // read meta data, the journal has the latest
+        WorldFile formatFile = getFormatFile(worldFile);
+        // compressed files stay compressed
+        if(worldFile instanceof WorldFileDefault){
+            compressed = ((WorldFileDefault) worldFile).getCompression() != Compression.NONE;
+        }
+
+        WorldJournal journal = getWorld().getJournal();
+        if(journal != null && journal.getMetaData() != null){
+            setMeta(journal.getMetaData());
+        } else if(formatFile instanceof WorldFileJSON){
+            setMeta(((WorldFileJSON) formatFile).getMetaData());
+        } else if(formatFile instanceof WorldFileBinary){
+            setMeta(((WorldFileBinary) formatFile).getMetaData());
         }
     }
 
+    /**
+     * Gets the reader of a specific file format
+     * @param worldFile world file, might be a WorldFileDefault
+     * @return format reader or null
+     */
+    private static WorldFile getFormatFile(WorldFile worldFile){
+        if(worldFile instanceof WorldFileDefault) return ((WorldFileDefault) worldFile).getWorldFile();
+        return worldFile;
+    }
+
     public void setMeta(JSONObject meta){
         if(meta != null){
             MapPainterDefault mapPainter = (MapPainterDefault) getWorldPanel().getMappainter();
@@ -438,6 +985,15 @@ public class WorldTab extends JPanel implements LayerPanelListener,PlacePanelLis
             if(meta.has("showCursor")) getWorldPanel().setCursorEnabled(meta.getBoolean("showCursor"));
             if(meta.has("showGrid")) mapPainter.setGridEnabled(meta.getBoolean("showGrid"));
             if(meta.has("tileSize")) getWorldPanel().setTileSize(meta.getInt("tileSize"));
+            if(meta.has("autoSave")) setAutoSaveEnabled(meta.getBoolean("autoSave"));
+            if(meta.has("compressed")) setCompressed(meta.getBoolean("compressed"));
+            if(meta.has("compressionLevel")){
+                try {
+                    setCompressionLevel(meta.getInt("compressionLevel"));
+                } catch (IllegalArgumentException ex) {
+                    Logger.getLogger(WorldTab.class.getName()).log(Level.WARNING, null, ex);
+                }
+            }
 
             if(meta.has("history")){
                 worldPanel.getHistory().clear();
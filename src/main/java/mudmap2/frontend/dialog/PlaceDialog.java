@@ -209,6 +209,8 @@ public class PlaceDialog extends ActionDialog {
      */
     public void save(){
         //if(!textfield_name.getText().isEmpty()){ // name not empty
+            // notify the listeners once for all changes
+            world.beginBatch();
             try {
                 if(layer == null) layer = world.getNewLayer();
 
@@ -232,6 +234,8 @@ public class PlaceDialog extends ActionDialog {
                 }
             } catch (Exception ex) {
                 Logger.getLogger(PlaceDialog.class.getName()).log(Level.SEVERE, null, ex);
+            } finally {
+                world.endBatch();
             }
         //}
         getParent().repaint();
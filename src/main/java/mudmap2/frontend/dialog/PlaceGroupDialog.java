@@ -202,20 +202,26 @@ public class PlaceGroupDialog extends ActionDialog {
     }
 
     private void save(){
-        // add new PlaceGroup to world and place
-        if(new_group){
-            placeGroup = new PlaceGroup(textfield_name.getText(), colorchooserbutton.getColor());
-            world.addPlaceGroup(placeGroup);
-            if(place != null && place_group == null) place.setPlaceGroup(placeGroup);
-        } else {
-            // modify PlaceGroup
-            placeGroup.setName(textfield_name.getText());
-            placeGroup.setColor(colorchooserbutton.getColor());
+        // notify the listeners once for all places
+        world.beginBatch();
+        try {
+            // add new PlaceGroup to world and place
+            if(new_group){
+                placeGroup = new PlaceGroup(textfield_name.getText(), colorchooserbutton.getColor());
+                world.addPlaceGroup(placeGroup);
+                if(place != null && place_group == null) place.setPlaceGroup(placeGroup);
+            } else {
+                // modify PlaceGroup
+                placeGroup.setName(textfield_name.getText());
+                placeGroup.setColor(colorchooserbutton.getColor());
+            }
+            // assign to all places
+            if(place_group != null)
+                for(Place pl: place_group)
+                    pl.setPlaceGroup(placeGroup);
+        } finally {
+            world.endBatch();
         }
-        // assign to all places
-        if(place_group != null)
-            for(Place pl: place_group)
-                pl.setPlaceGroup(placeGroup);
         getParent().repaint();
     }
 
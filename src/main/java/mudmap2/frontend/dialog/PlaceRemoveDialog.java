@@ -65,6 +65,8 @@ public class PlaceRemoveDialog implements ActionListener {
 
         if(ret == 0){
             places_removed = true;
+            // notify the listeners once for all places
+            world.beginBatch();
             try {
                 if(place != null) // removePlace single place
                     world.removePlace(place);
@@ -76,6 +78,8 @@ public class PlaceRemoveDialog implements ActionListener {
                 Logger.getLogger(PlaceRemoveDialog.class.getName()).log(Level.SEVERE, null, ex);
             } catch (PlaceNotFoundException ex) {
                 Logger.getLogger(PlaceRemoveDialog.class.getName()).log(Level.SEVERE, null, ex);
+            } finally {
+                world.endBatch();
             }
         }
     }
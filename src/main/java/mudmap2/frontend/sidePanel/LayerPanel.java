@@ -37,6 +37,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import mudmap2.backend.Layer;
 import mudmap2.backend.World;
+import mudmap2.backend.WorldChangeBatch;
 import mudmap2.backend.WorldChangeListener;
 import mudmap2.frontend.GUIElement.LayerPreviewPanel;
 import mudmap2.utils.AlphanumComparator;
@@ -198,10 +199,8 @@ public class LayerPanel extends JPanel implements ActionListener,WorldChangeList
 
     private void editLayer(Layer layer){
         String name = JOptionPane.showInputDialog(this, "Map name", layer.getName());
-        if(name != null && !name.isEmpty()){
-            layer.setName(name);
-            update();
-        }
+        // the panel is updated by the change listener
+        if(name != null && !name.isEmpty()) layer.setName(name);
     }
 
     /**
@@ -234,7 +233,8 @@ public class LayerPanel extends JPanel implements ActionListener,WorldChangeList
     @Override
     public void worldChanged(Object source) {
         // only recreate panel on layer change
-        if(source instanceof Layer){
+        if(source instanceof Layer || source instanceof World
+                || (source instanceof WorldChangeBatch && ((WorldChangeBatch) source).contains(Layer.class))){
             update();
         } else {
             revalidate();
@@ -19,56 +19,52 @@ package mudmap2.frontend.sidePanel;
 import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
 import javax.swing.JTree;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
 import mudmap2.backend.Layer;
-import mudmap2.backend.Place;
 import mudmap2.backend.World;
-import mudmap2.backend.WorldChangeListener;
-import mudmap2.utils.AlphanumComparator;
+import mudmap2.backend.WorldEvent;
+import mudmap2.backend.WorldEventListener;
 
 /**
  *
  * @author neop
  */
-public class PlacePanel extends JPanel implements TreeSelectionListener,WorldChangeListener {
+public class PlacePanel extends JPanel implements TreeSelectionListener,WorldEventListener {
 
     private static final long serialVersionUID = 1L;
 
+    // larger batches of changes recreate the tree instead of changing it
+    // place by place, eg. after pasting many places
+    static final int MAX_INCREMENTAL_BATCH = 1000;
+
     World world;
 
     JTree tree;
-    DefaultMutableTreeNode root;
-
-    HashMap<Layer, LayerTreeNode> layerNodes;
-    HashMap<Place, PlaceTreeNode> placeNodes;
+    PlaceTreeModel model;
 
     HashSet<LayerPanelListener> layerListeners;
     HashSet<PlacePanelListener> placeListeners;
 
-    Boolean useKeywords;
+    // current search, empty if all places are shown
+    String keyword;
 
     public PlacePanel(World world){
         this.world = world;
         setLayout(new BorderLayout());
 
-        layerNodes = new HashMap<>();
-        placeNodes = new HashMap<>();
-
         layerListeners = new HashSet<>();
         placeListeners = new HashSet<>();
 
-        useKeywords = false;
+        keyword = "";
 
         JTextField textFieldSearch = new JTextField("Search places");
         textFieldSearch.setToolTipText("Search for places");
@@ -80,16 +76,16 @@ public class PlacePanel extends JPanel implements TreeSelectionListener,WorldCha
         });
         add(textFieldSearch, BorderLayout.SOUTH);
 
-        root = new DefaultMutableTreeNode(world.getName());
-        tree = new JTree(root);
+        model = new PlaceTreeModel(world);
+        tree = new JTree(model);
+        tree.setShowsRootHandles(true);
+        tree.setRootVisible(false);
         tree.getSelectionModel().addTreeSelectionListener(this);
 
         JScrollPane scrollPane = new JScrollPane(tree,
                 JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
                 JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
         add(scrollPane, BorderLayout.CENTER);
-
-        update();
     }
 
     public final void update(){
@@ -97,54 +93,27 @@ public class PlacePanel extends JPanel implements TreeSelectionListener,WorldCha
     }
 
     /**
-     * Creates the
-     * @param keyword
+     * Recreates the tree, expanded layers stay expanded
+     * @param keyword keywords separated by spaces or an empty string
      */
     public final void update(String keyword){
-        root.removeAllChildren();
-        layerNodes.clear();
-        placeNodes.clear();
-
-        ArrayList<Layer> layerList = new ArrayList<>(world.getLayers());
-        Collections.sort(layerList, new AlphanumComparator<>());
-
-        String[] keywords;
-        if(keyword.isEmpty()){
-            keywords = new String[0];
-            useKeywords = false;
-        } else {
-            keywords = keyword.split(" ");
-            useKeywords = true;
-        }
-
-        for(Layer layer: layerList){
-            LayerTreeNode layerNode = new LayerTreeNode(layer);
-            root.add(layerNode);
-            layerNodes.put(layer, layerNode);
-
-            HashSet<Place> places = layer.getPlaces();
-            ArrayList<Place> placeList = new ArrayList<>(places);
-            Collections.sort(placeList, new AlphanumComparator<>());
-
-            for(Place place: placeList){
-                if(!useKeywords || place.matchKeywords(keywords)){
-                    PlaceTreeNode placeNode = new PlaceTreeNode(place);
-                    layerNode.add(placeNode);
-                    placeNodes.put(place, placeNode);
-                }
+        this.keyword = keyword;
+
+        HashSet<Layer> expanded = new HashSet<>();
+        Enumeration<TreePath> paths = tree.getExpandedDescendants(new TreePath(model.getRoot()));
+        if(paths != null){
+            while(paths.hasMoreElements()){
+                Object node = paths.nextElement().getLastPathComponent();
+                if(node instanceof PlaceTreeModel.LayerNode) expanded.add(((PlaceTreeModel.LayerNode) node).getLayer());
             }
         }
 
-        // remove empty layer nodes
-        if(useKeywords){
-            for(LayerTreeNode layerNode: layerNodes.values()){
-                if(layerNode.getChildCount() == 0) layerNode.removeFromParent();
-            }
-        }
+        model.reload(keyword.isEmpty() ? null : keyword.split(" "));
 
-        ((DefaultTreeModel) tree.getModel()).reload();
-        tree.setShowsRootHandles(true);
-        tree.setRootVisible(false);
+        for(Layer layer: expanded){
+            PlaceTreeModel.LayerNode layerNode = model.getLayerNode(layer);
+            if(layerNode != null) tree.expandPath(new TreePath(new Object[]{model.getRoot(), layerNode}));
+        }
     }
 
     /**
@@ -183,81 +152,45 @@ public class PlacePanel extends JPanel implements TreeSelectionListener,WorldCha
     @Override
     public void valueChanged(TreeSelectionEvent e) {
         Object component = e.getPath().getLastPathComponent();
-        if(component instanceof PlaceTreeNode){
+        if(component instanceof PlaceTreeModel.PlaceNode){
             for(PlacePanelListener listener: placeListeners){
-                listener.placeSelected(((PlaceTreeNode) component).getPlace());
+                listener.placeSelected(((PlaceTreeModel.PlaceNode) component).getPlace());
             }
         }
     }
 
     @Override
-    public void worldChanged(Object source) {
-        if(!useKeywords){ // don't update when keywords/search is in use
-            if(source instanceof Layer){
-                if(layerNodes.containsKey((Layer) source)){
-                    layerNodes.get((Layer) source).update();
-                } else { // new layer
-                    update();
-                }
-            } else if(source instanceof Place){
-                Place place = (Place) source;
-                if(placeNodes.containsKey(place)){
-                    placeNodes.get(place).update();
-                } else if(layerNodes.containsKey(place.getLayer())) { // new place
-                    HashSet<Place> places = place.getLayer().getPlaces();
-                    ArrayList<Place> placeList = new ArrayList<>(places);
-                    Collections.sort(placeList, new AlphanumComparator<>());
-
-                    Integer pos = placeList.indexOf(place);
-
-                    PlaceTreeNode placeNode = new PlaceTreeNode(place);
-                    placeNodes.put(place, placeNode);
-                    layerNodes.get(place.getLayer()).insert(placeNode, pos);
-
-                    ((DefaultTreeModel) tree.getModel()).reload();
-                }
+    public void worldEvent(WorldEvent event) {
+        if(event instanceof WorldEvent.Batch){
+            List<WorldEvent> events = ((WorldEvent.Batch) event).getEvents();
+            if(events.size() > MAX_INCREMENTAL_BATCH){
+                update(keyword);
+            } else {
+                for(WorldEvent e: events) worldEvent(e);
             }
+        } else if(event instanceof WorldEvent.AttributeChanged){
+            // the name is shown, the comments are searched
+            String attribute = ((WorldEvent.AttributeChanged) event).getAttribute();
+            if(WorldEvent.AttributeChanged.NAME.equals(attribute)
+                    || (model.isSearch() && WorldEvent.AttributeChanged.COMMENTS.equals(attribute))){
+                model.placeChanged(((WorldEvent.AttributeChanged) event).getPlace());
+            }
+        } else if(event instanceof WorldEvent.PlaceAdded){
+            model.placeAdded(((WorldEvent.PlaceAdded) event).getPlace());
+        } else if(event instanceof WorldEvent.PlaceRemoved){
+            model.placeRemoved(((WorldEvent.PlaceRemoved) event).getPlace());
+        } else if(event instanceof WorldEvent.PlaceMoved){
+            model.placeMoved(((WorldEvent.PlaceMoved) event).getPlace());
+        } else if(event instanceof WorldEvent.LayerAdded){
+            model.layerAdded(((WorldEvent.LayerAdded) event).getLayer());
+        } else if(event instanceof WorldEvent.LayerRenamed){
+            model.layerRenamed(((WorldEvent.LayerRenamed) event).getLayer());
+        } else if(event instanceof WorldEvent.LayerLoaded){
+            model.layerLoaded(((WorldEvent.LayerLoaded) event).getLayer());
+        } else if(event.getSource() instanceof World){
+            // world settings or many changes at once, eg. a reloaded file
+            update(keyword);
         }
     }
 
-    private class LayerTreeNode extends DefaultMutableTreeNode {
-        private static final long serialVersionUID = 1L;
-
-        Layer layer;
-
-        public LayerTreeNode(Layer layer){
-            super(layer.getName());
-            this.layer = layer;
-        }
-
-        public Layer getLayer() {
-            return layer;
-        }
-
-        public void update(){
-            setUserObject(layer.getName());
-        }
-
-    }
-
-    private class PlaceTreeNode extends DefaultMutableTreeNode {
-        private static final long serialVersionUID = 1L;
-
-        Place place;
-
-        public PlaceTreeNode(Place place){
-            super(place.toString());
-            this.place = place;
-        }
-
-        public Place getPlace() {
-            return place;
-        }
-
-        public void update(){
-            setUserObject(place.toString());
-        }
-
-    }
-
 }
@@ -0,0 +1,471 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Tree model of the place panel: the layers of a world and their places,
+ *  both sorted by name. The entries of a layer are created when the layer is
+ *  expanded (or searched) and then kept sorted: single places are inserted,
+ *  removed and moved by binary search and only the changed rows are sent to
+ *  the tree, instead of sorting and reloading everything on every change
+ */
+
+package mudmap2.frontend.sidePanel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import mudmap2.utils.AlphanumComparator;
+
+/**
+ *
+ * @author neop
+ */
+public class PlaceTreeModel implements TreeModel {
+
+    final World world;
+    final Object root;
+
+    // sorted layer nodes, only layers with matching places while searching
+    final ArrayList<LayerNode> layers;
+    final HashMap<Layer, LayerNode> layerNodes;
+    // place entries of all populated layers
+    final HashMap<Place, PlaceNode> placeNodes;
+
+    // keywords to search for, null if all places are shown
+    String[] keywords;
+
+    final EventListenerList listeners;
+
+    static final AlphanumComparator<Object> ALPHANUM = new AlphanumComparator<>();
+
+    public PlaceTreeModel(World world){
+        this.world = world;
+        root = new Object(){
+            @Override
+            public String toString() {
+                return PlaceTreeModel.this.world.getName();
+            }
+        };
+        layers = new ArrayList<>();
+        layerNodes = new HashMap<>();
+        placeNodes = new HashMap<>();
+        listeners = new EventListenerList();
+        reload(null);
+    }
+
+    /**
+     * Recreates the model
+     * @param keywords keywords to search for or null to show all places
+     */
+    public final void reload(String[] keywords){
+        this.keywords = keywords;
+        layers.clear();
+        layerNodes.clear();
+        placeNodes.clear();
+
+        for(Layer layer: world.getLayers()){
+            LayerNode layerNode = new LayerNode(layer);
+            if(keywords != null){
+                // don't list layers without matching places
+                layerNode.populate();
+                if(layerNode.places.isEmpty()){
+                    layerNode.release();
+                    continue;
+                }
+            }
+            layers.add(layerNode);
+            layerNodes.put(layer, layerNode);
+        }
+        Collections.sort(layers, LAYER_ORDER);
+
+        fireTreeStructureChanged(new TreeModelEvent(this, new Object[]{root}));
+    }
+
+    /**
+     * Checks whether the model shows search results
+     * @return true, if keywords are set
+     */
+    public boolean isSearch(){
+        return keywords != null;
+    }
+
+    /**
+     * Gets the node of a layer
+     * @param layer
+     * @return layer node or null
+     */
+    public LayerNode getLayerNode(Layer layer){
+        return layerNodes.get(layer);
+    }
+
+    // --------- changes -------------------------------------------------------
+    /**
+     * Adds a new layer
+     * @param layer new layer
+     */
+    public void layerAdded(Layer layer){
+        // a new layer has got no matching places
+        if(layerNodes.containsKey(layer) || isSearch()) return;
+        insertLayerNode(new LayerNode(layer));
+    }
+
+    /**
+     * Moves a renamed layer to its new position
+     * @param layer renamed layer
+     */
+    public void layerRenamed(Layer layer){
+        LayerNode layerNode = layerNodes.get(layer);
+        if(layerNode == null) return;
+        int oldIndex = indexOf(layers, layerNode, LAYER_ORDER);
+        layerNode.label = layer.getName();
+        reposition(layers, oldIndex, layerNode, LAYER_ORDER, new Object[]{root});
+    }
+
+    /**
+     * Updates a layer that has been loaded, its places are listed when it is
+     * expanded
+     * @param layer loaded layer
+     */
+    public void layerLoaded(Layer layer){
+        LayerNode layerNode = layerNodes.get(layer);
+        // the layer might be loaded while its entries are created
+        if(layerNode != null && layerNode.places == null && !layerNode.populating){
+            // it might be a leaf now
+            fireTreeNodesChanged(new TreeModelEvent(this, new Object[]{root},
+                    new int[]{indexOf(layers, layerNode, LAYER_ORDER)}, new Object[]{layerNode}));
+        }
+    }
+
+    /**
+     * Adds a new place
+     * @param place new place
+     */
+    public void placeAdded(Place place){
+        if(placeNodes.containsKey(place) || place.getLayer() == null) return;
+        if(isSearch() && !place.matchKeywords(keywords)) return;
+
+        LayerNode layerNode = layerNodes.get(place.getLayer());
+        if(layerNode == null){
+            // first matching place of a layer or a layer that has been
+            // added without an event
+            layerNode = new LayerNode(place.getLayer());
+            if(isSearch()) layerNode.places = new ArrayList<>();
+            insertLayerNode(layerNode);
+        }
+        // the entries are created when the layer is expanded
+        if(layerNode.places == null) return;
+
+        PlaceNode placeNode = new PlaceNode(layerNode, place);
+        int index = -Collections.binarySearch(layerNode.places, placeNode, PLACE_ORDER) - 1;
+        if(index < 0) return;
+        layerNode.places.add(index, placeNode);
+        placeNodes.put(place, placeNode);
+        fireTreeNodesInserted(new TreeModelEvent(this, layerNode.getPath(), new int[]{index}, new Object[]{placeNode}));
+    }
+
+    /**
+     * Removes a place
+     * @param place removed place
+     */
+    public void placeRemoved(Place place){
+        PlaceNode placeNode = placeNodes.remove(place);
+        if(placeNode == null) return;
+        LayerNode layerNode = placeNode.parent;
+        int index = indexOf(layerNode.places, placeNode, PLACE_ORDER);
+        if(index < 0) return;
+        layerNode.places.remove(index);
+        fireTreeNodesRemoved(new TreeModelEvent(this, layerNode.getPath(), new int[]{index}, new Object[]{placeNode}));
+    }
+
+    /**
+     * Moves a place to its new layer
+     * @param place moved place
+     */
+    public void placeMoved(Place place){
+        PlaceNode placeNode = placeNodes.get(place);
+        if(placeNode != null && placeNode.parent.layer == place.getLayer()) return;
+        placeRemoved(place);
+        placeAdded(place);
+    }
+
+    /**
+     * Updates a place after its name or comments have been changed, it might
+     * get a new position or be added or removed from search results
+     * @param place changed place
+     */
+    public void placeChanged(Place place){
+        PlaceNode placeNode = placeNodes.get(place);
+        boolean shown = !isSearch() || place.matchKeywords(keywords);
+        if(placeNode == null){
+            if(shown) placeAdded(place);
+        } else if(!shown){
+            placeRemoved(place);
+        } else {
+            LayerNode layerNode = placeNode.parent;
+            int oldIndex = indexOf(layerNode.places, placeNode, PLACE_ORDER);
+            if(oldIndex < 0) return;
+            placeNode.label = place.toString();
+            reposition(layerNode.places, oldIndex, placeNode, PLACE_ORDER, layerNode.getPath());
+        }
+    }
+
+    private void insertLayerNode(LayerNode layerNode){
+        int index = -Collections.binarySearch(layers, layerNode, LAYER_ORDER) - 1;
+        if(index < 0) return;
+        layers.add(index, layerNode);
+        layerNodes.put(layerNode.layer, layerNode);
+        fireTreeNodesInserted(new TreeModelEvent(this, new Object[]{root}, new int[]{index}, new Object[]{layerNode}));
+    }
+
+    /**
+     * Moves a node with a new label to its sorted position, the tree gets a
+     * change event, if the position stays the same
+     * @param list sorted list
+     * @param oldIndex position of the node before its label has been changed
+     * @param node changed node
+     * @param order order of the list
+     * @param path path of the parent node
+     */
+    private <T> void reposition(ArrayList<T> list, int oldIndex, T node, Comparator<T> order, Object[] path){
+        list.remove(oldIndex);
+        int index = Collections.binarySearch(list, node, order);
+        if(index < 0) index = -index - 1;
+        list.add(index, node);
+        if(index == oldIndex){
+            fireTreeNodesChanged(new TreeModelEvent(this, path, new int[]{index}, new Object[]{node}));
+        } else {
+            fireTreeNodesRemoved(new TreeModelEvent(this, path, new int[]{oldIndex}, new Object[]{node}));
+            fireTreeNodesInserted(new TreeModelEvent(this, path, new int[]{index}, new Object[]{node}));
+        }
+    }
+
+    /**
+     * Finds a node in a sorted list
+     * @return index or -1
+     */
+    private static <T> int indexOf(ArrayList<T> list, T node, Comparator<T> order){
+        int index = Collections.binarySearch(list, node, order);
+        if(index >= 0 && list.get(index) == node) return index;
+        // shouldn't occur, unless the order has been changed without an event
+        return list.indexOf(node);
+    }
+
+    // --------- TreeModel -----------------------------------------------------
+    @Override
+    public Object getRoot() {
+        return root;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        if(parent == root) return layers.get(index);
+        if(parent instanceof LayerNode) return ((LayerNode) parent).getPlaces().get(index);
+        return null;
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        if(parent == root) return layers.size();
+        if(parent instanceof LayerNode) return ((LayerNode) parent).getPlaces().size();
+        return 0;
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        if(node instanceof LayerNode){
+            LayerNode layerNode = (LayerNode) node;
+            if(layerNode.places != null) return layerNode.places.isEmpty();
+            // don't load a layer only to draw the tree
+            return layerNode.layer.isLoaded() && layerNode.layer.isEmpty();
+        }
+        return node instanceof PlaceNode;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // the tree isn't editable
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if(parent == root && child instanceof LayerNode){
+            return indexOf(layers, (LayerNode) child, LAYER_ORDER);
+        } else if(parent instanceof LayerNode && child instanceof PlaceNode){
+            LayerNode layerNode = (LayerNode) parent;
+            if(layerNode.places == null || ((PlaceNode) child).parent != layerNode) return -1;
+            return indexOf(layerNode.places, (PlaceNode) child, PLACE_ORDER);
+        }
+        return -1;
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener listener) {
+        listeners.add(TreeModelListener.class, listener);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener listener) {
+        listeners.remove(TreeModelListener.class, listener);
+    }
+
+    private void fireTreeNodesInserted(TreeModelEvent event){
+        for(TreeModelListener listener: listeners.getListeners(TreeModelListener.class)){
+            listener.treeNodesInserted(event);
+        }
+    }
+
+    private void fireTreeNodesRemoved(TreeModelEvent event){
+        for(TreeModelListener listener: listeners.getListeners(TreeModelListener.class)){
+            listener.treeNodesRemoved(event);
+        }
+    }
+
+    private void fireTreeNodesChanged(TreeModelEvent event){
+        for(TreeModelListener listener: listeners.getListeners(TreeModelListener.class)){
+            listener.treeNodesChanged(event);
+        }
+    }
+
+    private void fireTreeStructureChanged(TreeModelEvent event){
+        for(TreeModelListener listener: listeners.getListeners(TreeModelListener.class)){
+            listener.treeStructureChanged(event);
+        }
+    }
+
+    // --------- nodes ---------------------------------------------------------
+    /**
+     * Sorts by label, the id decides if labels are equal
+     */
+    static final Comparator<LayerNode> LAYER_ORDER = new Comparator<LayerNode>(){
+        @Override
+        public int compare(LayerNode t, LayerNode t1) {
+            int ret = ALPHANUM.compare(t.label, t1.label);
+            return ret != 0 ? ret : Integer.compare(t.layer.getId(), t1.layer.getId());
+        }
+    };
+
+    static final Comparator<PlaceNode> PLACE_ORDER = new Comparator<PlaceNode>(){
+        @Override
+        public int compare(PlaceNode t, PlaceNode t1) {
+            int ret = ALPHANUM.compare(t.label, t1.label);
+            return ret != 0 ? ret : Integer.compare(t.place.getId(), t1.place.getId());
+        }
+    };
+
+    /**
+     * Node of a layer, its place entries are created on first access
+     */
+    public class LayerNode {
+        final Layer layer;
+        // label that the node is sorted by
+        String label;
+        // sorted place entries, null if not created yet
+        ArrayList<PlaceNode> places;
+        boolean populating;
+
+        LayerNode(Layer layer){
+            this.layer = layer;
+            label = layer.getName();
+        }
+
+        public Layer getLayer(){
+            return layer;
+        }
+
+        Object[] getPath(){
+            return new Object[]{root, this};
+        }
+
+        ArrayList<PlaceNode> getPlaces(){
+            if(places == null) populate();
+            return places;
+        }
+
+        /**
+         * Creates the sorted entries of the matching places
+         */
+        void populate(){
+            populating = true;
+            try {
+                // loads the layer
+                ArrayList<PlaceNode> list = new ArrayList<>();
+                for(Place place: layer.getPlaces()){
+                    if(keywords == null || place.matchKeywords(keywords)){
+                        PlaceNode placeNode = new PlaceNode(this, place);
+                        list.add(placeNode);
+                        placeNodes.put(place, placeNode);
+                    }
+                }
+                Collections.sort(list, PLACE_ORDER);
+                places = list;
+            } finally {
+                populating = false;
+            }
+        }
+
+        /**
+         * Removes the place entries
+         */
+        void release(){
+            if(places != null){
+                for(PlaceNode placeNode: places) placeNodes.remove(placeNode.place);
+                places = null;
+            }
+        }
+
+        @Override
+        public String toString(){
+            return label;
+        }
+    }
+
+    /**
+     * Entry of a place
+     */
+    public static class PlaceNode {
+        final LayerNode parent;
+        final Place place;
+        // label that the entry is sorted by
+        String label;
+
+        PlaceNode(LayerNode parent, Place place){
+            this.parent = parent;
+            this.place = place;
+            label = place.toString();
+        }
+
+        public Place getPlace(){
+            return place;
+        }
+
+        @Override
+        public String toString(){
+            return label;
+        }
+    }
+
+}
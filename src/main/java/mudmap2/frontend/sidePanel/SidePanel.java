@@ -49,7 +49,7 @@ public class SidePanel extends JPanel {
         tabbedPane.addTab("Places", placePanel);
 
         world.addChangeListener(layerPanel);
-        world.addChangeListener(placePanel);
+        world.addEventListener(placePanel);
     }
 
     public void update(){
@@ -0,0 +1,133 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Replaces a file atomically: the new content is written to a temporary file
+ *  in the same directory, flushed to the disk and then moved over the old
+ *  file. If writing fails, the old file stays untouched. A commit handler can
+ *  do something right before the file is replaced, eg. write a journal that
+ *  belongs to the new file
+ */
+
+package mudmap2.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Atomic file replacement
+ * @author neop
+ */
+public class AtomicFile {
+
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    final Path target;
+    final Path temp;
+    CommitHandler commitHandler;
+
+    /**
+     * Replaces the target file on commit
+     */
+    public interface CommitHandler {
+        /**
+         * Called when the temporary file has been flushed to the disk, has to
+         * call file.replace()
+         * @param file
+         * @throws IOException
+         */
+        void commit(AtomicFile file) throws IOException;
+    }
+
+    /**
+     * Creates the temporary file
+     * @param filename file to replace
+     * @throws IOException
+     */
+    public AtomicFile(String filename) throws IOException {
+        target = new File(filename).getAbsoluteFile().toPath();
+        Path dir = target.getParent();
+        if(dir != null && !Files.exists(dir)) Files.createDirectories(dir);
+        temp = Files.createTempFile(dir, "." + target.getFileName() + ".", TEMP_SUFFIX);
+    }
+
+    /**
+     * Gets the temporary file to write to
+     * @return temporary file
+     */
+    public File getTempFile(){
+        return temp.toFile();
+    }
+
+    /**
+     * Sets the handler that replaces the target file on commit
+     * @param handler handler or null
+     */
+    public void setCommitHandler(CommitHandler handler){
+        commitHandler = handler;
+    }
+
+    /**
+     * Flushes the temporary file to the disk and moves it over the target
+     * file. The temporary file has to be closed before
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        if(commitHandler != null) commitHandler.commit(this);
+        else replace();
+    }
+
+    /**
+     * Moves the flushed temporary file over the target file
+     * @throws IOException
+     */
+    public void replace() throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // persist the directory entry, not supported on every platform
+        try (FileChannel channel = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // the file content is on the disk anyway
+        }
+    }
+
+    /**
+     * Removes the temporary file, the target file is left as it is
+     */
+    public void abort(){
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ex) {
+            temp.toFile().deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Compression formats of files. The format of a file is detected by its
+ *  magic bytes: gzip files start with 1f 8b, zlib (deflate) streams with a
+ *  header whose first byte is 78 and whose first two bytes are a multiple of
+ *  31. Both can't start a UTF-8 JSON document. The streams compress and
+ *  decompress while reading and writing, files are never buffered in memory
+ */
+
+package mudmap2.utils;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression format of a file
+ * @author neop
+ */
+public enum Compression {
+    NONE,
+    GZIP,
+    DEFLATE;
+
+    // stream buffer size
+    static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Detects the compression format of a stream by its first two bytes
+     * @param b0 first byte
+     * @param b1 second byte
+     * @return compression format
+     */
+    public static Compression detect(int b0, int b1){
+        if(b0 == 0x1f && b1 == 0x8b) return GZIP;
+        if(b0 == 0x78 && ((b0 << 8) | b1) % 31 == 0) return DEFLATE;
+        return NONE;
+    }
+
+    /**
+     * Detects the compression format of a file
+     * @param filename
+     * @return compression format, NONE if the file is too short
+     * @throws IOException
+     */
+    public static Compression detect(String filename) throws IOException {
+        try (InputStream in = new FileInputStream(filename)) {
+            int b0 = in.read();
+            int b1 = in.read();
+            if(b1 < 0) return NONE;
+            return detect(b0, b1);
+        }
+    }
+
+    /**
+     * Opens a file and decompresses it, if it is compressed
+     * @param filename
+     * @return buffered input stream of the uncompressed data
+     * @throws IOException
+     */
+    public static InputStream openInputStream(String filename) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(filename), BUFFER_SIZE);
+        try {
+            in.mark(2);
+            int b0 = in.read();
+            int b1 = in.read();
+            in.reset();
+            switch(b1 < 0 ? NONE : detect(b0, b1)){
+                case GZIP:
+                    return new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+                case DEFLATE:
+                    return new BufferedInputStream(new InflaterInputStream(in), BUFFER_SIZE);
+                default:
+                    return in;
+            }
+        } catch (IOException | RuntimeException ex){
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Wraps a stream, so that the written data is compressed in this format
+     * @param out destination
+     * @param level compression level (0 - 9 or Deflater.DEFAULT_COMPRESSION)
+     * @return stream, the compressed data is completed when it's closed
+     * @throws IOException
+     */
+    public OutputStream wrap(OutputStream out, int level) throws IOException {
+        checkLevel(level);
+        switch(this){
+            case GZIP:
+                return new LevelGZIPOutputStream(out, level);
+            case DEFLATE:
+                return new LevelDeflaterOutputStream(out, level);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Checks a compression level
+     * @param level
+     * @throws IllegalArgumentException if the level is invalid
+     */
+    public static void checkLevel(int level){
+        if(level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)){
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+    }
+
+    /**
+     * GZIPOutputStream with a compression level
+     */
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+        public LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * DeflaterOutputStream with a compression level, releases its deflater
+     * when closed
+     */
+    private static class LevelDeflaterOutputStream extends DeflaterOutputStream {
+        public LevelDeflaterOutputStream(OutputStream out, int level){
+            super(out, new Deflater(level), BUFFER_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,547 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Pull parser for JSON documents. The document is read token by token from
+ *  a Reader, so that large files can be processed without building a
+ *  complete JSONObject tree. Syntax errors are reported as JSONException
+ */
+
+package mudmap2.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Token based JSON reader
+ * @author neop
+ */
+public class JSONStreamReader implements Closeable {
+
+    /**
+     * JSON tokens
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME,
+        STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    // scopes on the stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    final Reader reader;
+    final char[] buffer;
+    int pos, limit;
+    long offset;
+
+    int[] stack;
+    int stackSize;
+
+    // peeked token and its text (names, strings, numbers, literals)
+    Token peeked;
+    String peekedText;
+
+    final StringBuilder stringBuilder;
+
+    /**
+     * Creates a JSON reader
+     * @param reader source, it should not be buffered
+     */
+    public JSONStreamReader(Reader reader){
+        this.reader = reader;
+        buffer = new char[8192];
+        pos = limit = 0;
+        offset = 0;
+        stack = new int[32];
+        stack[0] = EMPTY_DOCUMENT;
+        stackSize = 1;
+        peeked = null;
+        stringBuilder = new StringBuilder();
+    }
+
+    /**
+     * Gets the type of the next token without consuming it
+     * @return next token
+     * @throws IOException
+     */
+    public Token peek() throws IOException {
+        if(peeked == null) peeked = doPeek();
+        return peeked;
+    }
+
+    /**
+     * Checks whether the current object or array has more elements
+     * @return true, if there are more elements
+     * @throws IOException
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consumes the beginning of an object
+     * @throws IOException
+     */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+        peeked = null;
+    }
+
+    /**
+     * Consumes the end of an object
+     * @throws IOException
+     */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        --stackSize;
+        peeked = null;
+    }
+
+    /**
+     * Consumes the beginning of an array
+     * @throws IOException
+     */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+        peeked = null;
+    }
+
+    /**
+     * Consumes the end of an array
+     * @throws IOException
+     */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        --stackSize;
+        peeked = null;
+    }
+
+    /**
+     * Consumes a property name
+     * @return name
+     * @throws IOException
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        peeked = null;
+        return peekedText;
+    }
+
+    /**
+     * Consumes a string or number value
+     * @return string
+     * @throws IOException
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if(token != Token.STRING && token != Token.NUMBER) throw syntaxError("Expected string but was " + token);
+        peeked = null;
+        return peekedText;
+    }
+
+    /**
+     * Consumes a number value, numeric strings are accepted
+     * @return number
+     * @throws IOException
+     */
+    public int nextInt() throws IOException {
+        String text = nextString();
+        try {
+            return Integer.parseInt(text);
+        } catch(NumberFormatException ex){
+            try {
+                return (int) Double.parseDouble(text);
+            } catch(NumberFormatException ex2){
+                throw syntaxError("Expected int but was " + text);
+            }
+        }
+    }
+
+    /**
+     * Consumes a number value, numeric strings are accepted
+     * @return number
+     * @throws IOException
+     */
+    public double nextDouble() throws IOException {
+        String text = nextString();
+        try {
+            return Double.parseDouble(text);
+        } catch(NumberFormatException ex){
+            throw syntaxError("Expected double but was " + text);
+        }
+    }
+
+    /**
+     * Consumes a boolean value
+     * @return value
+     * @throws IOException
+     */
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        peeked = null;
+        return peekedText.equals("true");
+    }
+
+    /**
+     * Consumes a null value
+     * @throws IOException
+     */
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        peeked = null;
+    }
+
+    /**
+     * Skips the next value, including nested objects and arrays
+     * @throws IOException
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            switch(token){
+                case BEGIN_OBJECT:
+                    beginObject();
+                    ++depth;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    ++depth;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    --depth;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    --depth;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of document");
+                default:
+                    // names are consumed the same way as values
+                    peeked = null;
+                    break;
+            }
+        } while(depth > 0);
+    }
+
+    /**
+     * Consumes the next value and converts it to the types of org.json
+     * @return JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL
+     * @throws IOException
+     */
+    public Object nextValue() throws IOException {
+        switch(peek()){
+            case BEGIN_OBJECT: {
+                JSONObject object = new JSONObject();
+                beginObject();
+                while(hasNext()){
+                    String name = nextName();
+                    object.put(name, nextValue());
+                }
+                endObject();
+                return object;
+            }
+            case BEGIN_ARRAY: {
+                JSONArray array = new JSONArray();
+                beginArray();
+                while(hasNext()) array.put(nextValue());
+                endArray();
+                return array;
+            }
+            case STRING:
+                return nextString();
+            case NUMBER:
+                return JSONObject.stringToValue(nextString());
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return JSONObject.NULL;
+            default:
+                throw syntaxError("Expected value but was " + peek());
+        }
+    }
+
+    /**
+     * Copies the next value without decoding it. Objects and arrays are
+     * copied as they are, the nesting is only checked by counting brackets.
+     * This is much faster than reading the tokens, the copy can be parsed
+     * later by another reader
+     * @param out destination of the JSON text
+     * @throws IOException
+     */
+    public void nextRawValue(StringBuilder out) throws IOException {
+        Token token = peek();
+        switch(token){
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                break;
+            case STRING:
+                out.append(JSONObject.quote(nextString()));
+                return;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                out.append(peekedText);
+                peeked = null;
+                return;
+            default:
+                throw syntaxError("Expected value but was " + token);
+        }
+
+        // the opening bracket was consumed by peek()
+        out.append(token == Token.BEGIN_OBJECT ? '{' : '[');
+        peeked = null;
+        int depth = 1;
+        boolean inString = false, escaped = false;
+        while(depth > 0){
+            if(pos == limit && !fill()) throw syntaxError("Unexpected end of document");
+            int start = pos;
+            while(pos < limit && depth > 0){
+                char c = buffer[pos++];
+                if(inString){
+                    if(escaped) escaped = false;
+                    else if(c == '\\') escaped = true;
+                    else if(c == '"') inString = false;
+                } else if(c == '"'){
+                    inString = true;
+                } else if(c == '{' || c == '['){
+                    ++depth;
+                } else if(c == '}' || c == ']'){
+                    --depth;
+                }
+            }
+            out.append(buffer, start, pos - start);
+        }
+    }
+
+    /**
+     * Gets the number of characters consumed from the source
+     * @return character position
+     */
+    public long getPosition(){
+        return offset + pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void expect(Token token) throws IOException {
+        if(peek() != token) throw syntaxError("Expected " + token + " but was " + peek());
+    }
+
+    private void push(int scope){
+        if(stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = scope;
+    }
+
+    private Token doPeek() throws IOException {
+        int scope = stack[stackSize - 1];
+        int c;
+        switch(scope){
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if(c == ']') return Token.END_ARRAY;
+                --pos;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if(c == ']') return Token.END_ARRAY;
+                if(c != ',') throw syntaxError("Expected ',' or ']'");
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if(c == '}') return Token.END_OBJECT;
+                if(scope == NONEMPTY_OBJECT){
+                    if(c != ',') throw syntaxError("Expected ',' or '}'");
+                    c = nextNonWhitespace();
+                }
+                if(c != '"') throw syntaxError("Expected name");
+                stack[stackSize - 1] = DANGLING_NAME;
+                peekedText = readString();
+                return Token.NAME;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                c = nextNonWhitespace();
+                if(c != ':') throw syntaxError("Expected ':'");
+                break;
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default: // NONEMPTY_DOCUMENT
+                if(nextNonWhitespaceOrEOF() < 0) return Token.END_DOCUMENT;
+                throw syntaxError("Unexpected data after document");
+        }
+
+        c = nextNonWhitespace();
+        switch(c){
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                peekedText = readString();
+                return Token.STRING;
+            case 't':
+            case 'f':
+            case 'n':
+                peekedText = readLiteral((char) c);
+                if(peekedText.equals("null")) return Token.NULL;
+                if(peekedText.equals("true") || peekedText.equals("false")) return Token.BOOLEAN;
+                throw syntaxError("Unexpected literal " + peekedText);
+            default:
+                if(c == '-' || (c >= '0' && c <= '9')){
+                    peekedText = readLiteral((char) c);
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Reads the rest of a literal (number, true, false, null)
+     */
+    private String readLiteral(char first) throws IOException {
+        stringBuilder.setLength(0);
+        stringBuilder.append(first);
+        while(true){
+            if(pos == limit && !fill()) break;
+            char c = buffer[pos];
+            if((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || c == '.' || c == '-' || c == '+'){
+                stringBuilder.append(c);
+                ++pos;
+            } else break;
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Reads a string, the opening quote was consumed already
+     */
+    private String readString() throws IOException {
+        stringBuilder.setLength(0);
+        while(true){
+            // copy unescaped runs directly from the buffer
+            int start = pos;
+            while(pos < limit){
+                char c = buffer[pos];
+                if(c == '"'){
+                    stringBuilder.append(buffer, start, pos - start);
+                    ++pos;
+                    return stringBuilder.toString();
+                } else if(c == '\\') break;
+                ++pos;
+            }
+            stringBuilder.append(buffer, start, pos - start);
+
+            if(pos == limit){
+                if(!fill()) throw syntaxError("Unterminated string");
+            } else {
+                // escape sequence
+                ++pos;
+                int c = read();
+                switch(c){
+                    case 'b': stringBuilder.append('\b'); break;
+                    case 'f': stringBuilder.append('\f'); break;
+                    case 'n': stringBuilder.append('\n'); break;
+                    case 'r': stringBuilder.append('\r'); break;
+                    case 't': stringBuilder.append('\t'); break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for(int i = 0; i < 4; ++i){
+                            int h = read();
+                            if(h < 0) throw syntaxError("Unterminated escape sequence");
+                            hex[i] = (char) h;
+                        }
+                        try {
+                            stringBuilder.append((char) Integer.parseInt(new String(hex), 16));
+                        } catch(NumberFormatException ex){
+                            throw syntaxError("Illegal escape sequence");
+                        }
+                        break;
+                    case '"':
+                    case '\'':
+                    case '\\':
+                    case '/':
+                        stringBuilder.append((char) c);
+                        break;
+                    default:
+                        throw syntaxError("Illegal escape sequence");
+                }
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if(pos == limit && !fill()) return -1;
+        return buffer[pos++];
+    }
+
+    private int nextNonWhitespaceOrEOF() throws IOException {
+        while(true){
+            if(pos == limit && !fill()) return -1;
+            char c = buffer[pos++];
+            if(c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c = nextNonWhitespaceOrEOF();
+        if(c < 0) throw syntaxError("Unexpected end of document");
+        return c;
+    }
+
+    /**
+     * Refills the buffer
+     * @return false on end of input
+     */
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = limit = 0;
+        int n;
+        while((n = reader.read(buffer, 0, buffer.length)) == 0);
+        if(n < 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private JSONException syntaxError(String message){
+        return new JSONException(message + " at character " + getPosition());
+    }
+}
@@ -0,0 +1,273 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Writes JSON documents token by token, without building a JSONObject tree.
+ *  Strings and numbers are formatted by org.json, so that the output equals
+ *  the output of JSONObject.write()
+ */
+
+package mudmap2.utils;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Token based JSON writer
+ * @author neop
+ */
+public class JSONStreamWriter implements Closeable, Flushable {
+
+    // scopes on the stack
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    final Writer writer;
+
+    int[] stack;
+    int stackSize;
+
+    /**
+     * Creates a JSON writer
+     * @param writer destination, should be buffered
+     */
+    public JSONStreamWriter(Writer writer){
+        this.writer = writer;
+        stack = new int[32];
+        stack[0] = EMPTY_DOCUMENT;
+        stackSize = 1;
+    }
+
+    /**
+     * Begins an object
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter beginObject() throws IOException {
+        beforeValue();
+        push(EMPTY_OBJECT);
+        writer.write('{');
+        return this;
+    }
+
+    /**
+     * Ends the current object
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter endObject() throws IOException {
+        int scope = stack[stackSize - 1];
+        if(scope != EMPTY_OBJECT && scope != NONEMPTY_OBJECT) throw new JSONException("Nesting problem");
+        --stackSize;
+        writer.write('}');
+        return this;
+    }
+
+    /**
+     * Begins an array
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter beginArray() throws IOException {
+        beforeValue();
+        push(EMPTY_ARRAY);
+        writer.write('[');
+        return this;
+    }
+
+    /**
+     * Ends the current array
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter endArray() throws IOException {
+        int scope = stack[stackSize - 1];
+        if(scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) throw new JSONException("Nesting problem");
+        --stackSize;
+        writer.write(']');
+        return this;
+    }
+
+    /**
+     * Writes a property name
+     * @param name
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter name(String name) throws IOException {
+        if(name == null) throw new NullPointerException();
+        int scope = stack[stackSize - 1];
+        if(scope == NONEMPTY_OBJECT) writer.write(',');
+        else if(scope != EMPTY_OBJECT) throw new JSONException("Nesting problem");
+        stack[stackSize - 1] = DANGLING_NAME;
+        writer.write(JSONObject.quote(name));
+        writer.write(':');
+        return this;
+    }
+
+    /**
+     * Writes a string value
+     * @param value string or null
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter value(String value) throws IOException {
+        if(value == null) return nullValue();
+        beforeValue();
+        writer.write(JSONObject.quote(value));
+        return this;
+    }
+
+    /**
+     * Writes a number value
+     * @param value
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a number value
+     * @param value number or null
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter value(Number value) throws IOException {
+        if(value == null) return nullValue();
+        beforeValue();
+        writer.write(JSONObject.numberToString(value));
+        return this;
+    }
+
+    /**
+     * Writes a boolean value
+     * @param value
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        writer.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes null
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter nullValue() throws IOException {
+        beforeValue();
+        writer.write("null");
+        return this;
+    }
+
+    /**
+     * Writes a JSON object
+     * @param value object or null
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter value(JSONObject value) throws IOException {
+        if(value == null) return nullValue();
+        beforeValue();
+        value.write(writer);
+        return this;
+    }
+
+    /**
+     * Writes a JSON array
+     * @param value array or null
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter value(JSONArray value) throws IOException {
+        if(value == null) return nullValue();
+        beforeValue();
+        value.write(writer);
+        return this;
+    }
+
+    /**
+     * Writes comma separated values of an array without checking them, eg.
+     * values that were written to a buffer by another writer
+     * @param values JSON text of the values, nothing is written if empty
+     * @return this writer
+     * @throws IOException
+     */
+    public JSONStreamWriter rawValues(String values) throws IOException {
+        if(values.isEmpty()) return this;
+        int scope = stack[stackSize - 1];
+        if(scope != EMPTY_ARRAY && scope != NONEMPTY_ARRAY) throw new JSONException("Nesting problem");
+        beforeValue();
+        writer.write(values);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void push(int scope){
+        if(stackSize == stack.length) stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * Writes the separator before a value and updates the scope
+     */
+    private void beforeValue() throws IOException {
+        switch(stack[stackSize - 1]){
+            case NONEMPTY_ARRAY:
+                writer.write(',');
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                break;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                throw new JSONException("Nesting problem");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Reads a text file through memory mapped windows. The bytes are decoded
+ *  incrementally by a CharsetDecoder straight into the buffer of the caller,
+ *  so neither the file nor its decoded text is ever copied into the heap as
+ *  a whole. A window is mapped from the first byte that hasn't been decoded
+ *  yet, so characters that span two windows are decoded correctly. Invalid
+ *  input is replaced, like InputStreamReader does
+ */
+
+package mudmap2.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader of memory mapped files
+ * @author neop
+ */
+public class MappedFileReader extends Reader {
+
+    // size of the mapped windows
+    static final long WINDOW_SIZE = 32L << 20;
+
+    final FileChannel channel;
+    final long size;
+    final long windowSize;
+    final CharsetDecoder decoder;
+
+    MappedByteBuffer window;
+    // file position of the window
+    long windowStart;
+    boolean eof;
+    // second char of a surrogate pair, if only one char was requested
+    int pendingChar;
+
+    /**
+     * Opens a file
+     * @param filename
+     * @param charset
+     * @throws IOException
+     */
+    public MappedFileReader(String filename, Charset charset) throws IOException {
+        this(filename, charset, WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a file
+     * @param filename
+     * @param charset
+     * @param windowSize size of the mapped windows in bytes
+     * @throws IOException
+     */
+    MappedFileReader(String filename, Charset charset, long windowSize) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            size = channel.size();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        this.windowSize = windowSize;
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        windowStart = 0;
+        eof = false;
+        pendingChar = -1;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if(len == 0) return 0;
+        if(pendingChar >= 0){
+            cbuf[off] = (char) pendingChar;
+            pendingChar = -1;
+            return 1;
+        }
+        if(len == 1){
+            // the decoder might have to write a surrogate pair
+            char[] pair = new char[2];
+            int n = read(pair, 0, 2);
+            if(n <= 0) return n;
+            cbuf[off] = pair[0];
+            if(n == 2) pendingChar = pair[1];
+            return 1;
+        }
+
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while(out.hasRemaining() && !eof){
+            if(window == null){
+                long length = Math.min(windowSize, size - windowStart);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+            }
+
+            boolean last = windowStart + window.capacity() == size;
+            CoderResult result = decoder.decode(window, out, last);
+            if(result.isOverflow()) break;
+
+            // underflow: the window is decoded, except for an incomplete char
+            if(last){
+                decoder.flush(out);
+                eof = true;
+            } else {
+                windowStart += window.position();
+                window = null;
+            }
+        }
+
+        int n = out.position() - off;
+        return (n == 0 && eof) ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
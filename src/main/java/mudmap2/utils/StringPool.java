@@ -0,0 +1,60 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Pool of strings, equal strings are replaced by one shared instance. Used
+ *  while loading a world, so that names, exits and flags that occur many
+ *  times are only kept once in the heap. Unlike String.intern() the pool
+ *  can be dropped with the loader. It can be used by several threads
+ */
+
+package mudmap2.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe string pool
+ * @author neop
+ */
+public class StringPool {
+
+    final ConcurrentHashMap<String, String> strings;
+
+    public StringPool(){
+        strings = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the shared instance of a string
+     * @param string string or null
+     * @return shared instance, null if the string is null
+     */
+    public String intern(String string){
+        if(string == null) return null;
+        String ret = strings.putIfAbsent(string, string);
+        return ret != null ? ret : string;
+    }
+
+    /**
+     * Gets the number of different strings
+     * @return number of strings
+     */
+    public int size(){
+        return strings.size();
+    }
+}
@@ -0,0 +1,230 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Growable byte buffer with variable length integer encoding. Unsigned
+ *  values are stored in 7 bit groups, least significant group first, the
+ *  high bit marks that another group follows. Signed values are zigzag
+ *  encoded first, so that small negative values stay small. The static
+ *  methods decode from a ByteBuffer
+ */
+
+package mudmap2.utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Byte buffer with varint encoding
+ * @author neop
+ */
+public class VarIntBuffer {
+
+    ByteBuffer buffer;
+
+    /**
+     * Creates an empty buffer
+     * @param capacity initial capacity in bytes
+     */
+    public VarIntBuffer(int capacity){
+        buffer = ByteBuffer.allocate(Math.max(16, capacity));
+    }
+
+    /**
+     * Gets the number of bytes written
+     * @return size
+     */
+    public int size(){
+        return buffer.position();
+    }
+
+    /**
+     * Gets the written bytes, the returned buffer is ready to be read or
+     * written to a channel
+     * @return buffer
+     */
+    public ByteBuffer getBuffer(){
+        ByteBuffer ret = buffer.duplicate();
+        ret.flip();
+        return ret;
+    }
+
+    /**
+     * Removes all written bytes
+     */
+    public void clear(){
+        buffer.clear();
+    }
+
+    private void ensureCapacity(int bytes){
+        if(buffer.remaining() < bytes){
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    /**
+     * Writes a single byte
+     * @param value
+     */
+    public void putByte(int value){
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes bytes
+     * @param bytes
+     */
+    public void putBytes(byte[] bytes){
+        ensureCapacity(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Writes a fixed length 32 bit integer
+     * @param value
+     */
+    public void putInt(int value){
+        ensureCapacity(4);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes a fixed length 64 bit integer
+     * @param value
+     */
+    public void putLong(long value){
+        ensureCapacity(8);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Writes a double
+     * @param value
+     */
+    public void putDouble(double value){
+        ensureCapacity(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Writes an unsigned varint
+     * @param value value, treated as unsigned
+     */
+    public void putVarInt(long value){
+        ensureCapacity(10);
+        while((value & ~0x7FL) != 0){
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a zigzag encoded signed varint
+     * @param value
+     */
+    public void putSignedVarInt(long value){
+        putVarInt((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a string as varint byte length and UTF-8 bytes
+     * @param value
+     */
+    public void putString(String value){
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarInt(bytes.length);
+        putBytes(bytes);
+    }
+
+    /**
+     * Reads an unsigned varint
+     * @param buffer
+     * @return value
+     * @throws BufferUnderflowException if the buffer ends within the value
+     * @throws IllegalArgumentException if the value is longer than 64 bit
+     */
+    public static long getVarInt(ByteBuffer buffer){
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7){
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Reads an unsigned varint that has to fit into an int
+     * @param buffer
+     * @return value
+     * @throws IllegalArgumentException if the value is out of range
+     */
+    public static int getVarInt32(ByteBuffer buffer){
+        long value = getVarInt(buffer);
+        if(value < 0 || value > Integer.MAX_VALUE) throw new IllegalArgumentException("Varint out of range");
+        return (int) value;
+    }
+
+    /**
+     * Reads a zigzag encoded signed varint
+     * @param buffer
+     * @return value
+     */
+    public static long getSignedVarInt(ByteBuffer buffer){
+        long value = getVarInt(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a zigzag encoded signed varint that has to fit into an int
+     * @param buffer
+     * @return value
+     * @throws IllegalArgumentException if the value is out of range
+     */
+    public static int getSignedVarInt32(ByteBuffer buffer){
+        long value = getSignedVarInt(buffer);
+        if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) throw new IllegalArgumentException("Varint out of range");
+        return (int) value;
+    }
+
+    /**
+     * Reads a string written by putString()
+     * @param buffer
+     * @return string
+     */
+    public static String getString(ByteBuffer buffer){
+        int length = getVarInt32(buffer);
+        if(length > buffer.remaining()) throw new BufferUnderflowException();
+        String ret;
+        if(buffer.hasArray()){
+            ret = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            ret = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return ret;
+    }
+}
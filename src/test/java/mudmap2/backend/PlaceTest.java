@@ -901,32 +901,4 @@ public class PlaceTest {
         assertEquals(instance.getFlags().entrySet().toString(), result.getFlags().entrySet().toString());
     }
 
-    /**
-     * Test of breadthSearchReset method, of class Place.
-     */
-/*    @Test
-    @Ignore
-    public void testBreadthSearchReset() {
-        System.out.println("breadthSearchReset");
-        Place instance = null;
-        instance.breadthSearchReset();
-        // TODO review the generated test code and removePlace the default call to fail.
-        fail("The test case is a prototype.");
-    }
-*/
-    /**
-     * Test of getBreadthSearchData method, of class Place.
-     */
-/*    @Test
-    @Ignore
-    public void testGetBreadthSearchData() {
-        System.out.println("getBreadthSearchData");
-        Place instance = null;
-        BreadthSearch.BreadthSearchData expResult = null;
-        BreadthSearch.BreadthSearchData result = instance.getBreadthSearchData();
-        assertEquals(expResult, result);
-        // TODO review the generated test code and removePlace the default call to fail.
-        fail("The test case is a prototype.");
-    }
-*/
 }
@@ -0,0 +1,159 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldBackupTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File worldFile;
+
+    public WorldBackupTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        worldFile = new File(folder.getRoot(), "world");
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Replaces the world file like AtomicFile does
+     */
+    private void writeWorldFile(String content) throws IOException {
+        File temp = new File(folder.getRoot(), "temp");
+        FileUtils.writeStringToFile(temp, content, "UTF-8");
+        assertTrue(temp.renameTo(worldFile));
+    }
+
+    /**
+     * Test of backup method, of class WorldBackup.
+     */
+    @Test
+    public void testBackup() throws Exception {
+        System.out.println("backup");
+
+        WorldBackup instance = new WorldBackup(worldFile.getPath(), 2);
+        try {
+            instance.backup();
+            fail();
+        } catch(IOException ex){}
+
+        writeWorldFile("first");
+        assertTrue(instance.backup());
+        // unchanged
+        assertFalse(instance.backup());
+        assertEquals(1, instance.getBackups().size());
+
+        writeWorldFile("second");
+        assertTrue(instance.backup());
+        List<File> backups = instance.getBackups();
+        assertEquals(2, backups.size());
+        assertEquals("second", FileUtils.readFileToString(backups.get(0), "UTF-8"));
+        assertEquals("first", FileUtils.readFileToString(backups.get(1), "UTF-8"));
+
+        // the oldest generation is removed
+        writeWorldFile("third");
+        assertTrue(instance.backup());
+        backups = instance.getBackups();
+        assertEquals(2, backups.size());
+        assertEquals("third", FileUtils.readFileToString(backups.get(0), "UTF-8"));
+        assertEquals("second", FileUtils.readFileToString(backups.get(1), "UTF-8"));
+        assertEquals(3, new File(folder.getRoot(), WorldBackup.BACKUP_DIR).list().length);
+
+        // a generation with the same content becomes the newest one
+        writeWorldFile("second");
+        assertTrue(instance.backup());
+        backups = instance.getBackups();
+        assertEquals(2, backups.size());
+        assertEquals("second", FileUtils.readFileToString(backups.get(0), "UTF-8"));
+        assertEquals("third", FileUtils.readFileToString(backups.get(1), "UTF-8"));
+
+        // replacing the world file doesn't change the backups
+        writeWorldFile("fourth");
+        assertEquals("second", FileUtils.readFileToString(backups.get(0), "UTF-8"));
+
+        // neither does changing it in place
+        FileUtils.writeStringToFile(worldFile, "fifth", "UTF-8");
+        assertTrue(instance.backup());
+        FileUtils.writeStringToFile(worldFile, "sixth", "UTF-8");
+        backups = instance.getBackups();
+        assertEquals("fifth", FileUtils.readFileToString(backups.get(0), "UTF-8"));
+    }
+
+    /**
+     * Test of backup method, of class WorldBackup. A generation whose content
+     * has been changed isn't reused
+     */
+    @Test
+    public void testBackupChangedGeneration() throws Exception {
+        System.out.println("backup changed generation");
+
+        WorldBackup instance = new WorldBackup(worldFile.getPath(), 2);
+        writeWorldFile("first");
+        assertTrue(instance.backup());
+        // eg. a hard link made by an older version
+        File backup = instance.getBackups().get(0);
+        FileUtils.writeStringToFile(backup, "changed", "UTF-8");
+
+        assertTrue(instance.backup());
+        assertEquals("first", FileUtils.readFileToString(instance.getBackups().get(0), "UTF-8"));
+    }
+
+    /**
+     * Test of backupAsync method, of class WorldBackup.
+     */
+    @Test
+    public void testBackupAsync() throws Exception {
+        System.out.println("backupAsync");
+
+        writeWorldFile("content");
+        WorldBackup instance = new WorldBackup(worldFile.getPath());
+        assertTrue(instance.backupAsync().get());
+        assertFalse(instance.backupAsync().get());
+        assertTrue(FileUtils.contentEquals(worldFile, instance.getBackups().get(0)));
+    }
+}
@@ -0,0 +1,141 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import mudmap2.backend.WorldFileReader.current.WorldFileJSON;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldCatalogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    String worldFile, otherFile, invalidFile, catalogFile;
+
+    public WorldCatalogTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        worldFile = folder.getRoot() + "/world";
+        otherFile = folder.getRoot() + "/other";
+        invalidFile = folder.getRoot() + "/invalid";
+        catalogFile = folder.getRoot() + "/catalog";
+
+        World world = new World("World");
+        Layer layer = world.getNewLayer();
+        world.putPlace(new Place("A", 0, 0, layer));
+        world.putPlace(new Place("B", 1, 0, layer));
+        new WorldFileJSON(worldFile).writeFile(world);
+        new WorldFileJSON(otherFile).writeFile(new World("Other"));
+        FileUtils.writeStringToFile(new File(invalidFile), "foo bar", "UTF-8");
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of refresh method, of class WorldCatalog.
+     */
+    @Test
+    public void testRefresh() throws IOException {
+        System.out.println("refresh");
+
+        WorldCatalog catalog = new WorldCatalog(catalogFile);
+        catalog.refresh(Arrays.asList(worldFile, otherFile, invalidFile, folder.getRoot() + "/missing"));
+
+        assertEquals(2, catalog.getWorlds().size());
+        WorldCatalog.Entry entry = catalog.get(worldFile);
+        assertNotNull(entry);
+        assertEquals("World", entry.getName());
+        assertEquals(2, entry.getPlaceCount());
+        assertEquals(1, entry.getLayerCount());
+        assertFalse(catalog.get(invalidFile).isWorld());
+        assertNull(catalog.get(folder.getRoot() + "/missing"));
+
+        // unchanged files aren't probed again
+        catalog.refresh(Arrays.asList(worldFile, otherFile, invalidFile));
+        assertSame(entry, catalog.get(worldFile));
+
+        // changed files are
+        new WorldFileJSON(worldFile).writeFile(new World("Renamed world"));
+        new File(worldFile).setLastModified(entry.getModified() + 2000);
+        catalog.refresh(Arrays.asList(worldFile, otherFile));
+        assertEquals("Renamed world", catalog.get(worldFile).getName());
+        assertEquals(0, catalog.get(worldFile).getPlaceCount());
+        // removed from the list
+        assertNull(catalog.get(invalidFile));
+    }
+
+    /**
+     * Test of save and load methods, of class WorldCatalog.
+     */
+    @Test
+    public void testSaveLoad() throws IOException {
+        System.out.println("save / load");
+
+        WorldCatalog catalog = new WorldCatalog(catalogFile);
+        catalog.refresh(Arrays.asList(worldFile, otherFile, invalidFile));
+        catalog.setLastOpened(worldFile, 1234567890123L);
+        catalog.save();
+
+        WorldCatalog loaded = new WorldCatalog(catalogFile);
+        loaded.load();
+        assertEquals(2, loaded.getWorlds().size());
+        for(String file: Arrays.asList(worldFile, otherFile, invalidFile)){
+            WorldCatalog.Entry expected = catalog.get(file);
+            WorldCatalog.Entry entry = loaded.get(file);
+            assertNotNull(entry);
+            assertEquals(expected.getName(), entry.getName());
+            assertEquals(expected.getSize(), entry.getSize());
+            assertEquals(expected.getModified(), entry.getModified());
+            assertEquals(expected.getPlaceCount(), entry.getPlaceCount());
+            assertEquals(expected.getLayerCount(), entry.getLayerCount());
+            assertEquals(expected.getLastOpened(), entry.getLastOpened());
+        }
+        assertEquals(1234567890123L, loaded.get(worldFile).getLastOpened());
+
+        // loaded entries are reused
+        WorldCatalog.Entry entry = loaded.get(otherFile);
+        loaded.refresh(Arrays.asList(worldFile, otherFile));
+        assertSame(entry, loaded.get(otherFile));
+    }
+}
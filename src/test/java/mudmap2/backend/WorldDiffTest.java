@@ -0,0 +1,145 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend;
+
+import java.io.File;
+import java.util.ArrayList;
+import mudmap2.backend.WorldFileReader.current.WorldFileBinaryTest;
+import mudmap2.backend.WorldFileReader.current.WorldFileJSON;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldDiffTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public WorldDiffTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Writes a world to a file and reads it, the layer ids of the file
+     * differ from the world
+     */
+    private World readCopy(World world) throws Exception {
+        String file = new File(folder.getRoot(), "world" + folder.getRoot().list().length).getPath();
+        new WorldFileJSON(file).writeFile(world);
+        return new WorldFileJSON(file).readFile();
+    }
+
+    /**
+     * Test of apply method, of class WorldDiff.
+     * @throws Exception
+     */
+    @Test
+    public void testApply() throws Exception {
+        System.out.println("apply");
+
+        World world = new World("Diff");
+        // empty layer, the file has other layer ids
+        world.getNewLayer();
+        Layer layer = world.getNewLayer("Surface");
+        ArrayList<Place> places = new ArrayList<>();
+        for(int i = 0; i < 6; ++i){
+            Place place = new Place("Place " + i, i, 0, layer);
+            world.putPlace(place);
+            places.add(place);
+        }
+        for(int i = 1; i < places.size(); ++i){
+            places.get(i).connectPath(new Path(places.get(i - 1), "e", places.get(i), "w"));
+        }
+        places.get(0).connectChild(places.get(1));
+        world.setHome(new WorldCoordinate(layer.getId(), 0, 0));
+
+        World source = readCopy(world);
+        Layer sourceLayer = source.getPlace(places.get(0).getId()).getLayer();
+        // renamed place with flag
+        source.getPlace(places.get(0).getId()).setName("Renamed");
+        source.getPlace(places.get(0).getId()).setFlag("shop", true);
+        // swapped positions
+        Place source1 = source.getPlace(places.get(1).getId());
+        Place source2 = source.getPlace(places.get(2).getId());
+        sourceLayer.remove(source1);
+        sourceLayer.remove(source2);
+        sourceLayer.put(source1, 2, 0);
+        sourceLayer.put(source2, 1, 0);
+        // moved to a new layer
+        Layer newLayer = source.getNewLayer("Cave");
+        Place source3 = source.getPlace(places.get(3).getId());
+        source.putPlace(source3, newLayer.getId(), 0, 0);
+        // removed place, new place, paths and children
+        source.removePlace(source.getPlace(places.get(5).getId()));
+        Place added = new Place("Added", 0, 1, sourceLayer);
+        source.putPlace(added);
+        added.connectPath(new Path(added, "n", source.getPlace(places.get(0).getId()), "s"));
+        source.getPlace(places.get(0).getId()).removeChild(source1);
+        added.connectChild(source3);
+
+        final ArrayList<Object> events = new ArrayList<>();
+        world.addChangeListener(new WorldChangeListener() {
+            @Override
+            public void worldChanged(Object source) {
+                events.add(source);
+            }
+        });
+
+        WorldDiff diff = new WorldDiff(world, source);
+        int changes = diff.apply();
+        assertTrue(changes >= 6);
+        // the listeners are called once
+        assertEquals(1, events.size());
+        assertSame(world, events.get(0));
+
+        WorldFileBinaryTest.assertWorldEquals(source, world);
+        // unchanged objects are kept
+        assertSame(places.get(4), world.getPlace(places.get(4).getId()));
+        assertSame(layer, places.get(4).getLayer());
+        assertEquals(Integer.valueOf(sourceLayer.getId()), diff.getLayerTranslation().get(layer.getId()));
+
+        // nothing changed
+        events.clear();
+        assertEquals(0, new WorldDiff(world, readCopy(source)).apply());
+        assertTrue(events.isEmpty());
+    }
+
+}
@@ -0,0 +1,399 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend.WorldFileReader.current;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import mudmap2.backend.Label;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.PlaceGroup;
+import mudmap2.backend.RiskLevel;
+import mudmap2.backend.World;
+import mudmap2.backend.WorldCoordinate;
+import mudmap2.backend.WorldFileReader.WorldFile;
+import mudmap2.backend.WorldFileReader.WorldFileHeader;
+import mudmap2.backend.WorldFileReader.WorldFileType;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldFileBinaryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    World world;
+
+    public WorldFileBinaryTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    /**
+     * Creates a world that uses all features of the file formats
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        world = new World("Binary Wörld");
+        world.setShowPlaceID(World.ShowPlaceID.ALL);
+        world.setTileCenterColor(new Color(1, 2, 3));
+        world.setPathColor(new Color(10, 20, 30));
+        world.setPathColorNstd(new Color(40, 50, 60));
+        world.setPathColor("up", new Color(70, 80, 90));
+        world.setRiskLevel(new RiskLevel(7, "custom", new Color(100, 110, 120)));
+
+        Layer layer1 = world.getNewLayer();
+        Layer layer2 = world.getNewLayer();
+        world.getNewLayer(); // empty layer
+        layer1.setName("MyLayer");
+
+        PlaceGroup pg0 = new PlaceGroup("myArea", Color.orange);
+        PlaceGroup pg1 = new PlaceGroup("unused area", Color.blue);
+        world.addPlaceGroup(pg0);
+        world.addPlaceGroup(pg1);
+
+        Place pl0 = new Place("Foo", -3, 5, layer1);
+        Place pl1 = new Place("Foo Bar", 1, 0, layer1);
+        Place pl2 = new Place("Baz", 6, -4, layer2);
+        Place pl3 = new Place("Foo", 100000, -100000, layer1);
+        world.putPlace(pl0);
+        world.putPlace(pl1);
+        world.putPlace(pl2);
+        world.putPlace(pl3);
+
+        pl0.connectPath(new Path(pl0, "n", pl1, "s"));
+        pl1.connectPath(new Path(pl1, "e", pl0, "w"));
+        pl1.connectPath(new Path(pl1, "down", pl2, "up"));
+        pl0.connectChild(pl2);
+        pl3.connectChild(pl2);
+
+        pl0.setPlaceGroup(pg0);
+        pl2.setPlaceGroup(pg0);
+        pl0.setRiskLevel(world.getRiskLevel(7));
+        pl1.setRecLevelMin(3);
+        pl1.setRecLevelMax(12);
+        pl0.setFlag("a", true);
+        pl0.setFlag("cd e", true);
+        pl0.setFlag("fgh", false);
+        pl0.addComment("This is a test comment");
+        pl0.addComment("and a second comment line");
+        pl0.addComment("Foo");
+
+        world.setHome(new WorldCoordinate(layer2.getId(), 2.5, -1.5));
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Gets the ids of the places of a world, sorted
+     */
+    private static ArrayList<Integer> getPlaceIds(World world){
+        ArrayList<Integer> ret = new ArrayList<>();
+        for(Place place: world.getPlaces()) ret.add(place.getId());
+        Collections.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Gets the paths of a place as sorted strings
+     */
+    private static ArrayList<String> getPaths(Place place){
+        ArrayList<String> ret = new ArrayList<>();
+        for(Path path: place.getPaths()){
+            Place other = path.getOtherPlace(place);
+            ret.add(path.getExit(place) + ">" + other.getId() + ":" + path.getExit(other));
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private static ArrayList<Integer> getIds(Iterable<Place> places){
+        ArrayList<Integer> ret = new ArrayList<>();
+        for(Place place: places) ret.add(place.getId());
+        Collections.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Compares two worlds, layers are compared by the places on them
+     */
+    public static void assertWorldEquals(World expected, World actual){
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getShowPlaceId(), actual.getShowPlaceId());
+        assertEquals(expected.getTileCenterColor(), actual.getTileCenterColor());
+        assertEquals(expected.getPathColor(), actual.getPathColor());
+        assertEquals(expected.getPathColorNstd(), actual.getPathColorNstd());
+        assertEquals(expected.getPathColors(), actual.getPathColors());
+
+        assertEquals(expected.getRiskLevels().size(), actual.getRiskLevels().size());
+        for(RiskLevel rl: expected.getRiskLevels()){
+            RiskLevel rlr = actual.getRiskLevel(rl.getId());
+            assertNotNull(rlr);
+            assertEquals(rl.getDescription(), rlr.getDescription());
+            assertEquals(rl.getColor(), rlr.getColor());
+        }
+
+        assertEquals(getPlaceIds(expected), getPlaceIds(actual));
+        HashMap<Layer, Layer> layers = new HashMap<>();
+        for(Place place: expected.getPlaces()){
+            Place placer = actual.getPlace(place.getId());
+            assertEquals(place.getName(), placer.getName());
+            assertEquals(place.getX(), placer.getX());
+            assertEquals(place.getY(), placer.getY());
+
+            // layers map one to one
+            Layer layer = layers.get(place.getLayer());
+            if(layer == null) layers.put(place.getLayer(), layer = placer.getLayer());
+            assertSame(layer, placer.getLayer());
+            assertEquals(place.getLayer().hasName(), placer.getLayer().hasName());
+            if(place.getLayer().hasName()) assertEquals(place.getLayer().getName(), placer.getLayer().getName());
+
+            if(place.getPlaceGroup() == null){
+                assertNull(placer.getPlaceGroup());
+            } else {
+                assertEquals(place.getPlaceGroup().getName(), placer.getPlaceGroup().getName());
+                assertEquals(place.getPlaceGroup().getColor(), placer.getPlaceGroup().getColor());
+            }
+            assertEquals(place.getRiskLevel() != null ? place.getRiskLevel().getId() : -1,
+                    placer.getRiskLevel() != null ? placer.getRiskLevel().getId() : -1);
+            assertEquals(place.getRecLevelMin(), placer.getRecLevelMin());
+            assertEquals(place.getRecLevelMax(), placer.getRecLevelMax());
+            assertEquals(getIds(place.getChildren()), getIds(placer.getChildren()));
+            assertEquals(getIds(place.getParents()), getIds(placer.getParents()));
+            assertEquals(place.getComments(), placer.getComments());
+            for(String flag: place.getFlags().keySet()){
+                assertEquals(place.getFlag(flag), placer.getFlag(flag));
+            }
+            assertEquals(getPaths(place), getPaths(placer));
+        }
+        assertEquals(layers.size(), actual.getLayers().size());
+
+        WorldCoordinate home = expected.getHome();
+        WorldCoordinate homer = actual.getHome();
+        assertEquals(home.getX(), homer.getX(), 0.0);
+        assertEquals(home.getY(), homer.getY(), 0.0);
+
+        // labels aren't stored by World yet
+        if(expected.getLabels() == null) return;
+        assertEquals(expected.getLabels().length, actual.getLabels().length);
+        for(int i = 0; i < expected.getLabels().length; ++i){
+            Label label = expected.getLabels()[i];
+            Label labelr = actual.getLabels()[i];
+            assertEquals(label.getText(), labelr.getText());
+            assertEquals(label.getX(), labelr.getX());
+            assertEquals(label.getY(), labelr.getY());
+            assertEquals(label.getFontSize(), labelr.getFontSize());
+            assertSame(layers.get(label.getLayer()), labelr.getLayer());
+        }
+    }
+
+    /**
+     * Test of readFile and writeFile methods, of class WorldFileBinary.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReadWriteFile() throws Exception {
+        System.out.println("readFile / writeFile");
+
+        String file = folder.getRoot() + "/wfb";
+        WorldFileBinary writer = new WorldFileBinary(file);
+        writer.setMetaGetter(new WorldMetaJSON() {
+            @Override
+            public JSONObject getMeta(HashMap<Integer, Integer> layerTranslation) {
+                JSONObject meta = new JSONObject();
+                meta.put("tileSize", 42);
+                return meta;
+            }
+        });
+        // progress is reported per layer
+        final ArrayList<Integer> progress = new ArrayList<>();
+        writer.setProgressListener(new WorldFile.ProgressListener() {
+            @Override
+            public void progress(int done, int total) {
+                assertEquals(world.getPlaces().size(), total);
+                progress.add(done);
+            }
+        });
+        writer.writeFile(world);
+        assertFalse(progress.isEmpty());
+        assertEquals(world.getPlaces().size(), (int) progress.get(progress.size() - 1));
+
+        WorldFileBinary reader = new WorldFileBinary(file);
+        assertTrue(reader.canRead());
+        World result = reader.readFile();
+        assertWorldEquals(world, result);
+        assertEquals(42, reader.getMetaData().getInt("tileSize"));
+        // home is on the second non-empty layer
+        assertEquals(1, result.getHome().getLayer());
+    }
+
+    /**
+     * Test of lazy layer loading, of class WorldFileBinary.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testLazyLoading() throws Exception {
+        System.out.println("lazy loading");
+
+        String file = folder.getRoot() + "/wfb";
+        new WorldFileBinary(file).writeFile(world);
+        World result = new WorldFileBinary(file).readFile();
+        long modCount = result.getModCount();
+
+        Layer layer1 = result.getLayer(0);
+        Layer home = result.getLayer(result.getHome().getLayer());
+        assertFalse(layer1.isLoaded());
+        assertFalse(home.isLoaded());
+        // the links are known without loading the layers
+        assertTrue(layer1.getLinkedLayers().contains(home.getId()));
+        assertTrue(home.getLinkedLayers().contains(layer1.getId()));
+        assertFalse(layer1.isLoaded());
+
+        // only the home layer is loaded
+        assertEquals(1, home.getPlaces().size());
+        assertTrue(home.isLoaded());
+        assertFalse(layer1.isLoaded());
+        Place baz = home.get(6, -4);
+        assertEquals("Baz", baz.getName());
+        // links to the other layer aren't resolved yet
+        assertTrue(baz.getPaths().isEmpty());
+        assertTrue(baz.getParents().isEmpty());
+
+        // new places don't reuse ids of places that aren't loaded
+        int maxID = 0;
+        for(Place place: world.getPlaces()) maxID = Math.max(maxID, place.getId());
+        assertTrue(new Place("New", 0, 0, null).getId() > maxID);
+
+        // loading the other layer resolves the links
+        assertEquals(3, layer1.getPlaces().size());
+        assertEquals(1, baz.getPaths().size());
+        assertEquals(2, baz.getParents().size());
+        assertWorldEquals(world, result);
+
+        // loading doesn't modify the world
+        assertEquals(modCount, result.getModCount());
+    }
+
+    /**
+     * Test of readHeader method, of class WorldFileBinary.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReadHeader() throws Exception {
+        System.out.println("readHeader");
+
+        String file = folder.getRoot() + "/wfb";
+        new WorldFileBinary(file).writeFile(world);
+
+        WorldFileHeader header = new WorldFileBinary(file).readHeader();
+        assertNotNull(header);
+        assertEquals(world.getName(), header.getWorldName());
+        assertEquals(4, header.getPlaceCount());
+        assertEquals(2, header.getLayerCount());
+
+        // JSON files aren't binary files
+        String jsonFile = folder.getRoot() + "/wfj";
+        new WorldFileJSON(jsonFile).writeFile(world);
+        assertFalse(WorldFileBinary.hasMagic(jsonFile));
+        assertFalse(new WorldFileBinary(jsonFile).canRead());
+        assertNull(new WorldFileBinary(jsonFile).readHeader());
+    }
+
+    /**
+     * Test of the file type detection of WorldFileDefault
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWorldFileDefault() throws Exception {
+        System.out.println("WorldFileDefault");
+
+        String file = folder.getRoot() + "/wfb";
+        new WorldFileBinary(file).writeFile(world);
+
+        WorldFileDefault instance = new WorldFileDefault(file);
+        assertEquals(WorldFileType.BINARY, instance.getWorldFileType());
+        assertTrue(instance.canRead());
+        assertEquals(world.getName(), instance.readWorldName());
+        assertWorldEquals(world, instance.readFile());
+
+        // saving keeps the format
+        instance.writeFile(world);
+        assertTrue(WorldFileBinary.hasMagic(file));
+    }
+
+    /**
+     * Test of WorldFileConverter
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testConverter() throws Exception {
+        System.out.println("WorldFileConverter");
+
+        // add a larger map
+        Layer layer = world.getNewLayer();
+        Place prev = null;
+        for(int i = 0; i < 1000; ++i){
+            Place place = new Place("Room " + (i % 50), i % 40, i / 40, layer);
+            place.setFlag("shop", i % 7 == 0);
+            world.putPlace(place);
+            if(prev != null) prev.connectPath(new Path(prev, "e", place, "w"));
+            prev = place;
+        }
+
+        String jsonFile = folder.getRoot() + "/wfj";
+        String binaryFile = folder.getRoot() + "/wfb";
+        String jsonFile2 = folder.getRoot() + "/wfj2";
+        new WorldFileJSON(jsonFile).writeFile(world);
+        World jsonWorld = new WorldFileJSON(jsonFile).readFile();
+
+        WorldFileConverter.toBinary(jsonFile, binaryFile);
+        assertWorldEquals(jsonWorld, new WorldFileBinary(binaryFile).readFile());
+
+        WorldFileConverter.toJSON(binaryFile, jsonFile2);
+        assertWorldEquals(jsonWorld, new WorldFileJSON(jsonFile2).readFile());
+
+        long jsonSize = new File(jsonFile).length();
+        long binarySize = new File(binaryFile).length();
+        assertTrue(binarySize * 3 < jsonSize);
+        assertTrue(FileUtils.readFileToString(new File(jsonFile2), "UTF-8").startsWith("{\"fileVer\""));
+    }
+}
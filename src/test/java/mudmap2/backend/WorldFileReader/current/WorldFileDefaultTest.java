@@ -21,6 +21,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.zip.Deflater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import mudmap2.backend.PlaceGroup;
@@ -30,6 +31,7 @@ import mudmap2.backend.Place;
 import mudmap2.backend.World;
 import mudmap2.backend.WorldFileReader.WorldFile;
 import mudmap2.backend.WorldFileReader.WorldFileType;
+import mudmap2.utils.Compression;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -332,4 +334,62 @@ public class WorldFileDefaultTest {
         assertTrue(result);
     }
 
+    /**
+     * Test of setCompression method, of class WorldFileDefault.
+     */
+    @Test
+    public void testCompression() throws Exception {
+        System.out.println("compression");
+
+        World world = new World("Compressed");
+        Layer layer = world.getNewLayer();
+        Place previous = null;
+        for(int i = 0; i < 500; ++i){
+            Place place = new Place("Place " + i, i % 25, i / 25, layer);
+            world.putPlace(place);
+            place.addComment("comment " + i);
+            if(previous != null) previous.connectPath(new Path(previous, "e", place, "w"));
+            previous = place;
+        }
+
+        String plainFile = folder.getRoot() + "/plain";
+        new WorldFileDefault(plainFile).writeFile(world);
+        long plainSize = new File(plainFile).length();
+
+        for(Compression compression: new Compression[]{Compression.GZIP, Compression.DEFLATE}){
+            String wfFile = folder.getRoot() + "/" + compression;
+            WorldFileDefault writer = new WorldFileDefault(wfFile);
+            writer.setCompression(compression, Deflater.BEST_COMPRESSION);
+            writer.writeFile(world);
+
+            assertEquals(compression, Compression.detect(wfFile));
+            assertTrue(new File(wfFile).length() * 5 < plainSize);
+
+            WorldFileDefault reader = new WorldFileDefault(wfFile);
+            assertEquals(WorldFileType.JSON, reader.getWorldFileType());
+            assertTrue(reader.canRead());
+            assertEquals("Compressed", reader.readWorldName());
+            assertEquals(compression, reader.getCompression());
+            World result = reader.readFile();
+            assertEquals(compression, reader.getCompression());
+            WorldFileBinaryTest.assertWorldEquals(world, result);
+
+            // written uncompressed again
+            reader.setCompression(Compression.NONE, Deflater.DEFAULT_COMPRESSION);
+            reader.writeFile(result);
+            assertEquals(Compression.NONE, Compression.detect(wfFile));
+            WorldFileBinaryTest.assertWorldEquals(world, new WorldFileDefault(wfFile).readFile());
+        }
+
+        // binary files can't be compressed
+        String binFile = folder.getRoot() + "/bin";
+        new WorldFileBinary(binFile).writeFile(world);
+        WorldFileDefault binary = new WorldFileDefault(binFile);
+        assertFalse(binary.supportsCompression());
+        try {
+            binary.setCompression(Compression.GZIP, Deflater.DEFAULT_COMPRESSION);
+            fail();
+        } catch(UnsupportedOperationException ex){}
+    }
+
 }
@@ -0,0 +1,98 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Compares the JSON and the binary world file format: time to save a
+ *  generated world, to open it (readFile(), the binary format reads the
+ *  layers when they are accessed), to load all layers and the file size.
+ *  It's not run by the tests, run
+ *  it with the test classpath:
+ *  java -Xmx4g -cp target/classes:target/test-classes:<dependencies> mudmap2.backend.WorldFileReader.current.WorldFileFormatBenchmark [places] [runs]
+ */
+
+package mudmap2.backend.WorldFileReader.current;
+
+import java.io.File;
+import mudmap2.backend.World;
+import mudmap2.backend.WorldFileReader.WorldFile;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldFileFormatBenchmark {
+
+    static volatile World sink;
+
+    public static void main(String[] args) throws Exception {
+        int places = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        World world = WorldFileJSONBenchmark.createWorld(places);
+        System.out.println(places + " places, " + runs + " runs");
+
+        File jsonFile = File.createTempFile("mudmap-benchmark", ".json");
+        File binaryFile = File.createTempFile("mudmap-benchmark", ".wfb");
+        jsonFile.deleteOnExit();
+        binaryFile.deleteOnExit();
+
+        measure("JSON  ", new WorldFileJSON(jsonFile.getPath()), world, runs);
+        measure("binary", new WorldFileBinary(binaryFile.getPath()), world, runs);
+
+        jsonFile.delete();
+        binaryFile.delete();
+    }
+
+    /**
+     * Saves, opens and loads a world several times and prints the median
+     * times and the file size
+     * @param name format name
+     * @param worldFile file to write and read
+     * @param world world to save
+     * @param runs number of measured runs, an additional first run warms up
+     * the JIT
+     * @throws Exception
+     */
+    static void measure(String name, WorldFile worldFile, World world, int runs) throws Exception {
+        long[] save = new long[runs];
+        long[] open = new long[runs];
+        long[] load = new long[runs];
+        for(int r = -1; r < runs; ++r){
+            long t0 = System.nanoTime();
+            worldFile.writeFile(world);
+            long t1 = System.nanoTime();
+            sink = worldFile.readFile();
+            long t2 = System.nanoTime();
+            sink.loadLayers();
+            long t3 = System.nanoTime();
+            sink = null;
+            if(r >= 0){
+                save[r] = t1 - t0;
+                open[r] = t2 - t1;
+                load[r] = t3 - t1;
+            }
+        }
+
+        long size = new File(worldFile.getFilename()).length();
+        System.out.println(name + ": save " + WorldFileJSONBenchmark.median(save) / 1000000
+                + " ms, open " + WorldFileJSONBenchmark.median(open) / 1000000
+                + " ms, full load " + WorldFileJSONBenchmark.median(load) / 1000000
+                + " ms, " + size / 1024 + " KiB");
+    }
+
+}
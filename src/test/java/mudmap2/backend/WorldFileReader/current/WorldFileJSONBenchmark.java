@@ -0,0 +1,166 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Measures the load time and the peak heap usage of WorldFileJSON.readFile()
+ *  for a large world. The world is generated (about 200 MB for the default
+ *  size) or read from a given file. It's not run by the tests, run it with
+ *  the test classpath and enough heap:
+ *  java -Xmx4g -cp target/classes:target/test-classes:<dependencies> mudmap2.backend.WorldFileReader.current.WorldFileJSONBenchmark [places | file] [runs]
+ */
+
+package mudmap2.backend.WorldFileReader.current;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldFileJSONBenchmark {
+
+    // places per layer side
+    static final int LAYER_SIZE = 100;
+
+    static volatile World sink;
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        File file;
+        boolean generated = args.length == 0 || !new File(args[0]).exists();
+        if(generated){
+            int places = args.length > 0 ? Integer.parseInt(args[0]) : 850000;
+            file = File.createTempFile("mudmap-benchmark", ".json");
+            file.deleteOnExit();
+            long t0 = System.nanoTime();
+            new WorldFileJSON(file.getPath()).writeFile(createWorld(places));
+            System.out.println("generated " + places + " places in " + (System.nanoTime() - t0) / 1000000 + " ms");
+        } else {
+            file = new File(args[0]);
+        }
+        System.out.println(file.getPath() + ": " + file.length() / (1024 * 1024) + " MB, " + runs + " runs");
+
+        long[] times = new long[runs];
+        long[] peaks = new long[runs];
+        for(int r = 0; r < runs; ++r){
+            sink = null;
+            System.gc();
+            resetPeakHeap();
+            long t0 = System.nanoTime();
+            sink = new WorldFileJSON(file.getPath()).readFile();
+            times[r] = System.nanoTime() - t0;
+            peaks[r] = getPeakHeap();
+            System.out.println("run " + r + ": " + times[r] / 1000000 + " ms, peak heap "
+                    + peaks[r] / (1024 * 1024) + " MB, " + sink.getPlaces().size() + " places");
+        }
+        System.gc();
+        System.out.println("load time:     " + median(times) / 1000000 + " ms");
+        System.out.println("peak heap:     " + median(peaks) / (1024 * 1024) + " MB");
+        System.out.println("retained heap: " + getUsedHeap() / (1024 * 1024) + " MB");
+
+        if(generated) file.delete();
+    }
+
+    /**
+     * Creates a world of square layers with named places, comments, flags,
+     * paths to the neighbors and some child connections to the next layer
+     * @param count number of places
+     * @return world
+     * @throws Exception
+     */
+    static World createWorld(int count) throws Exception {
+        World world = new World("Benchmark");
+        Layer layer = null;
+        Place[] previous = null, current = null;
+        for(int i = 0; i < count; ++i){
+            int n = i % (LAYER_SIZE * LAYER_SIZE);
+            int x = n % LAYER_SIZE, y = n / LAYER_SIZE;
+            if(n == 0){
+                layer = world.getNewLayer();
+                previous = current;
+                current = new Place[LAYER_SIZE * LAYER_SIZE];
+            }
+
+            Place place = new Place("Place " + i + " of the benchmark world", x, y, layer);
+            world.putPlace(place);
+            place.addComment("A room somewhere in the benchmark world, number " + i);
+            place.addComment("Shared comment " + (i % 100));
+            place.setFlag("shop", i % 7 == 0);
+            place.setFlag("quest", i % 11 == 0);
+            place.setRecLevelMin(i % 50);
+            place.setRecLevelMax(i % 50 + 10);
+            current[n] = place;
+
+            if(x > 0) place.connectPath(new Path(current[n - 1], "e", place, "w"));
+            if(y > 0) place.connectPath(new Path(current[n - LAYER_SIZE], "s", place, "n"));
+            if(previous != null && n % 97 == 0) previous[n].connectChild(place);
+        }
+        return world;
+    }
+
+    /**
+     * Resets the peak usage of the heap memory pools
+     */
+    static void resetPeakHeap(){
+        for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Gets the sum of the peak usages of the heap memory pools since the
+     * last reset
+     * @return bytes
+     */
+    static long getPeakHeap(){
+        long peak = 0;
+        for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /**
+     * Gets the used heap
+     * @return bytes
+     */
+    static long getUsedHeap(){
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Gets the median of measured values
+     * @param values
+     * @return median
+     */
+    static long median(long[] values){
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+}
@@ -22,13 +22,20 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import mudmap2.backend.PlaceGroup;
 import mudmap2.backend.Layer;
 import mudmap2.backend.Path;
 import mudmap2.backend.Place;
+import mudmap2.backend.RiskLevel;
 import mudmap2.backend.World;
+import mudmap2.backend.WorldFileReader.Exception.WorldFileInvalidTypeException;
+import mudmap2.backend.WorldCoordinate;
+import mudmap2.backend.WorldFileReader.WorldFile;
+import mudmap2.backend.WorldFileReader.WorldFileHeader;
 import mudmap2.backend.WorldFileReader.WorldFileType;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -202,6 +209,321 @@ public class WorldFileJSONTest {
         // TODO: test labels
     }
 
+    /**
+     * Test of the file format written by writeFile: UTF-8, version and name
+     * first, readable by org.json
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWriteFileFormat() throws Exception {
+        System.out.println("writeFile format");
+
+        World world = new World("W\u00f6rld \"1\"");
+        Layer layer = world.getNewLayer();
+        Place place = new Place("Pl\u00e4ce", 1, 2, layer);
+        world.putPlace(place);
+        place.addComment("line 1\nline 2");
+
+        String wfjFile = folder.getRoot() + "/wfj";
+        new WorldFileJSON(wfjFile).writeFile(world);
+
+        String content = FileUtils.readFileToString(new File(wfjFile), "UTF-8");
+        assertTrue(content.startsWith("{\"fileVer\":\"2.0\",\"worldName\":\"W\u00f6rld \\\"1\\\"\","));
+
+        org.json.JSONObject root = new org.json.JSONObject(content);
+        assertEquals(world.getName(), root.getString("worldName"));
+        assertEquals(1, root.getJSONArray("places").length());
+        assertEquals(0, root.getJSONArray("paths").length());
+        assertEquals("Pl\u00e4ce", root.getJSONArray("places").getJSONObject(0).getString("n"));
+
+        World result = new WorldFileJSON(wfjFile).readFile();
+        assertEquals(world.getName(), result.getName());
+        assertEquals("line 1\nline 2", result.getPlace(place.getId()).getComments().getFirst());
+    }
+
+    /**
+     * Test of readFile with sections in a different order: references to
+     * places, layers, areas and risk levels before their definitions
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReadFileKeyOrder() throws Exception {
+        System.out.println("readFile key order");
+
+        String json = "{"
+                + "\"paths\":[[{\"p\":2,\"e\":\"n\"},{\"p\":3,\"e\":\"s\"}]],"
+                + "\"places\":["
+                + "{\"id\":2,\"n\":\"First\",\"l\":5,\"x\":1,\"y\":2,\"a\":1,\"r\":7,\"c\":[3],\"lvlMax\":20},"
+                + "{\"y\":3,\"x\":1,\"l\":5,\"n\":\"Second\",\"id\":3,\"f\":[\"shop\"],\"co\":[\"a\",\"b\"]}],"
+                + "\"unknownKey\":{\"foo\":[1,2,{\"bar\":null}]},"
+                + "\"layers\":[{\"id\":5,\"centerX\":1,\"centerY\":2,\"name\":\"Layer\"}],"
+                + "\"areas\":[{\"id\":1,\"name\":\"Area\",\"col\":\"#ff0000\"}],"
+                + "\"riskLevels\":[{\"id\":7,\"desc\":\"Risky\",\"col\":\"#00ff00\"}],"
+                + "\"meta\":{\"foo\":\"bar\"},"
+                + "\"worldName\":\"Order\","
+                + "\"fileVer\":\"2.0\"}";
+        String wfjFile = folder.getRoot() + "/wfj";
+        FileUtils.writeStringToFile(new File(wfjFile), json, "UTF-8");
+
+        WorldFileJSON instance = new WorldFileJSON(wfjFile);
+        World result = instance.readFile();
+
+        assertEquals("Order", result.getName());
+        assertEquals(1, result.getLayers().size());
+        Place first = result.getPlace(2);
+        Place second = result.getPlace(3);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertEquals(result.getLayer(5), first.getLayer());
+        assertEquals("Layer", first.getLayer().getName());
+        assertEquals(second, result.getLayer(5).get(1, 3));
+        assertEquals("Area", first.getPlaceGroup().getName());
+        assertEquals("Risky", first.getRiskLevel().getDescription());
+        assertEquals(20, first.getRecLevelMax());
+        assertTrue(first.getChildren().contains(second));
+        assertEquals(second, first.getPathTo("n").getOtherPlace(first));
+        assertTrue(second.getFlag("shop"));
+        assertEquals(2, second.getComments().size());
+        assertEquals("bar", instance.getMetaData().getString("foo"));
+    }
+
+    /**
+     * Test of readFile method, of class WorldFileJSON, with places that are
+     * decoded in parallel
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReadFileParallel() throws Exception {
+        System.out.println("readFile parallel");
+
+        World world = new World("Parallel");
+        world.setRiskLevel(new RiskLevel(17, "risky", Color.red));
+        PlaceGroup group = new PlaceGroup("group", Color.green);
+        world.addPlaceGroup(group);
+        Place previous = null;
+        for(int l = 0; l < 3; ++l){
+            Layer layer = world.getNewLayer();
+            for(int i = 0; i < 2000; ++i){
+                // brackets and quotes in strings mustn't confuse the chunks
+                Place place = new Place("Place {\"" + i + "\"] \\", i % 50, i / 50, layer);
+                world.putPlace(place);
+                place.addComment("comment [" + i);
+                place.setFlag("f" + (i % 3), true);
+                if(i % 7 == 0) place.setPlaceGroup(group);
+                if(i % 11 == 0) place.setRiskLevel(world.getRiskLevel(17));
+                place.setRecLevelMin(i % 5);
+                if(previous != null){
+                    previous.connectPath(new Path(previous, "e", place, "w"));
+                    if(i % 13 == 0) previous.connectChild(place);
+                }
+                previous = place;
+            }
+        }
+
+        String file = folder.getRoot() + "/parallel";
+        new WorldFileJSON(file).writeFile(world);
+        assertTrue(new File(file).length() > 4 * WorldFileJSON.PLACE_CHUNK_SIZE);
+
+        World parallel = new WorldFileJSON(file).readFile();
+        WorldFileJSON.setParallelLoading(false);
+        World sequential;
+        try {
+            sequential = new WorldFileJSON(file).readFile();
+        } finally {
+            WorldFileJSON.setParallelLoading(true);
+        }
+
+        WorldFileBinaryTest.assertWorldEquals(world, parallel);
+        WorldFileBinaryTest.assertWorldEquals(sequential, parallel);
+        for(Place place: world.getPlaces()){
+            Place result = parallel.getPlace(place.getId());
+            assertEquals(place.getRecLevelMin(), result.getRecLevelMin());
+            assertEquals(place.getChildren().size(), result.getChildren().size());
+            assertEquals(place.getRiskLevel() != null, result.getRiskLevel() != null);
+        }
+
+        // output of both is the same
+        String parallelFile = folder.getRoot() + "/parallel2";
+        String sequentialFile = folder.getRoot() + "/sequential";
+        new WorldFileJSON(parallelFile).writeFile(parallel);
+        new WorldFileJSON(sequentialFile).writeFile(sequential);
+        assertEquals(FileUtils.readFileToString(new File(sequentialFile), "UTF-8"),
+                FileUtils.readFileToString(new File(parallelFile), "UTF-8"));
+    }
+
+    /**
+     * Test of writeFile method, of class WorldFileJSON, with places that are
+     * encoded in parallel
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWriteFileParallel() throws Exception {
+        System.out.println("writeFile parallel");
+
+        World world = new World("Parallel");
+        ArrayList<Place> places = new ArrayList<>();
+        for(int l = 0; l < 3; ++l){
+            Layer layer = world.getNewLayer();
+            for(int i = 0; i < 3000; ++i){
+                Place place = new Place("Place " + i, i % 60, i / 60, layer);
+                world.putPlace(place);
+                place.setFlag("f", i % 2 == 0);
+                place.addComment("comment " + i);
+                places.add(place);
+            }
+        }
+        // paths within and across the ranges that are encoded in one task
+        for(int i = 1; i < places.size(); ++i){
+            Place place = places.get(i);
+            place.connectPath(new Path(places.get(i - 1), "e", place, "w"));
+            if(i % 5 == 0) place.connectPath(new Path(place, "n", places.get((i * 7919) % i), "s"));
+            if(i % 17 == 0) place.connectChild(places.get(i / 2));
+        }
+        world.setHome(new WorldCoordinate(places.get(10).getLayer().getId(), 1, 2));
+
+        String parallelFile = folder.getRoot() + "/parallel";
+        String sequentialFile = folder.getRoot() + "/sequential";
+        WorldFileJSON parallelWriter = new WorldFileJSON(parallelFile);
+        // progress is reported from the encoding tasks
+        final AtomicInteger written = new AtomicInteger();
+        final int total = places.size();
+        parallelWriter.setProgressListener(new WorldFile.ProgressListener() {
+            @Override
+            public void progress(int done, int t) {
+                assertEquals(total, t);
+                int prev;
+                do prev = written.get(); while(done > prev && !written.compareAndSet(prev, done));
+            }
+        });
+        parallelWriter.writeFile(world);
+        assertEquals(total, written.get());
+        WorldFileJSON.setParallelSaving(false);
+        try {
+            new WorldFileJSON(sequentialFile).writeFile(world);
+        } finally {
+            WorldFileJSON.setParallelSaving(true);
+        }
+
+        assertTrue(places.size() > 2 * WorldFileJSON.PLACE_WRITE_CHUNK_SIZE);
+        assertArrayEquals(FileUtils.readFileToByteArray(new File(sequentialFile)),
+                FileUtils.readFileToByteArray(new File(parallelFile)));
+
+        World result = new WorldFileJSON(parallelFile).readFile();
+        WorldFileBinaryTest.assertWorldEquals(world, result);
+    }
+
+    /**
+     * Test of readFile with lazy layers, of class WorldFileJSON.
+     * @throws Exception
+     */
+    @Test
+    public void testReadFileLazyLayers() throws Exception {
+        System.out.println("readFile lazy layers");
+
+        World world = new World("Lazy");
+        Layer layer1 = world.getNewLayer();
+        Layer layer2 = world.getNewLayer();
+        Place place1 = new Place("Place 1", 0, 0, layer1);
+        Place place2 = new Place("Place 2", 1, 0, layer1);
+        Place place3 = new Place("Place 3", 0, 0, layer2);
+        world.putPlace(place1);
+        world.putPlace(place2);
+        world.putPlace(place3);
+        place1.connectPath(new Path(place1, "e", place2, "w"));
+        place2.connectPath(new Path(place2, "d", place3, "u"));
+        place3.connectChild(place1);
+        world.setHome(new WorldCoordinate(layer1.getId(), 0, 0));
+
+        String file = folder.getRoot() + "/lazy";
+        new WorldFileJSON(file).writeFile(world);
+
+        WorldFileJSON instance = new WorldFileJSON(file);
+        instance.setLazyLayers(true);
+        World result = instance.readFile();
+
+        // layer ids are translated by the writer
+        assertEquals(2, result.getLayers().size());
+        Layer resultLayer1 = result.getLayer(result.getHome().getLayer());
+        Layer resultLayer2 = null;
+        for(Layer layer: result.getLayers()) if(layer != resultLayer1) resultLayer2 = layer;
+        assertFalse(resultLayer1.isLoaded());
+        assertFalse(resultLayer2.isLoaded());
+        // the links are known without loading the layers
+        assertTrue(resultLayer1.getLinkedLayers().contains(resultLayer2.getId()));
+        assertTrue(resultLayer2.getLinkedLayers().contains(resultLayer1.getId()));
+        assertFalse(resultLayer1.isLoaded());
+
+        // paths and children to a layer that isn't loaded are connected later
+        resultLayer1.load();
+        assertFalse(resultLayer2.isLoaded());
+        Place result1 = resultLayer1.get(0, 0);
+        Place result2 = resultLayer1.get(1, 0);
+        assertEquals(1, result1.getPaths().size());
+        assertEquals(1, result2.getPaths().size());
+        assertTrue(result1.getParents().isEmpty());
+
+        resultLayer2.load();
+        assertEquals(2, result2.getPaths().size());
+        assertEquals(1, result1.getParents().size());
+
+        WorldFileBinaryTest.assertWorldEquals(world, result);
+    }
+
+    /**
+     * Test of the string table of writeFile and readFile, of class WorldFileJSON.
+     * @throws Exception
+     */
+    @Test
+    public void testStringTable() throws Exception {
+        System.out.println("stringTable");
+
+        World world = new World("Strings");
+        Layer layer = world.getNewLayer();
+        Place prev = null;
+        for(int i = 0; i < 20; ++i){
+            Place place = new Place("Dark forest", i, 0, layer);
+            world.putPlace(place);
+            place.setFlag("shop", true);
+            if(prev != null) place.connectPath(new Path(prev, "east", place, "west"));
+            prev = place;
+        }
+        Place single = new Place("Clearing", 0, 1, layer);
+        world.putPlace(single);
+
+        String file = folder.getRoot() + "/strings";
+        new WorldFileJSON(file).writeFile(world);
+
+        String content = FileUtils.readFileToString(new File(file));
+        assertTrue(content.contains("\"fileVer\":\"3.0\""));
+        assertTrue(content.contains("\"strings\":["));
+        assertEquals(content.indexOf("Dark forest"), content.lastIndexOf("Dark forest"));
+        assertEquals(content.indexOf("\"east\""), content.lastIndexOf("\"east\""));
+        assertTrue(content.contains("Clearing"));
+
+        World result = new WorldFileJSON(file).readFile();
+        WorldFileBinaryTest.assertWorldEquals(world, result);
+
+        // equal strings share one instance
+        Place first = null;
+        for(Place place: result.getPlaces()){
+            if(!place.getName().equals("Dark forest")) continue;
+            if(first == null) first = place;
+            assertSame(first.getName(), place.getName());
+        }
+        assertNotNull(first);
+
+        // files of an unknown version major aren't read
+        FileUtils.writeStringToFile(new File(file), "{\"fileVer\":\"4.0\",\"worldName\":\"W\"}", "UTF-8");
+        try {
+            new WorldFileJSON(file).readFile();
+            fail("Read a file of an unknown version");
+        } catch (WorldFileInvalidTypeException ex) {
+            // the user is told to update
+            assertTrue(ex.getMessage().contains("4.0"));
+            assertTrue(ex.getMessage().contains("update"));
+        }
+    }
+
     /**
      * Test of backup method, of class WorldFileJSON.
      * @throws java.io.IOException
@@ -298,6 +620,57 @@ public class WorldFileJSONTest {
         assertTrue(result);
     }
 
+    /**
+     * Test of readHeader method, of class WorldFileJSON.
+     */
+    @Test
+    public void testReadHeader() {
+        System.out.println("readHeader");
+
+        String wfjFile = folder.getRoot() + "/wfj";
+        String legacyFile = folder.getRoot() + "/legacy";
+        String invalidFile = folder.getRoot() + "/invalid";
+
+        try {
+            new WorldFileJSON(wfjFile).writeFile(new World("foobar"));
+
+            // world name behind a section that is larger than the probe
+            StringBuilder legacy = new StringBuilder("{\"places\":[");
+            for(int i = 0; i < 1000; ++i){
+                if(i > 0) legacy.append(',');
+                legacy.append("{\"id\":").append(i).append('}');
+            }
+            legacy.append("],\"worldName\":\"legacy\",\"fileVer\":\"2.0\"}");
+            FileUtils.writeStringToFile(new File(legacyFile), legacy.toString(), "UTF-8");
+
+            FileUtils.writeStringToFile(new File(invalidFile), "foo bar", "UTF-8");
+        } catch (IOException ex) {
+            Logger.getLogger(WorldFileJSONTest.class.getName()).log(Level.SEVERE, null, ex);
+            fail("Could not create files for test");
+        }
+
+        try {
+            WorldFileHeader header = new WorldFileJSON(wfjFile).readHeader();
+            assertNotNull(header);
+            assertEquals("foobar", header.getWorldName());
+            assertEquals("2.0", header.getFileVersion());
+            assertEquals(0, header.getPlaceCount());
+            assertEquals(0, header.getLayerCount());
+
+            header = new WorldFileJSON(legacyFile).readHeader();
+            assertNotNull(header);
+            assertEquals("legacy", header.getWorldName());
+            assertEquals("2.0", header.getFileVersion());
+            assertEquals(-1, header.getPlaceCount());
+
+            assertNull(new WorldFileJSON(invalidFile).readHeader());
+            assertFalse(new WorldFileJSON(invalidFile).canRead());
+        } catch (IOException ex) {
+            Logger.getLogger(WorldFileJSONTest.class.getName()).log(Level.SEVERE, null, ex);
+            fail(ex.getMessage());
+        }
+    }
+
     /**
      * Test of getWorldFileType method, of class WorldFileJSON.
      */
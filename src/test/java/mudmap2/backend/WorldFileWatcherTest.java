@@ -0,0 +1,114 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend;
+
+import java.io.File;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldFileWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File worldFile;
+
+    public WorldFileWatcherTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        worldFile = new File(folder.getRoot(), "world");
+        FileUtils.writeStringToFile(worldFile, "first", "UTF-8");
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Replaces the world file like AtomicFile does
+     */
+    private void writeWorldFile(String content) throws Exception {
+        File temp = new File(folder.getRoot(), "temp");
+        FileUtils.writeStringToFile(temp, content, "UTF-8");
+        assertTrue(temp.renameTo(worldFile));
+    }
+
+    /**
+     * Test of watch and setKnown methods, of class WorldFileWatcher.
+     * @throws Exception
+     */
+    @Test
+    public void testWatch() throws Exception {
+        System.out.println("watch");
+
+        final LinkedBlockingQueue<String> changed = new LinkedBlockingQueue<>();
+        WorldFileWatcher instance = new WorldFileWatcher(new WorldFileWatcher.Listener() {
+            @Override
+            public void worldFileChanged(String filename) {
+                changed.add(filename);
+            }
+        });
+        instance.watch(worldFile.getPath());
+        instance.start();
+        try {
+            assertFalse(instance.hasChanged(worldFile.getPath()));
+
+            // changed by another program
+            writeWorldFile("second version");
+            assertEquals(worldFile.getPath(), changed.poll(10, TimeUnit.SECONDS));
+            assertTrue(instance.hasChanged(worldFile.getPath()));
+
+            // written by MUD Map
+            writeWorldFile("third version of the file");
+            instance.setKnown(worldFile.getPath(), WorldFileWatcher.getState(worldFile.getPath()));
+            assertNull(changed.poll(2 * WorldFileWatcher.QUIET_TIME + 500, TimeUnit.MILLISECONDS));
+            assertFalse(instance.hasChanged(worldFile.getPath()));
+
+            // other files in the directory
+            FileUtils.writeStringToFile(new File(folder.getRoot(), "other"), "other", "UTF-8");
+            instance.unwatch(worldFile.getPath());
+            writeWorldFile("fourth");
+            assertNull(changed.poll(2 * WorldFileWatcher.QUIET_TIME + 500, TimeUnit.MILLISECONDS));
+        } finally {
+            instance.stop();
+        }
+    }
+
+}
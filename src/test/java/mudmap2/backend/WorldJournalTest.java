@@ -0,0 +1,360 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import mudmap2.backend.WorldFileReader.current.WorldFileBinaryTest;
+import mudmap2.backend.WorldFileReader.current.WorldFileJSON;
+import mudmap2.utils.AtomicFile;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    String file;
+    World world;
+    Layer layer;
+    Place pl0, pl1;
+
+    public WorldJournalTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.getRoot() + "/world";
+
+        world = new World("Journal");
+        world.getNewLayer(); // empty layer, not written to the world file
+        layer = world.getNewLayer();
+        pl0 = new Place("A", 0, 0, layer);
+        pl1 = new Place("B", 1, 0, layer);
+        world.putPlace(pl0);
+        world.putPlace(pl1);
+        pl0.connectPath(new Path(pl0, "e", pl1, "w"));
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Reads the world file and replays the journal
+     */
+    private World reload() throws Exception {
+        return reload(file);
+    }
+
+    private World reload(String filename) throws Exception {
+        World ret = new WorldFileJSON(filename).readFile();
+        WorldJournal journal = new WorldJournal(ret, filename);
+        journal.replay();
+        journal.close();
+        return ret;
+    }
+
+    /**
+     * Reads a copy of the files as they would be found after a crash
+     */
+    private World recover() throws Exception {
+        String copy = folder.newFolder() + "/world";
+        String[][] files = {{file, copy},
+            {WorldJournal.getJournalFile(file), WorldJournal.getJournalFile(copy)},
+            {WorldJournal.getNextJournalFile(file), WorldJournal.getNextJournalFile(copy)}};
+        for(String[] entry: files){
+            File source = new File(entry[0]);
+            if(source.exists()){
+                File target = new File(entry[1]);
+                Files.copy(source.toPath(), target.toPath());
+                target.setLastModified(source.lastModified());
+            }
+        }
+        return reload(copy);
+    }
+
+    /**
+     * Changes the world in all recorded ways
+     */
+    private void modify() throws Exception {
+        Layer newLayer = world.getNewLayer("New layer");
+        Place pl2 = new Place("C", 5, 5, newLayer);
+        world.putPlace(pl2);
+        pl1.connectPath(new Path(pl1, "down", pl2, "up"));
+        pl0.removePath("e", pl1, "w");
+        pl2.connectChild(pl0);
+
+        world.putPlace(pl1, layer.getId(), 3, -2);
+        pl1.setName("B moved");
+        pl1.setRecLevelMin(4);
+        pl1.setFlag("shop", true);
+        pl1.addComment("comment");
+
+        PlaceGroup area = new PlaceGroup("Area", Color.red);
+        world.addPlaceGroup(area);
+        pl1.setPlaceGroup(area);
+        world.addRiskLevel(new RiskLevel(9, "deadly", Color.black));
+        pl1.setRiskLevel(world.getRiskLevel(9));
+
+        Place pl3 = new Place("D", 7, 7, layer);
+        world.putPlace(pl3);
+        world.removePlace(pl3);
+
+        world.setName("Renamed");
+        world.setPathColor("down", Color.blue);
+    }
+
+    /**
+     * Test of replay method, of class WorldJournal.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReplay() throws Exception {
+        System.out.println("replay");
+
+        WorldJournal journal = new WorldJournal(world, file);
+        journal.compact(new WorldFileJSON(file));
+        long size = journal.size();
+
+        modify();
+        journal.sync();
+        assertTrue(journal.size() > size);
+        journal.close();
+
+        World result = reload();
+        assertEquals("Renamed", result.getName());
+        assertEquals(Color.blue, result.getPathColor("down"));
+        assertEquals("deadly", result.getRiskLevel(9).getDescription());
+        WorldFileBinaryTest.assertWorldEquals(world, result);
+
+        // replaying a journal of another version of the world file does nothing
+        new WorldFileJSON(file).writeFile(world);
+        new File(file).setLastModified(new File(file).lastModified() + 2000);
+        World other = new WorldFileJSON(file).readFile();
+        WorldJournal otherJournal = new WorldJournal(other, file);
+        assertEquals(0, otherJournal.replay());
+    }
+
+    /**
+     * Test of discard method and crash recovery, of class WorldJournal.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testDiscard() throws Exception {
+        System.out.println("discard");
+
+        WorldJournal journal = new WorldJournal(world, file);
+        journal.compact(new WorldFileJSON(file));
+
+        pl0.setName("A saved");
+        journal.sync();
+        pl1.setName("B discarded");
+        journal.discard();
+
+        World result = reload();
+        assertEquals("A saved", result.getPlace(pl0.getId()).getName());
+        assertEquals("B", result.getPlace(pl1.getId()).getName());
+
+        // records written before a crash are kept, incomplete ones ignored
+        journal = new WorldJournal(result, file);
+        journal.replay();
+        journal.open();
+        result.getPlace(pl1.getId()).setName("B unsaved");
+        journal.close();
+        Files.write(new File(WorldJournal.getJournalFile(file)).toPath(),
+                "{\"t\":\"p\",\"id\"".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        World recovered = reload();
+        assertEquals("A saved", recovered.getPlace(pl0.getId()).getName());
+        assertEquals("B unsaved", recovered.getPlace(pl1.getId()).getName());
+    }
+
+    /**
+     * Test of beginCompaction and finishCompaction methods, of class WorldJournal.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testBackgroundCompaction() throws Exception {
+        System.out.println("background compaction");
+
+        WorldJournal journal = new WorldJournal(world, file);
+        journal.compact(new WorldFileJSON(file));
+
+        // snapshot, then the world is changed while it is written
+        pl0.setName("A before");
+        journal.sync();
+        World snapshot = world.snapshot();
+        journal.beginCompaction();
+        modify();
+        WorldFileJSON worldFile = new WorldFileJSON(file);
+        worldFile.writeFile(snapshot);
+        journal.finishCompaction(worldFile);
+        journal.sync();
+        journal.close();
+
+        World result = reload();
+        assertEquals("A before", result.getPlace(pl0.getId()).getName());
+        WorldFileBinaryTest.assertWorldEquals(world, result);
+    }
+
+    /**
+     * Test of replay method, of class WorldJournal. Replaying a journal loads
+     * only the layers its records refer to
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testReplayLazyLayers() throws Exception {
+        System.out.println("replay lazy layers");
+
+        Layer untouched = world.getNewLayer("Untouched");
+        Place pl4 = new Place("E", 0, 0, untouched);
+        world.putPlace(pl4);
+        Layer linked = world.getNewLayer("Linked");
+        Place pl5 = new Place("F", 0, 0, linked);
+        world.putPlace(pl5);
+        pl0.connectPath(new Path(pl0, "down", pl5, "up"));
+        Layer removed = world.getNewLayer("Removed");
+        Place pl6 = new Place("G", 0, 0, removed);
+        world.putPlace(pl6);
+        world.putPlace(new Place("G2", 1, 0, removed));
+        Layer target = world.getNewLayer("Target");
+        world.putPlace(new Place("I", 0, 0, target));
+
+        WorldJournal journal = new WorldJournal(world, file);
+        WorldFileJSON worldFile = new WorldFileJSON(file);
+        journal.compact(worldFile);
+
+        pl0.setName("A renamed");
+        world.putPlace(pl1, target.getId(), 2, 2);
+        world.removePlace(pl6);
+        Place pl7 = new Place("H", 3, 3, target);
+        world.putPlace(pl7);
+        journal.sync();
+        journal.close();
+
+        WorldFileJSON reader = new WorldFileJSON(file);
+        reader.setLazyLayers(true);
+        World result = reader.readFile();
+        WorldJournal resultJournal = new WorldJournal(result, file);
+        assertTrue(resultJournal.replay() > 0);
+        resultJournal.close();
+
+        assertFalse(result.getLayer(worldFile.translateLayerID(untouched.getId())).isLoaded());
+        assertNull(result.getLoadedPlace(pl4.getId()));
+        assertEquals("A renamed", result.getLoadedPlace(pl0.getId()).getName());
+        assertEquals("Target", result.getLoadedPlace(pl1.getId()).getLayer().getName());
+
+        result.loadLayers();
+        assertNull(result.getPlace(pl6.getId()));
+        WorldFileBinaryTest.assertWorldEquals(world, result);
+    }
+
+    /**
+     * Test of prepareCompaction and commitCompaction methods, of class
+     * WorldJournal. The changes made while writing survive a crash at any time
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testPrepareCompaction() throws Exception {
+        System.out.println("prepareCompaction");
+
+        final WorldJournal journal = new WorldJournal(world, file);
+        journal.compact(new WorldFileJSON(file));
+
+        World snapshot = world.snapshot();
+        journal.beginCompaction();
+        modify();
+        final WorldFileJSON worldFile = new WorldFileJSON(file);
+        worldFile.setCommitHandler(new AtomicFile.CommitHandler() {
+            @Override
+            public void commit(AtomicFile tempFile) throws IOException {
+                try {
+                    journal.prepareCompaction(worldFile, tempFile.getTempFile());
+                    assertTrue(new File(WorldJournal.getNextJournalFile(file)).exists());
+                    // old world file and old journal
+                    WorldFileBinaryTest.assertWorldEquals(world, recover());
+                    tempFile.replace();
+                    // new world file and the journal that was written for it
+                    WorldFileBinaryTest.assertWorldEquals(world, recover());
+                    journal.commitCompaction();
+                } catch (IOException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new IOException(ex);
+                }
+            }
+        });
+        worldFile.writeFile(snapshot);
+        assertFalse(new File(WorldJournal.getNextJournalFile(file)).exists());
+        // already done by commitCompaction
+        journal.finishCompaction(worldFile);
+
+        pl0.setName("A after");
+        journal.sync();
+        journal.close();
+        WorldFileBinaryTest.assertWorldEquals(world, reload());
+
+        // a journal of a file that never replaced the world file is removed
+        Files.write(new File(WorldJournal.getNextJournalFile(file)).toPath(),
+                "{\"journal\":\"1.0\",\"size\":1,\"mod\":1}\n".getBytes(StandardCharsets.UTF_8));
+        WorldFileBinaryTest.assertWorldEquals(world, reload());
+        assertFalse(new File(WorldJournal.getNextJournalFile(file)).exists());
+    }
+
+    /**
+     * Test of needsCompaction method, of class WorldJournal.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testNeedsCompaction() throws IOException {
+        System.out.println("needsCompaction");
+
+        WorldJournal journal = new WorldJournal(world, file);
+        assertTrue(journal.needsCompaction());
+        journal.compact(new WorldFileJSON(file));
+        assertFalse(journal.needsCompaction());
+        for(int i = 0; journal.size() <= WorldJournal.COMPACT_SIZE; ++i){
+            pl0.setName("A" + i);
+        }
+        assertTrue(journal.needsCompaction());
+        journal.close();
+    }
+}
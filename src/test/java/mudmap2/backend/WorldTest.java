@@ -20,6 +20,7 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -52,23 +53,6 @@ public class WorldTest {
     public void tearDown() {
     }
 
-    /**
-     * Test of breadthSearch method, of class World.
-     */
-/*    @Test
-    @Ignore // TODO: implement this test
-    public void testBreadthSearch() {
-        System.out.println("breadthSearch");
-        Place start = null;
-        Place end = null;
-        World instance = null;
-        Place expResult = null;
-        Place result = instance.breadthSearch(start, end);
-        //assertEquals(expResult, result);
-        // TODO review the generated test code and removePlace the default call to fail.
-        fail("The test case is a prototype.");
-    }
-*/
     /**
      * Test of getPlace method, of class World.
      */
@@ -730,4 +714,231 @@ public class WorldTest {
         }
     }
 
+    /**
+     * Test of snapshot method, of class World.
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        System.out.println("snapshot");
+
+        World instance = new World("Snapshot");
+        Layer layer = instance.getNewLayer();
+        PlaceGroup area = new PlaceGroup("area", Color.red);
+        instance.addPlaceGroup(area);
+        Place pl0 = new Place("A", 0, 0, layer);
+        Place pl1 = new Place("B", 1, 0, layer);
+        instance.putPlace(pl0);
+        instance.putPlace(pl1);
+        pl0.connectPath(new Path(pl0, "e", pl1, "w"));
+        pl0.connectChild(pl1);
+        pl0.setPlaceGroup(area);
+        pl0.setFlag("flag", true);
+
+        World result = instance.snapshot();
+        assertEquals("Snapshot", result.getName());
+        assertEquals(2, result.getPlaces().size());
+        Place res0 = result.getPlace(pl0.getId());
+        Place res1 = result.getPlace(pl1.getId());
+        assertNotSame(pl0, res0);
+        assertEquals(layer.getId(), res0.getLayer().getId());
+        assertSame(result, res0.getLayer().getWorld());
+        assertEquals(1, res0.getPaths().size());
+        assertSame(res1, res0.getPathTo("e").getOtherPlace(res0));
+        assertTrue(res0.getChildren().contains(res1));
+        assertTrue(res1.getParents().contains(res0));
+        assertEquals("area", res0.getPlaceGroup().getName());
+        assertNotSame(area, res0.getPlaceGroup());
+        assertTrue(res0.getFlag("flag"));
+
+        // changes after the snapshot don't affect it
+        pl0.setName("changed");
+        pl1.remove();
+        assertEquals("A", res0.getName());
+        assertEquals(2, result.getPlaces().size());
+        assertEquals(1, res0.getPaths().size());
+    }
+
+    /**
+     * Test of setSaved, isModified and getPendingChangeCount methods, of class World.
+     */
+    @Test
+    public void testDirtyTracking() throws Exception {
+        System.out.println("dirtyTracking");
+
+        World instance = new World("Dirty");
+        Layer layer = instance.getNewLayer();
+        instance.setSaved(instance.getModCount());
+        assertFalse(instance.isModified());
+        assertEquals(0, instance.getPendingChangeCount());
+
+        instance.putPlace(new Place("A", 0, 0, layer));
+        instance.putPlace(new Place("B", 1, 0, layer));
+        assertTrue(instance.isModified());
+        assertEquals(2, instance.getPendingChangeCount());
+        assertTrue(instance.getLastChangeTime() > 0);
+
+        // changes made while saving stay pending
+        long saved = instance.getModCount();
+        instance.putPlace(new Place("C", 2, 0, layer));
+        instance.setSaved(saved);
+        assertTrue(instance.isModified());
+        assertEquals(1, instance.getPendingChangeCount());
+
+        // an older save doesn't reset the state
+        instance.setSaved(instance.getModCount());
+        instance.setSaved(saved);
+        assertFalse(instance.isModified());
+    }
+
+    /**
+     * Test of beginBatch and endBatch methods, of class World.
+     */
+    @Test
+    public void testBatch() throws Exception {
+        System.out.println("batch");
+
+        World instance = new World("Batch");
+        Layer layer = instance.getNewLayer();
+        final ArrayList<Object> events = new ArrayList<>();
+        instance.addChangeListener(new WorldChangeListener() {
+            @Override
+            public void worldChanged(Object source) {
+                events.add(source);
+            }
+        });
+
+        // empty batch
+        long modCount = instance.getModCount();
+        instance.beginBatch();
+        instance.endBatch();
+        assertTrue(events.isEmpty());
+        assertEquals(modCount, instance.getModCount());
+
+        // nested batches, the listeners are called at the end of the outer one
+        Place pl0 = new Place("A", 0, 0, layer);
+        Place pl1 = new Place("B", 1, 0, layer);
+        instance.beginBatch();
+        assertTrue(instance.isBatch());
+        instance.putPlace(pl0);
+        instance.beginBatch();
+        instance.putPlace(pl1);
+        pl1.setName("C");
+        instance.endBatch();
+        assertTrue(events.isEmpty());
+        instance.endBatch();
+        assertFalse(instance.isBatch());
+
+        assertEquals(1, events.size());
+        assertTrue(events.get(0) instanceof WorldChangeBatch);
+        WorldChangeBatch batch = (WorldChangeBatch) events.get(0);
+        assertTrue(batch.getSources().contains(pl0));
+        assertTrue(batch.getSources().contains(pl1));
+        assertTrue(batch.contains(Place.class));
+        assertEquals(modCount + 1, instance.getModCount());
+
+        // a single changed object is sent as it is
+        events.clear();
+        instance.beginBatch();
+        pl0.setName("D");
+        pl0.setRecLevelMin(5);
+        instance.endBatch();
+        assertEquals(1, events.size());
+        assertSame(pl0, events.get(0));
+
+        try {
+            instance.endBatch();
+            fail();
+        } catch(IllegalStateException ex){}
+    }
+
+    /**
+     * Test of the typed change events, of class World.
+     */
+    @Test
+    public void testEvents() throws Exception {
+        System.out.println("events");
+
+        World instance = new World("Events");
+        Layer layer = instance.getNewLayer();
+        Layer layer2 = instance.getNewLayer();
+        final ArrayList<WorldEvent> events = new ArrayList<>();
+        instance.addEventListener(new WorldEventListener() {
+            @Override
+            public void worldEvent(WorldEvent event) {
+                events.add(event);
+            }
+        });
+        final ArrayList<Object> sources = new ArrayList<>();
+        WorldChangeListener changeListener = new WorldChangeListener() {
+            @Override
+            public void worldChanged(Object source) {
+                sources.add(source);
+            }
+        };
+        instance.addChangeListener(changeListener);
+
+        Place pl0 = new Place("A", 0, 0, layer);
+        Place pl1 = new Place("B", 1, 0, layer);
+        instance.putPlace(pl0);
+        instance.putPlace(pl1);
+        assertTrue(events.get(0) instanceof WorldEvent.PlaceAdded);
+        assertSame(pl0, ((WorldEvent.PlaceAdded) events.get(0)).getPlace());
+        // the old interface gets the changed object
+        assertSame(pl0, sources.get(0));
+
+        events.clear();
+        instance.putPlace(pl1, layer2.getId(), 3, 4);
+        WorldEvent.PlaceMoved moved = (WorldEvent.PlaceMoved) events.get(0);
+        assertEquals((int) layer.getId(), moved.getOldPosition().getLayer());
+        assertEquals(1, moved.getOldPosition().getX(), 0);
+        assertEquals((int) layer2.getId(), moved.getNewPosition().getLayer());
+        assertEquals(4, moved.getNewPosition().getY(), 0);
+
+        events.clear();
+        pl0.setName("C");
+        pl0.setFlag("shop", true);
+        WorldEvent.AttributeChanged attr = (WorldEvent.AttributeChanged) events.get(0);
+        assertEquals(WorldEvent.AttributeChanged.NAME, attr.getAttribute());
+        assertEquals("A", attr.getOldValue());
+        assertEquals("C", attr.getNewValue());
+        attr = (WorldEvent.AttributeChanged) events.get(1);
+        assertEquals(WorldEvent.AttributeChanged.FLAG + "shop", attr.getAttribute());
+        assertNull(attr.getOldValue());
+        assertEquals(true, attr.getNewValue());
+
+        events.clear();
+        Path path = new Path(pl0, "e", pl1, "w");
+        pl0.connectPath(path);
+        pl0.connectChild(pl1);
+        assertSame(path, ((WorldEvent.PathAdded) events.get(0)).getPath());
+        assertSame(pl1, ((WorldEvent.PathAdded) events.get(0)).getOtherPlace());
+        assertSame(pl1, ((WorldEvent.ChildAdded) events.get(1)).getChild());
+
+        events.clear();
+        layer.setName("Town");
+        WorldEvent.LayerRenamed renamed = (WorldEvent.LayerRenamed) events.get(0);
+        assertSame(layer, renamed.getLayer());
+        assertNull(renamed.getOldName());
+        assertEquals("Town", renamed.getNewName());
+
+        // removing a place removes its connections first, in a single batch
+        events.clear();
+        sources.clear();
+        instance.removePlace(pl1);
+        assertEquals(1, events.size());
+        assertEquals(1, sources.size());
+        List<WorldEvent> batch = ((WorldEvent.Batch) events.get(0)).getEvents();
+        assertTrue(batch.get(0) instanceof WorldEvent.PathRemoved);
+        assertTrue(batch.get(1) instanceof WorldEvent.ChildRemoved);
+        WorldEvent.PlaceRemoved removed = (WorldEvent.PlaceRemoved) batch.get(2);
+        assertSame(pl1, removed.getPlace());
+        assertEquals((int) layer2.getId(), removed.getPosition().getLayer());
+
+        // the adapter can be removed
+        sources.clear();
+        instance.removeChangeListener(changeListener);
+        pl0.setName("D");
+        assertTrue(sources.isEmpty());
+    }
+
 }
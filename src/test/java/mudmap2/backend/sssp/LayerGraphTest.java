@@ -0,0 +1,328 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend.sssp;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import mudmap2.backend.WorldDiff;
+import mudmap2.backend.WorldFileReader.current.WorldFileJSON;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class LayerGraphTest {
+
+    World world;
+    Layer[] layers;
+    Place[][] places;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public LayerGraphTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    /**
+     * Creates four layers with a row of three places each. The first layer
+     * is the parent of the second, the second and third are connected by a
+     * path, the fourth layer is not connected
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        world = new World("LayerGraphTest");
+        layers = new Layer[4];
+        places = new Place[4][3];
+        for(int l = 0; l < layers.length; ++l){
+            layers[l] = world.getNewLayer();
+            for(int i = 0; i < 3; ++i){
+                places[l][i] = new Place("Place " + l + " " + i, i, 0, layers[l]);
+                world.putPlace(places[l][i]);
+                if(i > 0) places[l][i].connectPath(new Path(places[l][i], "w", places[l][i - 1], "e"));
+            }
+        }
+        places[0][2].connectChild(places[1][0]);
+        places[1][2].connectPath(new Path(places[1][2], "u", places[2][0], "d"));
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of isEntrance method, of class LayerGraph.
+     */
+    @Test
+    public void testIsEntrance() {
+        System.out.println("isEntrance");
+
+        LayerGraph instance = world.getLayerGraph();
+        assertTrue(instance.isEntrance(places[0][2]));
+        assertTrue(instance.isEntrance(places[1][0]));
+        assertTrue(instance.isEntrance(places[1][2]));
+        assertTrue(instance.isEntrance(places[2][0]));
+        assertFalse(instance.isEntrance(places[0][0]));
+        assertEquals(2, instance.getEntrances(layers[1]).size());
+        assertTrue(instance.getAdjacentLayers(layers[1]).contains(layers[0]));
+        assertTrue(instance.getAdjacentLayers(layers[1]).contains(layers[2]));
+
+        // updates on changes
+        places[0][2].removeChild(places[1][0]);
+        assertFalse(instance.isEntrance(places[0][2]));
+        assertFalse(instance.isEntrance(places[1][0]));
+        assertFalse(instance.getAdjacentLayers(layers[1]).contains(layers[0]));
+
+        places[3][1].connectChild(places[0][0]);
+        assertTrue(instance.isEntrance(places[0][0]));
+        assertTrue(instance.isEntrance(places[3][1]));
+
+        places[2][0].getPathTo("d").remove();
+        assertFalse(instance.isEntrance(places[1][2]));
+        assertFalse(instance.isEntrance(places[2][0]));
+    }
+
+    /**
+     * Test of worldChanged method, of class LayerGraph. Changes that don't
+     * tell the changed places are found by a rescan
+     */
+    @Test
+    public void testWorldChanged() throws Exception {
+        System.out.println("worldChanged");
+
+        LayerGraph instance = world.getLayerGraph();
+        world.setName("Renamed");
+        assertFalse(instance.isEntrance(places[3][0]));
+
+        World source = world.snapshot();
+        Place pl30 = source.getPlace(places[3][0].getId());
+        Place pl22 = source.getPlace(places[2][2].getId());
+        pl30.connectPath(new Path(pl30, "n", pl22, "s"));
+        assertTrue(new WorldDiff(world, source).apply() > 0);
+        assertTrue(instance.isEntrance(places[3][0]));
+        assertTrue(instance.getAdjacentLayers(layers[3]).contains(layers[2]));
+
+        // layer changes that don't change the graph don't cause a rescan
+        assertNotNull(instance.adjacency);
+        layers[0].setName("Renamed");
+        world.getNewLayer();
+        places[0][0].setName("Renamed");
+        assertNotNull(instance.adjacency);
+
+        // removing a place updates the linked places
+        world.removePlace(places[1][2]);
+        assertFalse(instance.isEntrance(places[2][0]));
+        assertFalse(instance.getAdjacentLayers(layers[1]).contains(layers[2]));
+    }
+
+    /**
+     * Test of findLayerRoute method, of class LayerGraph.
+     */
+    @Test
+    public void testFindLayerRoute() {
+        System.out.println("findLayerRoute");
+
+        LayerGraph instance = world.getLayerGraph();
+        List<Layer> route = instance.findLayerRoute(layers[0], layers[2]);
+        assertEquals(3, route.size());
+        assertEquals(layers[1], route.get(1));
+        assertNull(instance.findLayerRoute(layers[0], layers[3]));
+    }
+
+    /**
+     * Test of findRoute method, of class LayerGraph.
+     */
+    @Test
+    public void testFindRoute() {
+        System.out.println("findRoute");
+
+        LayerGraph instance = world.getLayerGraph();
+        Route route = instance.findRoute(places[0][0], places[2][2], CostProfile.UNIFORM);
+        assertNotNull(route);
+        assertEquals(8, route.getLength());
+        assertEquals(8.0, route.getCost(), 0.0);
+        assertEquals(places[0][0], route.getStart());
+        assertEquals(places[1][0], route.getPlaces().get(3));
+        assertEquals(places[2][2], route.getEnd());
+
+        // same layer
+        route = instance.findRoute(places[1][0], places[1][2], CostProfile.UNIFORM);
+        assertEquals(2, route.getLength());
+
+        assertNull(instance.findRoute(places[0][0], places[3][0], CostProfile.UNIFORM));
+    }
+
+    /**
+     * Test of findRoute method, of class LayerGraph. The nearest entrance
+     * leads to a dead end, the route has to use a farther one
+     * @throws Exception
+     */
+    @Test
+    public void testFindRouteFarEntrance() throws Exception {
+        System.out.println("findRoute far entrance");
+
+        Place deadEnd = new Place("Dead end", 5, 5, layers[1]);
+        world.putPlace(deadEnd);
+        places[0][0].connectPath(new Path(places[0][0], "d", deadEnd, "u"));
+        places[0][2].connectPath(new Path(places[0][2], "d", places[1][0], "u"));
+
+        LayerGraph instance = world.getLayerGraph();
+        Route route = instance.findRoute(places[0][0], places[2][2], CostProfile.UNIFORM);
+        assertNotNull(route);
+        assertEquals(8, route.getLength());
+        assertEquals(places[1][0], route.getPlaces().get(3));
+    }
+
+    /**
+     * Breadth search on paths, children and parents, for comparison
+     * @param start
+     * @return number of steps to the reachable places
+     */
+    private static HashMap<Place, Integer> breadthSearch(Place start){
+        HashMap<Place, Integer> steps = new HashMap<>();
+        ArrayDeque<Place> queue = new ArrayDeque<>();
+        steps.put(start, 0);
+        queue.add(start);
+        while(!queue.isEmpty()){
+            Place v = queue.pollFirst();
+            HashSet<Place> next = new HashSet<>(v.getChildren());
+            next.addAll(v.getParents());
+            for(Path path: v.getPaths()) next.add(path.getOtherPlace(v));
+            for(Place w: next){
+                if(!steps.containsKey(w)){
+                    steps.put(w, steps.get(v) + 1);
+                    queue.addLast(w);
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Test of findRoute method, of class LayerGraph. The routes are as short
+     * as routes found by a search of the whole world, even if they leave the
+     * layer and come back
+     * @throws Exception
+     */
+    @Test
+    public void testFindRouteShortest() throws Exception {
+        System.out.println("findRoute shortest");
+
+        World random = new World("Random");
+        Layer[] randomLayers = new Layer[8];
+        Place[] randomPlaces = new Place[160];
+        for(int l = 0; l < randomLayers.length; ++l) randomLayers[l] = random.getNewLayer();
+        for(int i = 0; i < randomPlaces.length; ++i){
+            randomPlaces[i] = new Place("Place " + i, i % 5, i / 5, randomLayers[i % randomLayers.length]);
+            random.putPlace(randomPlaces[i]);
+        }
+        Random rnd = new Random(7);
+        for(int i = 0; i < 200; ++i){
+            Place a = randomPlaces[rnd.nextInt(randomPlaces.length)];
+            Place b = randomPlaces[rnd.nextInt(randomPlaces.length)];
+            if(a == b) continue;
+            // mostly paths within a layer
+            if(a.getLayer() != b.getLayer() && rnd.nextInt(4) != 0) continue;
+            // children on other layers, eg. the map of a building
+            if(a.getLayer() != b.getLayer() && rnd.nextBoolean()) a.connectChild(b);
+            else a.connectPath(new Path(a, "e" + i, b, "w" + i));
+        }
+
+        LayerGraph instance = random.getLayerGraph();
+        for(int s = 0; s < randomPlaces.length; s += 13){
+            HashMap<Place, Integer> expected = breadthSearch(randomPlaces[s]);
+            for(int e = 0; e < randomPlaces.length; e += 7){
+                Route route = instance.findRoute(randomPlaces[s], randomPlaces[e], CostProfile.UNIFORM);
+                if(!expected.containsKey(randomPlaces[e])){
+                    assertNull(route);
+                    continue;
+                }
+                assertNotNull(route);
+                assertEquals((int) expected.get(randomPlaces[e]), route.getLength());
+                assertEquals(route.getLength(), route.getCost(), 0.0);
+                assertEquals(randomPlaces[s], route.getStart());
+                assertEquals(randomPlaces[e], route.getEnd());
+                // consecutive places are connected
+                List<Place> list = route.getPlaces();
+                for(int i = 1; i < list.size(); ++i){
+                    Place a = list.get(i - 1), b = list.get(i);
+                    boolean connected = a.getChildren().contains(b) || a.getParents().contains(b);
+                    for(Path path: a.getPaths()) connected |= path.getOtherPlace(a) == b;
+                    assertTrue(connected);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test of findRoute method, of class LayerGraph, on lazily loaded layers.
+     * Only the layers on the way are loaded
+     * @throws Exception
+     */
+    @Test
+    public void testFindRouteLazyLayers() throws Exception {
+        System.out.println("findRoute lazy layers");
+
+        String file = folder.getRoot() + "/lazy";
+        WorldFileJSON writer = new WorldFileJSON(file);
+        writer.writeFile(world);
+        WorldFileJSON reader = new WorldFileJSON(file);
+        reader.setLazyLayers(true);
+        World result = reader.readFile();
+        Layer[] resultLayers = new Layer[layers.length];
+        for(int l = 0; l < layers.length; ++l) resultLayers[l] = result.getLayer(writer.translateLayerID(layers[l].getId()));
+
+        // the layer graph doesn't load layers
+        LayerGraph instance = result.getLayerGraph();
+        for(Layer layer: resultLayers) assertFalse(layer.isLoaded());
+        assertTrue(instance.getAdjacentLayers(resultLayers[0]).contains(resultLayers[1]));
+        assertTrue(instance.getAdjacentLayers(resultLayers[3]).isEmpty());
+
+        Place start = resultLayers[0].get(0, 0);
+        Place end = resultLayers[2].get(2, 0);
+        Route route = instance.findRoute(start, end, CostProfile.UNIFORM);
+        assertNotNull(route);
+        assertEquals(8, route.getLength());
+        assertTrue(resultLayers[1].isLoaded());
+        assertFalse(resultLayers[3].isLoaded());
+        assertTrue(instance.isEntrance(resultLayers[1].get(0, 0)));
+    }
+
+}
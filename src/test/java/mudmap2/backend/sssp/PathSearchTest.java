@@ -0,0 +1,131 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend.sssp;
+
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import java.util.List;
+import mudmap2.backend.Place;
+import mudmap2.backend.PlaceGroup;
+import mudmap2.backend.World;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class PathSearchTest {
+
+    World world;
+    Place[] places;
+
+    public PathSearchTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    /**
+     * Creates a row of connected places: 0 - 1 - 2 - 3 - 4
+     * and an unconnected place 5
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        world = new World("PathSearchTest");
+        Layer layer = world.getNewLayer();
+        places = new Place[6];
+        for(int i = 0; i < places.length; ++i){
+            places[i] = new Place("Place " + i, i, 0, layer);
+            world.putPlace(places[i]);
+        }
+        for(int i = 0; i < 4; ++i){
+            places[i].connectPath(new Path(places[i], "e", places[i + 1], "w"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of findRoute method, of class PathSearch.
+     */
+    @Test
+    public void testFindRoute() {
+        System.out.println("findRoute");
+
+        Route route = PathSearch.findRoute(places[1], places[4], CostProfile.UNIFORM);
+        assertNotNull(route);
+        assertEquals(3, route.getLength());
+        assertEquals(3.0, route.getCost(), 0.0);
+        assertEquals(places[2], route.getPlaces().get(1));
+
+        assertNull(PathSearch.findRoute(places[1], places[5], CostProfile.UNIFORM));
+    }
+
+    /**
+     * Test of findNearest method, of class PathSearch.
+     */
+    @Test
+    public void testFindNearest() {
+        System.out.println("findNearest");
+
+        PlaceGroup shop = new PlaceGroup("Shop", null);
+        world.addPlaceGroup(shop);
+        places[0].setPlaceGroup(shop);
+        places[3].setPlaceGroup(shop);
+        places[4].setPlaceGroup(shop);
+        places[5].setPlaceGroup(shop);
+
+        List<Route> routes = PathSearch.findNearest(places[2], PlaceFilter.byPlaceGroup(shop), 2, CostProfile.UNIFORM);
+        assertEquals(2, routes.size());
+        assertEquals(places[3], routes.get(0).getEnd());
+        assertEquals(1, routes.get(0).getLength());
+        assertEquals(2, routes.get(1).getLength());
+
+        // unreachable matches are not returned
+        routes = PathSearch.findNearest(places[2], PlaceFilter.byPlaceGroup(shop), 10, CostProfile.UNIFORM);
+        assertEquals(3, routes.size());
+
+        // the start place isn't returned, even if it matches
+        Route route = PathSearch.findNearest(places[4], PlaceFilter.byPlaceGroup(shop), CostProfile.UNIFORM);
+        assertEquals(places[3], route.getEnd());
+        assertEquals(1, route.getLength());
+        assertNull(PathSearch.findNearest(places[5], PlaceFilter.byPlaceGroup(shop), CostProfile.UNIFORM));
+
+        places[1].setFlag("safe", true);
+        route = PathSearch.findNearest(places[4], PlaceFilter.byFlag("safe"), CostProfile.UNIFORM);
+        assertEquals(places[1], route.getEnd());
+
+        route = PathSearch.findNearest(places[4], PlaceFilter.and(PlaceFilter.byName("place"), PlaceFilter.byFlag("safe")), CostProfile.UNIFORM);
+        assertEquals(places[1], route.getEnd());
+
+        assertNull(PathSearch.findNearest(places[0], PlaceFilter.byName("unknown"), CostProfile.UNIFORM));
+    }
+
+}
@@ -0,0 +1,205 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend.sssp;
+
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class RouteCacheTest {
+
+    World world;
+    Place[] places;
+
+    public RouteCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    /**
+     * Creates a row of connected places: 0 - 1 - 2 - 3 - 4
+     * and an unconnected place 5
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        world = new World("RouteCacheTest");
+        Layer layer = world.getNewLayer();
+        places = new Place[6];
+        for(int i = 0; i < places.length; ++i){
+            places[i] = new Place("Place " + i, i, 0, layer);
+            world.putPlace(places[i]);
+        }
+        for(int i = 0; i < 4; ++i){
+            places[i].connectPath(new Path(places[i], "e", places[i + 1], "w"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of getRoute method, of class RouteCache.
+     */
+    @Test
+    public void testGetRoute() {
+        System.out.println("getRoute");
+
+        RouteCache instance = new RouteCache(world);
+        world.addChangeListener(instance);
+
+        Route route = instance.getRoute(places[0], places[4], CostProfile.UNIFORM);
+        assertNotNull(route);
+        assertEquals(4, route.getLength());
+        assertEquals(places[0], route.getStart());
+        assertEquals(places[4], route.getEnd());
+        assertEquals(0, instance.getHits());
+        assertEquals(1, instance.getMisses());
+
+        assertSame(route, instance.getRoute(places[0], places[4], CostProfile.UNIFORM));
+        assertEquals(1, instance.getHits());
+        assertEquals(1, instance.getMisses());
+
+        assertNull(instance.getRoute(places[0], places[5], CostProfile.UNIFORM));
+        assertEquals(2, instance.getMisses());
+        assertEquals(1, instance.size());
+    }
+
+    /**
+     * Test of route invalidation on changes of places on a route
+     */
+    @Test
+    public void testInvalidation() {
+        System.out.println("invalidation");
+
+        RouteCache instance = new RouteCache(world);
+        world.addChangeListener(instance);
+
+        instance.getRoute(places[0], places[2], CostProfile.UNIFORM);
+        instance.getRoute(places[3], places[4], CostProfile.UNIFORM);
+        assertEquals(2, instance.size());
+
+        // place on the first route changed
+        places[1].setName("Changed");
+        assertEquals(1, instance.size());
+        instance.getRoute(places[3], places[4], CostProfile.UNIFORM);
+        assertEquals(1, instance.getHits());
+
+        // path removal on the second route
+        places[3].removePath(places[3].getPathTo("e"));
+        assertEquals(0, instance.size());
+        assertNull(instance.getRoute(places[3], places[4], CostProfile.UNIFORM));
+    }
+
+    /**
+     * Test whether new paths that don't touch a route make it outdated
+     */
+    @Test
+    public void testNewPathShortcut() {
+        System.out.println("new path shortcut");
+
+        RouteCache instance = new RouteCache(world);
+        world.addChangeListener(instance);
+
+        Route route = instance.getRoute(places[0], places[4], CostProfile.UNIFORM);
+        assertEquals(4, route.getLength());
+
+        // shortcut via place 5
+        places[5].connectPath(new Path(places[5], "n", places[0], "s"));
+        places[5].connectPath(new Path(places[5], "s", places[4], "n"));
+
+        route = instance.getRoute(places[0], places[4], CostProfile.UNIFORM);
+        assertEquals(2, route.getLength());
+        assertTrue(route.contains(places[5]));
+        assertEquals(0, instance.getHits());
+    }
+
+    /**
+     * Test of the capacity limit
+     */
+    @Test
+    public void testCapacity() {
+        System.out.println("capacity");
+
+        RouteCache instance = new RouteCache(world, 2);
+        instance.getRoute(places[0], places[1], CostProfile.UNIFORM);
+        instance.getRoute(places[0], places[2], CostProfile.UNIFORM);
+        // access first route, second is least recently used now
+        instance.getRoute(places[0], places[1], CostProfile.UNIFORM);
+        instance.getRoute(places[0], places[3], CostProfile.UNIFORM);
+        assertEquals(2, instance.size());
+
+        instance.getRoute(places[0], places[1], CostProfile.UNIFORM);
+        assertEquals(2, instance.getHits());
+        instance.getRoute(places[0], places[2], CostProfile.UNIFORM);
+        assertEquals(2, instance.getHits());
+        assertEquals(4, instance.getMisses());
+    }
+
+    /**
+     * Test of routes with a cost profile that depends on place data
+     */
+    @Test
+    public void testCostProfile() {
+        System.out.println("cost profile");
+
+        // avoid places with flag "danger"
+        CostProfile profile = new CostProfile() {
+            @Override
+            public double getCost(Place from, Path path, Place to) {
+                return to.getFlag("danger") ? 10.0 : 1.0;
+            }
+        };
+
+        places[5].connectPath(new Path(places[5], "n", places[0], "s"));
+        places[5].connectPath(new Path(places[5], "s", places[2], "n"));
+
+        RouteCache instance = new RouteCache(world);
+        world.addChangeListener(instance);
+
+        places[1].setFlag("danger", true);
+        Route route = instance.getRoute(places[0], places[2], profile);
+        assertTrue(route.contains(places[5]));
+        assertEquals(2.0, route.getCost(), 0.0);
+
+        // change of a place that is not on the route changes the cost
+        places[1].setFlag("danger", false);
+        places[5].setFlag("danger", true);
+        route = instance.getRoute(places[0], places[2], profile);
+        assertTrue(route.contains(places[1]));
+        assertEquals(0, instance.getHits());
+    }
+
+}
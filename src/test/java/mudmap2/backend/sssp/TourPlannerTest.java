@@ -0,0 +1,130 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend.sssp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class TourPlannerTest {
+
+    World world;
+    Place[] places;
+
+    public TourPlannerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    /**
+     * Creates a grid of 5 x 5 connected places and an unconnected place
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        world = new World("TourPlannerTest");
+        Layer layer = world.getNewLayer();
+        places = new Place[26];
+        for(int i = 0; i < 25; ++i){
+            places[i] = new Place("Place " + i, i % 5, i / 5, layer);
+            world.putPlace(places[i]);
+            if(i % 5 > 0) places[i].connectPath(new Path(places[i], "w", places[i - 1], "e"));
+            if(i / 5 > 0) places[i].connectPath(new Path(places[i], "s", places[i - 5], "n"));
+        }
+        places[25] = new Place("Place 25", 10, 10, layer);
+        world.putPlace(places[25]);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of plan method, of class TourPlanner.
+     */
+    @Test
+    public void testPlan() {
+        System.out.println("plan");
+
+        // corners and the unconnected place
+        TourPlanner instance = new TourPlanner(places[0],
+                Arrays.asList(places[24], places[4], places[20], places[25]),
+                CostProfile.UNIFORM);
+        Route route = instance.plan();
+
+        assertNotNull(route);
+        assertEquals(places[0], route.getStart());
+        // 0 -> 4 -> 24 -> 20 or 0 -> 20 -> 24 -> 4
+        assertEquals(12, route.getLength());
+        assertEquals(12.0, route.getCost(), 0.0);
+        assertEquals(4, instance.getOrder().size());
+        assertEquals(1, instance.getUnreachable().size());
+        assertEquals(places[25], instance.getUnreachable().get(0));
+
+        // consecutive places of the route are connected
+        for(int i = 1; i < route.getPlaces().size(); ++i){
+            assertFalse(route.getPlaces().get(i - 1).getPaths(route.getPlaces().get(i)).isEmpty());
+        }
+    }
+
+    /**
+     * Test of the distance matrix
+     */
+    @Test
+    public void testDistances() {
+        System.out.println("distances");
+
+        ArrayList<Place> selection = new ArrayList<>();
+        for(int i = 0; i < 25; i += 2) selection.add(places[i]);
+        TourPlanner instance = new TourPlanner(places[12], selection, CostProfile.UNIFORM);
+        instance.computeDistances();
+
+        double[][] distances = instance.getDistances();
+        for(int i = 0; i < distances.length; ++i){
+            for(int j = 0; j < distances.length; ++j){
+                Place a = instance.getPlaces().get(i), b = instance.getPlaces().get(j);
+                double expected = Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
+                assertEquals(expected, distances[i][j], 0.0);
+            }
+        }
+
+        // the tour visits every selected place once
+        Route route = instance.plan();
+        assertEquals(selection.size(), instance.getOrder().size());
+        for(Place place: selection) assertTrue(route.contains(place));
+    }
+
+}
@@ -0,0 +1,134 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*  File description
+ *
+ *  Compares a full breadth first search over the places and paths with the
+ *  same search over the WorldGraph snapshot. It's not run by the tests, run
+ *  it with the test classpath:
+ *  java -cp target/classes:target/test-classes mudmap2.backend.sssp.WorldGraphBenchmark [size] [runs]
+ */
+
+package mudmap2.backend.sssp;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldGraphBenchmark {
+
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // grid of size * size places, connected to their neighbors
+        World world = new World("Benchmark");
+        Layer layer = world.getNewLayer();
+        Place[][] places = new Place[size][size];
+        for(int x = 0; x < size; ++x){
+            for(int y = 0; y < size; ++y){
+                places[x][y] = new Place("Place " + x + " " + y, x, y, layer);
+                world.putPlace(places[x][y]);
+                if(x > 0) places[x][y].connectPath(new Path(places[x][y], "w", places[x - 1][y], "e"));
+                if(y > 0) places[x][y].connectPath(new Path(places[x][y], "s", places[x][y - 1], "n"));
+            }
+        }
+        Place start = places[size / 2][size / 2];
+        System.out.println(size * size + " places, " + runs + " runs");
+
+        long[] build = new long[runs];
+        long[] objects = new long[runs];
+        long[] csr = new long[runs];
+        WorldGraph graph = null;
+        // the first half warms up the JIT
+        for(int r = 0; r < 2 * runs; ++r){
+            long t0 = System.nanoTime();
+            graph = new WorldGraph(world.getPlaces(), 0);
+            long t1 = System.nanoTime();
+            sink += objectSearch(start);
+            long t2 = System.nanoTime();
+            sink += csrSearch(graph, graph.indexOf(start));
+            long t3 = System.nanoTime();
+            if(r >= runs){
+                build[r - runs] = t1 - t0;
+                objects[r - runs] = t2 - t1;
+                csr[r - runs] = t3 - t2;
+            }
+        }
+
+        System.out.println("snapshot build:       " + median(build) + " us");
+        System.out.println("BFS over Place/Path:  " + median(objects) + " us");
+        System.out.println("BFS over WorldGraph:  " + median(csr) + " us");
+    }
+
+    /**
+     * Breadth first search that follows the paths of the places
+     * @return sum of the steps
+     */
+    static long objectSearch(Place start){
+        HashMap<Place, Integer> steps = new HashMap<>();
+        ArrayDeque<Place> queue = new ArrayDeque<>();
+        steps.put(start, 0);
+        queue.add(start);
+        long sum = 0;
+        while(!queue.isEmpty()){
+            Place place = queue.pollFirst();
+            int s = steps.get(place);
+            sum += s;
+            for(Path path: place.getPaths()){
+                Place other = path.getOtherPlace(place);
+                if(!steps.containsKey(other)){
+                    steps.put(other, s + 1);
+                    queue.add(other);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Breadth first search on the snapshot
+     * @return sum of the steps
+     */
+    static long csrSearch(WorldGraph graph, int start){
+        long sum = 0;
+        for(int s: graph.breadthSearch(start)) sum += s;
+        return sum;
+    }
+
+    /**
+     * Gets the median of measured times
+     * @param times times in ns
+     * @return median in us
+     */
+    static long median(long[] times){
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1000;
+    }
+
+}
@@ -0,0 +1,230 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.backend.sssp;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Random;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Path;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class WorldGraphTest {
+
+    World world;
+    Place[] places;
+
+    public WorldGraphTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    /**
+     * Creates a random world with 200 places
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        world = new World("WorldGraphTest");
+        Layer layer = world.getNewLayer();
+        places = new Place[200];
+        for(int i = 0; i < places.length; ++i){
+            places[i] = new Place("Place " + i, i % 20, i / 20, layer);
+            world.putPlace(places[i]);
+        }
+        Random random = new Random(42);
+        for(int i = 0; i < 300; ++i){
+            Place a = places[random.nextInt(places.length)];
+            Place b = places[random.nextInt(places.length)];
+            a.connectPath(new Path(a, Integer.toString(random.nextInt(1000)), b, Integer.toString(random.nextInt(1000))));
+        }
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Breadth search on the places' path sets, for comparison
+     * @param start
+     * @return number of steps to the reachable places
+     */
+    private HashMap<Place, Integer> breadthSearch(Place start){
+        HashMap<Place, Integer> steps = new HashMap<>();
+        LinkedList<Place> queue = new LinkedList<>();
+        steps.put(start, 0);
+        queue.add(start);
+        while(!queue.isEmpty()){
+            Place v = queue.pollFirst();
+            for(Path path: v.getPaths()){
+                Place w = path.getOtherPlace(v);
+                if(!steps.containsKey(w)){
+                    steps.put(w, steps.get(v) + 1);
+                    queue.addLast(w);
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Test of breadthSearch method, of class WorldGraph.
+     */
+    @Test
+    public void testBreadthSearch() {
+        System.out.println("breadthSearch");
+
+        WorldGraph instance = world.getGraph();
+        assertEquals(places.length, instance.size());
+
+        for(int s = 0; s < places.length; s += 17){
+            HashMap<Place, Integer> expected = breadthSearch(places[s]);
+            int[] result = instance.breadthSearch(instance.indexOf(places[s]));
+            for(int i = 0; i < result.length; ++i){
+                Place place = instance.getPlace(i);
+                if(expected.containsKey(place)) assertEquals((int) expected.get(place), result[i]);
+                else assertEquals(-1, result[i]);
+            }
+
+            // path search on the snapshot finds the same distances
+            PathSearch search = new PathSearch(places[s], CostProfile.UNIFORM);
+            while(search.next() != null);
+            for(Place place: places){
+                if(expected.containsKey(place)) assertEquals(expected.get(place), search.getDistance(place), 0.0);
+                else assertFalse(search.isSettled(place));
+            }
+        }
+    }
+
+    /**
+     * Test of getComponents method, of class WorldGraph.
+     */
+    @Test
+    public void testGetComponents() {
+        System.out.println("getComponents");
+
+        WorldGraph instance = world.getGraph();
+        int[] components = instance.getComponents();
+        HashMap<Place, Integer> reachable = breadthSearch(places[0]);
+        int c = components[instance.indexOf(places[0])];
+        for(int i = 0; i < components.length; ++i){
+            assertEquals(reachable.containsKey(instance.getPlace(i)), components[i] == c);
+        }
+    }
+
+    /**
+     * Test of the lazy rebuild on topology changes
+     * @throws Exception
+     */
+    @Test
+    public void testRebuild() throws Exception {
+        System.out.println("rebuild");
+
+        WorldGraph graph = world.getGraph();
+        assertSame(graph, world.getGraph());
+
+        // no topology change
+        places[0].setName("Renamed");
+        assertSame(graph, world.getGraph());
+
+        Place place = new Place("New", 50, 50, places[0].getLayer());
+        world.putPlace(place);
+        assertNotSame(graph, world.getGraph());
+        graph = world.getGraph();
+        assertEquals(places.length + 1, graph.size());
+
+        place.connectPath(new Path(place, "n", places[0], "s"));
+        assertNotSame(graph, world.getGraph());
+        graph = world.getGraph();
+        assertTrue(graph.isReachable(place, places[0]));
+
+        place.removePath(place.getPathTo("n"));
+        assertNotSame(graph, world.getGraph());
+        assertFalse(world.getGraph().isReachable(place, places[0]));
+        assertEquals(0, world.getGraph().getDegree(world.getGraph().indexOf(place)));
+    }
+
+    /**
+     * Test of getCosts method, of class WorldGraph.
+     */
+    @Test
+    public void testGetCosts() {
+        System.out.println("getCosts");
+
+        // the cost is the exit name length, the same path can have different
+        // costs in both directions
+        CostProfile profile = new CostProfile() {
+            @Override
+            public double getCost(Place from, Path path, Place to) {
+                return path.getExit(from).length();
+            }
+
+            @Override
+            public boolean dependsOnPlaceData() {
+                return false;
+            }
+        };
+
+        WorldGraph instance = world.getGraph();
+        double[] costs = instance.getCosts(profile);
+        assertEquals(instance.getEdgeCount(), costs.length);
+        for(int i = 0; i < instance.size(); ++i){
+            Place place = instance.getPlace(i);
+            // every path of the place has an edge with its cost
+            HashMap<Double, Integer> expected = new HashMap<>();
+            HashMap<Double, Integer> result = new HashMap<>();
+            for(Path path: place.getPaths()){
+                if(path.getOtherPlace(place) == place) continue;
+                double cost = path.getExit(place).length();
+                expected.put(cost, expected.containsKey(cost) ? expected.get(cost) + 1 : 1);
+            }
+            for(int e = instance.offsets[i]; e < instance.offsets[i + 1]; ++e){
+                result.put(costs[e], result.containsKey(costs[e]) ? result.get(costs[e]) + 1 : 1);
+            }
+            assertEquals(expected, result);
+        }
+        // computed once per snapshot
+        assertSame(costs, instance.getCosts(profile));
+
+        // the search uses the costs of the snapshot
+        Path path = places[0].getPaths().iterator().next();
+        Place other = path.getOtherPlace(places[0]);
+        if(other != places[0]){
+            PathSearch search = new PathSearch(places[0], profile);
+            assertTrue(search.searchTo(other));
+            assertTrue(search.getDistance(other) <= path.getExit(places[0]).length());
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.frontend.sidePanel;
+
+import java.util.ArrayList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import mudmap2.backend.Layer;
+import mudmap2.backend.Place;
+import mudmap2.backend.World;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class PlaceTreeModelTest {
+
+    public PlaceTreeModelTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Records the events of a model as "type index"
+     */
+    private static class Recorder implements TreeModelListener {
+        final ArrayList<String> events = new ArrayList<>();
+
+        @Override
+        public void treeNodesChanged(TreeModelEvent e) {
+            events.add("changed " + e.getChildIndices()[0]);
+        }
+
+        @Override
+        public void treeNodesInserted(TreeModelEvent e) {
+            events.add("inserted " + e.getChildIndices()[0]);
+        }
+
+        @Override
+        public void treeNodesRemoved(TreeModelEvent e) {
+            events.add("removed " + e.getChildIndices()[0]);
+        }
+
+        @Override
+        public void treeStructureChanged(TreeModelEvent e) {
+            events.add("structure");
+        }
+    }
+
+    private static Place getPlace(PlaceTreeModel model, Object layerNode, int index){
+        return ((PlaceTreeModel.PlaceNode) model.getChild(layerNode, index)).getPlace();
+    }
+
+    /**
+     * Test of the incremental changes, of class PlaceTreeModel.
+     */
+    @Test
+    public void testChanges() throws Exception {
+        System.out.println("changes");
+
+        World world = new World("Tree");
+        Layer layer = world.getNewLayer("B");
+        Layer layer2 = world.getNewLayer("A");
+        Place p10 = new Place("Place 10", 0, 0, layer);
+        Place p2 = new Place("Place 2", 1, 0, layer);
+        world.putPlace(p10);
+        world.putPlace(p2);
+
+        PlaceTreeModel model = new PlaceTreeModel(world);
+        Recorder recorder = new Recorder();
+        model.addTreeModelListener(recorder);
+
+        // layers are sorted by name
+        Object root = model.getRoot();
+        assertEquals(2, model.getChildCount(root));
+        assertSame(layer2, ((PlaceTreeModel.LayerNode) model.getChild(root, 0)).getLayer());
+        Object layerNode = model.getChild(root, 1);
+        assertSame(layerNode, model.getLayerNode(layer));
+        assertEquals(1, model.getIndexOfChild(root, layerNode));
+
+        // entries are created when the layer is expanded
+        Place p5 = new Place("Place 5", 2, 0, layer);
+        world.putPlace(p5);
+        model.placeAdded(p5);
+        assertTrue(recorder.events.isEmpty());
+        assertFalse(model.isLeaf(layerNode));
+        assertEquals(3, model.getChildCount(layerNode));
+        assertSame(p2, getPlace(model, layerNode, 0));
+        assertSame(p5, getPlace(model, layerNode, 1));
+        assertSame(p10, getPlace(model, layerNode, 2));
+
+        Place p1 = new Place("Place 1", 3, 0, layer);
+        world.putPlace(p1);
+        model.placeAdded(p1);
+        assertEquals("inserted 0", recorder.events.get(0));
+        assertSame(p1, getPlace(model, layerNode, 0));
+
+        // renamed places move to their new position
+        recorder.events.clear();
+        p1.setName("Place 7");
+        model.placeChanged(p1);
+        assertEquals("removed 0", recorder.events.get(0));
+        assertEquals("inserted 2", recorder.events.get(1));
+        assertSame(p1, getPlace(model, layerNode, 2));
+        assertEquals(2, model.getIndexOfChild(layerNode, model.getChild(layerNode, 2)));
+
+        recorder.events.clear();
+        p1.setName("Place 8");
+        model.placeChanged(p1);
+        assertEquals("changed 2", recorder.events.get(0));
+
+        recorder.events.clear();
+        world.removePlace(p5);
+        model.placeRemoved(p5);
+        assertEquals("removed 1", recorder.events.get(0));
+        assertEquals(3, model.getChildCount(layerNode));
+
+        // moved to another layer
+        recorder.events.clear();
+        world.putPlace(p2, layer2.getId(), 0, 0);
+        model.placeMoved(p2);
+        assertEquals("removed 0", recorder.events.get(0));
+        assertEquals(2, model.getChildCount(layerNode));
+
+        // renamed layer
+        recorder.events.clear();
+        layer.setName("0");
+        model.layerRenamed(layer);
+        assertEquals("removed 1", recorder.events.get(0));
+        assertEquals("inserted 0", recorder.events.get(1));
+        assertSame(layerNode, model.getChild(root, 0));
+    }
+
+    /**
+     * Test of reload with keywords, of class PlaceTreeModel.
+     */
+    @Test
+    public void testSearch() throws Exception {
+        System.out.println("search");
+
+        World world = new World("Tree");
+        Layer layer = world.getNewLayer("A");
+        Layer layer2 = world.getNewLayer("B");
+        world.putPlace(new Place("Inn", 0, 0, layer));
+        world.putPlace(new Place("Shop", 1, 0, layer));
+        world.putPlace(new Place("Road", 0, 0, layer2));
+
+        PlaceTreeModel model = new PlaceTreeModel(world);
+        model.reload(new String[]{"inn"});
+        assertTrue(model.isSearch());
+        // layers without matching places aren't listed
+        assertEquals(1, model.getChildCount(model.getRoot()));
+        Object layerNode = model.getChild(model.getRoot(), 0);
+        assertEquals(1, model.getChildCount(layerNode));
+
+        // places are added to and removed from the results
+        Place inn = new Place("Old inn", 1, 0, layer2);
+        world.putPlace(inn);
+        model.placeAdded(inn);
+        assertEquals(2, model.getChildCount(model.getRoot()));
+        inn.setName("Old road");
+        model.placeChanged(inn);
+        assertEquals(0, model.getChildCount(model.getLayerNode(layer2)));
+
+        model.reload(null);
+        assertEquals(2, model.getChildCount(model.getRoot()));
+    }
+
+}
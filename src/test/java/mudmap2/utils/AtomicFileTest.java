@@ -0,0 +1,92 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.utils;
+
+import java.io.File;
+import java.io.IOException;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class AtomicFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File file;
+
+    public AtomicFileTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "file");
+        FileUtils.writeStringToFile(file, "old", "UTF-8");
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of commit method, of class AtomicFile.
+     */
+    @Test
+    public void testCommit() throws IOException {
+        System.out.println("commit");
+
+        AtomicFile instance = new AtomicFile(file.getPath());
+        assertEquals(folder.getRoot().getAbsoluteFile(), instance.getTempFile().getParentFile());
+        FileUtils.writeStringToFile(instance.getTempFile(), "new", "UTF-8");
+        assertEquals("old", FileUtils.readFileToString(file, "UTF-8"));
+        instance.commit();
+        assertEquals("new", FileUtils.readFileToString(file, "UTF-8"));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    /**
+     * Test of abort method, of class AtomicFile.
+     */
+    @Test
+    public void testAbort() throws IOException {
+        System.out.println("abort");
+
+        AtomicFile instance = new AtomicFile(file.getPath());
+        FileUtils.writeStringToFile(instance.getTempFile(), "new", "UTF-8");
+        instance.abort();
+        assertEquals("old", FileUtils.readFileToString(file, "UTF-8"));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+}
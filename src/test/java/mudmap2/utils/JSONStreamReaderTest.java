@@ -0,0 +1,189 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.utils;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class JSONStreamReaderTest {
+
+    public JSONStreamReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of the token methods, of class JSONStreamReader.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testTokens() throws IOException {
+        System.out.println("tokens");
+
+        String json = " {\"a\": 1, \"b\" : [true, false, null, -2.5e3],\n\"c\":{}, \"d\":[], \"e\":\"x\\\"y\\u00e4\\n\"} ";
+        JSONStreamReader instance = new JSONStreamReader(new StringReader(json));
+
+        assertEquals(JSONStreamReader.Token.BEGIN_OBJECT, instance.peek());
+        instance.beginObject();
+        assertEquals("a", instance.nextName());
+        assertEquals(1, instance.nextInt());
+        assertEquals("b", instance.nextName());
+        instance.beginArray();
+        assertTrue(instance.nextBoolean());
+        assertFalse(instance.nextBoolean());
+        assertEquals(JSONStreamReader.Token.NULL, instance.peek());
+        instance.nextNull();
+        assertEquals(-2500.0, instance.nextDouble(), 0.0);
+        assertFalse(instance.hasNext());
+        instance.endArray();
+        assertEquals("c", instance.nextName());
+        instance.beginObject();
+        assertFalse(instance.hasNext());
+        instance.endObject();
+        assertEquals("d", instance.nextName());
+        instance.skipValue();
+        assertEquals("e", instance.nextName());
+        assertEquals("x\"yä\n", instance.nextString());
+        instance.endObject();
+        assertEquals(JSONStreamReader.Token.END_DOCUMENT, instance.peek());
+    }
+
+    /**
+     * Test of skipValue and nextValue methods, of class JSONStreamReader.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testNextValue() throws IOException {
+        System.out.println("nextValue");
+
+        JSONObject expected = new JSONObject();
+        expected.put("name", "foo");
+        expected.put("num", 42);
+        JSONArray array = new JSONArray();
+        array.put(1).put("two").put(new JSONObject().put("three", 3));
+        expected.put("array", array);
+
+        String json = "{\"skip\": {\"x\": [1, [2, {}]]}, \"value\": " + expected.toString() + "}";
+        JSONStreamReader instance = new JSONStreamReader(new StringReader(json));
+        instance.beginObject();
+        assertEquals("skip", instance.nextName());
+        instance.skipValue();
+        assertEquals("value", instance.nextName());
+        Object result = instance.nextValue();
+        instance.endObject();
+
+        assertTrue(result instanceof JSONObject);
+        assertEquals(expected.toString(), result.toString());
+    }
+
+    /**
+     * Test of long strings that cross the buffer boundary
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testNextRawValue() throws IOException {
+        System.out.println("nextRawValue");
+
+        String element = "{\"n\":\"a \\\"}]\\\\\",\"c\":[1,[2,{}]],\"x\":\"[{\"}";
+        JSONStreamReader reader = new JSONStreamReader(new StringReader("[" + element + ", 12, \"s\\n\", null, []]"));
+        reader.beginArray();
+        StringBuilder out = new StringBuilder();
+        reader.nextRawValue(out);
+        assertEquals(element, out.toString());
+        for(int i = 0; i < 4; ++i){
+            out.append(',');
+            reader.nextRawValue(out);
+        }
+        assertFalse(reader.hasNext());
+        reader.endArray();
+        assertEquals(element + ",12,\"s\\n\",null,[]", out.toString());
+
+        // the copy can be parsed again
+        JSONObject object = new JSONObject(element);
+        assertEquals("a \"}]\\", object.getString("n"));
+        assertEquals("[{", object.getString("x"));
+    }
+
+    /**
+     * Test of long strings that span several buffers.
+     */
+    @Test
+    public void testLongString() throws IOException {
+        System.out.println("long string");
+
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 20000; ++i) sb.append((char) ('a' + i % 26));
+        sb.append("\\\\");
+        String json = "[\"" + sb.toString() + "\"]";
+
+        JSONStreamReader instance = new JSONStreamReader(new StringReader(json));
+        instance.beginArray();
+        String result = instance.nextString();
+        assertEquals(20001, result.length());
+        assertTrue(result.endsWith("\\"));
+        instance.endArray();
+    }
+
+    /**
+     * Test of syntax errors
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testSyntaxError() throws IOException {
+        System.out.println("syntax error");
+
+        String[] invalid = {"{\"a\" 1}", "[1 2]", "{\"a\": 1", "[\"abc", "{a: 1}"};
+        for(String json: invalid){
+            JSONStreamReader instance = new JSONStreamReader(new StringReader(json));
+            try {
+                instance.skipValue();
+                instance.peek();
+                fail("No exception for " + json);
+            } catch(JSONException ex){
+                // expected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.utils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class JSONStreamWriterTest {
+
+    public JSONStreamWriterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of the output format, of class JSONStreamWriter.
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testWrite() throws IOException {
+        System.out.println("write");
+
+        StringWriter out = new StringWriter();
+        JSONStreamWriter instance = new JSONStreamWriter(out);
+        instance.beginObject();
+        instance.name("s").value("a\"b</cä\n");
+        instance.name("i").value(42);
+        instance.name("d").value(2.5);
+        instance.name("d2").value((Number) 3.0);
+        instance.name("b").value(true);
+        instance.name("n").nullValue();
+        instance.name("a").beginArray().value(1).value("x").beginObject().endObject().beginArray().endArray().endArray();
+        instance.name("o").value(new JSONObject().put("k", new JSONArray().put(1)));
+        instance.endObject();
+        instance.flush();
+
+        String result = out.toString();
+        assertTrue(result.startsWith("{\"s\":\"a\\\"b<\\/cä\\n\",\"i\":42,\"d\":2.5,\"d2\":3,"));
+        assertTrue(result.endsWith(",\"o\":{\"k\":[1]}}"));
+
+        // readable by org.json
+        JSONObject parsed = new JSONObject(result);
+        assertEquals("a\"b</cä\n", parsed.getString("s"));
+        assertEquals(42, parsed.getInt("i"));
+        assertEquals(2.5, parsed.getDouble("d"), 0.0);
+        assertTrue(parsed.isNull("n"));
+        assertEquals(4, parsed.getJSONArray("a").length());
+        assertEquals(1, parsed.getJSONObject("o").getJSONArray("k").getInt(0));
+    }
+
+    /**
+     * Test of nesting errors
+     * @throws java.io.IOException
+     */
+    @Test
+    public void testNestingError() throws IOException {
+        System.out.println("nesting error");
+
+        JSONStreamWriter instance = new JSONStreamWriter(new StringWriter());
+        instance.beginObject();
+        try {
+            // value without name
+            instance.value(1);
+            fail();
+        } catch(JSONException ex){
+            // expected
+        }
+
+        instance = new JSONStreamWriter(new StringWriter());
+        instance.beginArray();
+        try {
+            instance.endObject();
+            fail();
+        } catch(JSONException ex){
+            // expected
+        }
+    }
+
+}
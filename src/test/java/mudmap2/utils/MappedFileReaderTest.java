@@ -0,0 +1,118 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class MappedFileReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    File file;
+
+    public MappedFileReaderTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "file");
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Reads a file with a reader buffer size
+     */
+    private String read(long windowSize, int bufferSize) throws IOException {
+        StringBuilder ret = new StringBuilder();
+        try (Reader reader = new MappedFileReader(file.getPath(), StandardCharsets.UTF_8, windowSize)) {
+            char[] buffer = new char[bufferSize];
+            int n;
+            while((n = reader.read(buffer, 0, bufferSize)) >= 0) ret.append(buffer, 0, n);
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Test of read method, of class MappedFileReader.
+     */
+    @Test
+    public void testRead() throws IOException {
+        System.out.println("read");
+
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < 200; ++i) text.append("{\"n\":\"Pläce € ").append(i).append(" 𝄞\"}");
+        FileUtils.writeStringToFile(file, text.toString(), "UTF-8");
+
+        // multibyte chars span the windows
+        for(long windowSize: new long[]{5, 7, 64, 1 << 20}){
+            for(int bufferSize: new int[]{1, 2, 3, 8192}){
+                assertEquals(text.toString(), read(windowSize, bufferSize));
+            }
+        }
+        assertEquals(text.toString(), IOUtils.toString(new MappedFileReader(file.getPath(), StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Test of read method, of class MappedFileReader, with empty and invalid
+     * files.
+     */
+    @Test
+    public void testReadInvalid() throws IOException {
+        System.out.println("read invalid");
+
+        FileUtils.writeByteArrayToFile(file, new byte[0]);
+        assertEquals("", read(8, 16));
+
+        // invalid bytes are replaced like InputStreamReader does
+        byte[] bytes = new byte[]{'a', (byte) 0xc3, 'b', (byte) 0xff, 'c', (byte) 0xe2, (byte) 0x82};
+        FileUtils.writeByteArrayToFile(file, bytes);
+        String expected = IOUtils.toString(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+        assertEquals(expected, read(3, 16));
+        assertEquals(expected, read(1 << 20, 1));
+    }
+}
@@ -0,0 +1,137 @@
+/*  MUD Map (v2) - A tool to create and organize maps for text-based games
+ *  Copyright (C) 2016  Neop (email: mneop@web.de)
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along
+ *  with this program; if not, see <http://www.gnu.org/licenses/>.
+ */
+package mudmap2.utils;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author neop
+ */
+public class VarIntBufferTest {
+
+    public VarIntBufferTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    /**
+     * Test of putVarInt and getVarInt methods, of class VarIntBuffer.
+     */
+    @Test
+    public void testVarInt() {
+        System.out.println("varInt");
+
+        long[] values = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+        VarIntBuffer instance = new VarIntBuffer(1);
+        for(long value: values) instance.putVarInt(value);
+
+        ByteBuffer buffer = instance.getBuffer();
+        for(long value: values) assertEquals(value, VarIntBuffer.getVarInt(buffer));
+        assertFalse(buffer.hasRemaining());
+
+        // one byte for values < 128
+        instance.clear();
+        instance.putVarInt(127);
+        assertEquals(1, instance.size());
+        instance.putVarInt(128);
+        assertEquals(3, instance.size());
+    }
+
+    /**
+     * Test of putSignedVarInt and getSignedVarInt methods, of class VarIntBuffer.
+     */
+    @Test
+    public void testSignedVarInt() {
+        System.out.println("signedVarInt");
+
+        long[] values = {0, -1, 1, -64, 63, -65, Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE};
+        VarIntBuffer instance = new VarIntBuffer(4);
+        for(long value: values) instance.putSignedVarInt(value);
+
+        ByteBuffer buffer = instance.getBuffer();
+        for(long value: values) assertEquals(value, VarIntBuffer.getSignedVarInt(buffer));
+
+        // small negative values are small
+        instance.clear();
+        instance.putSignedVarInt(-64);
+        assertEquals(1, instance.size());
+    }
+
+    /**
+     * Test of putString and getString methods, of class VarIntBuffer.
+     */
+    @Test
+    public void testString() {
+        System.out.println("string");
+
+        VarIntBuffer instance = new VarIntBuffer(2);
+        instance.putString("");
+        instance.putString("Wörld €");
+        instance.putDouble(2.5);
+
+        ByteBuffer buffer = instance.getBuffer();
+        assertEquals("", VarIntBuffer.getString(buffer));
+        assertEquals("Wörld €", VarIntBuffer.getString(buffer));
+        assertEquals(2.5, buffer.getDouble(), 0.0);
+    }
+
+    /**
+     * Test of truncated and out of range values
+     */
+    @Test
+    public void testInvalid() {
+        System.out.println("invalid");
+
+        VarIntBuffer instance = new VarIntBuffer(4);
+        instance.putVarInt(300);
+        ByteBuffer buffer = instance.getBuffer();
+        buffer.limit(1);
+        try {
+            VarIntBuffer.getVarInt(buffer);
+            fail();
+        } catch(BufferUnderflowException ex){}
+
+        instance.clear();
+        instance.putVarInt(1L << 40);
+        try {
+            VarIntBuffer.getVarInt32(instance.getBuffer());
+            fail();
+        } catch(IllegalArgumentException ex){}
+    }
+}